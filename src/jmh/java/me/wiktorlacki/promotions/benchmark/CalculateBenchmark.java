@@ -0,0 +1,58 @@
+package me.wiktorlacki.promotions.benchmark;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DiscountService#calculate(List)} end to end, sorting included, sequentially and with
+ * {@link ParallelDiscountService}. Every invocation settles all orders against fresh balances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class CalculateBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private long orders;
+
+    @Param({"4", "100", "10000"})
+    private int paymentMethods;
+
+    @Param({"DECIMAL", "FIXED_POINT"})
+    private MoneyMode mode;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private WorkloadGenerator generator;
+    private List<Order> generatedOrders;
+    private DiscountService discountService;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        generator = new WorkloadGenerator(Workloads.SEED, orders, paymentMethods);
+        generatedOrders = generator.orders().toList();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        final var paymentService = Workloads.paymentService(generator, mode);
+        discountService = parallel ? ParallelDiscountService.create(paymentService) : DiscountService.create(paymentService);
+    }
+
+    @Benchmark
+    public SpendingReport calculate() {
+        return discountService.calculate(generatedOrders);
+    }
+}
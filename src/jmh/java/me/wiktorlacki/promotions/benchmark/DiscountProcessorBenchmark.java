@@ -0,0 +1,67 @@
+package me.wiktorlacki.promotions.benchmark;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountProcessor;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.FixedOffer;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the selection of the best offer for a single order. Balances are never charged, so every
+ * invocation sees the same state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscountProcessorBenchmark {
+
+    @Param({"4", "100", "10000"})
+    private int paymentMethods;
+
+    private DiscountProcessor decimalProcessor;
+    private DiscountProcessor fixedProcessor;
+    private Order[] orders;
+    private long[] values;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final var generator = new WorkloadGenerator(Workloads.SEED, Workloads.SAMPLE_SIZE, paymentMethods);
+        decimalProcessor = Workloads.discountProcessor(Workloads.paymentService(generator, MoneyMode.DECIMAL));
+        fixedProcessor = Workloads.discountProcessor(Workloads.paymentService(generator, MoneyMode.FIXED_POINT));
+        orders = Workloads.sample(generator);
+        values = new long[orders.length];
+        for (int i = 0; i < orders.length; i++) {
+            values[i] = orders[i].valueUnits();
+        }
+    }
+
+    @Benchmark
+    public Optional<Offer> process() {
+        return decimalProcessor.process(nextOrder());
+    }
+
+    @Benchmark
+    public Optional<FixedOffer> processFixed() {
+        return fixedProcessor.processFixed(nextOrder());
+    }
+
+    @Benchmark
+    public OfferSlot evaluate() {
+        final var index = next++ & (Workloads.SAMPLE_SIZE - 1);
+        return fixedProcessor.evaluate(orders[index], values[index]);
+    }
+
+    private Order nextOrder() {
+        return orders[next++ & (Workloads.SAMPLE_SIZE - 1)];
+    }
+}
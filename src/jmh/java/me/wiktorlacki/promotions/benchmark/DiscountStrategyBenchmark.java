@@ -0,0 +1,67 @@
+package me.wiktorlacki.promotions.benchmark;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.FixedOffer;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each built-in {@link DiscountStrategy} on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscountStrategyBenchmark {
+
+    @Param({"FullPointsPayment", "PartialPointsPayment", "FullCardPayment"})
+    private String strategy;
+
+    @Param({"4", "100", "10000"})
+    private int paymentMethods;
+
+    private DiscountStrategy decimalStrategy;
+    private DiscountStrategy fixedStrategy;
+    private Order[] orders;
+    private long[] values;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final var generator = new WorkloadGenerator(Workloads.SEED, Workloads.SAMPLE_SIZE, paymentMethods);
+        decimalStrategy = select(Workloads.paymentService(generator, MoneyMode.DECIMAL));
+        fixedStrategy = select(Workloads.paymentService(generator, MoneyMode.FIXED_POINT));
+        orders = Workloads.sample(generator);
+        values = new long[orders.length];
+        for (int i = 0; i < orders.length; i++) {
+            values[i] = orders[i].valueUnits();
+        }
+    }
+
+    @Benchmark
+    public Optional<Offer> apply() {
+        return decimalStrategy.apply(orders[next++ & (Workloads.SAMPLE_SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Optional<FixedOffer> applyFixed() {
+        final var index = next++ & (Workloads.SAMPLE_SIZE - 1);
+        return fixedStrategy.applyFixed(orders[index], values[index]);
+    }
+
+    private DiscountStrategy select(PaymentService paymentService) {
+        return Workloads.strategies(paymentService).stream()
+                .filter(it -> it.getClass().getSimpleName().equals(strategy))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown strategy " + strategy));
+    }
+}
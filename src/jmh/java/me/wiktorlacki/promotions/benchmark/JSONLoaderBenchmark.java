@@ -0,0 +1,44 @@
+package me.wiktorlacki.promotions.benchmark;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.loader.JSONLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading an orders file into memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class JSONLoaderBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private long orders;
+
+    private Path ordersFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ordersFile = Workloads.writeOrders(new WorkloadGenerator(Workloads.SEED, orders, 4));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(ordersFile);
+    }
+
+    @Benchmark
+    public List<Order> loadOrders() throws IOException {
+        return new JSONLoader().loadOrders(ordersFile.toString());
+    }
+}
@@ -0,0 +1,52 @@
+package me.wiktorlacki.promotions.benchmark;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.OrderSorter;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link OrderSorter} with the ordering stage it replaced in {@code DiscountService.calculate},
+ * which sorted the list in place and then sorted it once more in the stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class OrderSorterBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private long orders;
+
+    @Param({"DECIMAL", "FIXED_POINT"})
+    private MoneyMode mode;
+
+    private List<Order> generatedOrders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generatedOrders = new WorkloadGenerator(Workloads.SEED, orders, 4).orders().toList();
+    }
+
+    @Benchmark
+    public List<Order> doubleSort() {
+        final var input = new ArrayList<>(generatedOrders);
+        input.sort(Comparator.comparing(Order::value));
+        return input.stream()
+                .sorted(Comparator.comparing(Order::value))
+                .toList();
+    }
+
+    @Benchmark
+    public List<Order> orderSorter() {
+        return OrderSorter.byValue(generatedOrders, mode);
+    }
+}
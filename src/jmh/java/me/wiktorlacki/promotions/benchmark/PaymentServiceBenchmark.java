@@ -0,0 +1,62 @@
+package me.wiktorlacki.promotions.benchmark;
+
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures charging payment methods. The cards are generated for a billion orders, so their balances
+ * never run out during an iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentServiceBenchmark {
+
+    private static final long ORDERS = 1_000_000_000L;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final long AMOUNT_UNITS = FixedPoint.of(AMOUNT);
+
+    @Param({"4", "100", "10000"})
+    private int paymentMethods;
+
+    private PaymentService decimalService;
+    private PaymentService fixedService;
+    private PaymentMethod[] cards;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        final var generator = new WorkloadGenerator(Workloads.SEED, ORDERS, paymentMethods);
+        decimalService = Workloads.paymentService(generator, MoneyMode.DECIMAL);
+        fixedService = Workloads.paymentService(generator, MoneyMode.FIXED_POINT);
+        cards = decimalService.all().stream()
+                .filter(it -> it != decimalService.points())
+                .toArray(PaymentMethod[]::new);
+    }
+
+    @Benchmark
+    public void take() {
+        decimalService.take(nextCard(), AMOUNT);
+    }
+
+    @Benchmark
+    public void takeUnits() {
+        fixedService.takeUnits(nextCard(), AMOUNT_UNITS);
+    }
+
+    private PaymentMethod nextCard() {
+        final var card = cards[next];
+        next = next + 1 == cards.length ? 0 : next + 1;
+        return card;
+    }
+}
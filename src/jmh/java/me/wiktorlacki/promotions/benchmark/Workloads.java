@@ -0,0 +1,67 @@
+package me.wiktorlacki.promotions.benchmark;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountProcessor;
+import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.discount.impl.FullCardPayment;
+import me.wiktorlacki.promotions.discount.impl.FullPointsPayment;
+import me.wiktorlacki.promotions.discount.impl.PartialPointsPayment;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.generator.WorkloadWriter;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Shared setup code of the benchmarks.
+ */
+final class Workloads {
+
+    /**
+     * The seed of every generated workload, so all benchmarks run against the same data.
+     */
+    static final long SEED = 42;
+
+    /**
+     * The number of distinct orders per-order benchmarks cycle through. A power of two, so the next order
+     * can be picked with a mask.
+     */
+    static final int SAMPLE_SIZE = 1 << 12;
+
+    private Workloads() {
+    }
+
+    static PaymentService paymentService(WorkloadGenerator generator, MoneyMode mode) {
+        return new PaymentService(new PaymentMethodsContainer(generator.paymentMethods(), mode));
+    }
+
+    static List<DiscountStrategy> strategies(PaymentService paymentService) {
+        return List.of(
+                new FullPointsPayment(paymentService),
+                new PartialPointsPayment(paymentService),
+                new FullCardPayment(paymentService)
+        );
+    }
+
+    static DiscountProcessor discountProcessor(PaymentService paymentService) {
+        return new DiscountProcessor(paymentService, strategies(paymentService));
+    }
+
+    static Order[] sample(WorkloadGenerator generator) {
+        return generator.orders().limit(SAMPLE_SIZE).toArray(Order[]::new);
+    }
+
+    /**
+     * Writes the generated orders to a temporary file in the format read by the loaders.
+     */
+    static Path writeOrders(WorkloadGenerator generator) throws IOException {
+        final var path = Files.createTempFile("orders", ".json");
+        new WorkloadWriter().writeOrders(path, generator.orders());
+        return path;
+    }
+}
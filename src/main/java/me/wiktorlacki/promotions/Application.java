@@ -1,18 +1,43 @@
 package me.wiktorlacki.promotions;
 
 import lombok.RequiredArgsConstructor;
-import me.wiktorlacki.promotions.discount.DiscountProcessor;
+import me.wiktorlacki.promotions.batch.BatchReader;
+import me.wiktorlacki.promotions.batch.BatchRunner;
+import me.wiktorlacki.promotions.batch.CustomerInput;
+import me.wiktorlacki.promotions.batch.CustomerResult;
+import me.wiktorlacki.promotions.checkpoint.Checkpointer;
 import me.wiktorlacki.promotions.discount.DiscountService;
-import me.wiktorlacki.promotions.discount.impl.FullCardPayment;
-import me.wiktorlacki.promotions.discount.impl.FullPointsPayment;
-import me.wiktorlacki.promotions.discount.impl.PartialPointsPayment;
+import me.wiktorlacki.promotions.discount.OnlineSettlement;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.discount.RejectedOrder;
+import me.wiktorlacki.promotions.journal.JournalReplay;
+import me.wiktorlacki.promotions.journal.SettlementJournal;
+import me.wiktorlacki.promotions.loader.DataLoader;
+import me.wiktorlacki.promotions.loader.ExternalOrderSorter;
 import me.wiktorlacki.promotions.loader.JSONLoader;
-import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.loader.MappedJSONLoader;
+import me.wiktorlacki.promotions.loader.OrderSnapshot;
+import me.wiktorlacki.promotions.loader.RejectedOrderWriter;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.optimizer.SpendOptimizer;
 import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
 import me.wiktorlacki.promotions.payment.PaymentService;
+import me.wiktorlacki.promotions.scenario.Scenario;
+import me.wiktorlacki.promotions.scenario.ScenarioReader;
+import me.wiktorlacki.promotions.scenario.ScenarioRunner;
+import me.wiktorlacki.promotions.server.CalculationServer;
+import me.wiktorlacki.promotions.trace.DecisionTrace;
+import me.wiktorlacki.promotions.trace.TraceReader;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.function.Consumer;
 
 /**
  * Main entry point for the application that loads order data and payment method data, processes the applicable discounts,
@@ -21,8 +46,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class Application {
 
-    private final String ordersPath;
-    private final String paymentMethodsPath;
+    private final Options options;
 
     /**
      * Runs the application, loading the orders and payment methods from the provided file paths,
@@ -31,26 +55,207 @@ public class Application {
      * @throws IOException If an I/O error occurs while reading the JSON files.
      */
     public void run() throws IOException {
-        final var jsonLoader = new JSONLoader();
-        final var orders = jsonLoader.loadOrders(ordersPath);
-        final var paymentMethods = jsonLoader.loadPaymentMethods(paymentMethodsPath);
-        final var discountService = buildDiscountService(paymentMethods);
-
-        final var report = discountService.calculate(orders);
-        System.out.println(report);
-    }
-
-    private DiscountService buildDiscountService(List<PaymentMethod> paymentMethods) {
-        final var paymentService = new PaymentService(new PaymentMethodsContainer(paymentMethods));
-        final var discountProcessor = new DiscountProcessor(paymentService, List.of(
-                new FullPointsPayment(paymentService),
-                new PartialPointsPayment(paymentService),
-                new FullCardPayment(paymentService)
-        ));
-
-        return new DiscountService(
-                discountProcessor,
-                paymentService
-        );
+        switch (options.mode()) {
+            case SERVE -> serve();
+            case BATCH -> runBatch();
+            case SCENARIOS -> runScenarios();
+            case DUMP_TRACE -> {
+                try (var in = Files.newInputStream(Path.of(options.dumpTracePath()))) {
+                    final var out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                    TraceReader.toJsonLines(in, out);
+                    out.flush();
+                }
+            }
+            case REPLAY_JOURNAL -> {
+                final var replay = JournalReplay.read(Path.of(options.replayJournalPath()));
+                System.out.println(replay.report());
+                System.err.println("Replayed " + replay.settlements() + " settlements"
+                        + (replay.complete() ? "" : ", the journal ends with a torn record"));
+            }
+            case SNAPSHOT -> {
+                final var written = loader().writeSnapshot(options.ordersPath(), Path.of(options.snapshotPath()));
+                System.out.println("Wrote " + written + " orders to " + options.snapshotPath());
+            }
+            case CALCULATE -> calculateOnce();
+        }
+    }
+
+    private void calculateOnce() throws IOException {
+        final var customer = CustomerInput.ofPaths(null, options.ordersPath(), options.paymentMethodsPath());
+        final var metrics = options.metrics() ? new EngineMetrics() : null;
+        try (var rejections = options.reject() ? new RejectedOrderWriter(Path.of(options.rejectPath())) : null;
+             var trace = options.trace() ? DecisionTrace.open(Path.of(options.tracePath())) : null) {
+            System.out.println(calculate(customer, trace, metrics, rejections));
+            if (rejections != null && rejections.rejected() > 0) {
+                System.err.println("Rejected " + rejections.rejected() + " orders, see " + options.rejectPath());
+            }
+        } finally {
+            // Also printed when an order fails, which the metrics then count.
+            if (metrics != null) printMetrics(metrics);
+        }
+    }
+
+    private void printMetrics(EngineMetrics metrics) throws IOException {
+        final var out = new BufferedWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+        metrics.write(options.metricsFormat(), out);
+        out.flush();
+    }
+
+    /**
+     * Processes every customer of the batch file with its own payment service and prints one labelled report
+     * per customer, in the order of the batch file. Customers which fail are reported on the standard error.
+     */
+    private void runBatch() throws IOException {
+        final var runner = new BatchRunner(this::calculate, options.concurrency());
+        try (var customers = new BatchReader(Path.of(options.batchPath()))) {
+            runner.run(customers, this::printResult);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing " + options.batchPath());
+        }
+    }
+
+    /**
+     * Calculates the orders against the payment methods as given and against every variant of the scenario file,
+     * and prints a table comparing them.
+     */
+    private void runScenarios() throws IOException {
+        final var loader = loader();
+        final var base = loader.loadPaymentMethods(options.paymentMethodsPath());
+        final var scenarios = new ArrayList<Scenario>();
+        scenarios.add(new Scenario(Scenario.BASE, base));
+        scenarios.addAll(new ScenarioReader(base).read(Path.of(options.scenariosPath())));
+
+        final var ordersPath = Path.of(options.ordersPath());
+        final var orders = OrderSnapshot.isSnapshot(ordersPath)
+                // Every scenario reads every order, so they are decoded once instead of once per scenario.
+                ? new ArrayList<>(OrderSnapshot.open(ordersPath).orders())
+                : loader.loadOrders(options.ordersPath());
+
+        try {
+            System.out.println(new ScenarioRunner(options.moneyMode(), options.concurrency()).run(orders, scenarios));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while comparing " + options.scenariosPath());
+        }
+    }
+
+    /**
+     * Starts the HTTP service calculating the reports of requests with the options of this application.
+     * The service keeps running until the process is stopped.
+     */
+    private void serve() throws IOException {
+        final var server = new CalculationServer(options.servePort(), this::calculate);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        try {
+            server.start(CalculationServer.DEFAULT_WARMUP_ITERATIONS);
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        } catch (Exception e) {
+            server.close();
+            throw new IOException("Warm-up failed", e);
+        }
+        System.err.println("Listening on port " + server.port());
+    }
+
+    private void printResult(CustomerResult result) {
+        if (result.succeeded()) {
+            System.out.println("[" + result.customer() + "]");
+            System.out.println(result.report());
+        } else {
+            System.err.println("Failed to process customer " + result.customer() + ": " + result.failure().getMessage());
+        }
+    }
+
+    private SpendingReport calculate(CustomerInput customer) throws IOException {
+        return calculate(customer, null, null, null);
+    }
+
+    /**
+     * @param trace      the trace to record the decision made for every order to, or null
+     * @param metrics    the metrics to record the calculation to, or null
+     * @param rejections receives the orders which cannot be paid, or null to fail at the first one
+     */
+    private SpendingReport calculate(CustomerInput customer, DecisionTrace trace, EngineMetrics metrics,
+                                     Consumer<RejectedOrder> rejections) throws IOException {
+        final var loader = loader();
+        final var paymentMethods = customer.inlinePaymentMethods()
+                ? customer.paymentMethods()
+                : loader.loadPaymentMethods(customer.paymentMethodsPath());
+
+        // Snapshots are recognized by their content, so they can be given wherever an orders file is expected.
+        final var snapshot = !customer.inlineOrders() && OrderSnapshot.isSnapshot(Path.of(customer.ordersPath()))
+                ? OrderSnapshot.open(Path.of(customer.ordersPath()))
+                : null;
+
+        if (options.settlement() == Options.Settlement.OPTIMIZE) {
+            // The optimizer revisits every order many times, so the orders have to be in memory.
+            final var optimizer = new SpendOptimizer(paymentMethods, options.moneyMode(), options.optimizeBudget());
+            final var result = optimizer.optimize(customer.inlineOrders() ? customer.orders()
+                    : snapshot != null ? snapshot.orders() : loader.loadOrders(customer.ordersPath()));
+            if (options.mode() == Options.Mode.CALCULATE) System.err.println(result);
+            return result.report();
+        }
+
+        final var paymentService = new PaymentService(new PaymentMethodsContainer(paymentMethods, options.moneyMode()));
+        try (var journal = options.journal() ? SettlementJournal.open(Path.of(options.journalPath()), paymentService) : null) {
+            if (options.settlement() == Options.Settlement.ONLINE) {
+                final var settlement = new OnlineSettlement(paymentService,
+                        DiscountService.create(paymentService, metrics, options.offerCacheSize()).trace(trace).journal(journal));
+                final Consumer<Order> settle = rejections == null
+                        ? settlement::settle
+                        : order -> settlement.settleOrReject(order, rejections);
+                if (customer.inlineOrders()) {
+                    customer.orders().forEach(settle);
+                } else if (snapshot != null) {
+                    // A snapshot no longer knows the arrival order, so its orders arrive by value.
+                    snapshot.stream().forEachOrdered(settle);
+                } else {
+                    try (var orders = loader.streamOrders(customer.ordersPath())) {
+                        orders.forEachOrdered(settle);
+                    }
+                }
+                return settlement.report();
+            }
+
+            final var discountService = buildDiscountService(paymentService, metrics).trace(trace).rejectTo(rejections)
+                    .checkpoint(options.checkpoint() ? checkpointer(paymentService) : null).journal(journal);
+
+            if (customer.inlineOrders()) {
+                return discountService.calculate(customer.orders());
+            }
+            if (snapshot != null) {
+                return discountService.calculateSorted(snapshot.stream());
+            }
+            if (options.streaming()) {
+                try (var orders = new ExternalOrderSorter().sort(loader.streamOrders(customer.ordersPath()))) {
+                    return discountService.calculateSorted(orders);
+                }
+            }
+            return discountService.calculate(loader.loadOrders(customer.ordersPath()));
+        }
+    }
+
+    private DataLoader loader() {
+        return options.mappedLoader() ? new MappedJSONLoader() : new JSONLoader();
+    }
+
+    /**
+     * Creates the checkpointer of the calculation and, if the calculation is resumed, restores the balances of
+     * the last checkpoint.
+     */
+    private Checkpointer checkpointer(PaymentService paymentService) throws IOException {
+        final var checkpointer = Checkpointer.create(Path.of(options.checkpointPath()));
+        if (options.resume() && checkpointer.resume(paymentService)) {
+            System.err.println("Resuming after " + checkpointer.position() + " orders from " + options.checkpointPath());
+        }
+        return checkpointer;
+    }
+
+    private DiscountService buildDiscountService(PaymentService paymentService, EngineMetrics metrics) {
+        return options.settlement() == Options.Settlement.PARALLEL
+                ? ParallelDiscountService.create(paymentService, metrics)
+                : DiscountService.create(paymentService, metrics, options.offerCacheSize());
     }
 }
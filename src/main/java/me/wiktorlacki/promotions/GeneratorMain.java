@@ -0,0 +1,55 @@
+package me.wiktorlacki.promotions;
+
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.generator.WorkloadWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class GeneratorMain {
+
+    /**
+     * Entry point of the workload generator, which writes synthetic orders and payment methods files
+     * that can be passed to {@link Main}.
+     *
+     * The method expects two command-line arguments:
+     *  ordersFilePath: Path of the orders file to write.
+     *  paymentMethodsFilePath: Path of the payment methods file to write.
+     *
+     * Optional settings:
+     *  --seed=n: Seed of the random number generator, equal seeds produce equal files (42 by default).
+     *  --orders=n: Number of orders (1000000 by default).
+     *  --payment-methods=n: Number of payment methods, including points (4 by default).
+     *  --distribution=uniform|skewed: Distribution of order values (uniform by default).
+     *  --max-value=amount: Maximum value of an order (1000.00 by default).
+     *  --max-promotions=n: Maximum number of promotions of an order (3 by default).
+     *  --points=factor: Points limit as a fraction of orders * max value (0.01 by default).
+     *  --limits=factor: Sum of card limits as a fraction of orders * max value (1 by default, below 1 cards may run out).
+     *
+     * Orders are written as they are generated, so the size of the files is not limited by memory.
+     * If the arguments are missing or invalid, the method prints the usage instructions and exits.
+     */
+    public static void main(String[] args) {
+        final var options = GeneratorOptions.parse(args);
+        if (options.isEmpty()) {
+            printUsage();
+            return;
+        }
+
+        final var generator = new WorkloadGenerator(options.get().settings());
+        final var writer = new WorkloadWriter();
+        try {
+            writer.writePaymentMethods(Path.of(options.get().paymentMethodsPath()), generator.paymentMethods());
+            final var orders = writer.writeOrders(Path.of(options.get().ordersPath()), generator.orders());
+            System.out.println("Generated " + orders + " orders");
+        } catch (IOException e) {
+            System.out.println("Failed to generate: " + e.getMessage());
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java -cp app.jar me.wiktorlacki.promotions.GeneratorMain [--seed=n] [--orders=n] "
+                + "[--payment-methods=n] [--distribution=uniform|skewed] [--max-value=amount] [--max-promotions=n] "
+                + "[--points=factor] [--limits=factor] <ordersFilePath> <paymentMethodsFilePath>");
+    }
+}
@@ -0,0 +1,86 @@
+package me.wiktorlacki.promotions;
+
+import me.wiktorlacki.promotions.generator.ValueDistribution;
+import me.wiktorlacki.promotions.generator.WorkloadSettings;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Command-line options of the workload generator.
+ *
+ * @param ordersPath         path of the orders file to write
+ * @param paymentMethodsPath path of the payment methods file to write
+ * @param settings           the shape of the generated workload
+ */
+public record GeneratorOptions(String ordersPath, String paymentMethodsPath, WorkloadSettings settings) {
+
+    private static final long DEFAULT_SEED = 42;
+    private static final long DEFAULT_ORDERS = 1_000_000;
+    private static final int DEFAULT_PAYMENT_METHODS = 4;
+
+    /**
+     * Parses command-line arguments. Options have the form {@code --name=value} and may appear anywhere,
+     * the remaining arguments are the orders and payment methods file paths, in that order.
+     *
+     * @param args the command-line arguments
+     * @return the parsed options, or empty if the arguments are invalid
+     */
+    public static Optional<GeneratorOptions> parse(String[] args) {
+        String ordersPath = null;
+        String paymentMethodsPath = null;
+        var seed = DEFAULT_SEED;
+        var orders = DEFAULT_ORDERS;
+        var paymentMethods = DEFAULT_PAYMENT_METHODS;
+        var valueDistribution = WorkloadSettings.DEFAULT_VALUE_DISTRIBUTION;
+        var maxValue = WorkloadSettings.DEFAULT_MAX_VALUE;
+        var maxPromotions = WorkloadSettings.DEFAULT_MAX_PROMOTIONS;
+        var pointsFactor = WorkloadSettings.DEFAULT_POINTS_FACTOR;
+        var limitFactor = WorkloadSettings.DEFAULT_LIMIT_FACTOR;
+
+        try {
+            for (final var arg : args) {
+                if (arg == null) return Optional.empty();
+
+                if (!arg.startsWith("--")) {
+                    if (ordersPath == null) {
+                        ordersPath = arg;
+                    } else if (paymentMethodsPath == null) {
+                        paymentMethodsPath = arg;
+                    } else {
+                        return Optional.empty();
+                    }
+                    continue;
+                }
+
+                final var separator = arg.indexOf('=');
+                if (separator < 0) return Optional.empty();
+                final var value = arg.substring(separator + 1);
+
+                switch (arg.substring(0, separator)) {
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--orders" -> orders = Long.parseLong(value);
+                    case "--payment-methods" -> paymentMethods = Integer.parseInt(value);
+                    case "--distribution" -> valueDistribution = ValueDistribution.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "--max-value" -> maxValue = new BigDecimal(value);
+                    case "--max-promotions" -> maxPromotions = Integer.parseInt(value);
+                    case "--points" -> pointsFactor = Double.parseDouble(value);
+                    case "--limits" -> limitFactor = Double.parseDouble(value);
+                    default -> {
+                        return Optional.empty();
+                    }
+                }
+            }
+
+            if (ordersPath == null || paymentMethodsPath == null) return Optional.empty();
+
+            final var settings = new WorkloadSettings(seed, orders, paymentMethods, valueDistribution, maxValue,
+                    maxPromotions, pointsFactor, limitFactor);
+            return Optional.of(new GeneratorOptions(ordersPath, paymentMethodsPath, settings));
+        } catch (IllegalArgumentException e) {
+            // Covers malformed numbers, unknown distributions and settings out of range.
+            return Optional.empty();
+        }
+    }
+}
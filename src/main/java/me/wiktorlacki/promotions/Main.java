@@ -11,23 +11,52 @@ public class Main {
      *  ordersFilePath: Path to the file containing order data in JSON format.
      *  paymentMethodsFilePath: Path to the file containing available payment methods in JSON format.
      *
+     * Optional flags:
+     *  --streaming: Stream orders from disk and sort them externally instead of loading the whole file into memory.
+     *  --mmap: Memory-map the input files and parse them directly from bytes instead of using Gson.
+     *  --fixed-point: Calculate with amounts scaled to longs instead of BigDecimals.
+     *  --optimize[=millis]: Minimize the total spend across all orders instead of settling each order greedily,
+     *                       searching for at most the given time (10 seconds by default).
+     *  --parallel: Evaluate offers for batches of orders on all cores; the report stays the same as without it.
+     *  --online: Settle orders one by one in the order of the file, as they would arrive at checkout,
+     *            instead of sorting all of them by value first.
+     *  --batch=file: Instead of the two paths, process every customer listed in the given batch file
+     *                and print one report per customer.
+     *  --concurrency=n: The number of customers processed at once in batch mode (the number of cores by default).
+     *  --scenarios=file: Compare the report of the given payment methods with the reports of the variants listed
+     *                    in the given scenario file, calculated in parallel over the same orders.
+     *  --snapshot=file: Instead of calculating, write the orders file (the only path given) as a binary snapshot,
+     *                   which can be passed instead of the orders file in later runs to skip parsing and sorting.
+     *  --trace=file: Write the candidate offers of every strategy, the chosen one and the balances left after it
+     *                for every order to the given file, in a compact binary format.
+     *  --dump-trace=file: Instead of calculating, print the given trace file as JSON lines, one order per line.
+     *  --reject=file: Write orders which cannot be paid to the given file, in the format of the orders file with
+     *                 the reason of the rejection, and report the remaining orders instead of failing.
+     *  --checkpoint=file: Save the balances and the number of settled orders to the given file every 30 seconds
+     *                     and at the end of the run.
+     *  --resume: Continue from the checkpoint file given by --checkpoint, if it exists: restore its balances
+     *            and skip the orders it already settled. The orders and payment methods must be the same.
+     *  --journal=file: Append the payments of every settled order to the given memory-mapped file, committed to
+     *                 the disk every 10 milliseconds.
+     *  --replay-journal=file: Instead of calculating, rebuild the report from the given journal alone.
+     *  --offer-cache[=entries]: Remember the offer chosen for orders of the same value and promotions and reuse it
+     *                           while the balances it is based on allow (4096 entries by default).
+     *  --metrics[=json|prometheus]: Record counters and latency histograms of the strategies, the orders and
+     *                               the balances, and print them to the standard error at the end of the run.
+     *  --serve[=port]: Instead of the two paths, run an HTTP service calculating reports of posted orders and
+     *                  payment methods (on port 8080 by default).
+     *
+     * Flags which the chosen mode or way of settling orders would ignore are invalid as well.
      * If either of these arguments is missing or invalid, the method prints the usage instructions and exits.
      */
     public static void main(String[] args) {
-        if (args.length != 2) {
-            printUsage();
-            return;
-        }
-
-        final var ordersPath = args[0];
-        final var paymentMethodsPath = args[1];
-
-        if (ordersPath == null || paymentMethodsPath == null) {
+        final var options = Options.parse(args);
+        if (options.isEmpty()) {
             printUsage();
             return;
         }
 
-        final var app = new Application(ordersPath, paymentMethodsPath);
+        final var app = new Application(options.get());
         try {
             app.run();
         } catch (IOException e) {
@@ -36,6 +65,12 @@ public class Main {
     }
 
     private static void printUsage() {
-        System.out.println("Usage: java -jar app.jar <ordersFilePath> <paymentMethodsFilePath>");
+        System.out.println("Usage: java -jar app.jar [--streaming] [--mmap] [--fixed-point] [--optimize[=millis] | --parallel | --online] [--trace=<traceFilePath>] [--metrics[=json|prometheus]] [--reject=<rejectedOrdersFilePath>] [--checkpoint=<checkpointFilePath> [--resume]] [--journal=<journalFilePath>] [--offer-cache[=entries]] <ordersFilePath> <paymentMethodsFilePath>");
+        System.out.println("       java -jar app.jar [--streaming] [--mmap] [--fixed-point] [--optimize[=millis] | --parallel | --online] [--offer-cache[=entries]] --batch=<batchFilePath> [--concurrency=n]");
+        System.out.println("       java -jar app.jar [--fixed-point] [--optimize[=millis] | --parallel | --online] [--offer-cache[=entries]] --serve[=port]");
+        System.out.println("       java -jar app.jar [--mmap] [--fixed-point] [--concurrency=n] --scenarios=<scenariosFilePath> <ordersFilePath> <paymentMethodsFilePath>");
+        System.out.println("       java -jar app.jar [--mmap] --snapshot=<snapshotFilePath> <ordersFilePath>");
+        System.out.println("       java -jar app.jar --dump-trace=<traceFilePath>");
+        System.out.println("       java -jar app.jar --replay-journal=<journalFilePath>");
     }
-}
\ No newline at end of file
+}
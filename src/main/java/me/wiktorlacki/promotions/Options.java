@@ -0,0 +1,446 @@
+package me.wiktorlacki.promotions;
+
+import me.wiktorlacki.promotions.discount.OfferCache;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.optimizer.SpendOptimizer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Command-line options of the application.
+ *
+ * Arguments select a {@link Mode}, i.e. what the application does, and a {@link Settlement}, i.e. how the orders of a
+ * calculation are settled. Each of them lists the flags it makes use of, and the arguments are valid only if both
+ * accept every flag given, so a flag which would be silently ignored is rejected instead.
+ *
+ * @param mode               what the application does
+ * @param settlement         how the orders of a calculation are settled
+ * @param ordersPath         path to the file containing order data in JSON format, or {@code null} in batch mode
+ * @param paymentMethodsPath path to the file containing available payment methods in JSON format,
+ *                           or {@code null} in batch mode
+ * @param streaming          whether orders should be streamed from disk and sorted externally instead of
+ *                           being loaded into memory at once
+ * @param mappedLoader       whether input files should be memory-mapped and parsed directly from bytes
+ * @param moneyMode          the representation of monetary amounts used while processing orders
+ * @param optimizeBudget     the time budget of the global spend optimizer, or {@code null} if orders should be
+ *                           settled greedily
+ * @param batchPath          path to the batch file listing the input of many customers, or {@code null} if a single
+ *                           customer is given by {@code ordersPath} and {@code paymentMethodsPath}
+ * @param concurrency        the maximum number of customers or scenarios processed at once
+ * @param servePort          the port of the HTTP service calculating reports on request, or {@code null} if the
+ *                           application should calculate once and exit
+ * @param snapshotPath       path to write the orders of {@code ordersPath} to as a binary snapshot instead of
+ *                           calculating, or {@code null}
+ * @param scenariosPath      path to the file with variants of the payment methods to compare, or {@code null}
+ * @param tracePath          path to write the decision made for every order to, or {@code null}
+ * @param dumpTracePath      path of a trace to print as JSON lines instead of calculating, or {@code null}
+ * @param metricsFormat      the format to print the metrics of the calculation in, or {@code null} if they should
+ *                           not be recorded
+ * @param rejectPath         path to write orders which cannot be paid to instead of stopping the calculation,
+ *                           or {@code null}
+ * @param checkpointPath     path to periodically save the progress of the calculation to, or {@code null}
+ * @param resume             whether the calculation should continue from the checkpoint at {@code checkpointPath},
+ *                           if there is one
+ * @param journalPath        path to write the payments of every settled order to, or {@code null}
+ * @param replayJournalPath  path of a journal to rebuild the report from instead of calculating, or {@code null}
+ * @param offerCacheSize     the number of entries of the cache of offers chosen for orders of the same shape,
+ *                           or 0 if every order should be evaluated
+ */
+public record Options(Mode mode, Settlement settlement, String ordersPath, String paymentMethodsPath,
+                      boolean streaming, boolean mappedLoader, MoneyMode moneyMode, Duration optimizeBudget,
+                      String batchPath, int concurrency, Integer servePort, String snapshotPath,
+                      String scenariosPath, String tracePath, String dumpTracePath,
+                      EngineMetrics.Format metricsFormat, String rejectPath, String checkpointPath,
+                      boolean resume, String journalPath, String replayJournalPath, int offerCacheSize) {
+
+    /**
+     * The port of the HTTP service if {@code --serve} is given without one.
+     */
+    public static final int DEFAULT_SERVE_PORT = 8080;
+
+    private static final String OPTIMIZE_FLAG = "--optimize";
+    private static final String BATCH_FLAG = "--batch=";
+    private static final String CONCURRENCY_FLAG = "--concurrency=";
+    private static final String SERVE_FLAG = "--serve";
+    private static final String SNAPSHOT_FLAG = "--snapshot=";
+    private static final String SCENARIOS_FLAG = "--scenarios=";
+    private static final String TRACE_FLAG = "--trace=";
+    private static final String DUMP_TRACE_FLAG = "--dump-trace=";
+    private static final String METRICS_FLAG = "--metrics";
+    private static final String REJECT_FLAG = "--reject=";
+    private static final String CHECKPOINT_FLAG = "--checkpoint=";
+    private static final String JOURNAL_FLAG = "--journal=";
+    private static final String REPLAY_JOURNAL_FLAG = "--replay-journal=";
+    private static final String OFFER_CACHE_FLAG = "--offer-cache";
+
+    /**
+     * Parses command-line arguments. Flags (starting with {@code --}) may appear anywhere,
+     * the remaining arguments are the paths the {@link Mode} expects, in order.
+     *
+     * @param args the command-line arguments
+     * @return the parsed options, or empty if the arguments are invalid
+     */
+    public static Optional<Options> parse(String[] args) {
+        final var flags = EnumSet.noneOf(Flag.class);
+        final var paths = new ArrayList<String>();
+        var moneyMode = MoneyMode.DECIMAL;
+        Duration optimizeBudget = null;
+        String batchPath = null;
+        var concurrency = Runtime.getRuntime().availableProcessors();
+        Integer servePort = null;
+        String snapshotPath = null;
+        String scenariosPath = null;
+        String tracePath = null;
+        String dumpTracePath = null;
+        EngineMetrics.Format metricsFormat = null;
+        String rejectPath = null;
+        String checkpointPath = null;
+        String journalPath = null;
+        String replayJournalPath = null;
+        var offerCacheSize = 0;
+
+        for (final var arg : args) {
+            if (arg == null) return Optional.empty();
+
+            switch (arg) {
+                case "--streaming" -> flags.add(Flag.STREAMING);
+                case "--mmap" -> flags.add(Flag.MMAP);
+                case "--fixed-point" -> {
+                    flags.add(Flag.FIXED_POINT);
+                    moneyMode = MoneyMode.FIXED_POINT;
+                }
+                case "--parallel" -> flags.add(Flag.PARALLEL);
+                case "--online" -> flags.add(Flag.ONLINE);
+                case "--resume" -> flags.add(Flag.RESUME);
+                case OPTIMIZE_FLAG -> {
+                    flags.add(Flag.OPTIMIZE);
+                    optimizeBudget = SpendOptimizer.DEFAULT_TIME_BUDGET;
+                }
+                case SERVE_FLAG -> {
+                    flags.add(Flag.SERVE);
+                    servePort = DEFAULT_SERVE_PORT;
+                }
+                case METRICS_FLAG -> {
+                    flags.add(Flag.METRICS);
+                    metricsFormat = EngineMetrics.Format.JSON;
+                }
+                case OFFER_CACHE_FLAG -> {
+                    flags.add(Flag.OFFER_CACHE);
+                    offerCacheSize = OfferCache.DEFAULT_SIZE;
+                }
+                default -> {
+                    if (arg.startsWith(OPTIMIZE_FLAG + "=")) {
+                        flags.add(Flag.OPTIMIZE);
+                        optimizeBudget = parseBudget(arg.substring(OPTIMIZE_FLAG.length() + 1));
+                        if (optimizeBudget == null) return Optional.empty();
+                        continue;
+                    }
+                    if (arg.startsWith(BATCH_FLAG) && arg.length() > BATCH_FLAG.length()) {
+                        flags.add(Flag.BATCH);
+                        batchPath = arg.substring(BATCH_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(SNAPSHOT_FLAG) && arg.length() > SNAPSHOT_FLAG.length()) {
+                        flags.add(Flag.SNAPSHOT);
+                        snapshotPath = arg.substring(SNAPSHOT_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(SCENARIOS_FLAG) && arg.length() > SCENARIOS_FLAG.length()) {
+                        flags.add(Flag.SCENARIOS);
+                        scenariosPath = arg.substring(SCENARIOS_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(TRACE_FLAG) && arg.length() > TRACE_FLAG.length()) {
+                        flags.add(Flag.TRACE);
+                        tracePath = arg.substring(TRACE_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(DUMP_TRACE_FLAG) && arg.length() > DUMP_TRACE_FLAG.length()) {
+                        flags.add(Flag.DUMP_TRACE);
+                        dumpTracePath = arg.substring(DUMP_TRACE_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(REJECT_FLAG) && arg.length() > REJECT_FLAG.length()) {
+                        flags.add(Flag.REJECT);
+                        rejectPath = arg.substring(REJECT_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(CHECKPOINT_FLAG) && arg.length() > CHECKPOINT_FLAG.length()) {
+                        flags.add(Flag.CHECKPOINT);
+                        checkpointPath = arg.substring(CHECKPOINT_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(JOURNAL_FLAG) && arg.length() > JOURNAL_FLAG.length()) {
+                        flags.add(Flag.JOURNAL);
+                        journalPath = arg.substring(JOURNAL_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(REPLAY_JOURNAL_FLAG) && arg.length() > REPLAY_JOURNAL_FLAG.length()) {
+                        flags.add(Flag.REPLAY_JOURNAL);
+                        replayJournalPath = arg.substring(REPLAY_JOURNAL_FLAG.length());
+                        continue;
+                    }
+                    if (arg.startsWith(METRICS_FLAG + "=")) {
+                        flags.add(Flag.METRICS);
+                        metricsFormat = parseMetricsFormat(arg.substring(METRICS_FLAG.length() + 1));
+                        if (metricsFormat == null) return Optional.empty();
+                        continue;
+                    }
+                    if (arg.startsWith(OFFER_CACHE_FLAG + "=")) {
+                        flags.add(Flag.OFFER_CACHE);
+                        offerCacheSize = parsePositive(arg.substring(OFFER_CACHE_FLAG.length() + 1));
+                        if (offerCacheSize <= 0) return Optional.empty();
+                        continue;
+                    }
+                    if (arg.startsWith(SERVE_FLAG + "=")) {
+                        flags.add(Flag.SERVE);
+                        servePort = parsePort(arg.substring(SERVE_FLAG.length() + 1));
+                        if (servePort == null) return Optional.empty();
+                        continue;
+                    }
+                    if (arg.startsWith(CONCURRENCY_FLAG)) {
+                        flags.add(Flag.CONCURRENCY);
+                        concurrency = parsePositive(arg.substring(CONCURRENCY_FLAG.length()));
+                        if (concurrency <= 0) return Optional.empty();
+                        continue;
+                    }
+                    if (arg.startsWith("--")) return Optional.empty();
+                    paths.add(arg);
+                }
+            }
+        }
+
+        final var mode = Mode.of(flags);
+        if (!mode.flags.containsAll(flags) || paths.size() != mode.paths) return Optional.empty();
+        // The settlement only judges the flags of a calculation, the mode already judged the others.
+        final var settlement = Settlement.of(flags);
+        final var calculationFlags = EnumSet.copyOf(flags);
+        calculationFlags.retainAll(Mode.CALCULATE.flags);
+        if (!settlement.flags.containsAll(calculationFlags)) return Optional.empty();
+        if (flags.contains(Flag.RESUME) && !flags.contains(Flag.CHECKPOINT)) return Optional.empty();
+        // The journal of a resumed calculation would miss the settlements before the checkpoint.
+        if (flags.contains(Flag.RESUME) && flags.contains(Flag.JOURNAL)) return Optional.empty();
+        // The trace records every candidate, which cached offers skip.
+        if (flags.contains(Flag.TRACE) && flags.contains(Flag.OFFER_CACHE)) return Optional.empty();
+
+        return Optional.of(new Options(mode, settlement, paths.size() > 0 ? paths.get(0) : null,
+                paths.size() > 1 ? paths.get(1) : null, flags.contains(Flag.STREAMING), flags.contains(Flag.MMAP),
+                moneyMode, optimizeBudget, batchPath, concurrency, servePort, snapshotPath, scenariosPath, tracePath,
+                dumpTracePath, metricsFormat, rejectPath, checkpointPath, flags.contains(Flag.RESUME), journalPath,
+                replayJournalPath, offerCacheSize));
+    }
+
+    /**
+     * Whether the decision made for every order should be recorded.
+     *
+     * @return true if a trace file was given
+     */
+    public boolean trace() {
+        return tracePath != null;
+    }
+
+    /**
+     * Whether the metrics of the calculation should be recorded and printed.
+     *
+     * @return true if a metrics format was given
+     */
+    public boolean metrics() {
+        return metricsFormat != null;
+    }
+
+    /**
+     * Whether orders which cannot be paid should be set aside instead of stopping the calculation.
+     *
+     * @return true if a file for rejected orders was given
+     */
+    public boolean reject() {
+        return rejectPath != null;
+    }
+
+    /**
+     * Whether the progress of the calculation should be saved periodically.
+     *
+     * @return true if a checkpoint file was given
+     */
+    public boolean checkpoint() {
+        return checkpointPath != null;
+    }
+
+    /**
+     * Whether the payments of every settled order should be journaled.
+     *
+     * @return true if a journal file was given
+     */
+    public boolean journal() {
+        return journalPath != null;
+    }
+
+    /**
+     * Whether the offers chosen for orders of the same value and promotions should be cached.
+     *
+     * @return true if an offer cache size was given
+     */
+    public boolean offerCache() {
+        return offerCacheSize > 0;
+    }
+
+    private static Integer parsePort(String port) {
+        try {
+            final var parsed = Integer.parseInt(port);
+            return parsed >= 0 && parsed <= 65535 ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int parsePositive(String value) {
+        try {
+            return Math.max(Integer.parseInt(value), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static EngineMetrics.Format parseMetricsFormat(String format) {
+        return switch (format) {
+            case "json" -> EngineMetrics.Format.JSON;
+            case "prometheus" -> EngineMetrics.Format.PROMETHEUS;
+            default -> null;
+        };
+    }
+
+    private static Duration parseBudget(String millis) {
+        try {
+            final var budget = Long.parseLong(millis);
+            return budget > 0 ? Duration.ofMillis(budget) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The flags given on the command line, regardless of their values.
+     */
+    private enum Flag {
+        STREAMING, MMAP, FIXED_POINT, OPTIMIZE, PARALLEL, ONLINE, BATCH, CONCURRENCY, SERVE, SNAPSHOT, SCENARIOS,
+        TRACE, DUMP_TRACE, METRICS, REJECT, CHECKPOINT, RESUME, JOURNAL, REPLAY_JOURNAL, OFFER_CACHE
+    }
+
+    /**
+     * What the application does, selected by at most one of the flags of the modes other than {@link #CALCULATE}.
+     */
+    public enum Mode {
+
+        /**
+         * Calculates the report of the orders and payment methods given by the two paths.
+         */
+        CALCULATE(null, 2, Flag.STREAMING, Flag.MMAP, Flag.FIXED_POINT, Flag.OPTIMIZE, Flag.PARALLEL, Flag.ONLINE,
+                Flag.TRACE, Flag.METRICS, Flag.REJECT, Flag.CHECKPOINT, Flag.RESUME, Flag.JOURNAL, Flag.OFFER_CACHE),
+
+        /**
+         * Calculates the report of every customer of the batch file.
+         */
+        BATCH(Flag.BATCH, 0, Flag.STREAMING, Flag.MMAP, Flag.FIXED_POINT, Flag.OPTIMIZE, Flag.PARALLEL, Flag.ONLINE,
+                Flag.CONCURRENCY, Flag.OFFER_CACHE),
+
+        /**
+         * Calculates the reports of the orders and payment methods posted to an HTTP service.
+         */
+        SERVE(Flag.SERVE, 0, Flag.FIXED_POINT, Flag.OPTIMIZE, Flag.PARALLEL, Flag.ONLINE, Flag.OFFER_CACHE),
+
+        /**
+         * Compares the reports of the variants of the payment methods of the scenario file.
+         */
+        SCENARIOS(Flag.SCENARIOS, 2, Flag.MMAP, Flag.FIXED_POINT, Flag.CONCURRENCY),
+
+        /**
+         * Writes the orders file, the only path given, as a binary snapshot.
+         */
+        SNAPSHOT(Flag.SNAPSHOT, 1, Flag.MMAP),
+
+        /**
+         * Prints a trace as JSON lines.
+         */
+        DUMP_TRACE(Flag.DUMP_TRACE, 0),
+
+        /**
+         * Rebuilds the report from a journal.
+         */
+        REPLAY_JOURNAL(Flag.REPLAY_JOURNAL, 0);
+
+        private final Flag flag;
+        private final int paths;
+        private final Set<Flag> flags;
+
+        Mode(Flag flag, int paths, Flag... flags) {
+            this.flag = flag;
+            this.paths = paths;
+            this.flags = EnumSet.noneOf(Flag.class);
+            if (flag != null) this.flags.add(flag);
+            this.flags.addAll(List.of(flags));
+        }
+
+        private static Mode of(Set<Flag> flags) {
+            for (final var mode : values()) {
+                if (mode.flag != null && flags.contains(mode.flag)) return mode;
+            }
+            return CALCULATE;
+        }
+    }
+
+    /**
+     * How the orders of a calculation are settled, selected by at most one of the flags of the settlements other than
+     * {@link #GREEDY}.
+     */
+    public enum Settlement {
+
+        /**
+         * Orders are sorted by value and the best offer is chosen for one order after another.
+         */
+        GREEDY(null, Flag.STREAMING, Flag.MMAP, Flag.FIXED_POINT, Flag.TRACE, Flag.METRICS, Flag.REJECT,
+                Flag.CHECKPOINT, Flag.RESUME, Flag.JOURNAL, Flag.OFFER_CACHE),
+
+        /**
+         * Like {@link #GREEDY}, with the offers evaluated speculatively on all cores. Neither the trace nor the offer
+         * cache follows the evaluations of several threads.
+         */
+        PARALLEL(Flag.PARALLEL, Flag.STREAMING, Flag.MMAP, Flag.FIXED_POINT, Flag.METRICS, Flag.REJECT,
+                Flag.CHECKPOINT, Flag.RESUME, Flag.JOURNAL),
+
+        /**
+         * Orders are settled one by one in arrival order, so they are neither sorted nor streamed through the external
+         * sort, and there is no position in sorted orders to checkpoint.
+         */
+        ONLINE(Flag.ONLINE, Flag.MMAP, Flag.FIXED_POINT, Flag.TRACE, Flag.METRICS, Flag.REJECT, Flag.JOURNAL,
+                Flag.OFFER_CACHE),
+
+        /**
+         * The global spend optimizer, which holds every order in memory, needs every order to be paid and makes
+         * no greedy decisions to trace, meter, checkpoint, journal or cache.
+         */
+        OPTIMIZE(Flag.OPTIMIZE, Flag.MMAP, Flag.FIXED_POINT);
+
+        private final Flag flag;
+        private final Set<Flag> flags;
+
+        Settlement(Flag flag, Flag... flags) {
+            this.flag = flag;
+            this.flags = EnumSet.noneOf(Flag.class);
+            if (flag != null) this.flags.add(flag);
+            this.flags.addAll(List.of(flags));
+        }
+
+        private static Settlement of(Set<Flag> flags) {
+            for (final var settlement : values()) {
+                if (settlement.flag != null && flags.contains(settlement.flag)) return settlement;
+            }
+            return GREEDY;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package me.wiktorlacki.promotions;
 
+import me.wiktorlacki.promotions.money.FixedPoint;
+
 import java.math.BigDecimal;
 import java.util.List;
 
@@ -12,4 +14,15 @@ import java.util.List;
  * @param value     the total value of the order, before any discounts are applied
  * @param promotions a list of promotion identifiers applicable to the order, if any
  */
-public record Order(String id, BigDecimal value, List<String> promotions) { }
+public record Order(String id, BigDecimal value, List<String> promotions) {
+
+    /**
+     * Returns the value of this order in the {@link FixedPoint} representation.
+     *
+     * @return the value in millionths
+     * @throws ArithmeticException if the value cannot be represented exactly
+     */
+    public long valueUnits() {
+        return FixedPoint.of(value);
+    }
+}
@@ -1,8 +1,10 @@
 package me.wiktorlacki.promotions;
 
+import me.wiktorlacki.promotions.money.FixedPoint;
 import me.wiktorlacki.promotions.payment.PaymentMethod;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -15,6 +17,32 @@ import java.util.Map;
  */
 public record SpendingReport(Map<PaymentMethod, BigDecimal> values) {
 
+    /**
+     * Creates a report from amounts in the {@link FixedPoint} representation.
+     * Amounts keep the {@link FixedPoint#SCALE} decimal places of the representation, so every amount of the report
+     * prints with the same number of them (e.g. 87.500000), which the {@link BigDecimal} path only does for amounts it
+     * computed at that scale.
+     *
+     * @param units a map of payment methods to the total amount spent using each, in millionths
+     * @return the spending report
+     */
+    public static SpendingReport ofUnits(Map<PaymentMethod, Long> units) {
+        final var values = new HashMap<PaymentMethod, BigDecimal>();
+        units.forEach((method, amount) -> values.put(method, FixedPoint.toBigDecimal(amount)));
+        return new SpendingReport(values);
+    }
+
+    /**
+     * Returns the total amount spent across all payment methods.
+     *
+     * @return the sum of all amounts in this report
+     */
+    public BigDecimal total() {
+        return values.values()
+                .stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
     @Override
     public String toString() {
         final var sb = new StringBuilder();
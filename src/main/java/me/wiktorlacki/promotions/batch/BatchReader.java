@@ -0,0 +1,104 @@
+package me.wiktorlacki.promotions.batch;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import me.wiktorlacki.promotions.loader.JSONLoader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily reads the customers of a batch from a JSON file, one array element at a time, so the batch file
+ * may be arbitrarily large.
+ *
+ * Every element has a {@code customer} identifier and {@code orders} and {@code paymentMethods} properties.
+ * Each of the two is either the path of a file in the usual input format, resolved against the directory of
+ * the batch file if relative, or the array of orders or payment methods itself. A batch file listing only paths is
+ * a manifest of per-customer files; one with inline arrays holds the input of all customers keyed by customer.
+ */
+public class BatchReader implements Iterator<CustomerInput>, Closeable {
+
+    private final JSONLoader loader = new JSONLoader();
+
+    private final Path baseDirectory;
+    private final JsonReader reader;
+
+    /**
+     * Opens a batch file and positions the reader at its first customer.
+     *
+     * @param path the path of the batch file
+     * @throws IOException if the file cannot be opened or does not start with an array
+     */
+    public BatchReader(Path path) throws IOException {
+        this.baseDirectory = path.toAbsolutePath().getParent();
+        this.reader = new JsonReader(Files.newBufferedReader(path));
+        try {
+            reader.beginArray();
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return reader.peek() != JsonToken.END_ARRAY;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next customer.
+     *
+     * @return the input of the customer
+     * @throws JsonParseException if the element is not a valid customer entry
+     */
+    @Override
+    public CustomerInput next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        final var entry = JsonParser.parseReader(reader).getAsJsonObject();
+        final var customer = entry.get("customer");
+        if (customer == null || !customer.isJsonPrimitive()) {
+            throw new JsonParseException("Batch entry without a customer identifier: " + entry);
+        }
+
+        final var orders = property(entry, "orders");
+        final var paymentMethods = property(entry, "paymentMethods");
+        return new CustomerInput(
+                customer.getAsString(),
+                orders.isJsonArray() ? null : resolve(orders),
+                paymentMethods.isJsonArray() ? null : resolve(paymentMethods),
+                orders.isJsonArray() ? loader.parseOrders(orders) : null,
+                paymentMethods.isJsonArray() ? loader.parsePaymentMethods(paymentMethods) : null
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String resolve(JsonElement path) {
+        return baseDirectory.resolve(path.getAsString()).toString();
+    }
+
+    private static JsonElement property(JsonObject entry, String name) {
+        final var value = entry.get(name);
+        if (value == null || !(value.isJsonArray() || value.isJsonPrimitive())) {
+            throw new JsonParseException("Batch entry for customer " + entry.get("customer") + " without " + name);
+        }
+        return value;
+    }
+}
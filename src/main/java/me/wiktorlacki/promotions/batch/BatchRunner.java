@@ -0,0 +1,94 @@
+package me.wiktorlacki.promotions.batch;
+
+import me.wiktorlacki.promotions.SpendingReport;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Processes the customers of a batch concurrently on virtual threads.
+ *
+ * Every customer is calculated independently, against payment methods and balances of its own, so customers never
+ * wait for each other. At most {@code concurrency} customers are in flight at once and the next customer is read only
+ * when the oldest one has been emitted, so memory use depends on the size of the customers in flight rather than on
+ * the size of the batch. Results are emitted in input order; a customer which fails does not stop the batch.
+ */
+public class BatchRunner {
+
+    private final CustomerCalculator calculator;
+    private final int concurrency;
+
+    /**
+     * @param calculator  calculates the report of a single customer; called from several threads at once
+     * @param concurrency the maximum number of customers processed at once
+     */
+    public BatchRunner(CustomerCalculator calculator, int concurrency) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        this.calculator = calculator;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Processes all customers and passes their results to the consumer, in input order.
+     *
+     * @param customers the customers to process, read lazily
+     * @param results   receives the result of every customer, always on the calling thread
+     * @return the number of processed customers
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a customer
+     */
+    public long run(Iterator<CustomerInput> customers, Consumer<CustomerResult> results) throws InterruptedException {
+        var processed = 0L;
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var pending = new ArrayDeque<Future<CustomerResult>>(concurrency);
+            while (customers.hasNext()) {
+                if (pending.size() == concurrency) {
+                    results.accept(await(pending.poll()));
+                    processed++;
+                }
+                final var customer = customers.next();
+                pending.add(executor.submit(() -> calculate(customer)));
+            }
+            while (!pending.isEmpty()) {
+                results.accept(await(pending.poll()));
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    private CustomerResult calculate(CustomerInput customer) {
+        try {
+            return new CustomerResult(customer.customer(), calculator.calculate(customer), null);
+        } catch (Exception e) {
+            return new CustomerResult(customer.customer(), null, e);
+        }
+    }
+
+    private static CustomerResult await(Future<CustomerResult> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            // Exceptions are turned into results, so only errors end up here.
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Calculates the spending report of a single customer.
+     */
+    @FunctionalInterface
+    public interface CustomerCalculator {
+
+        /**
+         * @param customer the input of the customer
+         * @return the spending report of the customer
+         * @throws Exception if the input cannot be loaded or the orders cannot be settled
+         */
+        SpendingReport calculate(CustomerInput customer) throws Exception;
+    }
+}
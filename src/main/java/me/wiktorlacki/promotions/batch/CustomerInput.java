@@ -0,0 +1,39 @@
+package me.wiktorlacki.promotions.batch;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.util.List;
+
+/**
+ * The input of a single customer in batch mode. Orders and payment methods are either given as paths
+ * of files to load or inline, as already parsed lists.
+ *
+ * @param customer           the identifier of the customer, used to label the report
+ * @param ordersPath         the path of the orders file, or {@code null} if the orders are given inline
+ * @param paymentMethodsPath the path of the payment methods file, or {@code null} if they are given inline
+ * @param orders             the inline orders, or {@code null} if they are loaded from {@code ordersPath}
+ * @param paymentMethods     the inline payment methods, or {@code null} if they are loaded from
+ *                           {@code paymentMethodsPath}
+ */
+public record CustomerInput(String customer, String ordersPath, String paymentMethodsPath,
+                            List<Order> orders, List<PaymentMethod> paymentMethods) {
+
+    public static CustomerInput ofPaths(String customer, String ordersPath, String paymentMethodsPath) {
+        return new CustomerInput(customer, ordersPath, paymentMethodsPath, null, null);
+    }
+
+    /**
+     * @return whether the orders are given inline instead of as a file path
+     */
+    public boolean inlineOrders() {
+        return orders != null;
+    }
+
+    /**
+     * @return whether the payment methods are given inline instead of as a file path
+     */
+    public boolean inlinePaymentMethods() {
+        return paymentMethods != null;
+    }
+}
@@ -0,0 +1,20 @@
+package me.wiktorlacki.promotions.batch;
+
+import me.wiktorlacki.promotions.SpendingReport;
+
+/**
+ * The outcome of processing a single customer in batch mode: either a report or the failure which prevented it.
+ *
+ * @param customer the identifier of the customer
+ * @param report   the spending report, or {@code null} if processing failed
+ * @param failure  the exception which stopped processing, or {@code null} if it succeeded
+ */
+public record CustomerResult(String customer, SpendingReport report, Exception failure) {
+
+    /**
+     * @return whether a report was produced
+     */
+    public boolean succeeded() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,264 @@
+package me.wiktorlacki.promotions.checkpoint;
+
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.zip.CRC32;
+
+/**
+ * Periodically saves the balances of a calculation over sorted orders together with the number of orders settled
+ * so far, so that a calculation whose process died can be resumed instead of started from scratch.
+ *
+ * Orders are settled one after another and balances only change while an order is settled, so the balances after
+ * the first {@code n} orders of a sorted input are all that is needed to settle the rest of it. A resumed calculation
+ * {@link #resume(PaymentService) restores} the balances, skips the first {@code n} orders of the same input and
+ * produces the same report as an uninterrupted one. Rejected orders count as settled, as they took no payments.
+ *
+ * The checkpoint is written to a temporary file next to the target, forced to the disk and atomically renamed over
+ * the previous checkpoint, so a crash while writing leaves the previous checkpoint intact. The file is little-endian:
+ * {@link #MAGIC}, {@link #VERSION}, the money mode, the number of settled orders, the number of payment methods and,
+ * for every payment method, its id, limit and balance, followed by a CRC-32 of everything before it. The ids and
+ * limits make sure a checkpoint is only resumed against the payment methods it was written for.
+ *
+ * Checkpoints are written from the thread settling the orders, at most once per interval. The clock is only read
+ * every few orders, so checkpointing costs next to nothing between checkpoints.
+ */
+public final class Checkpointer {
+
+    /**
+     * The first four bytes of every checkpoint, "PCKP" in ASCII.
+     */
+    public static final int MAGIC = 0x504B4350;
+
+    public static final int VERSION = 1;
+
+    /**
+     * The time between two checkpoints if none is given.
+     */
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(30);
+
+    /**
+     * The number of orders settled between two looks at the clock if none is given.
+     */
+    public static final int DEFAULT_STRIDE = 1024;
+
+    private final Path file;
+    private final Path temporary;
+    private final long intervalNanos;
+    private final int stride;
+    private long position;
+    private int sinceClock;
+    private long lastWrite;
+
+    /**
+     * @param file     the file to write checkpoints to and to resume from
+     * @param interval the minimum time between two checkpoints
+     * @param stride   the number of orders settled between two looks at the clock
+     */
+    public Checkpointer(Path file, Duration interval, int stride) {
+        if (stride < 1) throw new IllegalArgumentException("Stride must be positive: " + stride);
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        this.intervalNanos = interval.toNanos();
+        this.stride = stride;
+        this.lastWrite = System.nanoTime();
+    }
+
+    /**
+     * Creates a checkpointer writing a checkpoint every {@link #DEFAULT_INTERVAL}.
+     *
+     * @param file the file to write checkpoints to and to resume from
+     * @return a new checkpointer
+     */
+    public static Checkpointer create(Path file) {
+        return new Checkpointer(file, DEFAULT_INTERVAL, DEFAULT_STRIDE);
+    }
+
+    /**
+     * Returns the number of orders settled so far, including the ones settled before the calculation was resumed.
+     * This is also the number of sorted orders a resumed calculation skips.
+     *
+     * @return the number of settled orders
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Restores the balances and the number of settled orders of the checkpoint file, if there is one.
+     * Without a checkpoint file nothing is restored, so a run can always be started with resuming enabled.
+     *
+     * @param paymentService the payment service of the calculation to resume, with the payment methods of the
+     *                       checkpoint
+     * @return true if a checkpoint was restored
+     * @throws IOException if the file cannot be read, is not a valid checkpoint or was written for a different
+     *                     money mode or different payment methods
+     */
+    public boolean resume(PaymentService paymentService) throws IOException {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        final var buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a checkpoint: " + file);
+            final var version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+
+            final var crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - Integer.BYTES);
+            if (ByteBuffer.wrap(bytes, bytes.length - Integer.BYTES, Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .getInt() != (int) crc.getValue()) {
+                throw new IOException("Corrupt checkpoint: " + file);
+            }
+
+            final var mode = MoneyMode.values()[buffer.get()];
+            if (mode != paymentService.mode()) throw new IOException("Checkpoint was written in the " + mode + " mode");
+            final var settled = buffer.getLong();
+            final var size = buffer.getInt();
+            if (size != paymentService.size()) throw mismatch();
+
+            final var balances = new BigDecimal[size];
+            for (int i = 0; i < size; i++) {
+                final var paymentMethod = paymentService.paymentMethod(i);
+                if (!getString(buffer).equals(paymentMethod.id())) throw mismatch();
+                if (getDecimal(buffer).compareTo(paymentMethod.limit()) != 0) throw mismatch();
+                balances[i] = mode == MoneyMode.FIXED_POINT ? FixedPoint.toBigDecimal(buffer.getLong()) : getDecimal(buffer);
+            }
+
+            // Nothing is restored unless the whole checkpoint was read.
+            for (int i = 0; i < size; i++) {
+                paymentService.balance(paymentService.paymentMethod(i), balances[i]);
+            }
+            position = settled;
+            return true;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt checkpoint: " + file, e);
+        }
+    }
+
+    /**
+     * Counts an order as settled and writes a checkpoint if the interval has passed since the last one.
+     * Called by the calculation after every order, once the order is settled or rejected.
+     *
+     * @param paymentService the payment service of the calculation
+     * @throws UncheckedIOException if the checkpoint cannot be written
+     */
+    public void settled(PaymentService paymentService) {
+        position++;
+        if (++sinceClock < stride) return;
+        sinceClock = 0;
+        if (System.nanoTime() - lastWrite >= intervalNanos) write(paymentService);
+    }
+
+    /**
+     * Writes a checkpoint of the current balances and number of settled orders, replacing the previous one.
+     *
+     * @param paymentService the payment service of the calculation
+     * @throws UncheckedIOException if the checkpoint cannot be written
+     */
+    public void write(PaymentService paymentService) {
+        final var buffer = encode(paymentService);
+        try {
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint " + file, e);
+        }
+        lastWrite = System.nanoTime();
+    }
+
+    private ByteBuffer encode(PaymentService paymentService) {
+        final var fixedPoint = paymentService.fixedPoint();
+        var buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).put((byte) paymentService.mode().ordinal())
+                .putLong(position).putInt(paymentService.size());
+        for (int i = 0; i < paymentService.size(); i++) {
+            final var paymentMethod = paymentService.paymentMethod(i);
+            final var id = paymentMethod.id().getBytes(StandardCharsets.UTF_8);
+            final var limit = paymentMethod.limit().unscaledValue().toByteArray();
+            final var balance = fixedPoint ? null : paymentService.balance(paymentMethod);
+            final var unscaled = fixedPoint ? null : balance.unscaledValue().toByteArray();
+            buffer = ensure(buffer, Integer.BYTES + id.length + 2 * Integer.BYTES + limit.length
+                    + (fixedPoint ? Long.BYTES : 2 * Integer.BYTES + unscaled.length));
+
+            buffer.putInt(id.length).put(id);
+            buffer.putInt(paymentMethod.limit().scale()).putInt(limit.length).put(limit);
+            if (fixedPoint) {
+                buffer.putLong(paymentService.balanceUnits(paymentMethod));
+            } else {
+                buffer.putInt(balance.scale()).putInt(unscaled.length).put(unscaled);
+            }
+        }
+
+        buffer = ensure(buffer, Integer.BYTES);
+        final var crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        return buffer.flip();
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) return buffer;
+        final var grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        return grown.put(buffer.flip());
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final var bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal getDecimal(ByteBuffer buffer) {
+        final var scale = buffer.getInt();
+        final var unscaled = new byte[buffer.getInt()];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static IOException mismatch() {
+        return new IOException("Checkpoint was written for different payment methods");
+    }
+
+    /**
+     * Forces the rename to the disk as well. Not every platform can open a directory, in which case the rename
+     * is as durable as the file system makes it.
+     */
+    private void syncDirectory() {
+        final var directory = file.toAbsolutePath().getParent();
+        if (directory == null) return;
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort, see above.
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package me.wiktorlacki.promotions.concurrent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * A ring buffer of preallocated entries which any number of threads fill and a single background thread hands to
+ * a {@link Sink}, in the order in which they were claimed.
+ *
+ * A producer {@link #claim() claims} the sequence of the next entry, fills the {@link #entry(long) entry} and
+ * {@link #publish(long) publishes} it. Entries are never dropped: a full buffer makes the producers wait for the
+ * writer, and an entry is only handed over once it and all entries claimed before it are published, so every claimed
+ * entry has to be published, also if filling it fails. Producers never wait for a writer which has stopped, see
+ * {@link #claim()}.
+ *
+ * @param <E> the type of the entries
+ */
+public final class RingBuffer<E> {
+
+    private static final long PRODUCER_WAIT_NANOS = 10_000;
+    private static final long WRITER_WAIT_NANOS = 100_000;
+
+    private final String name;
+    private final Object[] entries;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLongArray published;
+    private final Sink<E> sink;
+    private final Thread writer;
+
+    private volatile long consumed;
+    private volatile boolean closed;
+    private volatile Throwable crash;
+
+    /**
+     * Creates the buffer and starts its writer, so everything the sink uses has to be set up before.
+     *
+     * @param name     the name of the writer thread, also used in messages, e.g. {@code "decision trace"}
+     * @param capacity the minimum number of entries, rounded up to a power of two
+     * @param entry    creates the preallocated entries
+     * @param sink     receives the published entries on the writer thread
+     */
+    public RingBuffer(String name, int capacity, Supplier<E> entry, Sink<E> sink) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+
+        this.name = name;
+        final var size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.entries = new Object[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = entry.get();
+        }
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.sink = sink;
+
+        this.writer = new Thread(this::drain, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Claims the next entry, waiting while the buffer is full.
+     *
+     * @return the sequence of the entry
+     * @throws IllegalStateException if the buffer is closed, or the writer stopped, e.g. because the sink threw
+     *                               an unchecked exception, so the entry would never be written
+     */
+    public long claim() {
+        if (closed) throw new IllegalStateException("The " + name + " is closed");
+        final var sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= entries.length) {
+            if (!writer.isAlive()) throw new IllegalStateException("The " + name + " writer has stopped", crash);
+            LockSupport.parkNanos(PRODUCER_WAIT_NANOS);
+        }
+        return sequence;
+    }
+
+    /**
+     * @param sequence the sequence of a claimed entry
+     * @return the entry to fill
+     */
+    @SuppressWarnings("unchecked")
+    public E entry(long sequence) {
+        return (E) entries[(int) (sequence & mask)];
+    }
+
+    /**
+     * Hands a filled entry over to the writer.
+     *
+     * @param sequence the sequence returned by {@link #claim()}
+     */
+    public void publish(long sequence) {
+        published.set((int) (sequence & mask), sequence);
+    }
+
+    /**
+     * @return the number of entries claimed so far
+     */
+    public long claimed() {
+        return claimed.get();
+    }
+
+    /**
+     * @return the number of entries handed to the sink so far
+     */
+    public long consumed() {
+        return consumed;
+    }
+
+    /**
+     * @return whether the writer is still running, i.e. the buffer is not closed and the sink did not fail
+     */
+    public boolean writing() {
+        return writer.isAlive();
+    }
+
+    /**
+     * @return whether {@link #close()} was called
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Wakes the writer up if it waits for entries, e.g. because the sink has more work to do.
+     */
+    public void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Waits until the writer handed all published entries to the sink and stopped. Entries must not be claimed
+     * concurrently with closing.
+     *
+     * @throws InterruptedIOException if interrupted while waiting for the writer, which then keeps running
+     * @throws IOException            if the sink threw an unchecked exception, which stopped the writer
+     */
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the " + name);
+        }
+        if (crash != null) throw new IOException("The " + name + " writer failed", crash);
+    }
+
+    private void drain() {
+        try {
+            var next = 0L;
+            while (true) {
+                final var index = (int) (next & mask);
+                if (published.get(index) == next) {
+                    sink.write(entry(next), next);
+                    next++;
+                    consumed = next;
+                    continue;
+                }
+
+                final var done = closed && claimed.get() == next;
+                sink.idle(next, done);
+                if (done) break;
+                LockSupport.parkNanos(WRITER_WAIT_NANOS);
+            }
+        } catch (RuntimeException | Error e) {
+            crash = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Receives the entries of a {@link RingBuffer} on its writer thread.
+     *
+     * @param <E> the type of the entries
+     */
+    public interface Sink<E> {
+
+        /**
+         * Writes an entry. The entry is reused once this method returns.
+         *
+         * @param entry    the entry
+         * @param sequence its sequence
+         */
+        void write(E entry, long sequence);
+
+        /**
+         * Called whenever no published entry is waiting, before the writer waits for one, e.g. to flush.
+         *
+         * @param consumed the number of entries written so far
+         * @param done     whether the buffer is closed and every entry is written, so this is the last call
+         */
+        void idle(long consumed, boolean done);
+    }
+}
@@ -1,36 +1,205 @@
 package me.wiktorlacki.promotions.discount;
 
-import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.offer.FixedOffer;
 import me.wiktorlacki.promotions.offer.Offer;
 import me.wiktorlacki.promotions.offer.OfferComparator;
+import me.wiktorlacki.promotions.offer.OfferSlot;
 import me.wiktorlacki.promotions.Order;
 import me.wiktorlacki.promotions.payment.PaymentService;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Handles the evaluation and selection of the most beneficial discount strategy for a given order.
+ *
+ * The processor may be shared between threads as long as the underlying payment service is;
+ * the reusable {@link EvaluationContext} is kept per thread, and so is the {@link OfferCache} if offers are cached.
  */
-@RequiredArgsConstructor
 public class DiscountProcessor {
 
+    private static final ObjIntConsumer<Offer> NO_CANDIDATES = (offer, strategy) -> {
+    };
+
     private final PaymentService paymentService;
-    private final List<DiscountStrategy> strategies;
+    private final DiscountStrategy[] strategies;
+    private final List<String> strategyNames;
+    private final OfferComparator offerComparator;
+    private final ThreadLocal<EvaluationContext> contexts;
+    private final EngineMetrics metrics;
+    private final EngineMetrics.StrategyMetrics[] strategyMetrics;
+    private final boolean cached;
+
+    public DiscountProcessor(PaymentService paymentService, List<DiscountStrategy> strategies) {
+        this(paymentService, strategies, null);
+    }
+
+    /**
+     * @param paymentService the payment service the strategies read balances from
+     * @param strategies     the strategies to evaluate, in this order
+     * @param metrics        the metrics to record the evaluations of the strategies to, or null to record nothing
+     */
+    public DiscountProcessor(PaymentService paymentService, List<DiscountStrategy> strategies, EngineMetrics metrics) {
+        this(paymentService, strategies, metrics, 0);
+    }
+
+    /**
+     * @param paymentService the payment service the strategies read balances from
+     * @param strategies     the strategies to evaluate, in this order
+     * @param metrics        the metrics to record the evaluations of the strategies and the lookups of the offer cache
+     *                       to, or null to record nothing
+     * @param offerCacheSize the number of entries of the {@link OfferCache} of every thread, or 0 to evaluate every
+     *                       order; offers may only be cached while balances do not increase
+     */
+    public DiscountProcessor(PaymentService paymentService, List<DiscountStrategy> strategies, EngineMetrics metrics,
+                             int offerCacheSize) {
+        if (offerCacheSize < 0) throw new IllegalArgumentException("Offer cache size must not be negative: " + offerCacheSize);
+        this.paymentService = paymentService;
+        this.strategyNames = strategies.stream().map(DiscountProcessor::name).toList();
+        this.offerComparator = new OfferComparator(paymentService);
+        this.cached = offerCacheSize > 0;
+        this.contexts = ThreadLocal.withInitial(() -> new EvaluationContext(paymentService,
+                cached ? new OfferCache(paymentService, offerCacheSize, metrics) : null));
+        this.metrics = metrics;
+        this.strategies = strategies.toArray(DiscountStrategy[]::new);
+        if (metrics == null) {
+            this.strategyMetrics = null;
+            return;
+        }
+        this.strategyMetrics = new EngineMetrics.StrategyMetrics[this.strategies.length];
+        for (int i = 0; i < this.strategies.length; i++) {
+            strategyMetrics[i] = metrics.strategy(strategyNames.get(i));
+            this.strategies[i] = new MeteredStrategy(this.strategies[i], strategyMetrics[i]);
+        }
+    }
 
     /**
      * Attempts to determine and return the best available offer for the given order.
+     * {@link DiscountStrategy#fallback() Fallback} strategies are only applied if no other strategy applies.
+     * If offers are cached, the offer remembered for an order of the same shape is returned while it is still the
+     * most beneficial one, see {@link OfferCache}.
      *
      * @param order the order for which the optimal discount should be evaluated
      * @return an Optional containing the most beneficial Offer if one is applicable,
      *         or an empty Optional if no suitable offer is found
      */
     public Optional<Offer> process(Order order) {
-        return strategies.stream()
-                .map(it -> it.apply(order))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .min(new OfferComparator(paymentService));
+        if (!cached) return process(order, NO_CANDIDATES);
+
+        final var context = contexts.get();
+        final var offerCache = context.offerCache();
+        final var remembered = offerCache.get(order);
+        if (remembered != null) {
+            context.winner(offerCache.winner());
+            if (strategyMetrics != null) strategyMetrics[offerCache.winner()].chosen();
+            return Optional.of(remembered);
+        }
+        final var best = process(order, false, NO_CANDIDATES, offerCache);
+        return best.isPresent() ? best : process(order, true, NO_CANDIDATES, null);
     }
 
+    /**
+     * Like {@link #process(Order)}, additionally reporting the result of every strategy which was applied,
+     * e.g. to record why an offer was chosen. Every strategy is applied, even if offers are cached.
+     *
+     * @param order      the order for which the optimal discount should be evaluated
+     * @param candidates receives the offer of every applied strategy, or null if it produced none, together with
+     *                   the position of the strategy
+     * @return an Optional containing the most beneficial Offer if one is applicable,
+     *         or an empty Optional if no suitable offer is found
+     */
+    public Optional<Offer> process(Order order, ObjIntConsumer<Offer> candidates) {
+        final var best = process(order, false, candidates, null);
+        return best.isPresent() ? best : process(order, true, candidates, null);
+    }
+
+    private Optional<Offer> process(Order order, boolean fallback, ObjIntConsumer<Offer> candidates, OfferCache offerCache) {
+        Offer best = null;
+        var winner = -1;
+        for (int i = 0; i < strategies.length; i++) {
+            final var strategy = strategies[i];
+            if (strategy.fallback() != fallback) continue;
+            final var offer = strategy.apply(order);
+            candidates.accept(offer.orElse(null), i);
+            if (offer.isEmpty()) continue;
+            if (best == null || offerComparator.compare(best, offer.get()) > 0) {
+                best = offer.get();
+                winner = i;
+            }
+        }
+        contexts.get().winner(winner);
+        if (strategyMetrics != null && winner >= 0) strategyMetrics[winner].chosen();
+        if (offerCache != null && winner >= 0) offerCache.put(order, best, winner);
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * The {@link FixedPoint} variant of {@link #process(Order)}. Ties are resolved exactly like
+     * in {@link #process(Order)}, so both variants pick the same offer for the same balances.
+     *
+     * @param order the order for which the optimal discount should be evaluated
+     * @return an Optional containing the most beneficial offer if one is applicable,
+     *         or an empty Optional if no suitable offer is found
+     */
+    public Optional<FixedOffer> processFixed(Order order) {
+        final var best = evaluate(order, order.valueUnits());
+        return best.isEmpty() ? Optional.empty() : Optional.of(best.toFixedOffer());
+    }
+
+    /**
+     * The allocation-free variant of {@link #processFixed(Order)}. The returned slot belongs to the
+     * evaluation context of the calling thread and is overwritten by its next call.
+     *
+     * @param order the order for which the optimal discount should be evaluated
+     * @param value the value of the order in millionths, as returned by {@link Order#valueUnits()}
+     * @return the slot holding the most beneficial offer, empty if no suitable offer is found
+     */
+    public OfferSlot evaluate(Order order, long value) {
+        final var context = contexts.get();
+        final var best = context.evaluate(strategies, order, value);
+        if (strategyMetrics != null && context.winner() >= 0) strategyMetrics[context.winner()].chosen();
+        return best;
+    }
+
+    /**
+     * Returns the evaluation context of the calling thread, which holds the candidate offers of its last
+     * {@link #evaluate(Order, long)} call until the next one.
+     *
+     * @return the evaluation context of the calling thread
+     */
+    public EvaluationContext context() {
+        return contexts.get();
+    }
+
+    /**
+     * Returns the strategy whose offer was chosen by the last evaluation of the calling thread, by any of
+     * the {@code process} and {@code evaluate} methods.
+     *
+     * @return the position of the strategy in {@link #strategyNames()}, or -1 if no strategy applied
+     */
+    public int winner() {
+        return contexts.get().winner();
+    }
+
+    /**
+     * @return the metrics the evaluations are recorded to, or null if they are not measured
+     */
+    public EngineMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the simple class names of the strategies, in the order in which they are evaluated
+     */
+    public List<String> strategyNames() {
+        return strategyNames;
+    }
+
+    private static String name(DiscountStrategy strategy) {
+        final var name = strategy.getClass().getSimpleName();
+        return name.isEmpty() ? strategy.getClass().getName() : name;
+    }
 }
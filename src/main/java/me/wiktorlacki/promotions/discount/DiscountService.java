@@ -2,37 +2,367 @@ package me.wiktorlacki.promotions.discount;
 
 import lombok.RequiredArgsConstructor;
 import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.checkpoint.Checkpointer;
+import me.wiktorlacki.promotions.journal.SettlementJournal;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
 import me.wiktorlacki.promotions.payment.PaymentService;
 import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.trace.DecisionTrace;
 
-import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 public class DiscountService {
 
     private final DiscountProcessor discountProcessor;
     private final PaymentService paymentService;
+    private DecisionTrace trace;
+    private Consumer<RejectedOrder> rejections;
+    private Checkpointer checkpointer;
+    private SettlementJournal journal;
+
+    /**
+     * Creates a discount service evaluating the built-in discount strategies against the given payment service.
+     *
+     * @param paymentService the payment service holding the balances to settle orders against
+     * @return a new discount service
+     */
+    public static DiscountService create(PaymentService paymentService) {
+        return create(paymentService, null);
+    }
+
+    /**
+     * Creates a discount service evaluating the built-in discount strategies and recording what it does to
+     * the given metrics.
+     *
+     * @param paymentService the payment service holding the balances to settle orders against
+     * @param metrics        the metrics to record to, or null to record nothing
+     * @return a new discount service
+     */
+    public static DiscountService create(PaymentService paymentService, EngineMetrics metrics) {
+        return create(paymentService, metrics, 0);
+    }
+
+    /**
+     * Creates a discount service evaluating the built-in discount strategies and remembering the offers chosen for
+     * orders of the same value and promotions in an {@link OfferCache}. The balances of the payment service must not
+     * be raised while the service settles orders, as they are by a {@link Checkpointer#resume(PaymentService) resumed}
+     * checkpoint; resume before the first order is settled.
+     *
+     * @param paymentService the payment service holding the balances to settle orders against
+     * @param metrics        the metrics to record to, or null to record nothing
+     * @param offerCacheSize the number of entries of the offer cache, or 0 to evaluate every order
+     * @return a new discount service
+     */
+    public static DiscountService create(PaymentService paymentService, EngineMetrics metrics, int offerCacheSize) {
+        final var discountProcessor = new DiscountProcessor(paymentService, strategies(paymentService), metrics,
+                offerCacheSize);
+
+        return new DiscountService(
+                discountProcessor,
+                paymentService
+        );
+    }
+
+    /**
+     * Creates the discount strategies of the {@link StrategyRegistry#defaults() default registry},
+     * in the order in which they are evaluated.
+     *
+     * @param paymentService the payment service the strategies read balances from
+     * @return the list of strategies
+     */
+    public static List<DiscountStrategy> strategies(PaymentService paymentService) {
+        return StrategyRegistry.defaults().strategies(paymentService);
+    }
+
+    /**
+     * Records the decision made for every order settled by this service from now on. Without a trace,
+     * settling an order does no tracing work at all.
+     *
+     * @param trace the trace to record to, or null to stop tracing
+     * @return this service
+     */
+    public DiscountService trace(DecisionTrace trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    /**
+     * Sets orders which cannot be settled aside instead of stopping the calculation: {@link #calculate(List)} and
+     * {@link #calculateSorted(Stream)} pass them to the given sink and continue with the next order, so the report
+     * covers all other orders. Orders are rejected when no strategy can pay them or their amounts cannot be
+     * represented; no payment of a rejected order is taken.
+     *
+     * @param rejections receives every rejected order, in the order of settlement; or null to stop at the first one
+     * @return this service
+     */
+    public DiscountService rejectTo(Consumer<RejectedOrder> rejections) {
+        this.rejections = rejections;
+        return this;
+    }
+
+    /**
+     * Checkpoints the calculations of {@link #calculate(List)} and {@link #calculateSorted(Stream)}: every settled
+     * or rejected order is counted by the checkpointer, which periodically saves the balances, and a last checkpoint
+     * is written once all orders are settled. The calculation skips the orders the checkpointer already
+     * {@link Checkpointer#position() counted}, so after {@link Checkpointer#resume(PaymentService) resuming} the
+     * same orders continue where the previous run stopped.
+     *
+     * @param checkpointer the checkpointer, or null to stop checkpointing
+     * @return this service
+     */
+    public DiscountService checkpoint(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+        return this;
+    }
+
+    /**
+     * Appends the payments of every order settled by this service from now on to the given journal, once they are
+     * taken and before the order counts as settled.
+     *
+     * @param journal the journal to append to, or null to stop journaling
+     * @return this service
+     */
+    public DiscountService journal(SettlementJournal journal) {
+        this.journal = journal;
+        return this;
+    }
 
     /**
      * Calculates the total spending report by applying discounts and processing payments for the given list of orders.
      *
-     * @param orders the list of orders to process
+     * Orders are settled in ascending value order, see {@link OrderSorter}.
+     *
+     * @param orders the list of orders to process; the list is not modified
      * @return a {@link SpendingReport} summarizing all payments made
-     * @throws IllegalStateException if no valid discount strategy is found for an order
+     * @throws IllegalStateException if no valid discount strategy is found for an order and orders are not
+     *                               {@link #rejectTo(Consumer) rejected}
      */
     public SpendingReport calculate(List<Order> orders) {
-        orders.sort(Comparator.comparing(Order::value));
+        return calculateSorted(OrderSorter.byValue(orders, paymentService.mode()).stream());
+    }
 
-        orders.stream()
-                .sorted(Comparator.comparing(Order::value))
-                .forEach(order -> {
-                    final var discount = discountProcessor.process(order)
-                            .orElseThrow(() -> new IllegalStateException("Could not find proper discount strategy for order: " + order));
-                    discount.payments().forEach(paymentService::take);
-                });
+    /**
+     * Calculates the total spending report for orders which are already sorted by ascending value.
+     *
+     * Unlike {@link #calculate(List)}, the orders are consumed one by one and never collected,
+     * so this method can be fed with a lazily loaded stream that does not fit into memory.
+     *
+     * @param sortedOrders the orders to process, in ascending value order
+     * @return a {@link SpendingReport} summarizing all payments made
+     * @throws IllegalStateException if no valid discount strategy is found for an order and orders are not
+     *                               {@link #rejectTo(Consumer) rejected}
+     * @throws java.io.UncheckedIOException if a {@link #checkpoint(Checkpointer) checkpoint} cannot be written
+     */
+    public SpendingReport calculateSorted(Stream<Order> sortedOrders) {
+        final var orders = checkpointer == null ? sortedOrders : sortedOrders.skip(checkpointer.position());
+        orders.forEachOrdered(order -> {
+            try {
+                settle(order);
+            } catch (IllegalStateException | ArithmeticException e) {
+                reject(order, e);
+            }
+            if (checkpointer != null) checkpointer.settled(paymentService);
+        });
 
+        if (checkpointer != null) checkpointer.write(paymentService);
         return paymentService.generateReport();
     }
 
+    /**
+     * Chooses the best offer for a single order and takes its payments.
+     *
+     * In the {@link me.wiktorlacki.promotions.money.FixedPoint} mode this method may be called from several threads
+     * at once if the payment service is a {@link me.wiktorlacki.promotions.payment.ConcurrentPaymentService}:
+     * when another thread spends a balance between evaluating the offer and taking its payments,
+     * the order is evaluated again against the new balances.
+     *
+     * @param order the order to settle
+     * @throws IllegalStateException if no valid discount strategy is found for the order
+     */
+    public void settle(Order order) {
+        if (discountProcessor.metrics() != null) {
+            settleMetered(order, false);
+            return;
+        }
+        if (paymentService.fixedPoint()) {
+            settleFixed(order);
+            return;
+        }
+
+        settleDecimal(order);
+    }
+
+    /**
+     * Like {@link #settle(Order)}, additionally returning the offer which was applied, e.g. to show it at checkout.
+     * In the {@link me.wiktorlacki.promotions.money.FixedPoint} mode the offer is converted, so this method
+     * allocates even where {@link #settle(Order)} does not.
+     *
+     * @param order the order to settle
+     * @return the offer whose payments were taken
+     * @throws IllegalStateException if no valid discount strategy is found for the order
+     */
+    public Offer settleOffer(Order order) {
+        if (discountProcessor.metrics() != null) return settleMetered(order, true);
+        if (paymentService.fixedPoint()) {
+            return settleFixed(order).toFixedOffer().toOffer();
+        }
+
+        return settleDecimal(order);
+    }
+
+    /**
+     * @return the settled offer, held in the evaluation slot of the calling thread until its next evaluation
+     */
+    private OfferSlot settleFixed(Order order) {
+        if (trace != null) return settleFixedTraced(order);
+        final var value = order.valueUnits();
+        while (true) {
+            final var discount = discountProcessor.evaluate(order, value);
+            if (discount.isEmpty()) {
+                throw new IllegalStateException("Could not find proper discount strategy for order: " + order);
+            }
+            if (paymentService.tryTake(discount)) {
+                if (journal != null) journal.append(order, discount);
+                return discount;
+            }
+            conflict();
+        }
+    }
+
+    private OfferSlot settleFixedTraced(Order order) {
+        final var record = trace.begin(order);
+        try {
+            final var value = order.valueUnits();
+            while (true) {
+                final var discount = discountProcessor.evaluate(order, value);
+                record.evaluated(discountProcessor.strategyNames(), discountProcessor.context());
+                if (discount.isEmpty()) {
+                    throw new IllegalStateException("Could not find proper discount strategy for order: " + order);
+                }
+                if (paymentService.tryTake(discount)) {
+                    if (journal != null) journal.append(order, discount);
+                    record.settled(paymentService);
+                    return discount;
+                }
+                conflict();
+            }
+        } finally {
+            trace.commit(record);
+        }
+    }
+
+    /**
+     * Settles an order like {@link #settle(Order)} and records how long it took, whether it failed and which
+     * balances it exhausted.
+     *
+     * @param convert whether the offer of the {@link me.wiktorlacki.promotions.money.FixedPoint} mode should be
+     *                converted and returned
+     * @return the settled offer, or null if it is not converted
+     */
+    private Offer settleMetered(Order order, boolean convert) {
+        final var metrics = discountProcessor.metrics();
+        final var start = System.nanoTime();
+        final Offer offer;
+        try {
+            if (paymentService.fixedPoint()) {
+                final var slot = settleFixed(order);
+                for (int i = 0; i < slot.size(); i++) {
+                    taken(slot.method(i), slot.amount(i) > 0);
+                }
+                offer = convert ? slot.toFixedOffer().toOffer() : null;
+            } else {
+                offer = settleDecimal(order);
+                offer.payments().forEach((method, amount) -> taken(method, amount.signum() > 0));
+            }
+        } catch (RuntimeException e) {
+            metrics.failed();
+            throw e;
+        }
+        metrics.settled(System.nanoTime() - start);
+        return offer;
+    }
+
+    /**
+     * Passes an order which could not be settled to the rejection sink, or rethrows the failure if there is none.
+     *
+     * @param order   the order
+     * @param failure the exception which stopped settling the order
+     */
+    void reject(Order order, RuntimeException failure) {
+        if (rejections == null) throw failure;
+        rejections.accept(RejectedOrder.of(order, failure));
+    }
+
+    /**
+     * @return the trace of the settled orders, or null if they are not traced
+     */
+    DecisionTrace trace() {
+        return trace;
+    }
+
+    /**
+     * @return the journal of the settled orders, or null if they are not journaled
+     */
+    SettlementJournal journal() {
+        return journal;
+    }
+
+    /**
+     * @return the checkpointer counting the settled orders, or null if the calculation is not checkpointed
+     */
+    Checkpointer checkpointer() {
+        return checkpointer;
+    }
+
+    /**
+     * Records a payment which exhausted its payment method, if the service is metered.
+     *
+     * @param paymentMethod the payment method the payment was taken from
+     * @param positive      whether the payment was more than zero, as paying nothing cannot exhaust a balance
+     */
+    void taken(PaymentMethod paymentMethod, boolean positive) {
+        final var metrics = discountProcessor.metrics();
+        if (metrics == null || !positive) return;
+        final var empty = paymentService.fixedPoint()
+                ? paymentService.balanceUnits(paymentMethod) == 0
+                : paymentService.balance(paymentMethod).signum() == 0;
+        if (empty) metrics.exhausted(paymentMethod);
+    }
+
+    private void conflict() {
+        final var metrics = discountProcessor.metrics();
+        if (metrics != null) metrics.conflict();
+    }
+
+    private Offer settleDecimal(Order order) {
+        if (trace != null) return settleDecimalTraced(order);
+        final var discount = discountProcessor.process(order)
+                .orElseThrow(() -> new IllegalStateException("Could not find proper discount strategy for order: " + order));
+        discount.payments().forEach(paymentService::take);
+        if (journal != null) journal.append(order, discount);
+        return discount;
+    }
+
+    private Offer settleDecimalTraced(Order order) {
+        final var record = trace.begin(order);
+        try {
+            record.evaluating(discountProcessor.strategyNames());
+            final var discount = discountProcessor.process(order, record::candidate)
+                    .orElseThrow(() -> new IllegalStateException("Could not find proper discount strategy for order: " + order));
+            record.chosen(discount);
+            discount.payments().forEach(paymentService::take);
+            if (journal != null) journal.append(order, discount);
+            record.settled(paymentService);
+            return discount;
+        } finally {
+            trace.commit(record);
+        }
+    }
+
 }
@@ -1,6 +1,9 @@
 package me.wiktorlacki.promotions.discount;
 
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.offer.FixedOffer;
 import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
 import me.wiktorlacki.promotions.Order;
 
 import java.util.Optional;
@@ -15,4 +18,65 @@ public interface DiscountStrategy {
      *         or an empty Optional if no valid offer can be created
      */
     Optional<Offer> apply(Order order);
+
+    /**
+     * The {@link FixedPoint} variant of {@link #apply(Order)}, used when balances are kept as scaled longs.
+     *
+     * The default implementation converts the result of {@link #apply(Order)}, so strategies without
+     * a native fixed-point implementation keep working; built-in strategies implement it on top of
+     * {@link #evaluate(EvaluationContext, OfferSlot)}.
+     *
+     * @param order the order to which the discount strategy should be applied
+     * @param value the value of the order in millionths, as returned by {@link Order#valueUnits()}
+     * @return an Optional containing the generated offer if the strategy conditions are met,
+     *         or an empty Optional if no valid offer can be created
+     */
+    default Optional<FixedOffer> applyFixed(Order order, long value) {
+        return apply(order).map(FixedOffer::of);
+    }
+
+    /**
+     * The allocation-free variant of {@link #applyFixed(Order, long)}: writes the offer into a preallocated slot
+     * instead of returning it. This is what {@link DiscountProcessor} calls for every order.
+     *
+     * The default implementation adapts {@link #applyFixed(Order, long)}, so existing strategies keep working;
+     * built-in strategies override it and use the reusable state of the context, like the resolved promotions.
+     *
+     * @param context the context holding the order being evaluated
+     * @param slot    an empty slot to write the offer to
+     * @return true if the strategy conditions are met and an offer was written, false otherwise
+     */
+    default boolean evaluate(EvaluationContext context, OfferSlot slot) {
+        final var offer = applyFixed(context.order(), context.value());
+        if (offer.isEmpty()) return false;
+        slot.set(offer.get());
+        return true;
+    }
+
+    /**
+     * Returns a lower bound of the price of any offer {@link #evaluate(EvaluationContext, OfferSlot)} could write
+     * for the order of the context, i.e. an upper bound of the discount this strategy can achieve. It should be
+     * much cheaper than the evaluation itself, typically not looking at any balance.
+     *
+     * {@link EvaluationContext} evaluates strategies in ascending order of their bounds and skips those whose bound
+     * exceeds the price of an offer found already, which cannot change the chosen offer. The default implementation
+     * returns {@link Long#MIN_VALUE}, so strategies without a bound are always evaluated.
+     *
+     * @param context the context holding the order being evaluated
+     * @return the lowest price in millionths an offer of this strategy could have
+     */
+    default long priceLowerBound(EvaluationContext context) {
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns whether this strategy is a last resort, evaluated only when no other strategy produces an offer
+     * for the order. Offers of fallback strategies never compete with the offers of the other strategies,
+     * so adding one does not change how orders that can already be paid are paid.
+     *
+     * @return true if this strategy is only evaluated when no other strategy applies
+     */
+    default boolean fallback() {
+        return false;
+    }
 }
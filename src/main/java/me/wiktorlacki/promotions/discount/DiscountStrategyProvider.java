@@ -0,0 +1,20 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+/**
+ * Creates a {@link DiscountStrategy} for a payment service.
+ *
+ * Implementations listed in {@code META-INF/services/me.wiktorlacki.promotions.discount.DiscountStrategyProvider}
+ * on the class path are found by {@link StrategyRegistry}, so a new strategy can be added by shipping a jar,
+ * without changing the code which creates the discount services. A provider needs a public no-argument constructor.
+ */
+@FunctionalInterface
+public interface DiscountStrategyProvider {
+
+    /**
+     * @param paymentService the payment service the strategy reads balances from
+     * @return a new strategy
+     */
+    DiscountStrategy create(PaymentService paymentService);
+}
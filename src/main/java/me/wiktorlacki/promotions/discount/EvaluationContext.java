@@ -0,0 +1,289 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.offer.FixedOffer;
+import me.wiktorlacki.promotions.offer.FixedOfferComparator;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Reusable scratch state for evaluating the discount strategies against one order at a time.
+ *
+ * A context holds the order being evaluated, its promotions resolved to payment method indices, the slots
+ * strategies write their candidate offers into, one per strategy, and the comparator choosing between them. All of it is allocated
+ * once and reused for every order, so evaluation in the {@link me.wiktorlacki.promotions.money.FixedPoint} mode
+ * allocates nothing in the steady state. A context is not thread-safe; {@link DiscountProcessor} keeps one per thread.
+ * It may hold an {@link OfferCache} of the same thread, which spares the evaluation of orders of a shape seen before.
+ */
+public final class EvaluationContext {
+
+    private static final int INITIAL_PROMOTIONS_CAPACITY = 8;
+
+    private final PaymentService paymentService;
+    private final FixedOfferComparator comparator;
+    private final OfferCache offerCache;
+    private final OfferSlot candidate = new OfferSlot();
+    private final OfferSlot best = new OfferSlot();
+
+    private OfferSlot[] slots = new OfferSlot[0];
+    private long[] bounds = new long[0];
+    private int[] ranking = new int[0];
+    private boolean[] evaluated = new boolean[0];
+    private int strategyCount;
+    private int winner = -1;
+
+    private Order order;
+    private long value;
+    private int[] promotions = new int[INITIAL_PROMOTIONS_CAPACITY];
+    private int promotionCount;
+    private boolean promotionsResolved;
+
+    public EvaluationContext(PaymentService paymentService) {
+        this(paymentService, null);
+    }
+
+    /**
+     * @param paymentService the payment service the strategies read balances from
+     * @param offerCache     the cache of offers chosen for orders of the same shape, or null to evaluate every order
+     */
+    public EvaluationContext(PaymentService paymentService, OfferCache offerCache) {
+        this.paymentService = paymentService;
+        this.comparator = new FixedOfferComparator(paymentService);
+        this.offerCache = offerCache;
+    }
+
+    /**
+     * Evaluates the given strategies against an order and keeps the best offer, choosing between offers
+     * like {@link DiscountProcessor#process(Order)} does.
+     *
+     * Strategies are evaluated best-first, in ascending order of {@link DiscountStrategy#priceLowerBound}, and
+     * evaluation stops at the first strategy whose bound exceeds the lowest price found so far. Such a strategy
+     * cannot produce the lowest price, and only offers with the lowest price take part in choosing the best one:
+     * they are compared in the order of {@code strategies}, which resolves ties exactly like evaluating every
+     * strategy in that order would. {@link DiscountStrategy#fallback() Fallback} strategies are ranked last and
+     * only evaluated if no other strategy produced an offer.
+     *
+     * With an {@link OfferCache}, an offer remembered for an order of the same shape is taken as it is, and only
+     * the strategy which produced it counts as evaluated. Offers of strategies other than fallbacks are remembered.
+     *
+     * @param strategies the strategies to evaluate
+     * @param order      the order
+     * @param value      the value of the order in millionths, as returned by {@link Order#valueUnits()}
+     * @return the slot holding the best offer, empty if no strategy applies; it is overwritten by the next evaluation
+     */
+    public OfferSlot evaluate(DiscountStrategy[] strategies, Order order, long value) {
+        reset(order, value);
+        final var count = strategies.length;
+        ensureCapacity(count);
+        strategyCount = count;
+
+        if (offerCache != null) {
+            final var cached = offerCache.get(this);
+            if (cached != null) return remembered(cached, count);
+        }
+
+        for (int i = 0; i < count; i++) {
+            slots[i].clear();
+            evaluated[i] = false;
+            // A fallback is ranked behind every regular strategy and only reached while no offer has been found.
+            bounds[i] = strategies[i].fallback() ? Long.MAX_VALUE : strategies[i].priceLowerBound(this);
+            // Insertion sort, as there are only a few strategies.
+            var position = i;
+            while (position > 0 && bounds[ranking[position - 1]] > bounds[i]) {
+                ranking[position] = ranking[position - 1];
+                position--;
+            }
+            ranking[position] = i;
+        }
+
+        var lowestPrice = Long.MAX_VALUE;
+        for (int k = 0; k < count; k++) {
+            final var i = ranking[k];
+            if (bounds[i] > lowestPrice) break;
+            evaluated[i] = true;
+            if (strategies[i].evaluate(this, slots[i])) {
+                lowestPrice = Math.min(lowestPrice, slots[i].price());
+            } else {
+                slots[i].clear();
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            final var candidate = slots[i];
+            if (candidate.isEmpty() || candidate.price() != lowestPrice) continue;
+            if (best.isEmpty() || comparator.compare(best, candidate) > 0) {
+                best.copyFrom(candidate);
+                winner = i;
+            }
+        }
+        if (offerCache != null && winner >= 0 && !strategies[winner].fallback()) offerCache.put(this, best, winner);
+        return best;
+    }
+
+    private OfferSlot remembered(OfferSlot cached, int count) {
+        for (int i = 0; i < count; i++) {
+            slots[i].clear();
+            evaluated[i] = false;
+        }
+        winner = offerCache.winner();
+        evaluated[winner] = true;
+        slots[winner].copyFrom(cached);
+        best.copyFrom(cached);
+        return best;
+    }
+
+    /**
+     * @return the number of strategies of the last {@link #evaluate(DiscountStrategy[], Order, long)} call
+     */
+    public int strategyCount() {
+        return strategyCount;
+    }
+
+    /**
+     * Returns whether a strategy was evaluated by the last {@link #evaluate(DiscountStrategy[], Order, long)} call,
+     * or skipped because its bound showed that it could not produce the best offer or an offer was taken from the
+     * {@link OfferCache}.
+     *
+     * @param strategy the position of the strategy, below {@link #strategyCount()}
+     * @return true if the strategy was evaluated
+     */
+    public boolean evaluated(int strategy) {
+        return evaluated[strategy];
+    }
+
+    /**
+     * @param strategy the position of the strategy, below {@link #strategyCount()}
+     * @return the slot holding the offer of the strategy, empty if it was skipped or produced none
+     */
+    public OfferSlot candidate(int strategy) {
+        return slots[strategy];
+    }
+
+    /**
+     * @return the position of the strategy whose offer was chosen by the last
+     *         {@link #evaluate(DiscountStrategy[], Order, long)} call, or -1 if no strategy applied
+     */
+    public int winner() {
+        return winner;
+    }
+
+    /**
+     * Records the strategy chosen by an evaluation which did not go through this context, so {@link #winner()}
+     * describes the last evaluation of the thread either way.
+     */
+    void winner(int winner) {
+        this.winner = winner;
+    }
+
+    /**
+     * Evaluates a single strategy and converts the result, for callers of the {@link Optional} based API.
+     *
+     * @param strategy the strategy to evaluate
+     * @param order    the order
+     * @param value    the value of the order in millionths
+     * @return an Optional containing the offer if the strategy applies
+     */
+    public Optional<FixedOffer> evaluate(DiscountStrategy strategy, Order order, long value) {
+        reset(order, value);
+        candidate.clear();
+        return strategy.evaluate(this, candidate) ? Optional.of(candidate.toFixedOffer()) : Optional.empty();
+    }
+
+    /**
+     * @return the cache of offers chosen for orders of the same shape, or null if every order is evaluated
+     */
+    public OfferCache offerCache() {
+        return offerCache;
+    }
+
+    /**
+     * @return the order being evaluated
+     */
+    public Order order() {
+        return order;
+    }
+
+    /**
+     * @return the value of the order being evaluated, in millionths
+     */
+    public long value() {
+        return value;
+    }
+
+    /**
+     * @return whether the order being evaluated has a promotions list, possibly an empty one
+     */
+    public boolean hasPromotions() {
+        return order.promotions() != null;
+    }
+
+    /**
+     * Returns the promotions of the order resolved to payment method indices, skipping unknown identifiers.
+     * Only the first {@link #promotionCount()} elements are valid.
+     *
+     * @return the reused array of promotion indices
+     */
+    public int[] promotions() {
+        resolvePromotions();
+        return promotions;
+    }
+
+    /**
+     * @return the number of valid elements in {@link #promotions()}
+     */
+    public int promotionCount() {
+        resolvePromotions();
+        return promotionCount;
+    }
+
+    /**
+     * @param index the index of a payment method
+     * @return whether the payment method is one of the promotions of the order
+     */
+    public boolean isPromotion(int index) {
+        resolvePromotions();
+        for (int i = 0; i < promotionCount; i++) {
+            if (promotions[i] == index) return true;
+        }
+        return false;
+    }
+
+    private void ensureCapacity(int strategies) {
+        if (slots.length >= strategies) return;
+        final var capacity = Math.max(strategies, 2 * slots.length);
+        final var grown = Arrays.copyOf(slots, capacity);
+        for (int i = slots.length; i < capacity; i++) {
+            grown[i] = new OfferSlot();
+        }
+        slots = grown;
+        bounds = new long[capacity];
+        ranking = new int[capacity];
+        evaluated = new boolean[capacity];
+    }
+
+    private void reset(Order order, long value) {
+        this.order = order;
+        this.value = value;
+        this.promotionsResolved = false;
+        best.clear();
+        winner = -1;
+    }
+
+    private void resolvePromotions() {
+        if (promotionsResolved) return;
+        promotionsResolved = true;
+
+        final var names = order.promotions();
+        if (names == null) {
+            promotionCount = 0;
+            return;
+        }
+        if (names.size() > promotions.length) {
+            promotions = new int[Math.max(names.size(), 2 * promotions.length)];
+        }
+        promotionCount = paymentService.indicesOf(names, promotions);
+    }
+}
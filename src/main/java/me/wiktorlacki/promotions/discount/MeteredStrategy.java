@@ -0,0 +1,71 @@
+package me.wiktorlacki.promotions.discount;
+
+import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.offer.FixedOffer;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+
+import java.util.Optional;
+
+/**
+ * Wraps a strategy to record how often it is evaluated and produces an offer, and how long a sample of
+ * the evaluations takes.
+ * {@link DiscountProcessor} only wraps its strategies when it is given {@link EngineMetrics}.
+ */
+@RequiredArgsConstructor
+final class MeteredStrategy implements DiscountStrategy {
+
+    private final DiscountStrategy strategy;
+    private final EngineMetrics.StrategyMetrics metrics;
+
+    @Override
+    public Optional<Offer> apply(Order order) {
+        if (!metrics.sample()) {
+            final var offer = strategy.apply(order);
+            metrics.evaluated(offer.isPresent());
+            return offer;
+        }
+        final var start = System.nanoTime();
+        final var offer = strategy.apply(order);
+        metrics.evaluated(offer.isPresent(), System.nanoTime() - start);
+        return offer;
+    }
+
+    @Override
+    public Optional<FixedOffer> applyFixed(Order order, long value) {
+        if (!metrics.sample()) {
+            final var offer = strategy.applyFixed(order, value);
+            metrics.evaluated(offer.isPresent());
+            return offer;
+        }
+        final var start = System.nanoTime();
+        final var offer = strategy.applyFixed(order, value);
+        metrics.evaluated(offer.isPresent(), System.nanoTime() - start);
+        return offer;
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context, OfferSlot slot) {
+        if (!metrics.sample()) {
+            final var offer = strategy.evaluate(context, slot);
+            metrics.evaluated(offer);
+            return offer;
+        }
+        final var start = System.nanoTime();
+        final var offer = strategy.evaluate(context, slot);
+        metrics.evaluated(offer, System.nanoTime() - start);
+        return offer;
+    }
+
+    @Override
+    public long priceLowerBound(EvaluationContext context) {
+        return strategy.priceLowerBound(context);
+    }
+
+    @Override
+    public boolean fallback() {
+        return strategy.fallback();
+    }
+}
@@ -0,0 +1,251 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Remembers the offer chosen for orders of the same shape, i.e. of the same value with the same promotions, so that
+ * the strategies are not evaluated again for every one of the thousands of identical orders of a real order file.
+ *
+ * Balances only decrease while orders are settled, so a payment method which was too low for a strategy is still too
+ * low, and an offer which lost cannot get better. As long as strategies depend on balances only through checks whether
+ * a balance is at least some amount not greater than the order value, as all regular built-in strategies do, the
+ * remembered offer stays the chosen one while every payment method it uses still has the balance it had when the offer
+ * was evaluated, or still has at least the value of the order; this is the same rule
+ * {@link ParallelDiscountService} commits offers evaluated against a snapshot by. The balances of the payment methods
+ * of an offer thus act as its epoch: every lookup compares them, and payments taken from any other payment method
+ * never invalidate it. Offers of {@link DiscountStrategy#fallback() fallback} strategies may depend on the exact
+ * balances of all payment methods and are never remembered, and so are no offers while the points balance has too
+ * few decimal places for the threshold of partial point payments, see {@link #remembering()}.
+ *
+ * The cache is direct-mapped: every shape has a single entry, which an order of another shape with the same hash
+ * replaces. In the {@link me.wiktorlacki.promotions.money.FixedPoint} mode shapes are compared by their resolved
+ * promotions and offers are copied into preallocated slots, so lookups allocate nothing once an entry has held an
+ * offer. A cache is not thread-safe; {@link DiscountProcessor} keeps one per thread, next to its
+ * {@link EvaluationContext}.
+ */
+public final class OfferCache {
+
+    /**
+     * The number of entries if none is given.
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final PaymentService paymentService;
+    private final EngineMetrics metrics;
+    private final int mask;
+    private final boolean[] used;
+    private final int[] winners;
+    private int winner = -1;
+
+    // FixedPoint mode
+    private final long[] values;
+    private final boolean[] promoted;
+    private final int[][] promotions;
+    private final int[] promotionCounts;
+    private final OfferSlot[] offers;
+    private final long[][] balanceUnits;
+
+    // Decimal mode
+    private final BigDecimal[] decimalValues;
+    private final Object[] promotionLists;
+    private final Offer[] decimalOffers;
+    private final BigDecimal[][] balances;
+
+    /**
+     * @param paymentService the payment service the strategies read balances from
+     * @param size           the minimum number of entries, rounded up to a power of two
+     * @param metrics        the metrics to record lookups to, or null to record nothing
+     */
+    public OfferCache(PaymentService paymentService, int size, EngineMetrics metrics) {
+        if (size < 1) throw new IllegalArgumentException("Size must be positive: " + size);
+        this.paymentService = paymentService;
+        this.metrics = metrics;
+
+        final var entries = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+        this.mask = entries - 1;
+        this.used = new boolean[entries];
+        this.winners = new int[entries];
+
+        final var fixedPoint = paymentService.fixedPoint();
+        this.values = fixedPoint ? new long[entries] : null;
+        this.promoted = fixedPoint ? new boolean[entries] : null;
+        this.promotions = fixedPoint ? new int[entries][] : null;
+        this.promotionCounts = fixedPoint ? new int[entries] : null;
+        this.offers = fixedPoint ? new OfferSlot[entries] : null;
+        this.balanceUnits = fixedPoint ? new long[entries][] : null;
+        this.decimalValues = fixedPoint ? null : new BigDecimal[entries];
+        this.promotionLists = fixedPoint ? null : new Object[entries];
+        this.decimalOffers = fixedPoint ? null : new Offer[entries];
+        this.balances = fixedPoint ? null : new BigDecimal[entries][];
+    }
+
+    /**
+     * Returns the offer remembered for the order of the given context, if it is still the one the strategies would
+     * choose. The promotions of the context are resolved to compare the shape.
+     *
+     * @param context the context holding the order being evaluated
+     * @return the remembered offer, or null if the strategies have to be evaluated; overwritten by the next
+     *         {@link #put(EvaluationContext, OfferSlot, int)} of the same shape
+     */
+    public OfferSlot get(EvaluationContext context) {
+        final var value = context.value();
+        final var hasPromotions = context.hasPromotions();
+        final var resolved = context.promotions();
+        final var count = context.promotionCount();
+        final var entry = entry(value, hasPromotions, resolved, count);
+
+        if (!used[entry] || values[entry] != value || promoted[entry] != hasPromotions || promotionCounts[entry] != count
+                || !Arrays.equals(promotions[entry], 0, count, resolved, 0, count)) {
+            return miss();
+        }
+        final var offer = offers[entry];
+        final var recorded = balanceUnits[entry];
+        for (int i = 0; i < offer.size(); i++) {
+            final var balance = paymentService.balanceUnits(offer.method(i));
+            if (balance != recorded[i] && balance < value) return invalidated(entry);
+        }
+        hit(entry);
+        return offer;
+    }
+
+    /**
+     * Remembers the offer chosen for the order of the given context, together with the current balances of its
+     * payment methods, unless nothing may be remembered yet, see {@link #remembering()}.
+     *
+     * @param context the context holding the evaluated order
+     * @param offer   the chosen offer, produced by a strategy which is not a fallback
+     * @param winner  the position of the strategy which produced the offer
+     */
+    public void put(EvaluationContext context, OfferSlot offer, int winner) {
+        if (!remembering()) return;
+        final var value = context.value();
+        final var hasPromotions = context.hasPromotions();
+        final var resolved = context.promotions();
+        final var count = context.promotionCount();
+        final var entry = entry(value, hasPromotions, resolved, count);
+
+        if (promotions[entry] == null || promotions[entry].length < count) promotions[entry] = new int[count];
+        System.arraycopy(resolved, 0, promotions[entry], 0, count);
+        if (offers[entry] == null) offers[entry] = new OfferSlot();
+        offers[entry].copyFrom(offer);
+        if (balanceUnits[entry] == null || balanceUnits[entry].length < offer.size()) {
+            balanceUnits[entry] = new long[offer.size()];
+        }
+        for (int i = 0; i < offer.size(); i++) {
+            balanceUnits[entry][i] = paymentService.balanceUnits(offer.method(i));
+        }
+        values[entry] = value;
+        promoted[entry] = hasPromotions;
+        promotionCounts[entry] = count;
+        winners[entry] = winner;
+        used[entry] = true;
+    }
+
+    /**
+     * The {@link BigDecimal} variant of {@link #get(EvaluationContext)}. Shapes are compared by the value, including
+     * its scale, and the promotion identifiers of the order, so the promotions are not resolved at all.
+     *
+     * @param order the order being evaluated
+     * @return the remembered offer, or null if the strategies have to be evaluated
+     */
+    public Offer get(Order order) {
+        final var entry = entry(order.value(), order.promotions());
+        if (!used[entry] || !decimalValues[entry].equals(order.value())
+                || !Objects.equals(promotionLists[entry], order.promotions())) {
+            return miss();
+        }
+        final var offer = decimalOffers[entry];
+        final var recorded = balances[entry];
+        var i = 0;
+        for (final var paymentMethod : offer.payments().keySet()) {
+            final var balance = paymentService.balance(paymentMethod);
+            if (!balance.equals(recorded[i++]) && balance.compareTo(order.value()) < 0) return invalidated(entry);
+        }
+        hit(entry);
+        return offer;
+    }
+
+    /**
+     * The {@link BigDecimal} variant of {@link #put(EvaluationContext, OfferSlot, int)}.
+     *
+     * @param order  the evaluated order
+     * @param offer  the chosen offer, produced by a strategy which is not a fallback
+     * @param winner the position of the strategy which produced the offer
+     */
+    public void put(Order order, Offer offer, int winner) {
+        if (!remembering()) return;
+        final var entry = entry(order.value(), order.promotions());
+        final var recorded = new BigDecimal[offer.payments().size()];
+        var i = 0;
+        for (final var paymentMethod : offer.payments().keySet()) {
+            recorded[i++] = paymentService.balance(paymentMethod);
+        }
+        decimalValues[entry] = order.value();
+        promotionLists[entry] = order.promotions();
+        decimalOffers[entry] = offer;
+        balances[entry] = recorded;
+        winners[entry] = winner;
+        used[entry] = true;
+    }
+
+    /**
+     * @return the position of the strategy which produced the offer returned by the last successful lookup
+     */
+    public int winner() {
+        return winner;
+    }
+
+    /**
+     * The points ratio of {@link me.wiktorlacki.promotions.discount.impl.PartialPointsPayment} is rounded to the
+     * scale of the points balance, so while that scale is below the one of the threshold, e.g. for a limit of
+     * {@code 100}, spending points gives the balance decimal places and lowers the threshold. No offer is remembered
+     * until then.
+     */
+    private boolean remembering() {
+        final var scale = paymentService.balanceScale(paymentService.points());
+        return scale >= Constants.PARTIAL_POINTS_DISCOUNT_THRESHOLD.scale();
+    }
+
+    private void hit(int entry) {
+        winner = winners[entry];
+        if (metrics != null) metrics.offerCacheHit();
+    }
+
+    private <T> T miss() {
+        if (metrics != null) metrics.offerCacheMiss(false);
+        return null;
+    }
+
+    private <T> T invalidated(int entry) {
+        used[entry] = false;
+        if (metrics != null) metrics.offerCacheMiss(true);
+        return null;
+    }
+
+    private int entry(long value, boolean hasPromotions, int[] resolved, int count) {
+        var hash = Long.hashCode(value) * 31 + (hasPromotions ? 1 : 0);
+        for (int i = 0; i < count; i++) {
+            hash = hash * 31 + resolved[i];
+        }
+        return spread(hash);
+    }
+
+    private int entry(BigDecimal value, List<String> promotions) {
+        return spread(value.hashCode() * 31 + Objects.hashCode(promotions));
+    }
+
+    private int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
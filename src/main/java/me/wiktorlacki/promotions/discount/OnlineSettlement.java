@@ -0,0 +1,131 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.payment.ConcurrentPaymentService;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Settles orders as they arrive instead of collecting and sorting all of them first.
+ *
+ * Every order is settled immediately against the live balances, so the cost of settling one order depends only on
+ * the number of strategies and payment methods, not on how many orders were settled before. The running report is
+ * derived from the current balances and can be queried at any moment without revisiting settled orders.
+ *
+ * Unlike {@link DiscountService#calculate(List)}, orders are settled in arrival order, so the result may differ
+ * from a calculation over the whole day sorted by value. Settlement is thread-safe if the payment service is,
+ * see {@link #concurrent(List)}; a report taken while other threads settle orders may include some payments of
+ * an order in progress but not the others.
+ */
+public class OnlineSettlement {
+
+    private final PaymentService paymentService;
+    private final DiscountService discountService;
+    private final LongAdder settledOrders = new LongAdder();
+
+    /**
+     * @param paymentService  the payment service holding the live balances
+     * @param discountService the discount service settling orders against the same payment service
+     */
+    public OnlineSettlement(PaymentService paymentService, DiscountService discountService) {
+        this.paymentService = paymentService;
+        this.discountService = discountService;
+    }
+
+    /**
+     * Creates an online settlement evaluating the built-in discount strategies against the given payment service.
+     *
+     * @param paymentService the payment service holding the live balances
+     * @return a new online settlement
+     */
+    public static OnlineSettlement create(PaymentService paymentService) {
+        return new OnlineSettlement(paymentService, DiscountService.create(paymentService));
+    }
+
+    /**
+     * Creates an online settlement which may be called from many threads at once, e.g. one per checkout,
+     * backed by a {@link ConcurrentPaymentService} in the {@link MoneyMode#FIXED_POINT} mode.
+     *
+     * @param paymentMethods the payment methods with their limits
+     * @return a new thread-safe online settlement
+     */
+    public static OnlineSettlement concurrent(List<PaymentMethod> paymentMethods) {
+        return create(new ConcurrentPaymentService(new PaymentMethodsContainer(paymentMethods, MoneyMode.FIXED_POINT)));
+    }
+
+    /**
+     * Settles a single order against the live balances.
+     *
+     * @param order the order to settle
+     * @return the offer whose payments were taken
+     * @throws IllegalStateException if no valid discount strategy is found for the order, in which case
+     *                               no balance is changed
+     */
+    public Offer settle(Order order) {
+        final var offer = discountService.settleOffer(order);
+        settledOrders.increment();
+        return offer;
+    }
+
+    /**
+     * Like {@link #settle(Order)}, but sets an order which cannot be settled aside instead of throwing, so one bad
+     * order does not stop the orders arriving after it.
+     *
+     * @param order      the order to settle
+     * @param rejections receives the order if it cannot be settled; no balance is changed then
+     * @return the offer whose payments were taken, or null if the order was rejected
+     */
+    public Offer settleOrReject(Order order, Consumer<RejectedOrder> rejections) {
+        try {
+            return settle(order);
+        } catch (IllegalStateException | ArithmeticException e) {
+            rejections.accept(RejectedOrder.of(order, e));
+            return null;
+        }
+    }
+
+    /**
+     * Settles a micro-batch of orders which arrived together. Within the batch, orders are settled in ascending
+     * value order, like {@link DiscountService#calculate(List)} does for the whole list.
+     *
+     * @param orders the orders to settle; the list is not modified
+     * @return the applied offers, at the positions of their orders
+     * @throws IllegalStateException if no valid discount strategy is found for an order; the orders settled
+     *                               before it stay settled
+     */
+    public List<Offer> settle(List<Order> orders) {
+        final var offers = new Offer[orders.size()];
+        IntStream.range(0, orders.size())
+                .boxed()
+                .sorted(Comparator.comparing(orders::get, Comparator.comparing(Order::value)))
+                .forEachOrdered(i -> offers[i] = settle(orders.get(i)));
+        return Arrays.asList(offers);
+    }
+
+    /**
+     * Returns how much has been spent from each payment method by all orders settled so far.
+     *
+     * @return the running spending report
+     */
+    public SpendingReport report() {
+        return paymentService.generateReport();
+    }
+
+    /**
+     * @return the number of orders settled so far
+     */
+    public long settledOrders() {
+        return settledOrders.sum();
+    }
+}
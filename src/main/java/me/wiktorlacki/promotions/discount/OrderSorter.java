@@ -0,0 +1,115 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorts orders by ascending value in memory, the single ordering stage of {@link DiscountService#calculate(List)}.
+ *
+ * In the {@link MoneyMode#FIXED_POINT} mode the values are extracted once into a {@code long} array and sorted
+ * with an LSD radix sort, which runs in linear time and never compares a {@link java.math.BigDecimal}.
+ * When every value is a whole number of cents (as with every value read by the loaders), the keys are counted
+ * in cents, so the usual order values need two passes instead of three. In the {@link MoneyMode#DECIMAL} mode
+ * the orders are sorted with {@link Arrays#parallelSort(Object[], Comparator)}.
+ *
+ * Both sorts are stable, so orders with equal values keep their relative order, exactly like
+ * {@link List#sort(Comparator)} does.
+ */
+public final class OrderSorter {
+
+    private static final Comparator<Order> BY_VALUE = Comparator.comparing(Order::value);
+
+    /**
+     * Below this size the radix sort does not pay for its digit counters.
+     */
+    private static final int RADIX_THRESHOLD = 256;
+
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int RADIX_MASK = RADIX - 1;
+
+    private static final long UNITS_PER_CENT = 10_000;
+
+    private OrderSorter() {
+    }
+
+    /**
+     * Sorts the given orders by ascending value.
+     *
+     * @param orders the orders to sort; the list is not modified, so it may be immutable
+     * @param mode   the money mode the orders are settled in
+     * @return the sorted orders
+     */
+    public static List<Order> byValue(List<Order> orders, MoneyMode mode) {
+        final var array = orders.toArray(Order[]::new);
+        if (mode == MoneyMode.FIXED_POINT && array.length >= RADIX_THRESHOLD) {
+            try {
+                return Arrays.asList(radixSort(array));
+            } catch (ArithmeticException e) {
+                // A value without an exact fixed-point representation fails once it is settled,
+                // after the orders before it, so it is sorted by comparison like in the decimal mode.
+            }
+        }
+
+        Arrays.parallelSort(array, BY_VALUE);
+        return Arrays.asList(array);
+    }
+
+    /**
+     * @throws ArithmeticException if a value cannot be represented in the {@link FixedPoint} mode
+     */
+    private static Order[] radixSort(Order[] orders) {
+        final var n = orders.length;
+        var keys = new long[n];
+        var min = Long.MAX_VALUE;
+        var max = Long.MIN_VALUE;
+        var cents = true;
+        for (int i = 0; i < n; i++) {
+            final var key = orders[i].valueUnits();
+            keys[i] = key;
+            min = Math.min(min, key);
+            max = Math.max(max, key);
+            cents &= key % UNITS_PER_CENT == 0;
+        }
+
+        final var divisor = cents ? UNITS_PER_CENT : 1;
+        final var offset = min;
+        for (int i = 0; i < n; i++) {
+            keys[i] = (keys[i] - offset) / divisor;
+        }
+        final var bits = Long.SIZE - Long.numberOfLeadingZeros(Math.subtractExact(max, min) / divisor);
+
+        var items = orders;
+        var keysBuffer = new long[n];
+        var itemsBuffer = new Order[n];
+        final var counts = new int[RADIX + 1];
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) (keys[i] >>> shift & RADIX_MASK) + 1]++;
+            }
+            for (int digit = 0; digit < RADIX; digit++) {
+                counts[digit + 1] += counts[digit];
+            }
+            for (int i = 0; i < n; i++) {
+                final var position = counts[(int) (keys[i] >>> shift & RADIX_MASK)]++;
+                keysBuffer[position] = keys[i];
+                itemsBuffer[position] = items[i];
+            }
+
+            final var swapKeys = keys;
+            keys = keysBuffer;
+            keysBuffer = swapKeys;
+            final var swapItems = items;
+            items = itemsBuffer;
+            itemsBuffer = swapItems;
+        }
+
+        return items;
+    }
+}
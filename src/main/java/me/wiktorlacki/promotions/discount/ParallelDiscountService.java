@@ -0,0 +1,305 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.FixedOffer;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import me.wiktorlacki.promotions.trace.DecisionTrace;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A {@link DiscountService} which evaluates upcoming orders in parallel while settling them exactly like
+ * the sequential service does.
+ *
+ * Orders are processed in batches. At the start of a batch the current balances are copied into a snapshot and the
+ * best offer for every order of the batch is evaluated against that snapshot on a {@link ForkJoinPool}. The offers are
+ * then committed one by one, in ascending value order. An offer is committed as evaluated if every payment method
+ * it uses still has the balance it had in the snapshot, or still has at least the value of the order; otherwise
+ * the order is evaluated again against the current balances first.
+ *
+ * Balances only decrease while orders are settled, so a payment method which was too low for a strategy in the
+ * snapshot is still too low, and an offer which lost in the snapshot cannot get better. As long as strategies depend
+ * on balances only through checks whether a balance is at least some amount not greater than the order value, as all
+ * regular built-in strategies do, the report is identical to the one of {@link DiscountService}.
+ * {@link DiscountStrategy#fallback() Fallback} strategies may depend on the exact balances of all payment methods,
+ * so they are not evaluated against the snapshot and orders only they can pay are always evaluated again.
+ * How much of the work runs in parallel depends on how often orders of a batch drain the payment methods they
+ * compete for, see {@link #reevaluations()}.
+ *
+ * A {@link #trace(DecisionTrace) traced} calculation records the candidates of every order against the balances the
+ * order is settled with, which the evaluation against a snapshot does not see, so it settles the orders one by one
+ * like {@link DiscountService} does.
+ */
+public class ParallelDiscountService extends DiscountService {
+
+    /**
+     * The default number of orders evaluated against one snapshot of balances.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final PaymentService paymentService;
+    private final DiscountProcessor discountProcessor;
+    private final PaymentMethodsContainer snapshot;
+    private final DiscountProcessor snapshotProcessor;
+    private final EngineMetrics metrics;
+    private final EngineMetrics.StrategyMetrics[] snapshotStrategyMetrics;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private long reevaluations;
+
+    /**
+     * @param paymentService the payment service holding the balances to settle orders against
+     * @param strategies     creates the discount strategies reading balances from the given payment service;
+     *                       called once for the settled balances and once for the snapshot
+     * @param pool           the pool evaluating the offers of a batch
+     * @param batchSize      the number of orders evaluated against one snapshot of balances
+     */
+    public ParallelDiscountService(PaymentService paymentService,
+                                   Function<PaymentService, List<DiscountStrategy>> strategies,
+                                   ForkJoinPool pool, int batchSize) {
+        this(paymentService, strategies, pool, batchSize, null);
+    }
+
+    /**
+     * @param paymentService the payment service holding the balances to settle orders against
+     * @param strategies     creates the discount strategies reading balances from the given payment service;
+     *                       called once for the settled balances and once for the snapshot
+     * @param pool           the pool evaluating the offers of a batch
+     * @param batchSize      the number of orders evaluated against one snapshot of balances
+     * @param metrics        the metrics to record to, or null to record nothing; evaluations against the snapshot
+     *                       are speculative and not recorded, only the strategy of the offer committed for an order
+     *                       counts as chosen, and orders evaluated again count as conflicts
+     */
+    public ParallelDiscountService(PaymentService paymentService,
+                                   Function<PaymentService, List<DiscountStrategy>> strategies,
+                                   ForkJoinPool pool, int batchSize, EngineMetrics metrics) {
+        this(paymentService, new DiscountProcessor(paymentService, strategies.apply(paymentService), metrics),
+                strategies, pool, batchSize, metrics);
+    }
+
+    private ParallelDiscountService(PaymentService paymentService, DiscountProcessor discountProcessor,
+                                    Function<PaymentService, List<DiscountStrategy>> strategies,
+                                    ForkJoinPool pool, int batchSize, EngineMetrics metrics) {
+        super(discountProcessor, paymentService);
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+
+        this.paymentService = paymentService;
+        this.discountProcessor = discountProcessor;
+        this.metrics = metrics;
+        this.pool = pool;
+        this.batchSize = batchSize;
+
+        final var paymentMethods = new ArrayList<PaymentMethod>();
+        for (int i = 0; i < paymentService.all().size(); i++) {
+            paymentMethods.add(paymentService.paymentMethod(i));
+        }
+        this.snapshot = new PaymentMethodsContainer(paymentMethods,
+                paymentService.fixedPoint() ? MoneyMode.FIXED_POINT : MoneyMode.DECIMAL);
+        final var snapshotService = new PaymentService(snapshot);
+        this.snapshotProcessor = new DiscountProcessor(snapshotService, strategies.apply(snapshotService).stream()
+                .filter(strategy -> !strategy.fallback())
+                .toList());
+        if (metrics == null) {
+            this.snapshotStrategyMetrics = null;
+            return;
+        }
+        final var names = snapshotProcessor.strategyNames();
+        this.snapshotStrategyMetrics = new EngineMetrics.StrategyMetrics[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            snapshotStrategyMetrics[i] = metrics.strategy(names.get(i));
+        }
+    }
+
+    /**
+     * Creates a parallel discount service evaluating the built-in discount strategies on the common pool.
+     *
+     * @param paymentService the payment service holding the balances to settle orders against
+     * @return a new discount service
+     */
+    public static ParallelDiscountService create(PaymentService paymentService) {
+        return create(paymentService, null);
+    }
+
+    /**
+     * Creates a parallel discount service evaluating the built-in discount strategies on the common pool and
+     * recording what it does to the given metrics.
+     *
+     * @param paymentService the payment service holding the balances to settle orders against
+     * @param metrics        the metrics to record to, or null to record nothing
+     * @return a new discount service
+     */
+    public static ParallelDiscountService create(PaymentService paymentService, EngineMetrics metrics) {
+        return new ParallelDiscountService(paymentService, DiscountService::strategies,
+                ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE, metrics);
+    }
+
+    @Override
+    public SpendingReport calculate(List<Order> orders) {
+        if (trace() != null) return super.calculate(orders);
+        return settleAll(OrderSorter.byValue(orders, paymentService.mode()).iterator());
+    }
+
+    @Override
+    public SpendingReport calculateSorted(Stream<Order> sortedOrders) {
+        if (trace() != null) {
+            reevaluations = 0;
+            return super.calculateSorted(sortedOrders);
+        }
+        return settleAll(sortedOrders.iterator());
+    }
+
+    /**
+     * Returns how many orders of the last calculation could not use the offer evaluated against the snapshot
+     * and were evaluated again against the current balances.
+     *
+     * @return the number of re-evaluated orders
+     */
+    public long reevaluations() {
+        return reevaluations;
+    }
+
+    private SpendingReport settleAll(Iterator<Order> orders) {
+        reevaluations = 0;
+        final var checkpointer = checkpointer();
+        if (checkpointer != null) {
+            for (long i = 0; i < checkpointer.position() && orders.hasNext(); i++) {
+                orders.next();
+            }
+        }
+        final var batch = new ArrayList<Order>(batchSize);
+        final var fixedOffers = new FixedOffer[batchSize];
+        final var offers = new Offer[batchSize];
+        // The strategy of the snapshot processor which produced the offer at the same position.
+        final var winners = new int[batchSize];
+
+        while (orders.hasNext()) {
+            batch.clear();
+            while (batch.size() < batchSize && orders.hasNext()) {
+                batch.add(orders.next());
+            }
+            takeSnapshot();
+
+            if (paymentService.fixedPoint()) {
+                speculate(fixedOffers, winners, batch.size(),
+                        i -> snapshotProcessor.processFixed(batch.get(i)).orElse(null));
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        commitFixed(batch.get(i), fixedOffers[i], winners[i]);
+                    } catch (IllegalStateException | ArithmeticException e) {
+                        reject(batch.get(i), e);
+                    }
+                    if (checkpointer != null) checkpointer.settled(paymentService);
+                }
+            } else {
+                speculate(offers, winners, batch.size(), i -> snapshotProcessor.process(batch.get(i)).orElse(null));
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        commit(batch.get(i), offers[i], winners[i]);
+                    } catch (IllegalStateException | ArithmeticException e) {
+                        reject(batch.get(i), e);
+                    }
+                    if (checkpointer != null) checkpointer.settled(paymentService);
+                }
+            }
+        }
+
+        if (checkpointer != null) checkpointer.write(paymentService);
+        return paymentService.generateReport();
+    }
+
+    private <T> void speculate(T[] offers, int[] winners, int size, IntFunction<T> evaluation) {
+        pool.submit(() -> IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                offers[i] = evaluation.apply(i);
+                winners[i] = snapshotProcessor.winner();
+            } catch (RuntimeException e) {
+                // Evaluated again while committing, so the failure surfaces at the same order as in sequence.
+                offers[i] = null;
+            }
+        })).join();
+    }
+
+    private void commitFixed(Order order, FixedOffer offer, int winner) {
+        final var start = metrics == null ? 0 : System.nanoTime();
+        final var speculated = offer != null && stillValid(offer.methods(), order);
+        if (!speculated) {
+            reevaluate();
+            offer = discountProcessor.processFixed(order).orElseThrow(() -> failure(order));
+        }
+        offer.forEachPayment(paymentService::takeUnits);
+        if (journal() != null) journal().append(order, offer);
+        if (metrics != null) {
+            // An offer evaluated again was counted as chosen by the processor.
+            if (speculated) snapshotStrategyMetrics[winner].chosen();
+            offer.forEachPayment((method, amount) -> taken(method, amount > 0));
+            metrics.settled(System.nanoTime() - start);
+        }
+    }
+
+    private void commit(Order order, Offer offer, int winner) {
+        final var start = metrics == null ? 0 : System.nanoTime();
+        final var speculated = offer != null
+                && stillValid(offer.payments().keySet().toArray(PaymentMethod[]::new), order);
+        if (!speculated) {
+            reevaluate();
+            offer = discountProcessor.process(order).orElseThrow(() -> failure(order));
+        }
+        offer.payments().forEach(paymentService::take);
+        if (journal() != null) journal().append(order, offer);
+        if (metrics != null) {
+            if (speculated) snapshotStrategyMetrics[winner].chosen();
+            offer.payments().forEach((method, amount) -> taken(method, amount.signum() > 0));
+            metrics.settled(System.nanoTime() - start);
+        }
+    }
+
+    private void reevaluate() {
+        reevaluations++;
+        if (metrics != null) metrics.conflict();
+    }
+
+    private IllegalStateException failure(Order order) {
+        if (metrics != null) metrics.failed();
+        return new IllegalStateException("Could not find proper discount strategy for order: " + order);
+    }
+
+    private boolean stillValid(PaymentMethod[] paymentMethods, Order order) {
+        for (final var paymentMethod : paymentMethods) {
+            final var index = paymentMethod.index();
+            if (paymentService.fixedPoint()) {
+                final var balance = paymentService.balanceUnits(paymentMethod);
+                if (balance != snapshot.balanceUnits(index) && balance < order.valueUnits()) return false;
+            } else {
+                final var balance = paymentService.balance(paymentMethod);
+                if (!balance.equals(snapshot.balance(index)) && balance.compareTo(order.value()) < 0) return false;
+            }
+        }
+        return true;
+    }
+
+    private void takeSnapshot() {
+        for (int i = 0; i < snapshot.size(); i++) {
+            final var paymentMethod = paymentService.paymentMethod(i);
+            if (paymentService.fixedPoint()) {
+                final var balance = paymentService.balanceUnits(paymentMethod);
+                if (balance != snapshot.balanceUnits(i)) snapshot.balanceUnits(i, balance);
+            } else {
+                final var balance = paymentService.balance(paymentMethod);
+                if (!balance.equals(snapshot.balance(i))) snapshot.balance(paymentMethod, balance);
+            }
+        }
+    }
+}
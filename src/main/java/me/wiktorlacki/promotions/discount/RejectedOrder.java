@@ -0,0 +1,22 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.Order;
+
+/**
+ * An order which could not be settled and was set aside instead of stopping the calculation,
+ * see {@link DiscountService#rejectTo(java.util.function.Consumer)}. None of its payments were taken.
+ *
+ * @param order  the order
+ * @param reason why the order could not be settled
+ */
+public record RejectedOrder(Order order, String reason) {
+
+    /**
+     * @param order   the order
+     * @param failure the exception which stopped settling the order
+     * @return the rejection of the order
+     */
+    public static RejectedOrder of(Order order, RuntimeException failure) {
+        return new RejectedOrder(order, failure.getMessage());
+    }
+}
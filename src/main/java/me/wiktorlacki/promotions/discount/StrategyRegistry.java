@@ -0,0 +1,75 @@
+package me.wiktorlacki.promotions.discount;
+
+import me.wiktorlacki.promotions.discount.impl.FullCardPayment;
+import me.wiktorlacki.promotions.discount.impl.FullPointsPayment;
+import me.wiktorlacki.promotions.discount.impl.PartialPointsPayment;
+import me.wiktorlacki.promotions.discount.impl.SplitPayment;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * The discount strategies every discount service evaluates: the built-in ones followed by those of the
+ * {@link DiscountStrategyProvider}s found with a {@link ServiceLoader}.
+ *
+ * The built-in strategies always come first and in the same order, as the order of the strategies decides
+ * between offers with equal prices. Providers are looked up once, when the registry is loaded.
+ */
+public final class StrategyRegistry {
+
+    private static final List<DiscountStrategyProvider> BUILT_IN = List.of(
+            FullPointsPayment::new,
+            PartialPointsPayment::new,
+            FullCardPayment::new,
+            SplitPayment::new
+    );
+
+    private static final StrategyRegistry DEFAULT = load(StrategyRegistry.class.getClassLoader());
+
+    private final List<DiscountStrategyProvider> providers;
+
+    private StrategyRegistry(List<DiscountStrategyProvider> providers) {
+        this.providers = providers;
+    }
+
+    /**
+     * @return the registry of the class path the application was started with
+     */
+    public static StrategyRegistry defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Looks up the providers visible to a class loader.
+     *
+     * @param classLoader the class loader to search for provider configuration files
+     * @return a registry of the built-in strategies and the providers found
+     * @throws java.util.ServiceConfigurationError if a provider cannot be loaded or instantiated
+     */
+    public static StrategyRegistry load(ClassLoader classLoader) {
+        final var providers = new ArrayList<>(BUILT_IN);
+        ServiceLoader.load(DiscountStrategyProvider.class, classLoader).forEach(providers::add);
+        return new StrategyRegistry(List.copyOf(providers));
+    }
+
+    /**
+     * Creates the strategies, in the order in which they are evaluated.
+     *
+     * @param paymentService the payment service the strategies read balances from
+     * @return a new list of strategies
+     */
+    public List<DiscountStrategy> strategies(PaymentService paymentService) {
+        return providers.stream()
+                .map(provider -> provider.create(paymentService))
+                .toList();
+    }
+
+    /**
+     * @return the number of strategies, the built-in ones included
+     */
+    public int size() {
+        return providers.size();
+    }
+}
@@ -1,9 +1,13 @@
 package me.wiktorlacki.promotions.discount.impl;
 
 import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.offer.FixedOffer;
 import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
 import me.wiktorlacki.promotions.Order;
 import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.discount.EvaluationContext;
 import me.wiktorlacki.promotions.payment.PaymentMethod;
 import me.wiktorlacki.promotions.payment.PaymentService;
 
@@ -56,4 +60,49 @@ public class FullCardPayment implements DiscountStrategy {
         return Optional.of(offer);
     }
 
+    @Override
+    public Optional<FixedOffer> applyFixed(Order order, long value) {
+        return new EvaluationContext(paymentService).evaluate(this, order, value);
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context, OfferSlot slot) {
+        final var value = context.value();
+        var index = PaymentMethod.UNINDEXED;
+        if (context.hasPromotions()) {
+            index = paymentService.findBestDiscountPaymentMethodIndexWithBalanceUnitsGreaterThan(
+                    context.promotions(), context.promotionCount(), value);
+        }
+        if (index == PaymentMethod.UNINDEXED) {
+            index = paymentService.findPaymentMethodIndexWithBalanceUnitsGreaterThan(value);
+        }
+
+        if (index == PaymentMethod.UNINDEXED) return false;
+
+        final var paymentMethod = paymentService.paymentMethod(index);
+        var discount = 0L;
+        if (context.isPromotion(index)) {
+            discount = paymentService.discountRate(paymentMethod);
+        }
+
+        final var discountedPrice = value - FixedPoint.applyRate(value, discount);
+
+        slot.single("FULL_CARD", discountedPrice, paymentMethod, discountedPrice);
+        return true;
+    }
+
+    /**
+     * The price with the highest discount among the promotions of the order, whichever of them has enough balance.
+     */
+    @Override
+    public long priceLowerBound(EvaluationContext context) {
+        final var promotions = context.promotions();
+        var rate = 0L;
+        for (int i = 0; i < context.promotionCount(); i++) {
+            rate = Math.max(rate, paymentService.discountRate(promotions[i]));
+        }
+        final var value = context.value();
+        return value - FixedPoint.applyRateRoundingUp(value, rate);
+    }
+
 }
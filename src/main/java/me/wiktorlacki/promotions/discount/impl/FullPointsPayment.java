@@ -1,9 +1,13 @@
 package me.wiktorlacki.promotions.discount.impl;
 
 import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.offer.FixedOffer;
 import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
 import me.wiktorlacki.promotions.Order;
 import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.discount.EvaluationContext;
 import me.wiktorlacki.promotions.payment.PaymentService;
 
 import java.util.Map;
@@ -32,4 +36,31 @@ public class FullPointsPayment implements DiscountStrategy {
         final var offer = Offer.make("FULL_POINTS", discountedPrice, Map.of(pointsMethod, discountedPrice));
         return Optional.of(offer);
     }
+
+    @Override
+    public Optional<FixedOffer> applyFixed(Order order, long value) {
+        return new EvaluationContext(paymentService).evaluate(this, order, value);
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context, OfferSlot slot) {
+        final var value = context.value();
+        final var pointsMethod = paymentService.points();
+        final var discountedPrice = value - FixedPoint.applyRate(value, paymentService.discountRate(pointsMethod));
+        final var pointsBalance = paymentService.balanceUnits(pointsMethod);
+
+        if (pointsBalance < discountedPrice) return false;
+
+        slot.single("FULL_POINTS", discountedPrice, pointsMethod, discountedPrice);
+        return true;
+    }
+
+    /**
+     * The exact price of the offer, which only depends on the points discount.
+     */
+    @Override
+    public long priceLowerBound(EvaluationContext context) {
+        final var value = context.value();
+        return value - FixedPoint.applyRateRoundingUp(value, paymentService.discountRate(paymentService.points()));
+    }
 }
@@ -2,9 +2,14 @@ package me.wiktorlacki.promotions.discount.impl;
 
 import lombok.RequiredArgsConstructor;
 import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.offer.FixedOffer;
 import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
 import me.wiktorlacki.promotions.Order;
 import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.discount.EvaluationContext;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
 import me.wiktorlacki.promotions.payment.PaymentService;
 
 import java.math.RoundingMode;
@@ -22,6 +27,9 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class PartialPointsPayment implements DiscountStrategy {
 
+    private static final long DISCOUNT_THRESHOLD_RATE = FixedPoint.rate(Constants.PARTIAL_POINTS_DISCOUNT_THRESHOLD);
+    private static final long PAYMENT_DISCOUNT_RATE = FixedPoint.rate(Constants.PARTIAL_POINTS_PAYMENT_DISCOUNT);
+
     private final PaymentService paymentService;
 
     @Override
@@ -46,4 +54,46 @@ public class PartialPointsPayment implements DiscountStrategy {
 
         return Optional.of(offer);
     }
+
+    @Override
+    public Optional<FixedOffer> applyFixed(Order order, long value) {
+        return new EvaluationContext(paymentService).evaluate(this, order, value);
+    }
+
+    /**
+     * The points ratio is rounded down to the {@link PaymentService#balanceScale(PaymentMethod) scale} of the points
+     * balance, like the {@link java.math.BigDecimal} variant does, so e.g. a limit of {@code 100} only covers the
+     * threshold of orders of at most that value until points are spent.
+     */
+    @Override
+    public boolean evaluate(EvaluationContext context, OfferSlot slot) {
+        final var value = context.value();
+        final var pointsMethod = paymentService.points();
+        final var points = paymentService.balanceUnits(pointsMethod);
+        final var percentage = FixedPoint.ratio(points, value, paymentService.balanceScale(pointsMethod));
+
+        if (percentage < DISCOUNT_THRESHOLD_RATE) return false;
+
+        final var discount = FixedPoint.applyRate(value, PAYMENT_DISCOUNT_RATE);
+        final var discountedPrice = value - discount;
+        final var pointsSpent = discount;
+        final var priceLeft = discountedPrice - pointsSpent;
+        final var remainingPaymentMethod = paymentService.findPaymentMethodIndexWithBalanceUnitsGreaterThan(priceLeft);
+
+        if (remainingPaymentMethod == PaymentMethod.UNINDEXED) return false;
+
+        slot.pair("PARTIAL_POINTS", discountedPrice,
+                pointsMethod, pointsSpent,
+                paymentService.paymentMethod(remainingPaymentMethod), priceLeft);
+        return true;
+    }
+
+    /**
+     * The exact price of the offer, which does not depend on any payment method.
+     */
+    @Override
+    public long priceLowerBound(EvaluationContext context) {
+        final var value = context.value();
+        return value - FixedPoint.applyRateRoundingUp(value, PAYMENT_DISCOUNT_RATE);
+    }
 }
@@ -0,0 +1,188 @@
+package me.wiktorlacki.promotions.discount.impl;
+
+import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.offer.FixedOffer;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.discount.EvaluationContext;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * A fallback {@link DiscountStrategy} paying an order with as many points as available and splitting the rest
+ * across several payment methods, for orders no single payment method can cover anymore.
+ *
+ * If the points cover at least {@link Constants#PARTIAL_POINTS_DISCOUNT_THRESHOLD} of the order value, the
+ * {@link Constants#PARTIAL_POINTS_PAYMENT_DISCOUNT} is applied like in {@link PartialPointsPayment}; otherwise the
+ * full value is paid. Promotions do not apply, as they require paying the whole order with one payment method.
+ *
+ * The remainder is allocated greedily: while no payment method covers the rest, the one with the largest balance
+ * is drained, and the rest is then paid with the method with the smallest balance covering it. This uses as few
+ * payment methods as possible and keeps the large balances for later orders. Ties are resolved by payment method
+ * index, so both money modes choose the same methods.
+ */
+@RequiredArgsConstructor
+public class SplitPayment implements DiscountStrategy {
+
+    private static final long DISCOUNT_THRESHOLD_RATE = FixedPoint.rate(Constants.PARTIAL_POINTS_DISCOUNT_THRESHOLD);
+    private static final long PAYMENT_DISCOUNT_RATE = FixedPoint.rate(Constants.PARTIAL_POINTS_PAYMENT_DISCOUNT);
+
+    private final PaymentService paymentService;
+
+    @Override
+    public Optional<Offer> apply(Order order) {
+        final var pointsMethod = paymentService.points();
+        final var points = paymentService.balance(pointsMethod);
+        final var value = order.value();
+        final var percentage = points.divide(value, RoundingMode.DOWN);
+
+        final var price = percentage.compareTo(Constants.PARTIAL_POINTS_DISCOUNT_THRESHOLD) < 0
+                ? value
+                : value.subtract(value.multiply(Constants.PARTIAL_POINTS_PAYMENT_DISCOUNT));
+        final var pointsSpent = points.min(price);
+        var remaining = price.subtract(pointsSpent);
+
+        // Paying everything with points is left to FullPointsPayment.
+        if (remaining.signum() <= 0) return Optional.empty();
+
+        var available = BigDecimal.ZERO;
+        for (int i = 0; i < paymentService.size(); i++) {
+            final var method = paymentService.paymentMethod(i);
+            if (method != pointsMethod) available = available.add(paymentService.balance(method));
+        }
+        if (available.compareTo(remaining) < 0) return Optional.empty();
+
+        final var payments = new LinkedHashMap<PaymentMethod, BigDecimal>();
+        if (pointsSpent.signum() > 0) payments.put(pointsMethod, pointsSpent);
+
+        var previous = PaymentMethod.UNINDEXED;
+        var previousBalance = BigDecimal.ZERO;
+        while (true) {
+            var largest = PaymentMethod.UNINDEXED;
+            var largestBalance = BigDecimal.ZERO;
+            var covering = PaymentMethod.UNINDEXED;
+            var coveringBalance = BigDecimal.ZERO;
+            for (int i = 0; i < paymentService.size(); i++) {
+                final var method = paymentService.paymentMethod(i);
+                if (method == pointsMethod) continue;
+                final var balance = paymentService.balance(method);
+                if (balance.signum() <= 0 || !after(balance, i, previousBalance, previous)) continue;
+
+                if (largest == PaymentMethod.UNINDEXED || balance.compareTo(largestBalance) > 0) {
+                    largest = i;
+                    largestBalance = balance;
+                }
+                if (balance.compareTo(remaining) >= 0
+                        && (covering == PaymentMethod.UNINDEXED || balance.compareTo(coveringBalance) < 0)) {
+                    covering = i;
+                    coveringBalance = balance;
+                }
+            }
+
+            if (covering != PaymentMethod.UNINDEXED) {
+                payments.put(paymentService.paymentMethod(covering), remaining);
+                return Optional.of(Offer.make("SPLIT", price, payments));
+            }
+            // Balances taken by another thread since they were summed up.
+            if (largest == PaymentMethod.UNINDEXED) return Optional.empty();
+            payments.put(paymentService.paymentMethod(largest), largestBalance);
+            remaining = remaining.subtract(largestBalance);
+            previous = largest;
+            previousBalance = largestBalance;
+        }
+    }
+
+    @Override
+    public Optional<FixedOffer> applyFixed(Order order, long value) {
+        return new EvaluationContext(paymentService).evaluate(this, order, value);
+    }
+
+    @Override
+    public boolean evaluate(EvaluationContext context, OfferSlot slot) {
+        final var value = context.value();
+        final var pointsMethod = paymentService.points();
+        final var points = paymentService.balanceUnits(pointsMethod);
+        final var percentage = FixedPoint.ratio(points, value, paymentService.balanceScale(pointsMethod));
+
+        final var price = percentage < DISCOUNT_THRESHOLD_RATE
+                ? value
+                : value - FixedPoint.applyRate(value, PAYMENT_DISCOUNT_RATE);
+        final var pointsSpent = Math.min(points, price);
+        var remaining = price - pointsSpent;
+
+        if (remaining <= 0) return false;
+
+        var available = 0L;
+        for (int i = 0; i < paymentService.size(); i++) {
+            final var method = paymentService.paymentMethod(i);
+            if (method != pointsMethod) available += paymentService.balanceUnits(method);
+        }
+        if (available < remaining) return false;
+
+        slot.begin("SPLIT", price);
+        if (pointsSpent > 0) slot.add(pointsMethod, pointsSpent);
+
+        var previous = PaymentMethod.UNINDEXED;
+        var previousBalance = 0L;
+        while (true) {
+            var largest = PaymentMethod.UNINDEXED;
+            var largestBalance = 0L;
+            var covering = PaymentMethod.UNINDEXED;
+            var coveringBalance = 0L;
+            for (int i = 0; i < paymentService.size(); i++) {
+                final var method = paymentService.paymentMethod(i);
+                if (method == pointsMethod) continue;
+                final var balance = paymentService.balanceUnits(method);
+                if (balance <= 0 || !after(balance, i, previousBalance, previous)) continue;
+
+                if (largest == PaymentMethod.UNINDEXED || balance > largestBalance) {
+                    largest = i;
+                    largestBalance = balance;
+                }
+                if (balance >= remaining && (covering == PaymentMethod.UNINDEXED || balance < coveringBalance)) {
+                    covering = i;
+                    coveringBalance = balance;
+                }
+            }
+
+            if (covering != PaymentMethod.UNINDEXED) {
+                slot.add(paymentService.paymentMethod(covering), remaining);
+                return true;
+            }
+            if (largest == PaymentMethod.UNINDEXED) return false;
+            slot.add(paymentService.paymentMethod(largest), largestBalance);
+            remaining -= largestBalance;
+            previous = largest;
+            previousBalance = largestBalance;
+        }
+    }
+
+    @Override
+    public boolean fallback() {
+        return true;
+    }
+
+    /**
+     * Returns whether a payment method comes after the previously drained one in the order of descending
+     * balances and ascending indices, i.e. whether it is still unused.
+     */
+    private static boolean after(BigDecimal balance, int index, BigDecimal previousBalance, int previous) {
+        if (previous == PaymentMethod.UNINDEXED) return true;
+        final var comparison = balance.compareTo(previousBalance);
+        return comparison < 0 || comparison == 0 && index > previous;
+    }
+
+    private static boolean after(long balance, int index, long previousBalance, int previous) {
+        if (previous == PaymentMethod.UNINDEXED) return true;
+        return balance < previousBalance || balance == previousBalance && index > previous;
+    }
+}
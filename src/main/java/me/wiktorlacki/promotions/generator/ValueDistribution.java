@@ -0,0 +1,18 @@
+package me.wiktorlacki.promotions.generator;
+
+/**
+ * The distribution of generated order values.
+ */
+public enum ValueDistribution {
+
+    /**
+     * Every value between one cent and the maximum value is equally likely.
+     */
+    UNIFORM,
+
+    /**
+     * Log-normally distributed values with a median of a twentieth of the maximum value, capped at the maximum:
+     * many small orders and a long tail of large ones, like a typical shop.
+     */
+    SKEWED
+}
@@ -0,0 +1,126 @@
+package me.wiktorlacki.promotions.generator;
+
+import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic orders and payment methods for benchmarks and load tests.
+ *
+ * The output is fully determined by the {@link WorkloadSettings}: the same generator always produces the same
+ * payment methods, and {@link #orders()} always produces the same orders in the same order. Orders are generated
+ * lazily, so arbitrarily many of them can be consumed without holding them in memory.
+ *
+ * With the default settings limits are generous enough that every order can always be paid with a single card,
+ * so the generated workload never makes {@link me.wiktorlacki.promotions.discount.DiscountService} fail.
+ */
+@RequiredArgsConstructor
+public class WorkloadGenerator {
+
+    private static final int NO_PROMOTIONS_PERCENT = 20;
+    private static final int MAX_DISCOUNT_PERCENT = 30;
+    private static final double SKEWED_MEDIAN_FRACTION = 1.0 / 20;
+
+    private final WorkloadSettings settings;
+
+    public WorkloadGenerator(long seed, long orders, int paymentMethods) {
+        this(WorkloadSettings.defaults(seed, orders, paymentMethods));
+    }
+
+    /**
+     * Generates the payment methods: the points method followed by the cards, named {@code CARD0}, {@code CARD1}...
+     *
+     * @return the payment methods
+     */
+    public List<PaymentMethod> paymentMethods() {
+        final var random = new SplittableRandom(settings.seed());
+        final var cards = cards();
+        final var maxCents = maxValueCents();
+        final var worstCaseTotal = (double) settings.orders() * maxCents;
+        final var pointsCents = (long) (worstCaseTotal * settings.pointsFactor());
+        final var cardCents = (long) (worstCaseTotal * settings.limitFactor() / cards) + maxCents;
+
+        final var paymentMethods = new ArrayList<PaymentMethod>(cards + 1);
+        paymentMethods.add(new PaymentMethod(Constants.POINTS_METHOD, percent(random), cents(pointsCents)));
+        for (int i = 0; i < cards; i++) {
+            paymentMethods.add(new PaymentMethod(cardId(i), percent(random), cents(cardCents)));
+        }
+        return paymentMethods;
+    }
+
+    /**
+     * Generates the orders lazily, named {@code ORDER0}, {@code ORDER1}... Values have two decimal places.
+     *
+     * @return a sequential stream of the configured number of orders
+     */
+    public Stream<Order> orders() {
+        // Orders use a different stream of random numbers than payment methods, so they do not depend on each other.
+        final var random = new SplittableRandom(settings.seed()).split();
+        final var maxCents = maxValueCents();
+        // Card numbers in a random order; promotions are drawn from its front, so an order never lists a card twice.
+        final var deck = new int[cards()];
+        for (int i = 0; i < deck.length; i++) {
+            deck[i] = i;
+        }
+
+        return LongStream.range(0, settings.orders())
+                .mapToObj(i -> new Order("ORDER" + i, cents(valueCents(random, maxCents)), promotions(random, deck)));
+    }
+
+    private long valueCents(SplittableRandom random, long maxCents) {
+        if (settings.valueDistribution() == ValueDistribution.UNIFORM) {
+            return random.nextLong(maxCents) + 1;
+        }
+
+        final var median = maxCents * SKEWED_MEDIAN_FRACTION;
+        final var value = (long) (median * Math.exp(random.nextGaussian()));
+        return Math.max(1, Math.min(maxCents, value));
+    }
+
+    /**
+     * Draws distinct cards with a partial Fisher-Yates shuffle of the deck. The deck stays a permutation of all
+     * cards, so it does not have to be reset between orders.
+     */
+    private List<String> promotions(SplittableRandom random, int[] deck) {
+        if (random.nextInt(100) < NO_PROMOTIONS_PERCENT) return null;
+
+        final var count = Math.min(random.nextInt(settings.maxPromotions() + 1), deck.length);
+        final var promotions = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            final var j = i + random.nextInt(deck.length - i);
+            final var card = deck[j];
+            deck[j] = deck[i];
+            deck[i] = card;
+            promotions.add(cardId(card));
+        }
+        return promotions;
+    }
+
+    private int cards() {
+        return settings.paymentMethods() - 1;
+    }
+
+    private long maxValueCents() {
+        return settings.maxValue().movePointRight(2).longValue();
+    }
+
+    private static String cardId(int card) {
+        return "CARD" + card;
+    }
+
+    private static BigDecimal percent(SplittableRandom random) {
+        return BigDecimal.valueOf(random.nextInt(MAX_DISCOUNT_PERCENT + 1), 2);
+    }
+
+    private static BigDecimal cents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,50 @@
+package me.wiktorlacki.promotions.generator;
+
+import java.math.BigDecimal;
+
+/**
+ * The shape of a generated workload.
+ *
+ * @param seed                the seed of the random number generator; equal settings always produce equal workloads
+ * @param orders              the number of orders
+ * @param paymentMethods      the number of payment methods, including points
+ * @param valueDistribution   the distribution of order values
+ * @param maxValue            the maximum value of an order
+ * @param maxPromotions       the maximum number of promotions of an order; the number is uniformly distributed
+ *                            between zero and this value, capped at the number of cards since an order never lists
+ *                            the same card twice, and a fifth of all orders has no promotions field at all
+ * @param pointsFactor        the points limit, as a fraction of {@code orders * maxValue}
+ * @param limitFactor         the sum of all card limits, as a fraction of {@code orders * maxValue}; every card also
+ *                            gets {@code maxValue} on top, so with a factor of at least 1 every order can always be
+ *                            paid, while smaller factors make cards scarce and may make the workload unpayable
+ */
+public record WorkloadSettings(long seed, long orders, int paymentMethods, ValueDistribution valueDistribution,
+                               BigDecimal maxValue, int maxPromotions, double pointsFactor, double limitFactor) {
+
+    public static final ValueDistribution DEFAULT_VALUE_DISTRIBUTION = ValueDistribution.UNIFORM;
+    public static final BigDecimal DEFAULT_MAX_VALUE = new BigDecimal("1000.00");
+    public static final int DEFAULT_MAX_PROMOTIONS = 3;
+    public static final double DEFAULT_POINTS_FACTOR = 0.01;
+    public static final double DEFAULT_LIMIT_FACTOR = 1;
+
+    public WorkloadSettings {
+        if (orders < 0) throw new IllegalArgumentException("Number of orders must not be negative");
+        if (paymentMethods < 2) throw new IllegalArgumentException("At least points and one card are required");
+        if (maxValue.compareTo(new BigDecimal("0.01")) < 0) throw new IllegalArgumentException("Maximum value must be at least 0.01");
+        if (maxPromotions < 0) throw new IllegalArgumentException("Maximum number of promotions must not be negative");
+        if (pointsFactor < 0 || limitFactor < 0) throw new IllegalArgumentException("Limit factors must not be negative");
+    }
+
+    /**
+     * Creates settings with the default shape.
+     *
+     * @param seed           the seed of the random number generator
+     * @param orders         the number of orders
+     * @param paymentMethods the number of payment methods, including points
+     * @return the settings
+     */
+    public static WorkloadSettings defaults(long seed, long orders, int paymentMethods) {
+        return new WorkloadSettings(seed, orders, paymentMethods, DEFAULT_VALUE_DISTRIBUTION, DEFAULT_MAX_VALUE,
+                DEFAULT_MAX_PROMOTIONS, DEFAULT_POINTS_FACTOR, DEFAULT_LIMIT_FACTOR);
+    }
+}
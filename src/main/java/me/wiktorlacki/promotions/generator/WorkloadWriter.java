@@ -0,0 +1,78 @@
+package me.wiktorlacki.promotions.generator;
+
+import com.google.gson.stream.JsonWriter;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes orders and payment methods as JSON in the format read by {@link me.wiktorlacki.promotions.loader.JSONLoader}.
+ *
+ * Every element is written as soon as it is produced, so the size of the output is not limited by memory.
+ */
+public class WorkloadWriter {
+
+    /**
+     * Writes orders to a file, replacing it if it exists.
+     *
+     * @param path   the file to write
+     * @param orders the orders, consumed in order
+     * @return the number of orders written
+     * @throws IOException if the file cannot be written
+     */
+    public long writeOrders(Path path, Stream<Order> orders) throws IOException {
+        var count = 0L;
+        try (var writer = new JsonWriter(Files.newBufferedWriter(path))) {
+            writer.setIndent("  ");
+            writer.beginArray();
+            for (final Iterator<Order> it = orders.iterator(); it.hasNext(); count++) {
+                writeOrder(writer, it.next());
+            }
+            writer.endArray();
+        }
+        return count;
+    }
+
+    /**
+     * Writes payment methods to a file, replacing it if it exists. Discounts are written in percent,
+     * like in hand-written input files.
+     *
+     * @param path           the file to write
+     * @param paymentMethods the payment methods
+     * @throws IOException if the file cannot be written
+     */
+    public void writePaymentMethods(Path path, List<PaymentMethod> paymentMethods) throws IOException {
+        try (var writer = new JsonWriter(Files.newBufferedWriter(path))) {
+            writer.setIndent("  ");
+            writer.beginArray();
+            for (final var paymentMethod : paymentMethods) {
+                writer.beginObject();
+                writer.name("id").value(paymentMethod.id());
+                writer.name("discount").value(paymentMethod.discount().movePointRight(2).stripTrailingZeros().toPlainString());
+                writer.name("limit").value(paymentMethod.limit().toPlainString());
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+    }
+
+    private static void writeOrder(JsonWriter writer, Order order) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(order.id());
+        writer.name("value").value(order.value().toPlainString());
+        if (order.promotions() != null) {
+            writer.name("promotions").beginArray();
+            for (final var promotion : order.promotions()) {
+                writer.value(promotion);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+}
@@ -0,0 +1,226 @@
+package me.wiktorlacki.promotions.journal;
+
+import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32C;
+
+/**
+ * Rebuilds the balances and the spending report of a calculation from its {@link SettlementJournal} alone.
+ *
+ * The journal is little-endian. Its header holds the {@link SettlementJournal#MAGIC magic}, the
+ * {@link SettlementJournal#VERSION version}, the money mode as one byte, the number of payment methods and, for every
+ * payment method in the order of its index, the id (a length and UTF-8 bytes) followed by the discount and the limit.
+ * Every record consists of the length of its payload, the CRC-32C of the payload and the payload: the id of the order,
+ * the number of payments as two bytes and, for every payment, the index of the payment method as two unsigned bytes
+ * and the amount. Amounts are {@code long}s in the {@link FixedPoint} mode; decimals, here and in the header, are
+ * the length of the unscaled value as two bytes, the scale and the unscaled value as a two's-complement big-endian
+ * byte array. A missing id has the length -1, a missing decimal the length -1 and no scale.
+ *
+ * The journal ends at the end of the file, at a record of length zero, which is what remains of the mapped region
+ * after a crashed process, or at a record which does not match its checksum, which is what a crashed machine may
+ * leave of the records appended after the last commit. The replay stops there and tells that the journal was not
+ * {@link #complete() complete}.
+ *
+ * The payments are applied to plain balance arrays while the journal is read through a memory mapping, so replaying
+ * is bound by reading the file.
+ */
+public final class JournalReplay {
+
+    private final PaymentService paymentService;
+    private final long settlements;
+    private final boolean complete;
+
+    private JournalReplay(PaymentService paymentService, long settlements, boolean complete) {
+        this.paymentService = paymentService;
+        this.settlements = settlements;
+        this.complete = complete;
+    }
+
+    /**
+     * Replays every settlement of the given journal.
+     *
+     * @param file the journal
+     * @return the replayed journal
+     * @throws IOException if the file cannot be read, is not a journal or refers to payment methods it does not list
+     */
+    public static JournalReplay read(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Reader(channel).replay();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt journal: " + file, e);
+        }
+    }
+
+    /**
+     * Returns a payment service holding the balances left after all replayed settlements.
+     *
+     * @return the rebuilt payment service
+     */
+    public PaymentService paymentService() {
+        return paymentService;
+    }
+
+    /**
+     * Returns the report of the journaled calculation, equal to the report the calculation itself produced.
+     *
+     * @return the rebuilt spending report
+     */
+    public SpendingReport report() {
+        return paymentService.generateReport();
+    }
+
+    /**
+     * @return the number of replayed settlements
+     */
+    public long settlements() {
+        return settlements;
+    }
+
+    /**
+     * Returns whether the journal ended cleanly. A journal whose last record is torn was written by a machine which
+     * crashed; the torn record and everything after it were not replayed.
+     *
+     * @return false if the replay stopped at a record which does not match its checksum
+     */
+    public boolean complete() {
+        return complete;
+    }
+
+    private static final class Reader {
+
+        private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+        private final FileChannel channel;
+        private final long size;
+        private final CRC32C crc = new CRC32C();
+        private MappedByteBuffer window;
+        private long base;
+
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0, RECORD_HEADER);
+        }
+
+        private JournalReplay replay() throws IOException {
+            if (size < 3 * Integer.BYTES + 1 || window.getInt() != SettlementJournal.MAGIC) {
+                throw new IOException("Not a settlement journal");
+            }
+            final var version = window.getInt();
+            if (version != SettlementJournal.VERSION) throw new IOException("Unsupported journal version " + version);
+            final var mode = MoneyMode.values()[window.get()];
+
+            final var count = window.getInt();
+            final var paymentMethods = new ArrayList<PaymentMethod>(count);
+            for (int i = 0; i < count; i++) {
+                paymentMethods.add(new PaymentMethod(getString(), getDecimal(), getDecimal()));
+            }
+            final var paymentService = new PaymentService(new PaymentMethodsContainer(paymentMethods, mode));
+            final var units = new long[count];
+            final var balances = new BigDecimal[count];
+            for (int i = 0; i < count; i++) {
+                if (mode == MoneyMode.FIXED_POINT) {
+                    units[i] = paymentService.balanceUnits(paymentService.paymentMethod(i));
+                } else {
+                    balances[i] = paymentService.balance(paymentService.paymentMethod(i));
+                }
+            }
+
+            long settlements = 0;
+            var complete = true;
+            while (true) {
+                final var position = base + window.position();
+                if (size - position < RECORD_HEADER) break;
+                if (window.remaining() < RECORD_HEADER) map(position, RECORD_HEADER);
+                final var length = window.getInt(window.position());
+                if (length == 0) break;
+                if (length < 0 || size - position - RECORD_HEADER < length) {
+                    complete = false;
+                    break;
+                }
+                if (window.remaining() < RECORD_HEADER + length) map(position, RECORD_HEADER + length);
+
+                window.getInt();
+                final var checksum = window.getInt();
+                final var payload = window.slice(window.position(), length);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    complete = false;
+                    break;
+                }
+
+                payload.rewind().order(ByteOrder.LITTLE_ENDIAN);
+                final var idLength = payload.getInt();
+                if (idLength > 0) payload.position(payload.position() + idLength);
+                final var payments = payload.getShort() & 0xFFFF;
+                for (int i = 0; i < payments; i++) {
+                    final var index = payload.getShort() & 0xFFFF;
+                    if (index >= count) throw new IOException("Unknown payment method " + index + " in settlement " + settlements);
+                    if (mode == MoneyMode.FIXED_POINT) {
+                        units[index] = Math.subtractExact(units[index], payload.getLong());
+                    } else {
+                        balances[index] = balances[index].subtract(getDecimal(payload));
+                    }
+                }
+                window.position(window.position() + length);
+                settlements++;
+            }
+
+            for (int i = 0; i < count; i++) {
+                final var paymentMethod = paymentService.paymentMethod(i);
+                paymentService.balance(paymentMethod,
+                        mode == MoneyMode.FIXED_POINT ? FixedPoint.toBigDecimal(units[i]) : balances[i]);
+            }
+            return new JournalReplay(paymentService, settlements, complete);
+        }
+
+        /**
+         * Maps the region of the file starting at the given position, at least the given number of bytes long.
+         */
+        private void map(long position, int bytes) throws IOException {
+            final var length = Math.min(size - position, Math.max(SettlementJournal.SEGMENT_SIZE, bytes));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            base = position;
+        }
+
+        private String getString() {
+            final var length = window.getInt();
+            if (length < 0) return null;
+            final var bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private BigDecimal getDecimal() {
+            return getDecimal(window);
+        }
+
+        private static BigDecimal getDecimal(ByteBuffer buffer) {
+            final var length = buffer.getShort();
+            if (length < 0) return null;
+            final var scale = buffer.getInt();
+            final var unscaled = new byte[length];
+            buffer.get(unscaled);
+            return new BigDecimal(new BigInteger(unscaled), scale);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package me.wiktorlacki.promotions.journal;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.concurrent.RingBuffer;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.FixedOffer;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only journal of the payments taken for every settled order, from which {@link JournalReplay} rebuilds
+ * the balances and the report without the orders or the payment methods file.
+ *
+ * The journal starts with a header describing the payment methods and the money mode, followed by one record per
+ * settled order: the id of the order and, for every payment, the index of the payment method and the amount taken.
+ * Every record is prefixed with its length and a CRC-32C, so a record torn by a crash ends the journal instead of
+ * corrupting it. See {@link JournalReplay} for the exact layout.
+ *
+ * Like {@link me.wiktorlacki.promotions.trace.DecisionTrace}, settling threads only copy the payments of an order
+ * into a preallocated entry of a {@link RingBuffer}. A background thread encodes the entries into a memory-mapped
+ * region of the file and forces the records written since the last commit to the disk every commit interval, so all
+ * settlements of an interval share a single sync and the settling threads never wait for the disk, nor read the
+ * order ids, which are rarely in the cache of a thread settling orders sorted by value. A crash of the process loses
+ * the settlements still in the ring buffer, a crash of the machine at most the settlements of the last interval;
+ * {@link #commit()} waits until every settlement appended before is on the disk.
+ *
+ * A settlement is appended once its payments are taken and before it is reported as settled, so the journal holds
+ * exactly the settlements whose payments were taken. Any number of threads may append at once.
+ */
+public final class SettlementJournal implements Closeable {
+
+    /**
+     * The first four bytes of every journal, "PJRN" in ASCII.
+     */
+    public static final int MAGIC = 0x4E524A50;
+
+    public static final int VERSION = 1;
+
+    /**
+     * The time between two commits if none is given.
+     */
+    public static final Duration DEFAULT_COMMIT_INTERVAL = Duration.ofMillis(10);
+
+    /**
+     * The default number of entries in the ring buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The size of every region of the file mapped at once.
+     */
+    static final int SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * The maximum number of payment methods, so their indices fit into two bytes.
+     */
+    static final int MAX_PAYMENT_METHODS = 1 << 16;
+
+    private static final long PRODUCER_WAIT_NANOS = 10_000;
+    private static final long CLOCK_STRIDE_MASK = 1023;
+
+    private final FileChannel channel;
+    private final MoneyMode mode;
+    private final long commitIntervalNanos;
+    private final RingBuffer<Entry> entries;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer scratch = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private MappedByteBuffer segment;
+    private long base;
+    private int forced;
+    private long lastCommit;
+
+    private volatile long committed;
+    private volatile long commitRequested;
+    private volatile IOException failure;
+
+    /**
+     * @param channel        the file to write to, open for reading and writing; closed by {@link #close()}
+     * @param paymentService the payment service whose settlements are journaled, with its balances at their limits
+     * @param commitInterval the time between two commits
+     * @param capacity       the minimum number of entries in the ring buffer, rounded up to a power of two
+     */
+    SettlementJournal(FileChannel channel, PaymentService paymentService, Duration commitInterval, int capacity)
+            throws IOException {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        if (paymentService.size() > MAX_PAYMENT_METHODS) {
+            throw new IllegalArgumentException("Too many payment methods to journal: " + paymentService.size());
+        }
+        this.channel = channel;
+        this.mode = paymentService.mode();
+        this.commitIntervalNanos = commitInterval.toNanos();
+
+        scratch.putInt(MAGIC).putInt(VERSION).put((byte) mode.ordinal()).putInt(paymentService.size());
+        for (int i = 0; i < paymentService.size(); i++) {
+            final var paymentMethod = paymentService.paymentMethod(i);
+            putString(paymentMethod.id());
+            putDecimal(paymentMethod.discount());
+            putDecimal(paymentMethod.limit());
+        }
+        scratch.flip();
+        this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(SEGMENT_SIZE, scratch.remaining()));
+        segment.order(ByteOrder.LITTLE_ENDIAN).put(scratch);
+
+        this.lastCommit = System.nanoTime();
+        this.entries = new RingBuffer<>("settlement journal", capacity, Entry::new, new Writer());
+    }
+
+    /**
+     * Creates a journal of the settlements against the given payment service, committed every
+     * {@link #DEFAULT_COMMIT_INTERVAL}.
+     *
+     * @param file           the file to write the journal to; replaced if it exists
+     * @param paymentService the payment service whose settlements are journaled, with its balances at their limits
+     * @return the open journal
+     * @throws IOException if the file cannot be created
+     */
+    public static SettlementJournal open(Path file, PaymentService paymentService) throws IOException {
+        return open(file, paymentService, DEFAULT_COMMIT_INTERVAL);
+    }
+
+    /**
+     * @param file           the file to write the journal to; replaced if it exists
+     * @param paymentService the payment service whose settlements are journaled, with its balances at their limits
+     * @param commitInterval the time between two commits
+     * @return the open journal
+     * @throws IOException if the file cannot be created
+     */
+    public static SettlementJournal open(Path file, PaymentService paymentService, Duration commitInterval)
+            throws IOException {
+        final var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new SettlementJournal(channel, paymentService, commitInterval, DEFAULT_CAPACITY);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends the settlement of an order calculated in the {@link FixedPoint} representation.
+     *
+     * @param order the settled order
+     * @param offer the offer whose payments were taken
+     * @throws IllegalStateException if the journal is closed, or its writer stopped
+     */
+    public void append(Order order, OfferSlot offer) {
+        final var entry = claim(order, offer.size());
+        for (int i = 0; i < offer.size(); i++) {
+            entry.methods[i] = offer.method(i).index();
+            entry.units[i] = offer.amount(i);
+        }
+        publish(entry);
+    }
+
+    /**
+     * Appends the settlement of an order calculated in the {@link FixedPoint} representation.
+     *
+     * @param order the settled order
+     * @param offer the offer whose payments were taken
+     * @throws IllegalStateException if the journal is closed, or its writer stopped
+     */
+    public void append(Order order, FixedOffer offer) {
+        final var entry = claim(order, offer.methods().length);
+        for (int i = 0; i < entry.size; i++) {
+            entry.methods[i] = offer.methods()[i].index();
+            entry.units[i] = offer.amounts()[i];
+        }
+        publish(entry);
+    }
+
+    /**
+     * Appends the settlement of an order.
+     *
+     * @param order the settled order
+     * @param offer the offer whose payments were taken
+     * @throws IllegalStateException if the journal is closed, or its writer stopped
+     */
+    public void append(Order order, Offer offer) {
+        final var entry = claim(order, offer.payments().size());
+        var i = 0;
+        for (final var payment : offer.payments().entrySet()) {
+            entry.methods[i] = payment.getKey().index();
+            entry.amounts[i] = payment.getValue();
+            i++;
+        }
+        publish(entry);
+    }
+
+    /**
+     * @return the number of settlements written to the file so far
+     */
+    public long written() {
+        return entries.consumed();
+    }
+
+    /**
+     * Waits until every settlement appended so far is forced to the disk.
+     *
+     * @throws IOException if writing or forcing the journal failed
+     */
+    public void commit() throws IOException {
+        final var target = entries.claimed();
+        while (committed < target && failure == null && entries.writing()) {
+            if (commitRequested < target) commitRequested = target;
+            entries.wakeWriter();
+            LockSupport.parkNanos(PRODUCER_WAIT_NANOS);
+        }
+        if (failure != null) throw failure;
+        if (committed < target) throw new IOException("The settlement journal writer has stopped");
+    }
+
+    /**
+     * Waits until all appended settlements are written and forced to the disk, trims the file to the written records
+     * and closes it. Settlements must not be appended concurrently with closing.
+     *
+     * @throws IOException if writing any settlement failed, or the file cannot be trimmed or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (entries.isClosed()) return;
+        try {
+            entries.close();
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+
+        try (channel) {
+            if (failure != null) throw failure;
+            channel.truncate(base + segment.position());
+        }
+    }
+
+    private Entry claim(Order order, int size) {
+        final var sequence = entries.claim();
+        final var entry = entries.entry(sequence);
+        entry.reset(sequence, order, size);
+        return entry;
+    }
+
+    private void publish(Entry entry) {
+        entries.publish(entry.sequence);
+    }
+
+    /**
+     * Forces the records written so far to the disk if a commit is due, committing the settlements before the given
+     * sequence.
+     */
+    private void commitIfDue(long sequence, boolean done) {
+        if (committed < sequence && (done || commitRequested > committed
+                || System.nanoTime() - lastCommit >= commitIntervalNanos)) {
+            force(sequence);
+            lastCommit = System.nanoTime();
+        }
+    }
+
+    private void write(Entry entry) {
+        // After a failure the entries are still consumed, so that the settling threads never wait for a dead writer.
+        if (failure != null) return;
+        try {
+            scratch.clear();
+            putString(entry.order.id());
+            ensure(Short.BYTES);
+            scratch.putShort((short) entry.size);
+            for (int i = 0; i < entry.size; i++) {
+                ensure(Short.BYTES + Long.BYTES);
+                scratch.putShort((short) entry.methods[i]);
+                if (mode == MoneyMode.FIXED_POINT) {
+                    scratch.putLong(entry.units[i]);
+                } else {
+                    putDecimal(entry.amounts[i]);
+                }
+            }
+            scratch.flip();
+            crc.reset();
+            crc.update(scratch.array(), 0, scratch.limit());
+
+            final var length = scratch.limit();
+            if (segment.remaining() < 2 * Integer.BYTES + length) nextSegment(2 * Integer.BYTES + length);
+            segment.putInt(length).putInt((int) crc.getValue()).put(scratch);
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Cannot journal the settlement of order " + entry.order.id(), e);
+        } finally {
+            entry.order = null;
+            if (mode == MoneyMode.DECIMAL) Arrays.fill(entry.amounts, 0, entry.size, null);
+        }
+    }
+
+    /**
+     * Forces the records written so far to the disk, committing the settlements before the given sequence.
+     */
+    private void force(long sequence) {
+        if (failure == null) {
+            try {
+                segment.force(forced, segment.position() - forced);
+                forced = segment.position();
+            } catch (RuntimeException e) {
+                failure = new IOException("Cannot commit the settlement journal", e);
+            }
+        }
+        committed = sequence;
+    }
+
+    private void nextSegment(int bytes) throws IOException {
+        // The committed part of the full segment is on the disk already, the rest is forced before leaving it.
+        segment.force(forced, segment.position() - forced);
+        base += segment.position();
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, base, Math.max(SEGMENT_SIZE, bytes));
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        forced = 0;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensure(Integer.BYTES);
+            scratch.putInt(-1);
+            return;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(Integer.BYTES + bytes.length);
+        scratch.putInt(bytes.length).put(bytes);
+    }
+
+    private void putDecimal(BigDecimal value) {
+        if (value == null) {
+            ensure(Short.BYTES);
+            scratch.putShort((short) -1);
+            return;
+        }
+        final var unscaled = value.unscaledValue().toByteArray();
+        ensure(Short.BYTES + Integer.BYTES + unscaled.length);
+        scratch.putShort((short) unscaled.length).putInt(value.scale()).put(unscaled);
+    }
+
+    private void ensure(int bytes) {
+        if (scratch.remaining() >= bytes) return;
+        final var grown = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        scratch = grown.put(scratch.flip());
+    }
+
+    /**
+     * Encodes the appended settlements and commits them on the writer thread of the ring buffer.
+     */
+    private final class Writer implements RingBuffer.Sink<Entry> {
+
+        @Override
+        public void write(Entry entry, long sequence) {
+            SettlementJournal.this.write(entry);
+            // While the settlements keep coming, the clock is only read every few of them.
+            if (((sequence + 1) & CLOCK_STRIDE_MASK) == 0) commitIfDue(sequence + 1, false);
+        }
+
+        @Override
+        public void idle(long consumed, boolean done) {
+            commitIfDue(consumed, done);
+        }
+    }
+
+    /**
+     * The payments of one settled order, filled by the settling thread and written by the writer.
+     */
+    private static final class Entry {
+
+        private long sequence;
+        private Order order;
+        private int size;
+        private int[] methods = new int[2];
+        private long[] units = new long[2];
+        private BigDecimal[] amounts = new BigDecimal[2];
+
+        private void reset(long sequence, Order order, int size) {
+            this.sequence = sequence;
+            this.order = order;
+            this.size = size;
+            if (methods.length < size) {
+                methods = new int[size];
+                units = new long[size];
+                amounts = new BigDecimal[size];
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package me.wiktorlacki.promotions.loader;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Loads orders and payment methods from files.
+ */
+public interface DataLoader {
+
+    /**
+     * Loads a list of {@link Order} objects from a file.
+     *
+     * @param fileName the path to the file
+     * @return a list of orders, which supports in-place sorting
+     * @throws IOException if the file cannot be read
+     */
+    List<Order> loadOrders(String fileName) throws IOException;
+
+    /**
+     * Lazily reads {@link Order} objects from a file. The returned stream must be closed by the caller.
+     *
+     * @param fileName the path to the file
+     * @return a sequential stream of orders in file order
+     * @throws IOException if the file cannot be opened
+     */
+    Stream<Order> streamOrders(String fileName) throws IOException;
+
+    /**
+     * Loads a list of {@link PaymentMethod} objects from a file.
+     *
+     * @param fileName the path to the file
+     * @return a list of payment methods
+     * @throws IOException if the file cannot be read
+     */
+    List<PaymentMethod> loadPaymentMethods(String fileName) throws IOException;
+
+    /**
+     * Loads the orders of a file once and writes them as an {@link OrderSnapshot}, which later runs
+     * can open instead of parsing and sorting the file again.
+     *
+     * @param fileName the path to the orders file
+     * @param snapshot the snapshot file to write
+     * @return the number of orders written
+     * @throws IOException if a file cannot be read or written
+     */
+    default int writeSnapshot(String fileName, Path snapshot) throws IOException {
+        final var orders = loadOrders(fileName);
+        OrderSnapshot.write(orders, snapshot);
+        return orders.size();
+    }
+}
@@ -0,0 +1,242 @@
+package me.wiktorlacki.promotions.loader;
+
+import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.Order;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sorts a stream of {@link Order}s by value using a bounded amount of memory.
+ *
+ * Orders are collected into runs of at most {@code maxOrdersInMemory} elements, each run is sorted
+ * in memory and spilled to a temporary file, and the runs are then lazily merged. The sort is stable:
+ * orders with equal values come out in the same relative order as they went in, which keeps the result
+ * identical to sorting the whole list in memory.
+ */
+@RequiredArgsConstructor
+public class ExternalOrderSorter {
+
+    /**
+     * The default number of orders held in memory while building a single run.
+     */
+    public static final int DEFAULT_MAX_ORDERS_IN_MEMORY = 1_000_000;
+
+    /**
+     * The maximum number of runs merged at once. Larger run counts are merged in several passes.
+     */
+    private static final int MAX_MERGE_FAN_IN = 256;
+
+    private static final Comparator<Order> BY_VALUE = Comparator.comparing(Order::value);
+
+    private final int maxOrdersInMemory;
+    private final Path tempDirectory;
+
+    public ExternalOrderSorter() {
+        this(DEFAULT_MAX_ORDERS_IN_MEMORY, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Sorts the given orders by ascending value.
+     *
+     * If the input fits into a single run it is sorted in memory and no temporary files are created.
+     * Otherwise, the returned stream reads from temporary files which are removed when the stream is closed.
+     * The input stream is fully consumed and closed before this method returns.
+     *
+     * @param orders the orders to sort
+     * @return a lazily merged stream of orders in ascending value order
+     * @throws IOException if a temporary run cannot be written
+     */
+    public Stream<Order> sort(Stream<Order> orders) throws IOException {
+        final var runs = new ArrayList<Path>();
+        final var buffer = new ArrayList<Order>();
+
+        try (orders) {
+            final var iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                buffer.add(iterator.next());
+                if (buffer.size() >= maxOrdersInMemory) {
+                    runs.add(spill(buffer));
+                    buffer.clear();
+                }
+            }
+
+            if (runs.isEmpty()) {
+                buffer.sort(BY_VALUE);
+                return buffer.stream();
+            }
+
+            if (!buffer.isEmpty()) {
+                runs.add(spill(buffer));
+                buffer.clear();
+            }
+
+            while (runs.size() > MAX_MERGE_FAN_IN) {
+                final var merged = new ArrayList<Path>();
+                try {
+                    for (int i = 0; i < runs.size(); i += MAX_MERGE_FAN_IN) {
+                        merged.add(mergeToFile(runs.subList(i, Math.min(i + MAX_MERGE_FAN_IN, runs.size()))));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    deleteAll(merged);
+                    throw e;
+                }
+                runs.clear();
+                runs.addAll(merged);
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteAll(runs);
+            throw e;
+        }
+
+        final var merger = new RunMerger(runs);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merger, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(merger::close);
+    }
+
+    private Path spill(List<Order> buffer) throws IOException {
+        buffer.sort(BY_VALUE);
+        final var run = Files.createTempFile(tempDirectory, "orders-run-", ".bin");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (final var order : buffer) {
+                write(out, order);
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteAll(List.of(run));
+            throw e;
+        }
+        return run;
+    }
+
+    private Path mergeToFile(List<Path> runs) throws IOException {
+        final var run = Files.createTempFile(tempDirectory, "orders-run-", ".bin");
+        try (var merger = new RunMerger(new ArrayList<>(runs));
+             var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            while (merger.hasNext()) {
+                write(out, merger.next());
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteAll(List.of(run));
+            throw e;
+        }
+        return run;
+    }
+
+    private static void write(DataOutputStream out, Order order) throws IOException {
+        out.writeUTF(order.id());
+        out.writeUTF(order.value().toString());
+        if (order.promotions() == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(order.promotions().size());
+        for (final var promotion : order.promotions()) {
+            out.writeUTF(promotion);
+        }
+    }
+
+    private static Order read(DataInputStream in) throws IOException {
+        final var id = in.readUTF();
+        final var value = new BigDecimal(in.readUTF());
+        final var count = in.readInt();
+        if (count < 0) {
+            return new Order(id, value, null);
+        }
+        final var promotions = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            promotions.add(in.readUTF());
+        }
+        return new Order(id, value, promotions);
+    }
+
+    private static void deleteAll(List<Path> runs) {
+        for (final var run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ignored) {
+                // Best effort, the file lives in the temporary directory anyway.
+            }
+        }
+    }
+
+    /**
+     * K-way merge over sorted run files. Ties are resolved by run number, and runs are created
+     * in input order, so the merge preserves stability.
+     */
+    private static final class RunMerger implements Iterator<Order>, Closeable {
+
+        private final List<Path> runs;
+        private final List<DataInputStream> inputs = new ArrayList<>();
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(
+                Comparator.comparing((Head head) -> head.order.value()).thenComparingInt(head -> head.run));
+
+        private RunMerger(List<Path> runs) throws IOException {
+            this.runs = runs;
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runs.get(i))));
+                    inputs.add(in);
+                    advance(i);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Order next() {
+            final var head = heads.poll();
+            if (head == null) throw new NoSuchElementException();
+            try {
+                advance(head.run);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return head.order;
+        }
+
+        /**
+         * Reads the next order of the given run. The run may only end between two orders; a run which ends in the
+         * middle of one has been truncated and is reported as corrupt instead of silently losing the order.
+         */
+        private void advance(int run) throws IOException {
+            final var in = inputs.get(run);
+            in.mark(1);
+            if (in.read() < 0) {
+                in.close();
+                return;
+            }
+            in.reset();
+            try {
+                heads.add(new Head(read(in), run));
+            } catch (EOFException e) {
+                throw new IOException("Corrupt run: " + runs.get(run), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            for (final var in : inputs) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // Nothing sensible to do, the run is deleted right after.
+                }
+            }
+            deleteAll(runs);
+        }
+
+        private record Head(Order order, int run) { }
+    }
+}
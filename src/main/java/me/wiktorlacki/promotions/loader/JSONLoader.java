@@ -2,6 +2,10 @@ package me.wiktorlacki.promotions.loader;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import lombok.RequiredArgsConstructor;
 import me.wiktorlacki.promotions.Order;
 import me.wiktorlacki.promotions.payment.PaymentMethod;
@@ -9,14 +13,16 @@ import me.wiktorlacki.promotions.payment.PaymentMethod;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A utility class for loading JSON data into Java objects using Gson.
  */
 @RequiredArgsConstructor
-public class JSONLoader {
+public class JSONLoader implements DataLoader {
 
     private final Gson gson = new GsonBuilder()
             .registerTypeAdapter(PaymentMethod.class, new PaymentMethodDeserializer())
@@ -29,19 +35,99 @@ public class JSONLoader {
      * @return a list of orders
      * @throws IOException if the file cannot be read
      */
+    @Override
     public List<Order> loadOrders(String fileName) throws IOException {
         return loadList(fileName, Order[].class);
     }
 
+    /**
+     * Lazily reads {@link Order} objects from a JSON file, one array element at a time.
+     *
+     * Only the order currently being parsed is held in memory, so the file may be arbitrarily large.
+     * The returned stream keeps the file open and must be closed by the caller.
+     *
+     * @param fileName the path to the JSON file
+     * @return a sequential stream of orders in file order
+     * @throws IOException if the file cannot be opened
+     */
+    @Override
+    public Stream<Order> streamOrders(String fileName) throws IOException {
+        final var reader = new JsonReader(new BufferedReader(new FileReader(fileName)));
+        try {
+            reader.beginArray();
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+
+        final var iterator = new Iterator<Order>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return reader.peek() != JsonToken.END_ARRAY;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Order next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return gson.fromJson(reader, Order.class);
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
     /**
      * Loads a list of {@link PaymentMethod} objects from a JSON file.
+     * Each payment method is assigned its position in the file as its {@link PaymentMethod#index()}.
      *
      * @param fileName the path to the JSON file
      * @return a list of payment methods
      * @throws IOException if the file cannot be read
      */
+    @Override
     public List<PaymentMethod> loadPaymentMethods(String fileName) throws IOException {
-        return loadList(fileName, PaymentMethod[].class);
+        return indexed(loadList(fileName, PaymentMethod[].class));
+    }
+
+    /**
+     * Parses {@link Order} objects from an already read JSON array, e.g. one embedded in a larger document.
+     *
+     * @param orders the JSON array of orders
+     * @return a list of orders, which supports in-place sorting
+     * @throws JsonParseException if the array does not hold valid orders
+     */
+    public List<Order> parseOrders(JsonElement orders) {
+        return new ArrayList<>(Arrays.asList(gson.fromJson(orders, Order[].class)));
+    }
+
+    /**
+     * Parses {@link PaymentMethod} objects from an already read JSON array, indexing them like
+     * {@link #loadPaymentMethods(String)} does.
+     *
+     * @param paymentMethods the JSON array of payment methods
+     * @return a list of payment methods
+     * @throws JsonParseException if the array does not hold valid payment methods
+     */
+    public List<PaymentMethod> parsePaymentMethods(JsonElement paymentMethods) {
+        return indexed(Arrays.asList(gson.fromJson(paymentMethods, PaymentMethod[].class)));
+    }
+
+    private static List<PaymentMethod> indexed(List<PaymentMethod> paymentMethods) {
+        for (int i = 0; i < paymentMethods.size(); i++) {
+            paymentMethods.set(i, paymentMethods.get(i).withIndex(i));
+        }
+        return paymentMethods;
     }
 
     private <T> List<T> loadList(String fileName, Class<T[]> type) throws IOException {
@@ -51,4 +137,3 @@ public class JSONLoader {
         }
     }
 }
-
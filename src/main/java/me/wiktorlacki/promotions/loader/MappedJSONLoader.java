@@ -0,0 +1,170 @@
+package me.wiktorlacki.promotions.loader;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link DataLoader} that memory-maps the input files and parses them directly from bytes.
+ *
+ * It understands the same documents as {@link JSONLoader}: numbers may be given bare or as strings,
+ * unknown fields are skipped and payment method discounts are converted from percent to a fraction
+ * exactly like {@link PaymentMethodDeserializer} does. Skipping the {@link java.io.Reader} and the
+ * intermediate Gson trees makes it considerably faster on large order files.
+ */
+public class MappedJSONLoader implements DataLoader {
+
+    private static final byte[][] ORDER_KEYS = keys("id", "value", "promotions");
+    private static final byte[][] PAYMENT_METHOD_KEYS = keys("id", "discount", "limit");
+
+    @Override
+    public List<Order> loadOrders(String fileName) throws IOException {
+        try (var scanner = new MappedJSONScanner(fileName)) {
+            final var orders = new ArrayList<Order>();
+            scanner.expect('[');
+            if (!scanner.consume(']')) {
+                do {
+                    orders.add(readOrder(scanner));
+                } while (scanner.consume(','));
+                scanner.expect(']');
+            }
+            return orders;
+        }
+    }
+
+    @Override
+    public Stream<Order> streamOrders(String fileName) throws IOException {
+        final var scanner = new MappedJSONScanner(fileName);
+        final boolean empty;
+        try {
+            scanner.expect('[');
+            empty = scanner.consume(']');
+        } catch (IOException | RuntimeException e) {
+            scanner.close();
+            throw e;
+        }
+
+        final var iterator = new Iterator<Order>() {
+            private boolean finished = empty;
+
+            @Override
+            public boolean hasNext() {
+                return !finished;
+            }
+
+            @Override
+            public Order next() {
+                if (finished) throw new NoSuchElementException();
+                try {
+                    final var order = readOrder(scanner);
+                    if (!scanner.consume(',')) {
+                        scanner.expect(']');
+                        finished = true;
+                    }
+                    return order;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        scanner.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public List<PaymentMethod> loadPaymentMethods(String fileName) throws IOException {
+        try (var scanner = new MappedJSONScanner(fileName)) {
+            final var paymentMethods = new ArrayList<PaymentMethod>();
+            scanner.expect('[');
+            if (!scanner.consume(']')) {
+                do {
+                    paymentMethods.add(readPaymentMethod(scanner).withIndex(paymentMethods.size()));
+                } while (scanner.consume(','));
+                scanner.expect(']');
+            }
+            return paymentMethods;
+        }
+    }
+
+    private static Order readOrder(MappedJSONScanner scanner) throws IOException {
+        String id = null;
+        BigDecimal value = null;
+        List<String> promotions = null;
+
+        scanner.expect('{');
+        if (!scanner.consume('}')) {
+            do {
+                switch (scanner.readKey(ORDER_KEYS)) {
+                    case 0 -> id = scanner.readString();
+                    case 1 -> value = scanner.readNumber();
+                    case 2 -> promotions = readStringList(scanner);
+                    default -> scanner.skipValue();
+                }
+            } while (scanner.consume(','));
+            scanner.expect('}');
+        }
+
+        return new Order(id, value, promotions);
+    }
+
+    private static PaymentMethod readPaymentMethod(MappedJSONScanner scanner) throws IOException {
+        String id = null;
+        BigDecimal discount = null;
+        BigDecimal limit = null;
+
+        scanner.expect('{');
+        if (!scanner.consume('}')) {
+            do {
+                switch (scanner.readKey(PAYMENT_METHOD_KEYS)) {
+                    case 0 -> id = scanner.readString();
+                    case 1 -> discount = scanner.readNumber();
+                    case 2 -> limit = scanner.readNumber();
+                    default -> scanner.skipValue();
+                }
+            } while (scanner.consume(','));
+            scanner.expect('}');
+        }
+
+        if (id == null || discount == null || limit == null) {
+            throw scanner.error("Payment method requires id, discount and limit");
+        }
+
+        return new PaymentMethod(id, PaymentMethodDeserializer.toFraction(discount), limit);
+    }
+
+    private static List<String> readStringList(MappedJSONScanner scanner) throws IOException {
+        if (scanner.consumeNull()) return null;
+
+        final var values = new ArrayList<String>();
+        scanner.expect('[');
+        if (!scanner.consume(']')) {
+            do {
+                values.add(scanner.readString());
+            } while (scanner.consume(','));
+            scanner.expect(']');
+        }
+        return values;
+    }
+
+    private static byte[][] keys(String... names) {
+        final var keys = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,333 @@
+package me.wiktorlacki.promotions.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A minimal pull-style JSON scanner working directly on the bytes of a memory-mapped UTF-8 file.
+ *
+ * The file is mapped lazily in segments of up to 1 GiB, so files larger than 2 GiB are supported.
+ * Numbers are parsed straight from the mapped bytes and strings are only decoded once their content
+ * is known, without going through a {@link java.io.Reader}.
+ */
+final class MappedJSONScanner implements Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    /**
+     * Numbers with at most this many digits fit into a {@code long} unscaled value.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long position;
+
+    private byte[] buffer = new byte[64];
+    private int length;
+
+    MappedJSONScanner(String fileName) throws IOException {
+        this.channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Skips whitespace and returns the next significant byte without consuming it, or -1 at the end of input.
+     */
+    int peek() throws IOException {
+        skipWhitespace();
+        return current();
+    }
+
+    /**
+     * Consumes the next significant byte, which must be equal to {@code expected}.
+     */
+    void expect(char expected) throws IOException {
+        final var actual = peek();
+        if (actual != expected) {
+            throw error("Expected '" + expected + "' but found " + describe(actual));
+        }
+        position++;
+    }
+
+    /**
+     * Consumes the next significant byte if it is equal to {@code expected}.
+     *
+     * @return whether the byte was consumed
+     */
+    boolean consume(char expected) throws IOException {
+        if (peek() != expected) return false;
+        position++;
+        return true;
+    }
+
+    /**
+     * Reads a JSON string. Bare literals (numbers, booleans) are accepted and returned as text,
+     * and {@code null} is returned as {@code null}, mirroring Gson's lenient string handling.
+     */
+    String readString() throws IOException {
+        final var first = peek();
+        if (first != '"') {
+            if (consumeNull()) return null;
+            readLiteral();
+            return new String(buffer, 0, length, StandardCharsets.US_ASCII);
+        }
+
+        readStringContent();
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an object key together with the following colon and returns its position in {@code keys},
+     * or -1 if it is none of them. Keys are compared as raw bytes, so no string is created.
+     */
+    int readKey(byte[][] keys) throws IOException {
+        final var first = peek();
+        if (first != '"') throw error("Expected object key but found " + describe(first));
+        readStringContent();
+        expect(':');
+        for (int i = 0; i < keys.length; i++) {
+            if (Arrays.equals(buffer, 0, length, keys[i], 0, keys[i].length)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a JSON number, either bare or quoted (e.g. {@code "100.00"}), as an exact {@link BigDecimal}.
+     * The scale of the literal is preserved, so {@code 100.00} yields a value with scale 2.
+     */
+    BigDecimal readNumber() throws IOException {
+        final var first = peek();
+        if (first == '"') {
+            readStringContent();
+            if (length == 0) throw error("Invalid number \"\"");
+        } else {
+            if (consumeNull()) return null;
+            readLiteral();
+        }
+        return parseDecimal();
+    }
+
+    /**
+     * Returns whether the next value is {@code null}, consuming it if so.
+     */
+    boolean consumeNull() throws IOException {
+        if (peek() != 'n') return false;
+        readLiteral();
+        if (length != 4 || buffer[1] != 'u' || buffer[2] != 'l' || buffer[3] != 'l') {
+            throw error("Invalid literal " + new String(buffer, 0, length, StandardCharsets.US_ASCII));
+        }
+        return true;
+    }
+
+    /**
+     * Skips the next value, including nested objects and arrays.
+     */
+    void skipValue() throws IOException {
+        final var first = peek();
+        switch (first) {
+            case '"' -> readString();
+            case '{' -> {
+                position++;
+                if (consume('}')) return;
+                do {
+                    readString();
+                    expect(':');
+                    skipValue();
+                } while (consume(','));
+                expect('}');
+            }
+            case '[' -> {
+                position++;
+                if (consume(']')) return;
+                do {
+                    skipValue();
+                } while (consume(','));
+                expect(']');
+            }
+            default -> readLiteral();
+        }
+    }
+
+    IOException error(String message) {
+        return new IOException(message + " at byte " + position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        channel.close();
+    }
+
+    private int current() throws IOException {
+        if (position >= size) return -1;
+        if (segment == null || position < segmentStart || position >= segmentStart + SEGMENT_SIZE) {
+            segmentStart = position & -SEGMENT_SIZE;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, size - segmentStart));
+        }
+        return segment.get((int) (position - segmentStart)) & 0xFF;
+    }
+
+    /**
+     * Reads the raw UTF-8 content of the string starting at the current position into the buffer.
+     */
+    private void readStringContent() throws IOException {
+        position++;
+        length = 0;
+        while (true) {
+            final var b = current();
+            if (b < 0) throw error("Unterminated string");
+            position++;
+            if (b == '"') return;
+            if (b == '\\') {
+                readEscape();
+            } else {
+                append((byte) b);
+            }
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            final var b = current();
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+            position++;
+        }
+    }
+
+    private void readLiteral() throws IOException {
+        length = 0;
+        while (true) {
+            final var b = current();
+            if (b < 0 || b == ',' || b == '}' || b == ']' || b == ':' || b == ' ' || b == '\n' || b == '\r' || b == '\t') break;
+            append((byte) b);
+            position++;
+        }
+        if (length == 0) throw error("Unexpected " + describe(current()));
+    }
+
+    private void readEscape() throws IOException {
+        final var b = current();
+        position++;
+        switch (b) {
+            case '"', '\\', '/' -> append((byte) b);
+            case 'b' -> append((byte) '\b');
+            case 'f' -> append((byte) '\f');
+            case 'n' -> append((byte) '\n');
+            case 'r' -> append((byte) '\r');
+            case 't' -> append((byte) '\t');
+            case 'u' -> {
+                var codePoint = readHex();
+                if (Character.isHighSurrogate((char) codePoint) && current() == '\\') {
+                    final var mark = position;
+                    position++;
+                    if (current() == 'u') {
+                        position++;
+                        final var low = readHex();
+                        if (Character.isLowSurrogate((char) low)) {
+                            codePoint = Character.toCodePoint((char) codePoint, (char) low);
+                        } else {
+                            position = mark;
+                        }
+                    } else {
+                        position = mark;
+                    }
+                }
+                appendCodePoint(codePoint);
+            }
+            default -> throw error("Invalid escape sequence \\" + describe(b));
+        }
+    }
+
+    private int readHex() throws IOException {
+        var value = 0;
+        for (int i = 0; i < 4; i++) {
+            final var digit = Character.digit(current(), 16);
+            if (digit < 0) throw error("Invalid unicode escape");
+            value = (value << 4) | digit;
+            position++;
+        }
+        return value;
+    }
+
+    private void appendCodePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            append((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            append((byte) (0xC0 | (codePoint >> 6)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        } else if (codePoint < 0x10000) {
+            append((byte) (0xE0 | (codePoint >> 12)));
+            append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+            append((byte) (0xF0 | (codePoint >> 18)));
+            append((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        }
+    }
+
+    private void append(byte b) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, length * 2);
+        }
+        buffer[length++] = b;
+    }
+
+    /**
+     * Parses the literal held in the buffer. Plain decimals short enough to fit into a {@code long}
+     * are assembled without any intermediate objects, anything else falls back to {@link BigDecimal}'s parser.
+     */
+    private BigDecimal parseDecimal() throws IOException {
+        var i = 0;
+        final var negative = buffer[0] == '-';
+        if (negative) i++;
+
+        long unscaled = 0;
+        var digits = 0;
+        var scale = 0;
+        var seenPoint = false;
+        for (; i < length; i++) {
+            final var b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                unscaled = unscaled * 10 + (b - '0');
+                digits++;
+                if (seenPoint) scale++;
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i == length && digits > 0 && digits <= MAX_LONG_DIGITS) {
+            return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+        }
+
+        final var chars = new char[length];
+        for (int j = 0; j < length; j++) {
+            chars[j] = (char) buffer[j];
+        }
+        try {
+            return new BigDecimal(chars);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + new String(chars));
+        }
+    }
+
+    private static String describe(int b) {
+        return b < 0 ? "end of input" : "'" + (char) b + "'";
+    }
+}
@@ -0,0 +1,328 @@
+package me.wiktorlacki.promotions.loader;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.OrderSorter;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A preprocessed set of orders in a compact columnar binary format, read through memory mapping.
+ *
+ * Parsing JSON and sorting dominate the time of a run over a large orders file, and neither depends on the
+ * payment methods. A snapshot is written once, with the orders already sorted by ascending value, and every
+ * later run against a different payment method configuration only maps the file: opening it reads the header
+ * and the promotion dictionary, and orders are decoded from the mapped columns when they are accessed.
+ *
+ * The file starts with a header of {@link #HEADER_SIZE} bytes (magic, version, number of orders, number of
+ * distinct promotions and the position of every column) followed by the columns, all little-endian:
+ * <ul>
+ *     <li>values: one {@code long} per order, in the {@link FixedPoint} representation,</li>
+ *     <li>promotion offsets: {@code n + 1} {@code int}s delimiting the promotions of every order,</li>
+ *     <li>promotions: {@code int} indices into the promotion dictionary,</li>
+ *     <li>id offsets: {@code n + 1} {@code int}s delimiting the id of every order,</li>
+ *     <li>scales: one byte per order, the scale of the value as it was read,</li>
+ *     <li>flags: one byte per order, telling whether the order had an id and a promotion list at all,</li>
+ *     <li>ids: the UTF-8 bytes of all order ids,</li>
+ *     <li>the promotion dictionary: the length and UTF-8 bytes of every distinct promotion id.</li>
+ * </ul>
+ * Promotions refer to a dictionary of their own rather than to payment method indices, because the indices
+ * depend on the payment methods file, which is exactly what changes between runs over the same snapshot.
+ * Together with the scales and flags, the orders read back are equal to the orders written.
+ */
+public final class OrderSnapshot {
+
+    /**
+     * The first four bytes of every snapshot, "PSNP" in ASCII.
+     */
+    static final int MAGIC = 0x504E5350;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 88;
+
+    private static final byte HAS_PROMOTIONS = 1;
+    private static final byte HAS_ID = 2;
+
+    private final int size;
+    private final LongBuffer values;
+    private final IntBuffer promotionOffsets;
+    private final IntBuffer promotions;
+    private final IntBuffer idOffsets;
+    private final ByteBuffer scales;
+    private final ByteBuffer flags;
+    private final ByteBuffer ids;
+    private final String[] dictionary;
+
+    private OrderSnapshot(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) throw new IOException("Not an order snapshot");
+        final var header = map(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) throw new IOException("Not an order snapshot");
+        final var version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+        this.size = header.getInt();
+        final var dictionarySize = header.getInt();
+        final var positions = new long[9];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = header.getLong();
+        }
+
+        this.values = map(channel, positions[0], positions[1]).asLongBuffer();
+        this.promotionOffsets = map(channel, positions[1], positions[2]).asIntBuffer();
+        this.promotions = map(channel, positions[2], positions[3]).asIntBuffer();
+        this.idOffsets = map(channel, positions[3], positions[4]).asIntBuffer();
+        this.scales = map(channel, positions[4], positions[5]);
+        this.flags = map(channel, positions[5], positions[6]);
+        this.ids = map(channel, positions[6], positions[7]);
+
+        final var dictionaryBuffer = map(channel, positions[7], positions[8]);
+        this.dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            final var bytes = new byte[dictionaryBuffer.getInt()];
+            dictionaryBuffer.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Opens a snapshot written by {@link #write(List, Path)}. The file is memory-mapped and stays mapped
+     * as long as the snapshot or any of its buffers is reachable.
+     *
+     * @param path the snapshot file
+     * @return the opened snapshot
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static OrderSnapshot open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OrderSnapshot(channel);
+        }
+    }
+
+    /**
+     * Tells snapshots apart from other order files by their first bytes.
+     *
+     * @param path the file to check
+     * @return whether the file starts like a snapshot
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isSnapshot(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Read until the magic is complete or the file ends.
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes the orders as a snapshot, sorted by ascending value. Orders with equal values keep their
+     * relative order, so a calculation over the snapshot settles the orders exactly like over the list.
+     *
+     * @param orders the orders to write; the list is not modified
+     * @param path   the snapshot file, replaced if it exists
+     * @throws IllegalArgumentException if a value cannot be represented in the {@link FixedPoint} mode
+     * @throws IOException              if the file cannot be written
+     */
+    public static void write(List<Order> orders, Path path) throws IOException {
+        final var sorted = OrderSorter.byValue(orders, MoneyMode.FIXED_POINT);
+        final var n = sorted.size();
+        final var dictionary = new LinkedHashMap<String, Integer>();
+        final var units = new long[n];
+        final var idBytes = new byte[n][];
+        var promotionCount = 0L;
+        var idLength = 0L;
+        for (final var order : sorted) {
+            if (order.promotions() == null) continue;
+            for (final var promotion : order.promotions()) {
+                dictionary.putIfAbsent(promotion, dictionary.size());
+            }
+            promotionCount += order.promotions().size();
+        }
+        for (int i = 0; i < n; i++) {
+            units[i] = units(sorted.get(i));
+            idBytes[i] = sorted.get(i).id() == null ? new byte[0] : sorted.get(i).id().getBytes(StandardCharsets.UTF_8);
+            idLength += idBytes[i].length;
+        }
+        final var dictionaryBytes = new ArrayList<byte[]>(dictionary.size());
+        var dictionaryLength = 0L;
+        for (final var promotion : dictionary.keySet()) {
+            final var bytes = promotion.getBytes(StandardCharsets.UTF_8);
+            dictionaryBytes.add(bytes);
+            dictionaryLength += Integer.BYTES + bytes.length;
+        }
+
+        final var positions = new long[9];
+        positions[0] = HEADER_SIZE;
+        positions[1] = positions[0] + (long) Long.BYTES * n;
+        positions[2] = positions[1] + (long) Integer.BYTES * (n + 1);
+        positions[3] = positions[2] + Integer.BYTES * promotionCount;
+        positions[4] = positions[3] + (long) Integer.BYTES * (n + 1);
+        positions[5] = positions[4] + n;
+        positions[6] = positions[5] + n;
+        positions[7] = positions[6] + idLength;
+        positions[8] = positions[7] + dictionaryLength;
+        if (promotionCount > Integer.MAX_VALUE || idLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many orders for a single snapshot: " + n);
+        }
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putInt(n).putInt(dictionary.size());
+            for (final var position : positions) {
+                header.putLong(position);
+            }
+            channel.write(header.flip(), 0);
+
+            final var values = mapForWriting(channel, positions[0], positions[1]).asLongBuffer();
+            final var promotionOffsets = mapForWriting(channel, positions[1], positions[2]).asIntBuffer();
+            final var promotions = mapForWriting(channel, positions[2], positions[3]).asIntBuffer();
+            final var idOffsets = mapForWriting(channel, positions[3], positions[4]).asIntBuffer();
+            final var scales = mapForWriting(channel, positions[4], positions[5]);
+            final var flags = mapForWriting(channel, positions[5], positions[6]);
+            final var ids = mapForWriting(channel, positions[6], positions[7]);
+            final var dictionaryBuffer = mapForWriting(channel, positions[7], positions[8]);
+
+            promotionOffsets.put(0);
+            idOffsets.put(0);
+            for (int i = 0; i < n; i++) {
+                final var order = sorted.get(i);
+                values.put(units[i]);
+                scales.put((byte) order.value().scale());
+                flags.put((byte) ((order.promotions() == null ? 0 : HAS_PROMOTIONS) | (order.id() == null ? 0 : HAS_ID)));
+                if (order.promotions() != null) {
+                    for (final var promotion : order.promotions()) {
+                        promotions.put(dictionary.get(promotion));
+                    }
+                }
+                promotionOffsets.put(promotions.position());
+                ids.put(idBytes[i]);
+                idOffsets.put(ids.position());
+            }
+            for (final var bytes : dictionaryBytes) {
+                dictionaryBuffer.putInt(bytes.length).put(bytes);
+            }
+        }
+    }
+
+    /**
+     * @return the number of orders in this snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of an order without decoding the rest of it.
+     *
+     * @param index the position of the order, in ascending value order
+     * @return the value in the {@link FixedPoint} representation
+     */
+    public long valueUnits(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * Decodes a single order.
+     *
+     * @param index the position of the order, in ascending value order
+     * @return the order
+     */
+    public Order get(int index) {
+        final var value = BigDecimal.valueOf(values.get(index), FixedPoint.SCALE)
+                .setScale(scales.get(index), RoundingMode.UNNECESSARY);
+
+        final var flags = this.flags.get(index);
+        String id = null;
+        if ((flags & HAS_ID) != 0) {
+            final var idBytes = new byte[idOffsets.get(index + 1) - idOffsets.get(index)];
+            ids.get(idOffsets.get(index), idBytes);
+            id = new String(idBytes, StandardCharsets.UTF_8);
+        }
+
+        List<String> orderPromotions = null;
+        if ((flags & HAS_PROMOTIONS) != 0) {
+            final var from = promotionOffsets.get(index);
+            final var names = new String[promotionOffsets.get(index + 1) - from];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = dictionary[promotions.get(from + i)];
+            }
+            orderPromotions = Arrays.asList(names);
+        }
+
+        return new Order(id, value, orderPromotions);
+    }
+
+    /**
+     * @return a stream decoding the orders lazily, in ascending value order
+     */
+    public Stream<Order> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    /**
+     * @return an unmodifiable view of the orders in ascending value order, decoding every order on access
+     */
+    public List<Order> orders() {
+        return new OrderList();
+    }
+
+    private static ByteBuffer map(FileChannel channel, long from, long to) throws IOException {
+        if (from < 0 || to < from || to > channel.size() || to - from > Integer.MAX_VALUE) {
+            throw new IOException("Corrupted snapshot: column at " + from + " to " + to);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer mapForWriting(FileChannel channel, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many orders for a single snapshot");
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, from, to - from).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long units(Order order) {
+        final var scale = order.value().scale();
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Order value cannot be stored in a snapshot: " + order);
+        }
+        try {
+            return order.valueUnits();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Order value cannot be stored in a snapshot: " + order, e);
+        }
+    }
+
+    private final class OrderList extends AbstractList<Order> implements RandomAccess {
+
+        @Override
+        public Order get(int index) {
+            return OrderSnapshot.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -17,9 +17,19 @@ public class PaymentMethodDeserializer implements JsonDeserializer<PaymentMethod
 
         final var id = obj.get("id").getAsString();
         final var integerDiscount = obj.get("discount").getAsBigDecimal();
-        final var decimalDiscount = integerDiscount.divide(HUNDRED, 4, RoundingMode.FLOOR);
+        final var decimalDiscount = toFraction(integerDiscount);
         final var limit = obj.get("limit").getAsBigDecimal();
 
         return new PaymentMethod(id, decimalDiscount, limit);
     }
+
+    /**
+     * Converts a discount given in percent (e.g. 15) into a fraction (e.g. 0.1500).
+     *
+     * @param percent the discount in percent
+     * @return the discount as a fraction with four decimal places, rounded down
+     */
+    public static BigDecimal toFraction(BigDecimal percent) {
+        return percent.divide(HUNDRED, 4, RoundingMode.FLOOR);
+    }
 }
@@ -0,0 +1,74 @@
+package me.wiktorlacki.promotions.loader;
+
+import com.google.gson.stream.JsonWriter;
+import me.wiktorlacki.promotions.discount.RejectedOrder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Writes rejected orders to a JSON file in the format of the orders file, with the reason of every rejection
+ * in an additional {@code reason} field, which loaders skip. The file can therefore be calculated again on its own,
+ * e.g. against payment methods with higher limits.
+ *
+ * Orders are written as they are rejected, so they are never collected in memory. Rejections may be passed from
+ * several threads at once.
+ */
+public class RejectedOrderWriter implements Consumer<RejectedOrder>, Closeable {
+
+    private final JsonWriter writer;
+    private long rejected;
+
+    /**
+     * @param file the file to write the rejected orders to; replaced if it exists
+     * @throws IOException if the file cannot be created
+     */
+    public RejectedOrderWriter(Path file) throws IOException {
+        this.writer = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+        writer.beginArray();
+    }
+
+    /**
+     * @throws UncheckedIOException if the order cannot be written
+     */
+    @Override
+    public synchronized void accept(RejectedOrder rejection) {
+        final var order = rejection.order();
+        try {
+            writer.beginObject();
+            writer.name("id").value(order.id());
+            writer.name("value").value(order.value().toPlainString());
+            if (order.promotions() != null) {
+                writer.name("promotions").beginArray();
+                for (final var promotion : order.promotions()) {
+                    writer.value(promotion);
+                }
+                writer.endArray();
+            }
+            writer.name("reason").value(rejection.reason());
+            writer.endObject();
+            rejected++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of orders written so far
+     */
+    public synchronized long rejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try (writer) {
+            writer.endArray();
+        }
+    }
+}
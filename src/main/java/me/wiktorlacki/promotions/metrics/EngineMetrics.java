@@ -0,0 +1,411 @@
+package me.wiktorlacki.promotions.metrics;
+
+import com.google.gson.stream.JsonWriter;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the discount engine: how often every strategy is evaluated, produces an offer
+ * and has its offer chosen, how long its evaluations take, how many orders are settled or fail, how often an order
+ * has to be evaluated again because a balance was spent in the meantime, how often a payment makes a balance
+ * run out, and how often the offer cache spares the evaluation of an order.
+ *
+ * Recording only increments striped counters and never allocates once a strategy or payment method has been seen,
+ * so the metrics may be shared by all threads of a calculation. Reading the clock costs about as much as a cheap
+ * strategy evaluation, so only a random sample of the evaluations of a strategy is timed; they are all counted. Nothing is recorded unless a
+ * {@link me.wiktorlacki.promotions.discount.DiscountService} is created with the metrics, and without them
+ * the engine does no measuring at all.
+ */
+public final class EngineMetrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p99_9"};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, StrategyMetrics> strategies = new LinkedHashMap<>();
+    private final Map<String, LongAdder> exhaustions = new ConcurrentHashMap<>();
+    private final LatencyHistogram settlements = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder offerCacheHits = new LongAdder();
+    private final LongAdder offerCacheMisses = new LongAdder();
+    private final LongAdder offerCacheInvalidations = new LongAdder();
+
+    /**
+     * Returns the metrics of a strategy, creating them on first use. Strategies of the same name, e.g. those of
+     * several processors of one calculation, share their metrics.
+     *
+     * @param name the name of the strategy
+     * @return the metrics of the strategy
+     */
+    public synchronized StrategyMetrics strategy(String name) {
+        return strategies.computeIfAbsent(name, key -> new StrategyMetrics());
+    }
+
+    /**
+     * Records an order whose payments were taken.
+     *
+     * @param nanos the time spent settling the order, including evaluating its offers
+     */
+    public void settled(long nanos) {
+        settlements.record(nanos);
+    }
+
+    /**
+     * Records an order for which no strategy produced an offer, or whose settlement failed otherwise.
+     */
+    public void failed() {
+        failures.increment();
+    }
+
+    /**
+     * Records an offer which could not be used because a balance it was based on was spent in the meantime,
+     * e.g. by another thread, so the order was evaluated again.
+     */
+    public void conflict() {
+        conflicts.increment();
+    }
+
+    /**
+     * Records a lookup of the {@link me.wiktorlacki.promotions.discount.OfferCache} which found a remembered offer
+     * that is still valid, so the order was not evaluated.
+     */
+    public void offerCacheHit() {
+        offerCacheHits.increment();
+    }
+
+    /**
+     * Records a lookup of the {@link me.wiktorlacki.promotions.discount.OfferCache} after which the order was
+     * evaluated.
+     *
+     * @param invalidated whether an offer was remembered for the shape of the order, but a payment method it uses was
+     *                    spent since
+     */
+    public void offerCacheMiss(boolean invalidated) {
+        offerCacheMisses.increment();
+        if (invalidated) offerCacheInvalidations.increment();
+    }
+
+    /**
+     * Records a payment which left the balance of its payment method at zero.
+     *
+     * @param paymentMethod the exhausted payment method
+     */
+    public void exhausted(PaymentMethod paymentMethod) {
+        final var counter = exhaustions.get(paymentMethod.id());
+        (counter != null ? counter : exhaustions.computeIfAbsent(paymentMethod.id(), key -> new LongAdder())).increment();
+    }
+
+    /**
+     * @return the number of settled orders
+     */
+    public long settledOrders() {
+        return settlements.snapshot().count();
+    }
+
+    /**
+     * @return the number of orders which failed
+     */
+    public long failedOrders() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the number of times an order was evaluated again because a balance was spent in the meantime
+     */
+    public long conflicts() {
+        return conflicts.sum();
+    }
+
+    /**
+     * @return the number of orders whose offer was taken from the offer cache
+     */
+    public long offerCacheHits() {
+        return offerCacheHits.sum();
+    }
+
+    /**
+     * @return the number of lookups of the offer cache after which the order was evaluated, including invalidations
+     */
+    public long offerCacheMisses() {
+        return offerCacheMisses.sum();
+    }
+
+    /**
+     * @return the number of offers of the offer cache which were found invalid because a balance was spent
+     */
+    public long offerCacheInvalidations() {
+        return offerCacheInvalidations.sum();
+    }
+
+    /**
+     * @param paymentMethod the identifier of a payment method
+     * @return how often a payment left the balance of the payment method at zero
+     */
+    public long exhaustions(String paymentMethod) {
+        final var counter = exhaustions.get(paymentMethod);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Writes all metrics in the given format.
+     *
+     * @param format the format
+     * @param out    the destination; not closed
+     * @throws IOException if writing fails
+     */
+    public void write(Format format, Writer out) throws IOException {
+        switch (format) {
+            case JSON -> writeJson(out);
+            case PROMETHEUS -> writePrometheus(out);
+        }
+    }
+
+    /**
+     * Writes all metrics as a JSON object. Latencies are given in nanoseconds; the throughput is the number of
+     * settled orders per second since the metrics were created.
+     *
+     * @param out the destination; not closed
+     * @throws IOException if writing fails
+     */
+    public void writeJson(Writer out) throws IOException {
+        final var elapsed = elapsedSeconds();
+        final var settled = settlements.snapshot();
+        final var writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.beginObject();
+        writer.name("elapsed_s").value(elapsed);
+        writer.name("orders_settled").value(settled.count());
+        writer.name("orders_failed").value(failures.sum());
+        writer.name("orders_per_s").value(elapsed > 0 ? settled.count() / elapsed : 0);
+        writer.name("conflicts").value(conflicts.sum());
+        writer.name("settlement_ns");
+        writeHistogram(writer, settled);
+
+        writer.name("strategies").beginObject();
+        for (final var strategy : strategySnapshot().entrySet()) {
+            final var metrics = strategy.getValue();
+            final var evaluations = metrics.evaluations.sum();
+            writer.name(strategy.getKey()).beginObject();
+            writer.name("evaluations").value(evaluations);
+            writer.name("offers").value(metrics.offers.sum());
+            writer.name("chosen").value(metrics.chosen.sum());
+            writer.name("offer_rate").value(evaluations == 0 ? 0 : (double) metrics.offers.sum() / evaluations);
+            // A sample of the evaluations, see StrategyMetrics.TIMING_SAMPLE_RATE.
+            writer.name("evaluation_ns");
+            writeHistogram(writer, metrics.latencies.snapshot());
+            writer.endObject();
+        }
+        writer.endObject();
+
+        final var hits = offerCacheHits.sum();
+        final var misses = offerCacheMisses.sum();
+        writer.name("offer_cache").beginObject();
+        writer.name("hits").value(hits);
+        writer.name("misses").value(misses);
+        writer.name("invalidations").value(offerCacheInvalidations.sum());
+        writer.name("hit_rate").value(hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        writer.endObject();
+
+        writer.name("exhaustions").beginObject();
+        for (final var exhaustion : new TreeMap<>(exhaustions).entrySet()) {
+            writer.name(exhaustion.getKey()).value(exhaustion.getValue().sum());
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
+        out.write('\n');
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format. Latencies are summaries in seconds.
+     *
+     * @param out the destination; not closed
+     * @throws IOException if writing fails
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        final var settled = settlements.snapshot();
+        counter(out, "promotions_orders_settled_total", "Orders whose payments were taken.", settled.count());
+        counter(out, "promotions_orders_failed_total", "Orders which could not be settled.", failures.sum());
+        counter(out, "promotions_conflicts_total", "Orders evaluated again because a balance was spent in the meantime.", conflicts.sum());
+        gauge(out, "promotions_elapsed_seconds", "Time since the metrics were created.", elapsedSeconds());
+        header(out, "promotions_settlement_seconds", "summary", "Time spent settling an order.");
+        summary(out, "promotions_settlement_seconds", "", settled);
+
+        final var strategies = strategySnapshot();
+        header(out, "promotions_strategy_evaluations_total", "counter", "Evaluations of a strategy.");
+        for (final var strategy : strategies.entrySet()) {
+            sample(out, "promotions_strategy_evaluations_total", label("strategy", strategy.getKey()), strategy.getValue().evaluations.sum());
+        }
+        header(out, "promotions_strategy_offers_total", "counter", "Evaluations of a strategy which produced an offer.");
+        for (final var strategy : strategies.entrySet()) {
+            sample(out, "promotions_strategy_offers_total", label("strategy", strategy.getKey()), strategy.getValue().offers.sum());
+        }
+        header(out, "promotions_strategy_chosen_total", "counter", "Evaluations in which the offer of a strategy was chosen.");
+        for (final var strategy : strategies.entrySet()) {
+            sample(out, "promotions_strategy_chosen_total", label("strategy", strategy.getKey()), strategy.getValue().chosen.sum());
+        }
+        header(out, "promotions_strategy_evaluation_seconds", "summary", "Time spent evaluating a strategy.");
+        for (final var strategy : strategies.entrySet()) {
+            summary(out, "promotions_strategy_evaluation_seconds", label("strategy", strategy.getKey()),
+                    strategy.getValue().latencies.snapshot());
+        }
+
+        counter(out, "promotions_offer_cache_hits_total", "Orders whose offer was taken from the offer cache.", offerCacheHits.sum());
+        counter(out, "promotions_offer_cache_misses_total", "Lookups of the offer cache after which the order was evaluated.",
+                offerCacheMisses.sum());
+        counter(out, "promotions_offer_cache_invalidations_total", "Cached offers found invalid because a balance was spent.",
+                offerCacheInvalidations.sum());
+
+        header(out, "promotions_balance_exhaustions_total", "counter", "Payments which left a balance at zero.");
+        for (final var exhaustion : new TreeMap<>(exhaustions).entrySet()) {
+            sample(out, "promotions_balance_exhaustions_total", label("method", exhaustion.getKey()), exhaustion.getValue().sum());
+        }
+    }
+
+    private synchronized Map<String, StrategyMetrics> strategySnapshot() {
+        return new LinkedHashMap<>(strategies);
+    }
+
+    private double elapsedSeconds() {
+        return (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    }
+
+    private static void writeHistogram(JsonWriter writer, LatencyHistogram.Snapshot snapshot) throws IOException {
+        writer.beginObject();
+        writer.name("count").value(snapshot.count());
+        writer.name("mean").value(snapshot.mean());
+        for (int i = 0; i < QUANTILES.length; i++) {
+            writer.name(QUANTILE_NAMES[i]).value(snapshot.quantile(QUANTILES[i]));
+        }
+        writer.name("max").value(snapshot.max());
+        writer.endObject();
+    }
+
+    private static void counter(Writer out, String name, String help, long value) throws IOException {
+        header(out, name, "counter", help);
+        sample(out, name, "", value);
+    }
+
+    private static void gauge(Writer out, String name, String help, double value) throws IOException {
+        header(out, name, "gauge", help);
+        out.write(name + " " + value + "\n");
+    }
+
+    private static void header(Writer out, String name, String type, String help) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void sample(Writer out, String name, String labels, long value) throws IOException {
+        out.write(name + (labels.isEmpty() ? "" : "{" + labels + "}") + " " + value + "\n");
+    }
+
+    private static void summary(Writer out, String name, String labels, LatencyHistogram.Snapshot snapshot) throws IOException {
+        final var prefix = labels.isEmpty() ? "" : labels + ",";
+        for (final var quantile : QUANTILES) {
+            out.write(name + "{" + prefix + "quantile=\"" + quantile + "\"} "
+                    + snapshot.quantile(quantile) / NANOS_PER_SECOND + "\n");
+        }
+        final var suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.write(name + "_sum" + suffix + " " + snapshot.mean() * snapshot.count() / NANOS_PER_SECOND + "\n");
+        out.write(name + "_count" + suffix + " " + snapshot.count() + "\n");
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    /**
+     * The formats the metrics can be written in.
+     */
+    public enum Format {
+        JSON,
+        PROMETHEUS
+    }
+
+    /**
+     * The metrics of a single strategy.
+     */
+    public static final class StrategyMetrics {
+
+        /**
+         * One in this many evaluations is timed.
+         */
+        public static final int TIMING_SAMPLE_RATE = 16;
+
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder offers = new LongAdder();
+        private final LongAdder chosen = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private StrategyMetrics() {
+        }
+
+        /**
+         * @return whether the next evaluation should be timed and recorded with {@link #evaluated(boolean, long)}
+         *         instead of {@link #evaluated(boolean)}
+         */
+        public boolean sample() {
+            return ThreadLocalRandom.current().nextInt(TIMING_SAMPLE_RATE) == 0;
+        }
+
+        /**
+         * Records an evaluation of the strategy which was not timed.
+         *
+         * @param offer whether the strategy produced an offer
+         */
+        public void evaluated(boolean offer) {
+            evaluations.increment();
+            if (offer) offers.increment();
+        }
+
+        /**
+         * Records a timed evaluation of the strategy.
+         *
+         * @param offer whether the strategy produced an offer
+         * @param nanos the time the evaluation took
+         */
+        public void evaluated(boolean offer, long nanos) {
+            evaluated(offer);
+            latencies.record(nanos);
+        }
+
+        /**
+         * Records that the offer of the strategy was the best one of an evaluation.
+         */
+        public void chosen() {
+            chosen.increment();
+        }
+
+        /**
+         * @return the number of evaluations of the strategy
+         */
+        public long evaluations() {
+            return evaluations.sum();
+        }
+
+        /**
+         * @return the number of evaluations which produced an offer
+         */
+        public long offers() {
+            return offers.sum();
+        }
+
+        /**
+         * @return the number of evaluations in which the offer of the strategy was chosen
+         */
+        public long chosenOffers() {
+            return chosen.sum();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package me.wiktorlacki.promotions.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latencies in nanoseconds with a bounded relative error.
+ *
+ * Values are counted in log-linear buckets: every power of two is split into {@value #SUB_BUCKETS} equally wide
+ * buckets, so a recorded value is off by at most 12.5% when read back, whatever its magnitude. Recording is a few
+ * atomic increments and never allocates, so it can be done on every request.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        final var value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Takes a consistent-enough copy of the histogram; values recorded concurrently may or may not be included.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        final var copy = new long[BUCKETS];
+        var total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        final var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        final var exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final var subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * An immutable copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the mean of the recorded values in nanoseconds, or 0 if nothing was recorded
+         */
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return the highest recorded value in nanoseconds
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * Returns the value below which the given fraction of the recorded values falls.
+         *
+         * @param quantile the fraction, between 0 and 1
+         * @return the upper bound of the bucket holding the quantile, in nanoseconds, never above {@link #max()};
+         *         0 if nothing was recorded
+         */
+        public long quantile(double quantile) {
+            if (quantile < 0 || quantile > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+            if (count == 0) return 0;
+
+            final var rank = Math.max(1, (long) Math.ceil(quantile * count));
+            var seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // The bound of the bucket after the highest one overflows.
+                    final var next = i + 1 < BUCKETS ? lowerBound(i + 1) : 0;
+                    return Math.min(next > 0 ? next - 1 : Long.MAX_VALUE, max);
+                }
+            }
+            return max;
+        }
+    }
+}
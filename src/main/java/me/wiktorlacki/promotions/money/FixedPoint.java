@@ -0,0 +1,127 @@
+package me.wiktorlacki.promotions.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic on monetary amounts and rates represented as scaled {@code long}s.
+ *
+ * Amounts are stored in millionths ({@link #SCALE} decimal places) and rates in ten-thousandths
+ * ({@link #RATE_SCALE} decimal places, the precision produced by the payment method loader).
+ * An amount with at most two decimal places multiplied by a rate therefore always fits the amount scale
+ * exactly, which is what makes the results identical to the {@link BigDecimal} based calculations.
+ * Every operation which would lose precision or overflow throws an {@link ArithmeticException}
+ * instead of silently rounding.
+ */
+public final class FixedPoint {
+
+    /**
+     * The number of decimal places of an amount.
+     */
+    public static final int SCALE = 6;
+
+    /**
+     * The number of decimal places of a rate.
+     */
+    public static final int RATE_SCALE = 4;
+
+    /**
+     * A rate of 100%.
+     */
+    public static final long RATE_ONE = 10_000;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Converts an amount to its fixed-point representation.
+     *
+     * @param amount the amount to convert
+     * @return the amount in millionths
+     * @throws ArithmeticException if the amount has more than {@link #SCALE} decimal places or does not fit into a long
+     */
+    public static long of(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts a rate (e.g. 0.15 for 15%) to its fixed-point representation.
+     *
+     * @param rate the rate to convert
+     * @return the rate in ten-thousandths
+     * @throws ArithmeticException if the rate has more than {@link #RATE_SCALE} decimal places
+     */
+    public static long rate(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts a fixed-point amount back to a {@link BigDecimal} with {@link #SCALE} decimal places.
+     *
+     * @param units the amount in millionths
+     * @return the amount as a decimal
+     */
+    public static BigDecimal toBigDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /**
+     * Multiplies an amount by a rate.
+     *
+     * @param amount the amount in millionths
+     * @param rate   the rate in ten-thousandths
+     * @return the product in millionths
+     * @throws ArithmeticException if the product overflows or cannot be represented exactly
+     */
+    public static long applyRate(long amount, long rate) {
+        final var product = Math.multiplyExact(amount, rate);
+        if (product % RATE_ONE != 0) {
+            throw new ArithmeticException("Product of " + toBigDecimal(amount) + " and rate " + rate
+                    + " cannot be represented with scale " + SCALE);
+        }
+        return product / RATE_ONE;
+    }
+
+    /**
+     * Multiplies an amount by a rate, rounding the product up instead of failing when it cannot be represented
+     * exactly. Used for bounds, which have to be computable for every amount {@link #applyRate(long, long)} is.
+     *
+     * @param amount a non-negative amount in millionths
+     * @param rate   a rate in ten-thousandths, at most {@link #RATE_ONE}
+     * @return the product in millionths, rounded up
+     */
+    public static long applyRateRoundingUp(long amount, long rate) {
+        return amount / RATE_ONE * rate + (amount % RATE_ONE * rate + RATE_ONE - 1) / RATE_ONE;
+    }
+
+    /**
+     * Computes the ratio of two amounts as a rate, rounded down to {@link #RATE_SCALE} decimal places.
+     *
+     * @param amount the dividend in millionths
+     * @param total  the divisor in millionths
+     * @return the ratio in ten-thousandths
+     * @throws ArithmeticException if {@code total} is zero or the intermediate result overflows
+     */
+    public static long ratio(long amount, long total) {
+        return Math.multiplyExact(amount, RATE_ONE) / total;
+    }
+
+    /**
+     * Computes the ratio of two amounts as a rate, rounded down to {@code scale} decimal places if that is fewer
+     * than {@link #RATE_SCALE}, like dividing a {@link BigDecimal} amount of that scale with {@link RoundingMode#DOWN}.
+     *
+     * @param amount a non-negative dividend in millionths
+     * @param total  the divisor in millionths
+     * @param scale  the number of decimal places to keep, which may be zero or negative
+     * @return the ratio in ten-thousandths
+     * @throws ArithmeticException if {@code total} is zero or the intermediate result overflows
+     */
+    public static long ratio(long amount, long total, int scale) {
+        final var ratio = ratio(amount, total);
+        var step = 1L;
+        for (int i = scale; i < RATE_SCALE && step <= ratio; i++) {
+            step *= 10;
+        }
+        return ratio / step * step;
+    }
+}
@@ -0,0 +1,17 @@
+package me.wiktorlacki.promotions.money;
+
+/**
+ * Selects how monetary amounts are represented while processing orders.
+ */
+public enum MoneyMode {
+
+    /**
+     * Amounts are {@link java.math.BigDecimal}s of arbitrary scale.
+     */
+    DECIMAL,
+
+    /**
+     * Amounts are {@code long}s scaled by {@link FixedPoint#SCALE}, see {@link FixedPoint}.
+     */
+    FIXED_POINT
+}
@@ -0,0 +1,83 @@
+package me.wiktorlacki.promotions.offer;
+
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * The {@link FixedPoint} counterpart of {@link Offer}: all amounts are scaled {@code long}s and the
+ * payments are kept in two parallel arrays instead of a boxed map.
+ *
+ * @param type     the identifier of the discount strategy applied
+ * @param price    the total discounted price of the order, in millionths
+ * @param methods  the payment methods taking part in the payment
+ * @param amounts  the amount paid with the payment method at the same position, in millionths
+ */
+public record FixedOffer(String type, long price, PaymentMethod[] methods, long[] amounts) {
+
+    public static FixedOffer single(String type, long price, PaymentMethod method, long amount) {
+        return new FixedOffer(type, price, new PaymentMethod[]{method}, new long[]{amount});
+    }
+
+    public static FixedOffer pair(String type, long price, PaymentMethod first, long firstAmount,
+                                  PaymentMethod second, long secondAmount) {
+        return new FixedOffer(type, price, new PaymentMethod[]{first, second}, new long[]{firstAmount, secondAmount});
+    }
+
+    /**
+     * Converts a {@link BigDecimal}-based offer to its fixed-point counterpart.
+     *
+     * @param offer the offer to convert
+     * @return the converted offer
+     * @throws ArithmeticException if any of the amounts cannot be represented exactly
+     */
+    public static FixedOffer of(Offer offer) {
+        final var methods = new PaymentMethod[offer.payments().size()];
+        final var amounts = new long[methods.length];
+        var i = 0;
+        for (final var payment : offer.payments().entrySet()) {
+            methods[i] = payment.getKey();
+            amounts[i] = FixedPoint.of(payment.getValue());
+            i++;
+        }
+        return new FixedOffer(offer.type(), FixedPoint.of(offer.price()), methods, amounts);
+    }
+
+    /**
+     * Returns the amount paid with the given payment method.
+     *
+     * @param method the payment method
+     * @return the amount in millionths, or -1 if the method takes no part in this offer
+     */
+    public long amount(PaymentMethod method) {
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i].equals(method)) return amounts[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Passes every payment of this offer to the given consumer.
+     *
+     * @param consumer the consumer receiving the payment method and the amount in millionths
+     */
+    public void forEachPayment(ObjLongConsumer<PaymentMethod> consumer) {
+        for (int i = 0; i < methods.length; i++) {
+            consumer.accept(methods[i], amounts[i]);
+        }
+    }
+
+    /**
+     * Converts this offer to a {@link BigDecimal}-based {@link Offer}.
+     *
+     * @return the converted offer
+     */
+    public Offer toOffer() {
+        final var payments = new HashMap<PaymentMethod, BigDecimal>();
+        forEachPayment((method, amount) -> payments.put(method, FixedPoint.toBigDecimal(amount)));
+        return Offer.make(type, FixedPoint.toBigDecimal(price), payments);
+    }
+}
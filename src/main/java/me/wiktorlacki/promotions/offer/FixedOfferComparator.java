@@ -0,0 +1,60 @@
+package me.wiktorlacki.promotions.offer;
+
+import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.util.Comparator;
+
+@RequiredArgsConstructor
+public class FixedOfferComparator implements Comparator<FixedOffer> {
+
+    private final PaymentService paymentService;
+
+    /**
+     * Compares two {@link FixedOffer} instances exactly like {@link OfferComparator} compares
+     * their {@link Offer} counterparts: by price first, then by the amount of points used.
+     *
+     * @param o1 the first offer to compare
+     * @param o2 the second offer to compare
+     * @return the result of comparison of o1 and o2
+     */
+    @Override
+    public int compare(FixedOffer o1, FixedOffer o2) {
+        final var comparison = Long.compare(o1.price(), o2.price());
+        if (comparison != 0) {
+            return comparison;
+        }
+
+        final var points = paymentService.points();
+        return comparePoints(o1.amount(points), o2.amount(points));
+    }
+
+    /**
+     * Compares the offers held by two non-empty {@link OfferSlot}s like {@link #compare(FixedOffer, FixedOffer)}.
+     *
+     * @param o1 the first offer to compare
+     * @param o2 the second offer to compare
+     * @return the result of comparison of o1 and o2
+     */
+    public int compare(OfferSlot o1, OfferSlot o2) {
+        final var comparison = Long.compare(o1.price(), o2.price());
+        if (comparison != 0) {
+            return comparison;
+        }
+
+        final var points = paymentService.points();
+        return comparePoints(o1.amount(points), o2.amount(points));
+    }
+
+    private static int comparePoints(long points1, long points2) {
+        if (points1 >= 0 && points2 >= 0) {
+            return Long.compare(points2, points1);
+        }
+
+        if (points1 < 0) {
+            return 1;
+        }
+
+        return -1;
+    }
+}
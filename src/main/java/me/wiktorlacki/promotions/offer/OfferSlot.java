@@ -0,0 +1,209 @@
+package me.wiktorlacki.promotions.offer;
+
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.util.Arrays;
+
+/**
+ * A mutable, reusable counterpart of {@link FixedOffer}. Discount strategies write their candidate offer
+ * into a preallocated slot instead of creating a new offer, so evaluating an order allocates nothing.
+ *
+ * A slot is either empty or holds one offer. The payment arrays grow when an offer with more payments than
+ * ever before is written, which only happens during warm-up; most built-in strategies use at most two payments.
+ */
+public final class OfferSlot {
+
+    private static final int INITIAL_CAPACITY = 2;
+
+    private String type;
+    private long price;
+    private PaymentMethod[] methods = new PaymentMethod[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Empties this slot.
+     */
+    public void clear() {
+        type = null;
+        size = 0;
+    }
+
+    /**
+     * Returns whether this slot holds no offer.
+     *
+     * @return true if no offer was written since the last {@link #clear()}
+     */
+    public boolean isEmpty() {
+        return type == null;
+    }
+
+    /**
+     * Writes an offer paid with a single payment method.
+     *
+     * @param type   the identifier of the discount strategy applied
+     * @param price  the total discounted price of the order, in millionths
+     * @param method the payment method
+     * @param amount the amount paid with the payment method, in millionths
+     */
+    public void single(String type, long price, PaymentMethod method, long amount) {
+        begin(type, price, 1);
+        put(method, amount);
+    }
+
+    /**
+     * Writes an offer paid with two payment methods.
+     *
+     * @param type         the identifier of the discount strategy applied
+     * @param price        the total discounted price of the order, in millionths
+     * @param first        the first payment method
+     * @param firstAmount  the amount paid with the first payment method, in millionths
+     * @param second       the second payment method
+     * @param secondAmount the amount paid with the second payment method, in millionths
+     */
+    public void pair(String type, long price, PaymentMethod first, long firstAmount, PaymentMethod second, long secondAmount) {
+        begin(type, price, 2);
+        put(first, firstAmount);
+        put(second, secondAmount);
+    }
+
+    /**
+     * Starts writing an offer paid with any number of payment methods, which are then added one by one
+     * with {@link #add(PaymentMethod, long)}.
+     *
+     * @param type  the identifier of the discount strategy applied
+     * @param price the total discounted price of the order, in millionths
+     */
+    public void begin(String type, long price) {
+        begin(type, price, 0);
+    }
+
+    /**
+     * Adds a payment to the offer started with {@link #begin(String, long)}.
+     *
+     * @param method the payment method
+     * @param amount the amount paid with the payment method, in millionths
+     */
+    public void add(PaymentMethod method, long amount) {
+        if (size == methods.length) {
+            methods = Arrays.copyOf(methods, 2 * size);
+            amounts = Arrays.copyOf(amounts, 2 * size);
+        }
+        put(method, amount);
+    }
+
+    /**
+     * Writes the given offer.
+     *
+     * @param offer the offer to copy
+     */
+    public void set(FixedOffer offer) {
+        begin(offer.type(), offer.price(), offer.methods().length);
+        for (int i = 0; i < offer.methods().length; i++) {
+            put(offer.methods()[i], offer.amounts()[i]);
+        }
+    }
+
+    /**
+     * Writes the offer held by another slot, or empties this slot if the other one is empty.
+     *
+     * @param other the slot to copy
+     */
+    public void copyFrom(OfferSlot other) {
+        if (other.isEmpty()) {
+            clear();
+            return;
+        }
+        begin(other.type, other.price, other.size);
+        for (int i = 0; i < other.size; i++) {
+            put(other.methods[i], other.amounts[i]);
+        }
+    }
+
+    public String type() {
+        return type;
+    }
+
+    /**
+     * @return the total discounted price of the order, in millionths
+     */
+    public long price() {
+        return price;
+    }
+
+    /**
+     * @return the number of payment methods taking part in the payment
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the position of the payment, below {@link #size()}
+     * @return the payment method at the given position
+     */
+    public PaymentMethod method(int i) {
+        return methods[i];
+    }
+
+    /**
+     * @param i the position of the payment, below {@link #size()}
+     * @return the amount paid at the given position, in millionths
+     */
+    public long amount(int i) {
+        return amounts[i];
+    }
+
+    /**
+     * Returns the amount paid with the given payment method, like {@link FixedOffer#amount(PaymentMethod)}.
+     *
+     * @param method the payment method
+     * @return the amount in millionths, or -1 if the method takes no part in this offer
+     */
+    public long amount(PaymentMethod method) {
+        for (int i = 0; i < size; i++) {
+            if (methods[i].equals(method)) return amounts[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Converts the held offer to an immutable {@link FixedOffer}, for callers of the {@link java.util.Optional}
+     * based API. This allocates, so it should stay off the hot path.
+     *
+     * @return the offer
+     * @throws IllegalStateException if this slot is empty
+     */
+    public FixedOffer toFixedOffer() {
+        if (isEmpty()) throw new IllegalStateException("Offer slot is empty");
+        return new FixedOffer(type, price, Arrays.copyOf(methods, size), Arrays.copyOf(amounts, size));
+    }
+
+    private void begin(String type, long price, int capacity) {
+        if (capacity > methods.length) {
+            methods = Arrays.copyOf(methods, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+        this.type = type;
+        this.price = price;
+        this.size = 0;
+    }
+
+    private void put(PaymentMethod method, long amount) {
+        methods[size] = method;
+        amounts[size] = amount;
+        size++;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) return "OfferSlot[empty]";
+        final var payments = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) payments.append(", ");
+            payments.append(methods[i].id()).append('=').append(FixedPoint.toBigDecimal(amounts[i]).toPlainString());
+        }
+        return "OfferSlot[type=" + type + ", price=" + FixedPoint.toBigDecimal(price).toPlainString() + ", payments={" + payments + "}]";
+    }
+}
@@ -0,0 +1,33 @@
+package me.wiktorlacki.promotions.optimizer;
+
+import me.wiktorlacki.promotions.SpendingReport;
+
+import java.math.BigDecimal;
+
+/**
+ * The outcome of a {@link SpendOptimizer} run.
+ *
+ * @param report       the spending report of the best assignment found, never worse than {@code greedyReport}
+ * @param greedyReport the spending report of the regular greedy calculation
+ * @param optimal      whether the search space was exhausted, which proves that {@code report} is optimal
+ * @param nodes        the number of search nodes visited
+ */
+public record OptimizationResult(SpendingReport report, SpendingReport greedyReport, boolean optimal, long nodes) {
+
+    /**
+     * Returns the amount saved compared to the greedy calculation.
+     *
+     * @return the difference between the greedy and the optimized total spend, never negative
+     */
+    public BigDecimal savings() {
+        return greedyReport.total().subtract(report.total());
+    }
+
+    @Override
+    public String toString() {
+        return "Greedy total: " + greedyReport.total().toPlainString()
+                + ", optimized total: " + report.total().toPlainString()
+                + ", saved: " + savings().toPlainString()
+                + (optimal ? " (optimal)" : " (time budget exhausted, " + nodes + " nodes searched)");
+    }
+}
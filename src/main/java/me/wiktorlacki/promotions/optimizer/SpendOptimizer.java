@@ -0,0 +1,276 @@
+package me.wiktorlacki.promotions.optimizer;
+
+import lombok.RequiredArgsConstructor;
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Minimizes the total amount spent across all orders, instead of picking the locally best offer for each order.
+ *
+ * The greedy {@link DiscountService} may, for example, spend points on an early order which a later, larger
+ * order could have turned into a bigger discount. This optimizer first runs the greedy calculation and then
+ * performs a depth-first branch-and-bound search over the assignment of every order to a way of paying for it
+ * (full points, partial points with any card, or any single card), pruning with a lower bound built from the
+ * cheapest conceivable price of each remaining order. The greedy result is the initial incumbent and only strictly
+ * cheaper assignments replace it, so the result is never worse than greedy. The search stops when its time budget
+ * runs out, in which case the best assignment found so far is used.
+ */
+@RequiredArgsConstructor
+public class SpendOptimizer {
+
+    /**
+     * The time budget used when none is configured.
+     */
+    public static final Duration DEFAULT_TIME_BUDGET = Duration.ofSeconds(10);
+
+    private static final int DEADLINE_CHECK_INTERVAL = 1 << 12;
+    private static final long PARTIAL_POINTS_THRESHOLD_RATE = FixedPoint.rate(Constants.PARTIAL_POINTS_DISCOUNT_THRESHOLD);
+    private static final long PARTIAL_POINTS_PAYMENT_RATE = FixedPoint.rate(Constants.PARTIAL_POINTS_PAYMENT_DISCOUNT);
+
+    private final List<PaymentMethod> paymentMethods;
+    private final MoneyMode mode;
+    private final Duration timeBudget;
+
+    /**
+     * Calculates the spending report with the lowest total spend found within the time budget.
+     *
+     * @param orders the orders to process
+     * @return the optimized report together with the greedy report it is compared against
+     * @throws IllegalStateException if the orders cannot be paid at all, like {@link DiscountService#calculate(List)}
+     */
+    public OptimizationResult optimize(List<Order> orders) {
+        final var greedyReport = DiscountService.create(newPaymentService()).calculate(new ArrayList<>(orders));
+
+        final Search search;
+        try {
+            search = new Search(orders, FixedPoint.of(greedyReport.total()));
+        } catch (ArithmeticException e) {
+            // Amounts which cannot be represented exactly cannot be searched over, greedy is the best we can do.
+            return new OptimizationResult(greedyReport, greedyReport, false, 0);
+        }
+
+        final var optimal = search.run(System.nanoTime() + timeBudget.toNanos());
+        if (search.best == null) {
+            return new OptimizationResult(greedyReport, greedyReport, optimal, search.nodes);
+        }
+
+        final var paymentService = newPaymentService();
+        search.replay(paymentService);
+        return new OptimizationResult(paymentService.generateReport(), greedyReport, optimal, search.nodes);
+    }
+
+    private PaymentService newPaymentService() {
+        return new PaymentService(new PaymentMethodsContainer(paymentMethods, mode));
+    }
+
+    /**
+     * A way of paying for a single order.
+     *
+     * @param card         the index of the card taking part, or {@link PaymentMethod#UNINDEXED} for full points
+     * @param price        the discounted price of the order
+     * @param pointsAmount the amount paid with points
+     * @param cardAmount   the amount paid with the card
+     */
+    private record Option(int card, long price, long pointsAmount, long cardAmount) { }
+
+    /**
+     * The search state. Orders are visited from the most to the least valuable, since large orders constrain
+     * the balances the most and fixing them first makes the bound prune earlier.
+     */
+    private final class Search {
+
+        private final PaymentMethod[] methods;
+        private final int points;
+        private final long[] balances;
+        private final long[] rates;
+
+        private final long[] values;
+        private final int[][] promotions;
+        private final long[] remainingLowerBound;
+
+        private final Option[][] options;
+        private final int[] cursors;
+        private final Option[] chosen;
+
+        private Option[] best;
+        private long bestTotal;
+        private long nodes;
+
+        private Search(List<Order> orders, long greedyTotal) {
+            final var container = new PaymentMethodsContainer(paymentMethods, MoneyMode.FIXED_POINT);
+            this.methods = new PaymentMethod[container.size()];
+            this.balances = new long[methods.length];
+            this.rates = new long[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = container.byIndex(i);
+                balances[i] = container.balanceUnits(i);
+                rates[i] = container.discountRate(i);
+            }
+            this.points = container.byName(Constants.POINTS_METHOD).map(PaymentMethod::index).orElse(PaymentMethod.UNINDEXED);
+
+            final var sorted = orders.stream()
+                    .sorted(Comparator.comparing(Order::value).reversed())
+                    .toList();
+            this.values = new long[sorted.size()];
+            this.promotions = new int[sorted.size()][];
+            this.remainingLowerBound = new long[sorted.size() + 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = sorted.get(i).valueUnits();
+                promotions[i] = sorted.get(i).promotions() == null ? new int[0] : container.indicesOf(sorted.get(i).promotions());
+            }
+            for (int i = values.length - 1; i >= 0; i--) {
+                remainingLowerBound[i] = remainingLowerBound[i + 1] + lowestConceivablePrice(i);
+            }
+
+            this.options = new Option[values.length][];
+            this.cursors = new int[values.length];
+            this.chosen = new Option[values.length];
+            this.bestTotal = greedyTotal;
+        }
+
+        /**
+         * Runs the search until it is exhausted or the deadline passes.
+         *
+         * @return whether the search space was exhausted
+         */
+        private boolean run(long deadline) {
+            if (values.length == 0) return true;
+
+            var depth = 0;
+            var total = 0L;
+            enter(0);
+
+            while (depth >= 0) {
+                if (++nodes % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) return false;
+
+                if (chosen[depth] != null) {
+                    total -= chosen[depth].price();
+                    undo(chosen[depth]);
+                    chosen[depth] = null;
+                }
+
+                if (cursors[depth] == options[depth].length) {
+                    depth--;
+                    continue;
+                }
+
+                final var option = options[depth][cursors[depth]++];
+                if (total + option.price() + remainingLowerBound[depth + 1] >= bestTotal) {
+                    // Options are sorted by price, so none of the remaining ones can do better either.
+                    cursors[depth] = options[depth].length;
+                    continue;
+                }
+
+                apply(option);
+                chosen[depth] = option;
+                total += option.price();
+
+                if (depth + 1 == values.length) {
+                    bestTotal = total;
+                    best = chosen.clone();
+                } else {
+                    enter(++depth);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Settles the best assignment against the given payment service, in search order.
+         */
+        private void replay(PaymentService paymentService) {
+            for (final var option : best) {
+                if (option.pointsAmount() > 0) paymentService.takeUnits(methods[points], option.pointsAmount());
+                if (option.card() != PaymentMethod.UNINDEXED) paymentService.takeUnits(methods[option.card()], option.cardAmount());
+            }
+        }
+
+        private void enter(int depth) {
+            options[depth] = feasibleOptions(depth);
+            cursors[depth] = 0;
+        }
+
+        private void apply(Option option) {
+            if (option.pointsAmount() > 0) balances[points] -= option.pointsAmount();
+            if (option.card() != PaymentMethod.UNINDEXED) balances[option.card()] -= option.cardAmount();
+        }
+
+        private void undo(Option option) {
+            if (option.pointsAmount() > 0) balances[points] += option.pointsAmount();
+            if (option.card() != PaymentMethod.UNINDEXED) balances[option.card()] += option.cardAmount();
+        }
+
+        /**
+         * Lists the ways of paying for an order which the current balances allow, cheapest first.
+         * The rules are the same as in the built-in discount strategies, except that any card may be used.
+         */
+        private Option[] feasibleOptions(int depth) {
+            final var value = values[depth];
+            final var feasible = new ArrayList<Option>();
+
+            if (points != PaymentMethod.UNINDEXED) {
+                final var fullPointsPrice = value - FixedPoint.applyRate(value, rates[points]);
+                if (balances[points] >= fullPointsPrice) {
+                    feasible.add(new Option(PaymentMethod.UNINDEXED, fullPointsPrice, fullPointsPrice, 0));
+                }
+
+                if (FixedPoint.ratio(balances[points], value) >= PARTIAL_POINTS_THRESHOLD_RATE) {
+                    final var pointsSpent = FixedPoint.applyRate(value, PARTIAL_POINTS_PAYMENT_RATE);
+                    final var partialPrice = value - pointsSpent;
+                    final var priceLeft = partialPrice - pointsSpent;
+                    if (balances[points] >= pointsSpent) {
+                        for (int card = 0; card < methods.length; card++) {
+                            if (card != points && balances[card] >= priceLeft) {
+                                feasible.add(new Option(card, partialPrice, pointsSpent, priceLeft));
+                            }
+                        }
+                    }
+                }
+            }
+
+            for (int card = 0; card < methods.length; card++) {
+                if (card == points) continue;
+                final var price = value - FixedPoint.applyRate(value, promotionRate(depth, card));
+                if (balances[card] >= price) {
+                    feasible.add(new Option(card, price, 0, price));
+                }
+            }
+
+            final var sorted = feasible.toArray(Option[]::new);
+            Arrays.sort(sorted, Comparator.comparingLong(Option::price));
+            return sorted;
+        }
+
+        private long lowestConceivablePrice(int depth) {
+            final var value = values[depth];
+            var lowest = value;
+            if (points != PaymentMethod.UNINDEXED) {
+                lowest = Math.min(lowest, value - FixedPoint.applyRate(value, rates[points]));
+                lowest = Math.min(lowest, value - FixedPoint.applyRate(value, PARTIAL_POINTS_PAYMENT_RATE));
+            }
+            for (final var card : promotions[depth]) {
+                if (card != points) lowest = Math.min(lowest, value - FixedPoint.applyRate(value, rates[card]));
+            }
+            return lowest;
+        }
+
+        private long promotionRate(int depth, int card) {
+            for (final var promotion : promotions[depth]) {
+                if (promotion == card) return rates[card];
+            }
+            return 0;
+        }
+    }
+}
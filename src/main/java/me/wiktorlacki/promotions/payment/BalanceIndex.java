@@ -0,0 +1,117 @@
+package me.wiktorlacki.promotions.payment;
+
+import me.wiktorlacki.promotions.money.FixedPoint;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * An ordered index over the balances of a fixed sequence of payment methods, answering
+ * "which is the first method in this sequence whose balance is at least X" in logarithmic time.
+ *
+ * The index is a segment tree whose leaves are the payment methods in sequence order and whose inner nodes
+ * hold the method with the highest balance in their subtree. Balances themselves stay in the arrays of the
+ * {@link PaymentMethodsContainer}, which the index reads directly; the container calls {@link #update(int)} after
+ * every balance change.
+ */
+final class BalanceIndex {
+
+    private static final int EMPTY = PaymentMethod.UNINDEXED;
+
+    private final BigDecimal[] balances;
+    private final long[] units;
+    private final int leaves;
+    private final int[] tree;
+    private final int[] positions;
+
+    /**
+     * @param balances the balances of the payment methods by index, or null if they are held in {@code units}
+     * @param units    the balances of the payment methods by index in millionths, or null if they are held in
+     *                 {@code balances}
+     * @param order    the indices of the payment methods in the order in which searches should visit them
+     */
+    BalanceIndex(BigDecimal[] balances, long[] units, int[] order) {
+        this.balances = balances;
+        this.units = units;
+
+        var leaves = 1;
+        while (leaves < order.length) leaves <<= 1;
+        this.leaves = leaves;
+        this.tree = new int[2 * leaves];
+        this.positions = new int[units != null ? units.length : balances.length];
+
+        Arrays.fill(tree, EMPTY);
+        Arrays.fill(positions, EMPTY);
+        for (int i = 0; i < order.length; i++) {
+            tree[leaves + i] = order[i];
+            positions[order[i]] = leaves + i;
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            tree[node] = max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Restores the invariant after the balance of the given payment method has changed.
+     *
+     * @param index the index of the payment method whose balance changed
+     */
+    void update(int index) {
+        var node = positions[index];
+        if (node == EMPTY) return;
+        for (node >>= 1; node >= 1; node >>= 1) {
+            tree[node] = max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Finds the first payment method in sequence order with a balance of at least {@code value}.
+     *
+     * @param value the minimum required balance
+     * @return the index of the payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    int first(BigDecimal value) {
+        if (tree[1] == EMPTY || balance(tree[1]).compareTo(value) < 0) return EMPTY;
+
+        var node = 1;
+        while (node < leaves) {
+            final var left = tree[2 * node];
+            node = left != EMPTY && balance(left).compareTo(value) >= 0 ? 2 * node : 2 * node + 1;
+        }
+        return tree[node];
+    }
+
+    /**
+     * The fixed-point variant of {@link #first(BigDecimal)}.
+     *
+     * @param value the minimum required balance, in millionths
+     * @return the index of the payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    int first(long value) {
+        if (tree[1] == EMPTY || balanceUnits(tree[1]) < value) return EMPTY;
+
+        var node = 1;
+        while (node < leaves) {
+            final var left = tree[2 * node];
+            node = left != EMPTY && balanceUnits(left) >= value ? 2 * node : 2 * node + 1;
+        }
+        return tree[node];
+    }
+
+    private int max(int left, int right) {
+        if (left == EMPTY) return right;
+        if (right == EMPTY) return left;
+        final var comparison = units != null
+                ? Long.compare(units[left], units[right])
+                : balances[left].compareTo(balances[right]);
+        return comparison >= 0 ? left : right;
+    }
+
+    private BigDecimal balance(int index) {
+        return units != null ? FixedPoint.toBigDecimal(units[index]) : balances[index];
+    }
+
+    private long balanceUnits(int index) {
+        return units != null ? units[index] : FixedPoint.of(balances[index]);
+    }
+}
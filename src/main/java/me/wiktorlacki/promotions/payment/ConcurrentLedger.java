@@ -0,0 +1,211 @@
+package me.wiktorlacki.promotions.payment;
+
+import me.wiktorlacki.promotions.money.FixedPoint;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe ledger of payment method balances in the {@link FixedPoint} representation.
+ *
+ * Every balance is a single slot of an {@link AtomicLongArray} and is only ever decreased by a compare-and-set loop
+ * which checks the balance first, so no interleaving of threads can overdraw a payment method. Amounts spanning several
+ * payment methods are taken with a two-phase protocol: {@link #reserve(int[], long[], int)} debits all of them or
+ * none, and the resulting {@link Reservation} is then either {@link #commit(Reservation) committed} or
+ * {@link #rollback(Reservation) rolled back}, which returns the amounts. Reserved amounts are not available to
+ * other threads until they are rolled back. Every balance is checked before any of them is debited, so amounts are
+ * only debited and returned again when another thread takes from one of the payment methods in between; otherwise
+ * a reservation which cannot be made never lowers a balance other threads see.
+ */
+public final class ConcurrentLedger {
+
+    private final AtomicLongArray available;
+    private final AtomicLongArray reserved;
+    private final AtomicInteger openReservations = new AtomicInteger();
+
+    /**
+     * @param balances the initial balances, indexed like the payment methods, in millionths
+     */
+    public ConcurrentLedger(long[] balances) {
+        for (final var balance : balances) {
+            if (balance < 0) throw new IllegalArgumentException("Balance must not be negative: " + balance);
+        }
+        this.available = new AtomicLongArray(balances);
+        this.reserved = new AtomicLongArray(balances.length);
+    }
+
+    /**
+     * @return the number of payment methods in this ledger
+     */
+    public int size() {
+        return available.length();
+    }
+
+    /**
+     * Returns the balance which can still be taken, i.e. without amounts held by open reservations.
+     *
+     * @param index the index of the payment method
+     * @return the available balance in millionths
+     */
+    public long available(int index) {
+        return available.get(index);
+    }
+
+    /**
+     * Returns the amount held by open reservations.
+     *
+     * @param index the index of the payment method
+     * @return the reserved amount in millionths
+     */
+    public long reserved(int index) {
+        return reserved.get(index);
+    }
+
+    /**
+     * @return the number of reservations which were neither committed nor rolled back yet
+     */
+    public int openReservations() {
+        return openReservations.get();
+    }
+
+    /**
+     * Overwrites the available balance of a payment method. Meant for setting up and correcting balances,
+     * not for settling orders, since it does not check what other threads have taken in the meantime.
+     *
+     * @param index   the index of the payment method
+     * @param balance the new available balance, in millionths
+     */
+    public void set(int index, long balance) {
+        if (balance < 0) throw new IllegalArgumentException("Balance must not be negative: " + balance);
+        available.set(index, balance);
+    }
+
+    /**
+     * Takes an amount from a payment method if its available balance covers it.
+     *
+     * @param index  the index of the payment method
+     * @param amount the amount to take, in millionths
+     * @return true if the amount was taken, false if the available balance is too low
+     */
+    public boolean tryTake(int index, long amount) {
+        requireNonNegative(amount);
+        while (true) {
+            final var balance = available.get(index);
+            if (balance < amount) return false;
+            if (available.compareAndSet(index, balance, balance - amount)) return true;
+        }
+    }
+
+    /**
+     * Takes amounts from several payment methods, either all of them or none.
+     *
+     * @param indices the indices of the payment methods
+     * @param amounts the amount to take from the payment method at the same position, in millionths
+     * @param count   the number of positions to take
+     * @return true if all amounts were taken, false if any available balance was too low, in which case nothing was taken
+     */
+    public boolean tryTakeAll(int[] indices, long[] amounts, int count) {
+        for (int i = 0; i < count; i++) {
+            if (available.get(indices[i]) < amounts[i]) return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!tryTake(indices[i], amounts[i])) {
+                release(indices, amounts, i);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reserves amounts of several payment methods, either all of them or none.
+     *
+     * @param indices the indices of the payment methods
+     * @param amounts the amount to reserve from the payment method at the same position, in millionths
+     * @param count   the number of positions to reserve
+     * @return the reservation, or {@code null} if any available balance was too low, in which case nothing was reserved
+     */
+    public Reservation reserve(int[] indices, long[] amounts, int count) {
+        if (!tryTakeAll(indices, amounts, count)) return null;
+
+        final var reservation = new Reservation(Arrays.copyOf(indices, count), Arrays.copyOf(amounts, count));
+        for (int i = 0; i < count; i++) {
+            reserved.addAndGet(indices[i], amounts[i]);
+        }
+        openReservations.incrementAndGet();
+        return reservation;
+    }
+
+    /**
+     * Makes a reservation final: the reserved amounts are spent.
+     *
+     * @param reservation an open reservation of this ledger
+     * @throws IllegalStateException if the reservation was already committed or rolled back
+     */
+    public void commit(Reservation reservation) {
+        reservation.close(Reservation.COMMITTED);
+        for (int i = 0; i < reservation.indices.length; i++) {
+            reserved.addAndGet(reservation.indices[i], -reservation.amounts[i]);
+        }
+        openReservations.decrementAndGet();
+    }
+
+    /**
+     * Cancels a reservation: the reserved amounts become available again.
+     *
+     * @param reservation an open reservation of this ledger
+     * @throws IllegalStateException if the reservation was already committed or rolled back
+     */
+    public void rollback(Reservation reservation) {
+        reservation.close(Reservation.ROLLED_BACK);
+        for (int i = 0; i < reservation.indices.length; i++) {
+            reserved.addAndGet(reservation.indices[i], -reservation.amounts[i]);
+        }
+        release(reservation.indices, reservation.amounts, reservation.indices.length);
+        openReservations.decrementAndGet();
+    }
+
+    private void release(int[] indices, long[] amounts, int count) {
+        for (int i = 0; i < count; i++) {
+            available.addAndGet(indices[i], amounts[i]);
+        }
+    }
+
+    private static void requireNonNegative(long amount) {
+        if (amount < 0) throw new IllegalArgumentException("Amount must not be negative: " + amount);
+    }
+
+    /**
+     * Amounts held for a caller until it decides to {@link #commit(Reservation) commit} or
+     * {@link #rollback(Reservation) roll them back}. Exactly one of the two may be called, once.
+     */
+    public static final class Reservation {
+
+        private static final int OPEN = 0;
+        private static final int COMMITTED = 1;
+        private static final int ROLLED_BACK = 2;
+
+        private final int[] indices;
+        private final long[] amounts;
+        private final AtomicInteger state = new AtomicInteger(OPEN);
+
+        private Reservation(int[] indices, long[] amounts) {
+            this.indices = indices;
+            this.amounts = amounts;
+        }
+
+        /**
+         * @return whether the reservation was neither committed nor rolled back yet
+         */
+        public boolean isOpen() {
+            return state.get() == OPEN;
+        }
+
+        private void close(int target) {
+            if (!state.compareAndSet(OPEN, target)) {
+                throw new IllegalStateException("Reservation already " + (state.get() == COMMITTED ? "committed" : "rolled back"));
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package me.wiktorlacki.promotions.payment;
+
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Optional;
+
+/**
+ * A thread-safe {@link PaymentService}, so several threads can evaluate and settle orders against the same
+ * payment methods at once.
+ *
+ * Balances live in a {@link ConcurrentLedger} instead of the container, and every balance change goes through its
+ * compare-and-set operations, so no limit is ever overdrawn. Reads see some recent balance, which may change before
+ * the offer based on it is settled; {@link #tryTake(OfferSlot)} then fails and the offer has to be evaluated again.
+ * An offer is settled with a {@link ConcurrentLedger#reserve(int[], long[], int) reservation} of all its payments,
+ * which is committed right away, so it is taken in full or not at all.
+ *
+ * Searches scan the payment methods in the same order as the balance indexes of {@link PaymentMethodsContainer},
+ * so single-threaded results are identical to the ones of the plain service. They take linear time, since those
+ * indexes cannot be kept consistent without locking.
+ */
+public class ConcurrentPaymentService extends PaymentService {
+
+    private final PaymentMethodsContainer paymentMethodsContainer;
+    private final ConcurrentLedger ledger;
+    private final int[] searchOrder;
+    private final int[] discountOrder;
+    private final int pointsIndex;
+    private final ThreadLocal<Payments> payments = ThreadLocal.withInitial(Payments::new);
+
+    /**
+     * @param paymentMethodsContainer the payment methods, in {@link MoneyMode#FIXED_POINT} mode;
+     *                                their current balances become the initial balances of the ledger
+     */
+    public ConcurrentPaymentService(PaymentMethodsContainer paymentMethodsContainer) {
+        super(paymentMethodsContainer);
+        if (paymentMethodsContainer.mode() != MoneyMode.FIXED_POINT) {
+            throw new IllegalArgumentException("Concurrent payment service requires the fixed-point money mode");
+        }
+
+        this.paymentMethodsContainer = paymentMethodsContainer;
+        final var balances = new long[paymentMethodsContainer.size()];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = paymentMethodsContainer.balanceUnits(i);
+        }
+        this.ledger = new ConcurrentLedger(balances);
+        this.searchOrder = paymentMethodsContainer.searchOrder();
+        this.discountOrder = paymentMethodsContainer.discountOrder();
+        this.pointsIndex = paymentMethodsContainer.pointsIndex();
+    }
+
+    /**
+     * Returns the ledger holding the balances, e.g. to settle amounts with an explicit
+     * {@link ConcurrentLedger#reserve(int[], long[], int) reservation}.
+     *
+     * @return the ledger, indexed like the payment methods
+     */
+    public ConcurrentLedger ledger() {
+        return ledger;
+    }
+
+    @Override
+    public BigDecimal balance(PaymentMethod paymentMethod) {
+        return FixedPoint.toBigDecimal(balanceUnits(paymentMethod));
+    }
+
+    @Override
+    public void balance(PaymentMethod paymentMethod, BigDecimal balance) {
+        ledger.set(paymentMethodsContainer.indexOf(paymentMethod), FixedPoint.of(balance));
+    }
+
+    @Override
+    public void take(PaymentMethod paymentMethod, BigDecimal amount) {
+        takeUnits(paymentMethod, FixedPoint.of(amount));
+    }
+
+    @Override
+    public long balanceUnits(PaymentMethod paymentMethod) {
+        return ledger.available(paymentMethodsContainer.indexOf(paymentMethod));
+    }
+
+    @Override
+    public void takeUnits(PaymentMethod paymentMethod, long amount) {
+        final var index = paymentMethodsContainer.indexOf(paymentMethod);
+        if (!ledger.tryTake(index, amount))
+            throw new IllegalArgumentException("Amount must be less than or equal to " + FixedPoint.toBigDecimal(ledger.available(index)));
+    }
+
+    @Override
+    public boolean tryTake(OfferSlot offer) {
+        final var payments = this.payments.get().of(offer, paymentMethodsContainer);
+        final var reservation = ledger.reserve(payments.indices, payments.amounts, offer.size());
+        if (reservation == null) return false;
+        ledger.commit(reservation);
+        return true;
+    }
+
+    @Override
+    public Optional<PaymentMethod> findPaymentMethodWithBalanceGreaterThan(BigDecimal value) {
+        // Rounding up keeps "balance of at least value" exact for values with more than six decimal places.
+        final var units = value.setScale(FixedPoint.SCALE, RoundingMode.CEILING).unscaledValue().longValueExact();
+        return findPaymentMethodWithBalanceUnitsGreaterThan(units);
+    }
+
+    @Override
+    public Optional<PaymentMethod> findBestDiscountPaymentMethodWithBalanceUnitsGreaterThan(long value) {
+        return optional(first(discountOrder, value));
+    }
+
+    @Override
+    public int findBestDiscountPaymentMethodIndexWithBalanceUnitsGreaterThan(int[] candidates, int count, long value) {
+        var best = PaymentMethod.UNINDEXED;
+        for (int i = 0; i < count; i++) {
+            final var index = candidates[i];
+            if (index == pointsIndex || ledger.available(index) < value) continue;
+            if (best == PaymentMethod.UNINDEXED || discountRate(index) > discountRate(best)) {
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int findPaymentMethodIndexWithBalanceUnitsGreaterThan(long value) {
+        return first(searchOrder, value);
+    }
+
+    private int first(int[] order, long value) {
+        for (final var index : order) {
+            if (ledger.available(index) >= value) return index;
+        }
+        return PaymentMethod.UNINDEXED;
+    }
+
+    private Optional<PaymentMethod> optional(int index) {
+        return index == PaymentMethod.UNINDEXED ? Optional.empty() : Optional.of(paymentMethod(index));
+    }
+
+    /**
+     * The payments of an offer as the index and amount arrays the ledger takes, reused by the thread settling it.
+     */
+    private static final class Payments {
+
+        private int[] indices = new int[2];
+        private long[] amounts = new long[2];
+
+        private Payments of(OfferSlot offer, PaymentMethodsContainer paymentMethodsContainer) {
+            if (indices.length < offer.size()) {
+                indices = new int[offer.size()];
+                amounts = new long[offer.size()];
+            }
+            for (int i = 0; i < offer.size(); i++) {
+                indices[i] = paymentMethodsContainer.indexOf(offer.method(i));
+                amounts[i] = offer.amount(i);
+            }
+            return this;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package me.wiktorlacki.promotions.payment;
 
+import me.wiktorlacki.promotions.money.FixedPoint;
+
 import java.math.BigDecimal;
 
 /**
@@ -9,5 +11,47 @@ import java.math.BigDecimal;
  * @param id       the unique identifier of the payment method
  * @param discount the discount rate offered by this payment method (e.g. 0.1 for 10% off)
  * @param limit    spending limit available for this payment method
+ * @param index    the dense position of this payment method in the list it was loaded from,
+ *                 or {@link #UNINDEXED} if it has not been assigned one
  */
-public record PaymentMethod(String id, BigDecimal discount, BigDecimal limit) { }
\ No newline at end of file
+public record PaymentMethod(String id, BigDecimal discount, BigDecimal limit, int index) {
+
+    /**
+     * The index of a payment method which has not been assigned a position yet.
+     */
+    public static final int UNINDEXED = -1;
+
+    public PaymentMethod(String id, BigDecimal discount, BigDecimal limit) {
+        this(id, discount, limit, UNINDEXED);
+    }
+
+    /**
+     * Returns a copy of this payment method with the given index.
+     *
+     * @param index the dense index to assign
+     * @return this payment method if it already has the index, otherwise an indexed copy
+     */
+    public PaymentMethod withIndex(int index) {
+        return this.index == index ? this : new PaymentMethod(id, discount, limit, index);
+    }
+
+    /**
+     * Returns the discount of this payment method in the {@link FixedPoint} representation.
+     *
+     * @return the discount rate in ten-thousandths
+     * @throws ArithmeticException if the discount cannot be represented exactly
+     */
+    public long discountRate() {
+        return FixedPoint.rate(discount);
+    }
+
+    /**
+     * Returns the spending limit of this payment method in the {@link FixedPoint} representation.
+     *
+     * @return the limit in millionths
+     * @throws ArithmeticException if the limit cannot be represented exactly
+     */
+    public long limitUnits() {
+        return FixedPoint.of(limit);
+    }
+}
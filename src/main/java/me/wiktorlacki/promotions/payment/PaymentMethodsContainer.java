@@ -1,24 +1,98 @@
 package me.wiktorlacki.promotions.payment;
 
 import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Container class for managing available {@link PaymentMethod}s and their respective balances.
+ *
+ * Every payment method gets a dense index (its position in the list passed to the constructor) and balances
+ * are kept in arrays addressed by that index, so balance reads and updates never hash the payment method.
+ * Two {@link BalanceIndex}es, updated on every balance change, answer "first method with balance of at least X"
+ * and "method with the best discount and balance of at least X" in logarithmic time, so the cost of processing
+ * an order grows slowly with the number of payment methods.
+ * Balances are stored in the representation selected by the {@link MoneyMode}. Both the {@link BigDecimal}
+ * and the {@link FixedPoint} accessors work in either mode, but only the ones matching the mode avoid conversions.
  */
 public class PaymentMethodsContainer {
 
+    private final MoneyMode mode;
     private final Map<String, PaymentMethod> paymentMethods;
-    private final Map<PaymentMethod, BigDecimal> balances;
+    private final PaymentMethod[] methods;
+    private final int[] searchOrder;
+    private final int[] discountOrder;
+    private final int pointsIndex;
+    private final long[] discountRates;
+    private final long[] limitUnits;
+    private final BigDecimal[] balances;
+    private final long[] units;
+    private final BalanceIndex searchIndex;
+    private final BalanceIndex discountIndex;
 
     public PaymentMethodsContainer(List<PaymentMethod> paymentMethods) {
-        this.paymentMethods = paymentMethods.stream()
-                .collect(Collectors.toMap(PaymentMethod::id, k -> k));
-        this.balances = paymentMethods.stream()
-                .collect(Collectors.toMap(k -> k, PaymentMethod::limit));
+        this(paymentMethods, MoneyMode.DECIMAL);
+    }
+
+    public PaymentMethodsContainer(List<PaymentMethod> paymentMethods, MoneyMode mode) {
+        this.mode = mode;
+        this.methods = new PaymentMethod[paymentMethods.size()];
+        this.paymentMethods = new HashMap<>();
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = paymentMethods.get(i).withIndex(i);
+            if (this.paymentMethods.putIfAbsent(methods[i].id(), methods[i]) != null) {
+                throw new IllegalStateException("Duplicate payment method " + methods[i].id());
+            }
+        }
+
+        // Searches visit methods in the iteration order of the id map, which keeps the choice of
+        // "any method with enough balance" stable regardless of the order of the input file.
+        final var points = this.paymentMethods.get(Constants.POINTS_METHOD);
+        this.pointsIndex = points == null ? PaymentMethod.UNINDEXED : points.index();
+        this.searchOrder = this.paymentMethods.values().stream()
+                .mapToInt(PaymentMethod::index)
+                .filter(index -> index != pointsIndex)
+                .toArray();
+
+        if (mode == MoneyMode.FIXED_POINT) {
+            this.balances = null;
+            this.units = new long[methods.length];
+            this.discountRates = new long[methods.length];
+            this.limitUnits = new long[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                limitUnits[i] = methods[i].limitUnits();
+                units[i] = limitUnits[i];
+                discountRates[i] = methods[i].discountRate();
+            }
+        } else {
+            this.units = null;
+            this.discountRates = null;
+            this.limitUnits = null;
+            this.balances = new BigDecimal[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                balances[i] = methods[i].limit();
+            }
+        }
+
+        this.discountOrder = Arrays.stream(searchOrder)
+                .boxed()
+                .sorted(Comparator.comparing((Integer index) -> methods[index].discount()).reversed())
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.searchIndex = new BalanceIndex(balances, units, searchOrder);
+        this.discountIndex = new BalanceIndex(balances, units, discountOrder);
+    }
+
+    /**
+     * Returns the representation in which balances are stored.
+     *
+     * @return the money mode of this container
+     */
+    public MoneyMode mode() {
+        return mode;
     }
 
     /**
@@ -31,6 +105,46 @@ public class PaymentMethodsContainer {
         return Optional.ofNullable(paymentMethods.get(name));
     }
 
+    /**
+     * Retrieves a payment method by its dense index.
+     *
+     * @param index the index of the payment method
+     * @return the payment method
+     * @throws ArrayIndexOutOfBoundsException if there is no payment method with this index
+     */
+    public PaymentMethod byIndex(int index) {
+        return methods[index];
+    }
+
+    /**
+     * Resolves payment method identifiers to their dense indices, skipping unknown identifiers.
+     *
+     * @param names the identifiers of the payment methods
+     * @return the indices of the known payment methods, in the order of {@code names}
+     */
+    public int[] indicesOf(List<String> names) {
+        final var indices = new int[names.size()];
+        final var count = indicesOf(names, indices);
+        return count == indices.length ? indices : Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Resolves payment method identifiers to their dense indices into a caller-provided array,
+     * skipping unknown identifiers.
+     *
+     * @param names   the identifiers of the payment methods
+     * @param indices the array to write the indices to, at least as long as {@code names}
+     * @return the number of indices written
+     */
+    public int indicesOf(List<String> names, int[] indices) {
+        var count = 0;
+        for (int i = 0; i < names.size(); i++) {
+            final var method = paymentMethods.get(names.get(i));
+            if (method != null) indices[count++] = method.index();
+        }
+        return count;
+    }
+
     /**
      * Retrieves the special points-based payment method.
      *
@@ -38,7 +152,10 @@ public class PaymentMethodsContainer {
      * @throws NullPointerException if the points method is not configured
      */
     public PaymentMethod points() {
-        return Objects.requireNonNull(paymentMethods.get(Constants.POINTS_METHOD));
+        if (pointsIndex == PaymentMethod.UNINDEXED) {
+            throw new NullPointerException("Payment method " + Constants.POINTS_METHOD + " is not configured");
+        }
+        return methods[pointsIndex];
     }
 
     /**
@@ -50,6 +167,31 @@ public class PaymentMethodsContainer {
         return Collections.unmodifiableCollection(paymentMethods.values());
     }
 
+    /**
+     * Returns the number of payment methods, which is also the exclusive upper bound of their indices.
+     *
+     * @return the number of payment methods in this container
+     */
+    public int size() {
+        return methods.length;
+    }
+
+    /**
+     * Returns the dense index of the given payment method. Methods created outside of this container
+     * are matched by their identifier.
+     *
+     * @param paymentMethod the payment method
+     * @return the index of the payment method
+     * @throws NullPointerException if the payment method is not part of this container
+     */
+    public int indexOf(PaymentMethod paymentMethod) {
+        final var index = paymentMethod.index();
+        if (index >= 0 && index < methods.length && methods[index] == paymentMethod) return index;
+        final var method = paymentMethods.get(paymentMethod.id());
+        if (method == null) throw new NullPointerException("Unknown payment method " + paymentMethod.id());
+        return method.index();
+    }
+
     /**
      * Returns the current available balance for a specific payment method.
      *
@@ -58,7 +200,20 @@ public class PaymentMethodsContainer {
      * @throws NullPointerException if the payment method has no recorded balance
      */
     public BigDecimal balance(PaymentMethod paymentMethod) {
-        return Objects.requireNonNull(balances.get(paymentMethod));
+        return balance(indexOf(paymentMethod));
+    }
+
+    /**
+     * Returns the current available balance of the payment method with the given index.
+     *
+     * @param index the index of the payment method
+     * @return the remaining balance
+     */
+    public BigDecimal balance(int index) {
+        if (mode == MoneyMode.FIXED_POINT) {
+            return FixedPoint.toBigDecimal(units[index]);
+        }
+        return balances[index];
     }
 
     /**
@@ -68,6 +223,206 @@ public class PaymentMethodsContainer {
      * @param balance       the new balance to assign
      */
     public void balance(PaymentMethod paymentMethod, BigDecimal balance) {
-        balances.put(paymentMethod, balance);
+        final var index = indexOf(paymentMethod);
+        if (mode == MoneyMode.FIXED_POINT) {
+            units[index] = FixedPoint.of(balance);
+        } else {
+            balances[index] = balance;
+        }
+        balanceChanged(index);
+    }
+
+    /**
+     * Returns the current available balance for a specific payment method in the {@link FixedPoint} representation.
+     *
+     * @param paymentMethod the payment method to query
+     * @return the remaining balance in millionths
+     * @throws NullPointerException if the payment method has no recorded balance
+     */
+    public long balanceUnits(PaymentMethod paymentMethod) {
+        return balanceUnits(indexOf(paymentMethod));
+    }
+
+    /**
+     * Returns the current available balance of the payment method with the given index
+     * in the {@link FixedPoint} representation.
+     *
+     * @param index the index of the payment method
+     * @return the remaining balance in millionths
+     */
+    public long balanceUnits(int index) {
+        if (mode == MoneyMode.FIXED_POINT) {
+            return units[index];
+        }
+        return FixedPoint.of(balances[index]);
+    }
+
+    /**
+     * Updates the balance for a specific payment method from its {@link FixedPoint} representation.
+     *
+     * @param paymentMethod the payment method to update
+     * @param balance       the new balance to assign, in millionths
+     */
+    public void balanceUnits(PaymentMethod paymentMethod, long balance) {
+        balanceUnits(indexOf(paymentMethod), balance);
+    }
+
+    /**
+     * Updates the balance of the payment method with the given index from its {@link FixedPoint} representation.
+     *
+     * @param index   the index of the payment method
+     * @param balance the new balance to assign, in millionths
+     */
+    public void balanceUnits(int index, long balance) {
+        if (mode == MoneyMode.FIXED_POINT) {
+            units[index] = balance;
+        } else {
+            balances[index] = FixedPoint.toBigDecimal(balance);
+        }
+        balanceChanged(index);
+    }
+
+    /**
+     * Returns the discount of a specific payment method in the {@link FixedPoint} representation.
+     * In fixed-point mode the rate is converted once, when the container is created.
+     *
+     * @param paymentMethod the payment method to query
+     * @return the discount rate in ten-thousandths
+     */
+    public long discountRate(PaymentMethod paymentMethod) {
+        return discountRate(indexOf(paymentMethod));
+    }
+
+    /**
+     * Returns the discount of the payment method with the given index in the {@link FixedPoint} representation.
+     *
+     * @param index the index of the payment method
+     * @return the discount rate in ten-thousandths
+     */
+    public long discountRate(int index) {
+        if (mode == MoneyMode.FIXED_POINT) {
+            return discountRates[index];
+        }
+        return methods[index].discountRate();
+    }
+
+    /**
+     * Returns the spending limit of the payment method with the given index in the {@link FixedPoint} representation.
+     * In fixed-point mode the limit is converted once, when the container is created.
+     *
+     * @param index the index of the payment method
+     * @return the limit in millionths
+     */
+    public long limitUnits(int index) {
+        if (mode == MoneyMode.FIXED_POINT) {
+            return limitUnits[index];
+        }
+        return methods[index].limitUnits();
+    }
+
+    /**
+     * Finds the first payment method, excluding points, whose balance is at least the given value.
+     *
+     * @param value the minimum required balance
+     * @return the index of the matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findWithBalanceAtLeast(BigDecimal value) {
+        return searchIndex.first(value);
+    }
+
+    /**
+     * The {@link FixedPoint} variant of {@link #findWithBalanceAtLeast(BigDecimal)}.
+     *
+     * @param value the minimum required balance, in millionths
+     * @return the index of the matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findWithBalanceAtLeast(long value) {
+        return searchIndex.first(value);
+    }
+
+    /**
+     * Finds the payment method, excluding points, with the best discount among all methods whose balance
+     * is at least the given value. Ties are resolved like in {@link #findWithBalanceAtLeast(BigDecimal)}.
+     *
+     * @param value the minimum required balance
+     * @return the index of the matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findBestDiscountWithBalanceAtLeast(BigDecimal value) {
+        return discountIndex.first(value);
+    }
+
+    /**
+     * The {@link FixedPoint} variant of {@link #findBestDiscountWithBalanceAtLeast(BigDecimal)}.
+     *
+     * @param value the minimum required balance, in millionths
+     * @return the index of the matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findBestDiscountWithBalanceAtLeast(long value) {
+        return discountIndex.first(value);
+    }
+
+    /**
+     * Finds the payment method, excluding points, with the best discount among the given candidates
+     * whose balance is at least the given value. Ties are resolved in favour of the earlier candidate.
+     * Candidates usually come from the promotions of a single order, so they are scanned directly;
+     * the cost depends on the number of candidates, not on the number of payment methods.
+     *
+     * @param candidates the indices of the payment methods to consider
+     * @param value      the minimum required balance, in millionths
+     * @return the index of the matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findBestDiscountWithBalanceAtLeast(int[] candidates, long value) {
+        return findBestDiscountWithBalanceAtLeast(candidates, candidates.length, value);
+    }
+
+    /**
+     * Like {@link #findBestDiscountWithBalanceAtLeast(int[], long)}, considering only the first {@code count}
+     * candidates, so a reused array can be passed.
+     *
+     * @param candidates the indices of the payment methods to consider
+     * @param count      the number of candidates to consider
+     * @param value      the minimum required balance, in millionths
+     * @return the index of the matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findBestDiscountWithBalanceAtLeast(int[] candidates, int count, long value) {
+        var best = PaymentMethod.UNINDEXED;
+        for (int i = 0; i < count; i++) {
+            final var index = candidates[i];
+            if (index == pointsIndex || balanceUnits(index) < value) continue;
+            if (best == PaymentMethod.UNINDEXED || discountRate(index) > discountRate(best)) {
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the indices of all payment methods except points, in the order in which
+     * {@link #findWithBalanceAtLeast(long)} visits them. The returned array must not be modified.
+     */
+    int[] searchOrder() {
+        return searchOrder;
+    }
+
+    /**
+     * Returns the indices of all payment methods except points, in the order in which
+     * {@link #findBestDiscountWithBalanceAtLeast(long)} visits them. The returned array must not be modified.
+     */
+    int[] discountOrder() {
+        return discountOrder;
+    }
+
+    /**
+     * Returns the index of the points method.
+     *
+     * @return the index, or {@link PaymentMethod#UNINDEXED} if the points method is not configured
+     */
+    int pointsIndex() {
+        return pointsIndex;
+    }
+
+    private void balanceChanged(int index) {
+        searchIndex.update(index);
+        discountIndex.update(index);
     }
 }
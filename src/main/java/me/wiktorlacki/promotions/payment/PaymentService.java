@@ -2,6 +2,9 @@ package me.wiktorlacki.promotions.payment;
 
 import me.wiktorlacki.promotions.Constants;
 import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.OfferSlot;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -38,6 +41,47 @@ public class PaymentService {
         return paymentMethodsContainer.points();
     }
 
+    /**
+     * Resolves payment method identifiers, e.g. the promotions of an order, to dense payment method indices.
+     *
+     * @param names the identifiers of the payment methods
+     * @return the indices of the known payment methods, in the order of {@code names}
+     */
+    public int[] indicesOf(List<String> names) {
+        return paymentMethodsContainer.indicesOf(names);
+    }
+
+    /**
+     * Resolves payment method identifiers to dense payment method indices into a caller-provided array,
+     * so that resolving the promotions of every order does not allocate.
+     *
+     * @param names   the identifiers of the payment methods
+     * @param indices the array to write the indices to, at least as long as {@code names}
+     * @return the number of indices written
+     */
+    public int indicesOf(List<String> names, int[] indices) {
+        return paymentMethodsContainer.indicesOf(names, indices);
+    }
+
+    /**
+     * Retrieves a payment method by its dense index.
+     *
+     * @param index the index of the payment method
+     * @return the payment method
+     */
+    public PaymentMethod paymentMethod(int index) {
+        return paymentMethodsContainer.byIndex(index);
+    }
+
+    /**
+     * Returns the number of payment methods, which is also the exclusive upper bound of their indices.
+     *
+     * @return the number of payment methods
+     */
+    public int size() {
+        return paymentMethodsContainer.size();
+    }
+
     /**
      * Returns an unmodifiable view of all available payment methods.
      *
@@ -81,6 +125,104 @@ public class PaymentService {
         balance(paymentMethod, balance.subtract(amount));
     }
 
+    /**
+     * Returns whether balances are kept in the {@link FixedPoint} representation, in which case
+     * the {@code Units} variants of the operations should be preferred.
+     *
+     * @return true if the underlying container works in {@link MoneyMode#FIXED_POINT} mode
+     */
+    public boolean fixedPoint() {
+        return paymentMethodsContainer.mode() == MoneyMode.FIXED_POINT;
+    }
+
+    /**
+     * @return the money mode of the underlying container
+     */
+    public MoneyMode mode() {
+        return paymentMethodsContainer.mode();
+    }
+
+    /**
+     * Retrieves the current balance for the given payment method in the {@link FixedPoint} representation.
+     *
+     * @param paymentMethod the payment method
+     * @return the current balance in millionths
+     */
+    public long balanceUnits(PaymentMethod paymentMethod) {
+        return paymentMethodsContainer.balanceUnits(paymentMethod);
+    }
+
+    /**
+     * Returns the scale the current balance of the given payment method has in the {@link BigDecimal} representation,
+     * to which the strategies round the ratio of the points balance to the order value.
+     *
+     * The {@link FixedPoint} representation keeps no scale: a balance which was never paid from has the scale of its
+     * limit, and any other has at least the scale of the rates its payments were computed with, for which
+     * {@link FixedPoint#SCALE} is returned, so ratios compared with rates of at most that scale come out the same.
+     *
+     * @param paymentMethod the payment method
+     * @return the number of decimal places of the balance
+     */
+    public int balanceScale(PaymentMethod paymentMethod) {
+        if (!fixedPoint()) return balance(paymentMethod).scale();
+        final var limit = paymentMethodsContainer.limitUnits(paymentMethodsContainer.indexOf(paymentMethod));
+        return balanceUnits(paymentMethod) == limit ? paymentMethod.limit().scale() : FixedPoint.SCALE;
+    }
+
+    /**
+     * Retrieves the discount of the given payment method in the {@link FixedPoint} representation.
+     *
+     * @param paymentMethod the payment method
+     * @return the discount rate in ten-thousandths
+     */
+    public long discountRate(PaymentMethod paymentMethod) {
+        return paymentMethodsContainer.discountRate(paymentMethod);
+    }
+
+    /**
+     * Retrieves the discount of the payment method with the given index in the {@link FixedPoint} representation.
+     *
+     * @param index the index of the payment method
+     * @return the discount rate in ten-thousandths
+     */
+    public long discountRate(int index) {
+        return paymentMethodsContainer.discountRate(index);
+    }
+
+    /**
+     * Deducts a specific amount, given in the {@link FixedPoint} representation, from the given payment method's balance.
+     *
+     * @param paymentMethod the payment method to be debited
+     * @param amount        the amount to deduct, in millionths
+     * @throws IllegalArgumentException if the current balance is less than the amount
+     */
+    public void takeUnits(PaymentMethod paymentMethod, long amount) {
+        final var balance = balanceUnits(paymentMethod);
+        if (balance < amount)
+            throw new IllegalArgumentException("Amount must be less than or equal to " + FixedPoint.toBigDecimal(balance));
+        paymentMethodsContainer.balanceUnits(paymentMethod, balance - amount);
+    }
+
+    /**
+     * Takes all payments of an offer, or none of them if any balance does not cover its payment.
+     *
+     * Settling an offer with this method instead of separate {@link #takeUnits(PaymentMethod, long)} calls
+     * lets a thread-safe service such as {@link ConcurrentPaymentService} report that another thread
+     * has spent the balance the offer was based on, so the offer can be evaluated again.
+     *
+     * @param offer the offer to settle
+     * @return true if all payments were taken, false if nothing was taken
+     */
+    public boolean tryTake(OfferSlot offer) {
+        for (int i = 0; i < offer.size(); i++) {
+            if (balanceUnits(offer.method(i)) < offer.amount(i)) return false;
+        }
+        for (int i = 0; i < offer.size(); i++) {
+            takeUnits(offer.method(i), offer.amount(i));
+        }
+        return true;
+    }
+
     /**
      * Finds the payment method (excluding points) from a given list that has a balance greater than or equal
      * to the specified value and provides the best discount.
@@ -103,10 +245,63 @@ public class PaymentService {
      * @return an Optional containing a matching payment method, or empty if none found
      */
     public Optional<PaymentMethod> findPaymentMethodWithBalanceGreaterThan(BigDecimal value) {
-        return all()
-                .stream()
-                .filter(it -> it != points() && balance(it).compareTo(value) >= 0)
-                .findFirst();
+        return byIndex(paymentMethodsContainer.findWithBalanceAtLeast(value));
+    }
+
+    /**
+     * The {@link FixedPoint} variant of {@link #findBestDiscountPaymentMethodWithBalanceGreaterThan(List, BigDecimal)},
+     * working on payment methods pre-resolved with {@link #indicesOf(List)}.
+     *
+     * @param candidates the indices of the payment methods to consider
+     * @param value      the minimum required balance, in millionths
+     * @return an Optional containing the best matching payment method, or empty if none found
+     */
+    public Optional<PaymentMethod> findBestDiscountPaymentMethodWithBalanceUnitsGreaterThan(int[] candidates, long value) {
+        return byIndex(findBestDiscountPaymentMethodIndexWithBalanceUnitsGreaterThan(candidates, candidates.length, value));
+    }
+
+    /**
+     * The allocation-free variant of {@link #findBestDiscountPaymentMethodWithBalanceUnitsGreaterThan(int[], long)},
+     * considering only the first {@code count} candidates.
+     *
+     * @param candidates the indices of the payment methods to consider
+     * @param count      the number of candidates to consider
+     * @param value      the minimum required balance, in millionths
+     * @return the index of the best matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findBestDiscountPaymentMethodIndexWithBalanceUnitsGreaterThan(int[] candidates, int count, long value) {
+        return paymentMethodsContainer.findBestDiscountWithBalanceAtLeast(candidates, count, value);
+    }
+
+    /**
+     * Finds the payment method (excluding points) with the best discount among all methods
+     * which have a balance greater than or equal to the specified value.
+     *
+     * @param value the minimum required balance, in millionths
+     * @return an Optional containing the best matching payment method, or empty if none found
+     */
+    public Optional<PaymentMethod> findBestDiscountPaymentMethodWithBalanceUnitsGreaterThan(long value) {
+        return byIndex(paymentMethodsContainer.findBestDiscountWithBalanceAtLeast(value));
+    }
+
+    /**
+     * The {@link FixedPoint} variant of {@link #findPaymentMethodWithBalanceGreaterThan(BigDecimal)}.
+     *
+     * @param value the minimum required balance, in millionths
+     * @return an Optional containing a matching payment method, or empty if none found
+     */
+    public Optional<PaymentMethod> findPaymentMethodWithBalanceUnitsGreaterThan(long value) {
+        return byIndex(findPaymentMethodIndexWithBalanceUnitsGreaterThan(value));
+    }
+
+    /**
+     * The allocation-free variant of {@link #findPaymentMethodWithBalanceUnitsGreaterThan(long)}.
+     *
+     * @param value the minimum required balance, in millionths
+     * @return the index of a matching payment method, or {@link PaymentMethod#UNINDEXED} if none found
+     */
+    public int findPaymentMethodIndexWithBalanceUnitsGreaterThan(long value) {
+        return paymentMethodsContainer.findWithBalanceAtLeast(value);
     }
 
     /**
@@ -116,11 +311,22 @@ public class PaymentService {
      * @return a SpendingReport summarizing spending per payment method
      */
     public SpendingReport generateReport() {
+        if (fixedPoint()) {
+            return SpendingReport.ofUnits(
+                    paymentMethodsContainer.all()
+                            .stream()
+                            .collect(Collectors.toMap(k -> k, k -> Math.subtractExact(k.limitUnits(), balanceUnits(k))))
+            );
+        }
+
         return new SpendingReport(
                 paymentMethodsContainer.all()
                         .stream()
                         .collect(Collectors.toMap(k -> k, k -> k.limit().subtract(balance(k))))
         );
     }
-}
 
+    private Optional<PaymentMethod> byIndex(int index) {
+        return index == PaymentMethod.UNINDEXED ? Optional.empty() : Optional.of(paymentMethodsContainer.byIndex(index));
+    }
+}
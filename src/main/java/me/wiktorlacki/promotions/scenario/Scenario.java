@@ -0,0 +1,19 @@
+package me.wiktorlacki.promotions.scenario;
+
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.util.List;
+
+/**
+ * A variant of the payment methods to calculate the same orders against.
+ *
+ * @param name           the name of the scenario, used to label its row of the comparison
+ * @param paymentMethods the payment methods with their discounts and limits in this scenario
+ */
+public record Scenario(String name, List<PaymentMethod> paymentMethods) {
+
+    /**
+     * The name of the scenario holding the payment methods as given, which every comparison starts with.
+     */
+    public static final String BASE = "base";
+}
@@ -0,0 +1,109 @@
+package me.wiktorlacki.promotions.scenario;
+
+import me.wiktorlacki.promotions.SpendingReport;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The results of calculating the same orders in several scenarios, printed as a table with one row per scenario:
+ * the amount spent with every payment method, the total spend and the savings, i.e. how much less than the total
+ * value of the orders was paid.
+ *
+ * @param scenarios  the compared scenarios
+ * @param orderTotal the total value of the orders before any discounts
+ * @param results    the result of every scenario, in the order of {@code scenarios}
+ */
+public record ScenarioComparison(List<Scenario> scenarios, BigDecimal orderTotal, List<ScenarioResult> results) {
+
+    private static final String TOTAL = "total";
+    private static final String SAVINGS = "savings";
+
+    /**
+     * Returns how much the orders of a scenario cost less than their total value.
+     *
+     * @param result the result of one of the scenarios
+     * @return the savings of the scenario
+     * @throws IllegalArgumentException if the scenario failed
+     */
+    public BigDecimal savings(ScenarioResult result) {
+        if (!result.succeeded()) throw new IllegalArgumentException("Scenario " + result.name() + " failed");
+        return orderTotal.subtract(result.report().total());
+    }
+
+    @Override
+    public String toString() {
+        final var ids = new LinkedHashSet<String>();
+        scenarios.forEach(scenario -> scenario.paymentMethods().forEach(method -> ids.add(method.id())));
+
+        final var rows = new ArrayList<List<String>>();
+        final var header = new ArrayList<String>();
+        header.add("scenario");
+        header.addAll(ids);
+        header.add(TOTAL);
+        header.add(SAVINGS);
+        rows.add(header);
+
+        for (final var result : results) {
+            final var row = new ArrayList<String>();
+            row.add(result.name());
+            if (result.succeeded()) {
+                for (final var id : ids) {
+                    row.add(spent(result.report(), id));
+                }
+                row.add(money(result.report().total()));
+                row.add(money(savings(result)));
+            } else {
+                row.add("failed: " + result.failure().getMessage());
+            }
+            rows.add(row);
+        }
+
+        final var widths = new int[header.size()];
+        for (final var row : rows) {
+            // A failure message spans the remaining columns, so it does not widen the first of them.
+            if (row.size() < header.size()) {
+                widths[0] = Math.max(widths[0], row.get(0).length());
+                continue;
+            }
+            for (int column = 0; column < row.size(); column++) {
+                widths[column] = Math.max(widths[column], row.get(column).length());
+            }
+        }
+
+        final var sb = new StringBuilder();
+        for (final var row : rows) {
+            for (int column = 0; column < row.size(); column++) {
+                if (column > 0) sb.append("  ");
+                final var cell = row.get(column);
+                if (column == 0) {
+                    sb.append(cell).append(" ".repeat(widths[0] - cell.length()));
+                } else if (row.size() < header.size()) {
+                    sb.append(cell);
+                } else {
+                    sb.append(" ".repeat(widths[column] - cell.length())).append(cell);
+                }
+            }
+            sb.append("\n");
+        }
+        return sb.toString().stripTrailing();
+    }
+
+    private static String spent(SpendingReport report, String id) {
+        return report.values().entrySet().stream()
+                .filter(entry -> entry.getKey().id().equals(id))
+                .map(entry -> money(entry.getValue()))
+                .findFirst()
+                .orElse("-");
+    }
+
+    /**
+     * Formats an amount with at least two decimal places, dropping the zeros beyond them, so the table stays narrow.
+     */
+    private static String money(BigDecimal amount) {
+        final var value = amount.stripTrailingZeros();
+        return (value.scale() < 2 ? value.setScale(2) : value).toPlainString();
+    }
+}
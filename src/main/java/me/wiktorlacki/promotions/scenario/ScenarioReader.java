@@ -0,0 +1,113 @@
+package me.wiktorlacki.promotions.scenario;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import me.wiktorlacki.promotions.loader.JSONLoader;
+import me.wiktorlacki.promotions.loader.PaymentMethodDeserializer;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the scenarios of a what-if analysis from a JSON file.
+ *
+ * The file is an array of entries with a {@code name}. An entry may give its own {@code paymentMethods}, either as
+ * the path of a file in the usual input format, resolved against the directory of the scenario file if relative,
+ * or as the array itself; without them the scenario starts from the base payment methods. Its {@code changes} are
+ * then applied on top: every change names a payment method by {@code id} and overrides its {@code discount}
+ * (in percent, like in the input files) and/or its {@code limit}. A change of an unknown method adds it, in which
+ * case both have to be given.
+ */
+public class ScenarioReader {
+
+    private final JSONLoader loader = new JSONLoader();
+
+    private final List<PaymentMethod> base;
+
+    /**
+     * @param base the payment methods scenarios without payment methods of their own start from
+     */
+    public ScenarioReader(List<PaymentMethod> base) {
+        this.base = base;
+    }
+
+    /**
+     * Reads all scenarios of a file.
+     *
+     * @param path the path of the scenario file
+     * @return the scenarios, in file order
+     * @throws IOException        if the scenario file or a payment methods file it refers to cannot be read
+     * @throws JsonParseException if an entry is not a valid scenario
+     */
+    public List<Scenario> read(Path path) throws IOException {
+        final var baseDirectory = path.toAbsolutePath().getParent();
+        final JsonElement document;
+        try (var reader = Files.newBufferedReader(path)) {
+            document = JsonParser.parseReader(reader);
+        }
+        if (!document.isJsonArray()) throw new JsonParseException("Scenario file is not an array: " + path);
+
+        final var scenarios = new ArrayList<Scenario>();
+        for (final var element : document.getAsJsonArray()) {
+            final var entry = element.getAsJsonObject();
+            final var name = entry.get("name");
+            if (name == null || !name.isJsonPrimitive()) {
+                throw new JsonParseException("Scenario without a name: " + entry);
+            }
+
+            final var paymentMethods = entry.get("paymentMethods");
+            final List<PaymentMethod> methods;
+            if (paymentMethods == null) {
+                methods = base;
+            } else if (paymentMethods.isJsonArray()) {
+                methods = loader.parsePaymentMethods(paymentMethods);
+            } else {
+                methods = loader.loadPaymentMethods(baseDirectory.resolve(paymentMethods.getAsString()).toString());
+            }
+
+            scenarios.add(new Scenario(name.getAsString(), applyChanges(name.getAsString(), methods, entry.get("changes"))));
+        }
+        return scenarios;
+    }
+
+    private static List<PaymentMethod> applyChanges(String scenario, List<PaymentMethod> paymentMethods, JsonElement changes) {
+        final var result = new ArrayList<>(paymentMethods);
+        if (changes == null) return result;
+
+        for (final var element : changes.getAsJsonArray()) {
+            final var change = element.getAsJsonObject();
+            if (change.get("id") == null) throw new JsonParseException("Change without an id in scenario " + scenario);
+            final var id = change.get("id").getAsString();
+
+            var position = 0;
+            while (position < result.size() && !result.get(position).id().equals(id)) {
+                position++;
+            }
+
+            if (position == result.size()) {
+                if (change.get("discount") == null || change.get("limit") == null) {
+                    throw new JsonParseException("Scenario " + scenario + " changes unknown payment method " + id);
+                }
+                result.add(new PaymentMethod(id, discount(change), change.get("limit").getAsBigDecimal()));
+                continue;
+            }
+
+            final var current = result.get(position);
+            result.set(position, new PaymentMethod(id,
+                    change.get("discount") == null ? current.discount() : discount(change),
+                    change.get("limit") == null ? current.limit() : change.get("limit").getAsBigDecimal()));
+        }
+        return result;
+    }
+
+    private static BigDecimal discount(JsonObject change) {
+        return PaymentMethodDeserializer.toFraction(change.get("discount").getAsBigDecimal());
+    }
+}
@@ -0,0 +1,20 @@
+package me.wiktorlacki.promotions.scenario;
+
+import me.wiktorlacki.promotions.SpendingReport;
+
+/**
+ * The outcome of a single scenario: either a report or the failure which prevented it.
+ *
+ * @param name    the name of the scenario
+ * @param report  the spending report, or {@code null} if the orders could not be settled
+ * @param failure the exception which stopped the calculation, or {@code null} if it succeeded
+ */
+public record ScenarioResult(String name, SpendingReport report, Exception failure) {
+
+    /**
+     * @return whether a report was produced
+     */
+    public boolean succeeded() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,65 @@
+package me.wiktorlacki.promotions.scenario;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.batch.BatchRunner;
+import me.wiktorlacki.promotions.batch.CustomerInput;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.OrderSorter;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates the same orders against many variants of the payment methods at once.
+ *
+ * The orders are sorted once and then shared, read-only, by all scenarios. Every scenario settles them against
+ * balances of its own, so scenarios are calculated concurrently, like the customers of a batch.
+ */
+public class ScenarioRunner {
+
+    private final MoneyMode mode;
+    private final int concurrency;
+
+    /**
+     * @param mode        the representation of monetary amounts used while processing orders
+     * @param concurrency the maximum number of scenarios calculated at once
+     */
+    public ScenarioRunner(MoneyMode mode, int concurrency) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        this.mode = mode;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Calculates every scenario. A scenario whose orders cannot all be settled is reported as failed
+     * and does not affect the others.
+     *
+     * @param orders    the orders to settle in every scenario; the list is not modified
+     * @param scenarios the scenarios to compare
+     * @return the comparison of the scenarios, in the given order
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a scenario
+     */
+    public ScenarioComparison run(List<Order> orders, List<Scenario> scenarios) throws InterruptedException {
+        final var sorted = OrderSorter.byValue(orders, mode);
+        final var orderTotal = sorted.stream()
+                .map(Order::value)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        final var runner = new BatchRunner(scenario -> {
+            final var paymentService = new PaymentService(new PaymentMethodsContainer(scenario.paymentMethods(), mode));
+            return DiscountService.create(paymentService).calculateSorted(scenario.orders().stream());
+        }, concurrency);
+
+        final var inputs = scenarios.stream()
+                .map(scenario -> new CustomerInput(scenario.name(), null, null, sorted, scenario.paymentMethods()))
+                .iterator();
+        final var results = new ArrayList<ScenarioResult>(scenarios.size());
+        runner.run(inputs, result -> results.add(new ScenarioResult(result.customer(), result.report(), result.failure())));
+
+        return new ScenarioComparison(scenarios, orderTotal, results);
+    }
+}
@@ -0,0 +1,196 @@
+package me.wiktorlacki.promotions.server;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import me.wiktorlacki.promotions.batch.BatchRunner;
+import me.wiktorlacki.promotions.batch.CustomerInput;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.loader.JSONLoader;
+import me.wiktorlacki.promotions.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-running HTTP service calculating spending reports, so a single warmed-up JVM can serve many calculations.
+ *
+ * Endpoints:
+ * <ul>
+ *     <li>{@code POST /calculate} takes a JSON object with {@code orders} and {@code paymentMethods} arrays in the
+ *     usual input format and returns the spending report as plain text, exactly as printed by the application.
+ *     Every request is calculated against payment methods and balances of its own.</li>
+ *     <li>{@code GET /metrics} returns the latency histograms of the requests as JSON.</li>
+ * </ul>
+ *
+ * Requests are handled on virtual threads. Before the server starts listening it calculates a few generated
+ * workloads, so the first requests do not pay for class loading and interpretation.
+ */
+public class CalculationServer implements AutoCloseable {
+
+    /**
+     * The number of generated workloads calculated before the server starts listening.
+     */
+    public static final int DEFAULT_WARMUP_ITERATIONS = 200;
+
+    private static final int WARMUP_ORDERS = 2_000;
+    private static final int WARMUP_PAYMENT_METHODS = 8;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50_ms", "p90_ms", "p99_ms", "p99_9_ms"};
+
+    private final BatchRunner.CustomerCalculator calculator;
+    private final JSONLoader loader = new JSONLoader();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates the server without starting it.
+     *
+     * @param port       the port to listen on, or 0 for any free port
+     * @param calculator calculates the report of the input of a single request; called from several threads at once
+     * @throws IOException if the port cannot be bound
+     */
+    public CalculationServer(int port, BatchRunner.CustomerCalculator calculator) throws IOException {
+        this.calculator = calculator;
+        for (final var name : new String[]{"calculate", "calculate_ok", "calculate_error"}) {
+            histograms.put(name, new LatencyHistogram());
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/calculate", this::calculate);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    /**
+     * Warms up the calculation and starts accepting requests.
+     *
+     * @param warmupIterations the number of generated workloads to calculate first
+     * @throws Exception if a warm-up calculation fails
+     */
+    public void start(int warmupIterations) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            final var generator = new WorkloadGenerator(i, WARMUP_ORDERS, WARMUP_PAYMENT_METHODS);
+            calculator.calculate(new CustomerInput("warmup-" + i, null, null,
+                    new ArrayList<>(generator.orders().toList()), generator.paymentMethods()));
+        }
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for the running ones to finish.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private void calculate(HttpExchange exchange) throws IOException {
+        final var start = System.nanoTime();
+        // Only a response which was sent in full counts as successful.
+        var status = 500;
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                status = 405;
+                respond(exchange, status, "Use POST");
+                return;
+            }
+
+            final CustomerInput input;
+            try (var reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                input = parse(JsonParser.parseReader(reader).getAsJsonObject());
+            } catch (RuntimeException e) {
+                // Also invalid values and missing fields, which the loader reports with unchecked exceptions.
+                status = 400;
+                respond(exchange, status, "Invalid request: " + e.getMessage());
+                return;
+            }
+
+            final String report;
+            try {
+                report = calculator.calculate(input).toString();
+            } catch (IllegalStateException | IllegalArgumentException | ArithmeticException e) {
+                status = 422;
+                respond(exchange, status, e.getMessage());
+                return;
+            } catch (Exception e) {
+                respond(exchange, status, "Calculation failed: " + e.getMessage());
+                return;
+            }
+            respond(exchange, 200, report);
+            status = 200;
+        } finally {
+            final var elapsed = System.nanoTime() - start;
+            histograms.get("calculate").record(elapsed);
+            histograms.get(status == 200 ? "calculate_ok" : "calculate_error").record(elapsed);
+        }
+    }
+
+    private CustomerInput parse(JsonObject request) {
+        final var orders = request.get("orders");
+        final var paymentMethods = request.get("paymentMethods");
+        if (orders == null || !orders.isJsonArray() || paymentMethods == null || !paymentMethods.isJsonArray()) {
+            throw new JsonParseException("expected orders and paymentMethods arrays");
+        }
+        return new CustomerInput("request", null, null,
+                loader.parseOrders(orders), loader.parsePaymentMethods(paymentMethods));
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final var json = new StringWriter();
+            try (var writer = new JsonWriter(json)) {
+                writer.setIndent("  ");
+                writer.beginObject();
+                for (final var histogram : histograms.entrySet()) {
+                    final var snapshot = histogram.getValue().snapshot();
+                    writer.name(histogram.getKey()).beginObject();
+                    writer.name("count").value(snapshot.count());
+                    writer.name("mean_ms").value(millis(snapshot.mean()));
+                    for (int i = 0; i < QUANTILES.length; i++) {
+                        writer.name(QUANTILE_NAMES[i]).value(millis(snapshot.quantile(QUANTILES[i])));
+                    }
+                    writer.name("max_ms").value(millis(snapshot.max()));
+                    writer.endObject();
+                }
+                writer.endObject();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            respond(exchange, 200, json.toString());
+        }
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
@@ -0,0 +1,146 @@
+package me.wiktorlacki.promotions.trace;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.concurrent.RingBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An audit stream recording the decision made for every settled order, see {@link TraceRecord}, in a compact binary
+ * format which {@link TraceReader} converts to JSON lines.
+ *
+ * Threads settling orders fill preallocated records of a ring buffer and a background thread encodes and writes
+ * them, so the settling threads never encode, allocate or wait for I/O unless the writer falls behind by a whole
+ * buffer. Records are never dropped: a full buffer makes the settling threads wait for the writer. Any number of
+ * threads may record at once; every record is written once it and all records begun before it are committed.
+ */
+public final class DecisionTrace implements Closeable {
+
+    /**
+     * The default number of records in the ring buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final TraceOutput out;
+    private final RingBuffer<TraceRecord> records;
+
+    private volatile IOException failure;
+
+    /**
+     * @param out      the destination of the records; written in large chunks and closed by {@link #close()}
+     * @param capacity the minimum number of records in the ring buffer, rounded up to a power of two
+     */
+    public DecisionTrace(OutputStream out, int capacity) {
+        this.out = new TraceOutput(out);
+        this.records = new RingBuffer<>("decision trace", capacity, TraceRecord::new, new Writer());
+    }
+
+    /**
+     * Opens a trace writing to a file, replacing its contents.
+     *
+     * @param file the file to write the records to
+     * @return a new trace with the {@link #DEFAULT_CAPACITY default capacity}
+     * @throws IOException if the file cannot be opened
+     */
+    public static DecisionTrace open(Path file) throws IOException {
+        return new DecisionTrace(Files.newOutputStream(file), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Claims the next record for an order. Every claimed record has to be passed to {@link #commit(TraceRecord)},
+     * also if settling the order fails, as the records after it are not written until then.
+     *
+     * @param order the order about to be settled
+     * @return the record to fill
+     * @throws IllegalStateException if the trace is closed, or its writer stopped
+     */
+    public TraceRecord begin(Order order) {
+        final var sequence = records.claim();
+        final var record = records.entry(sequence);
+        record.reset(sequence, order);
+        return record;
+    }
+
+    /**
+     * Hands a filled record over to the writer.
+     *
+     * @param record the record returned by {@link #begin(Order)}
+     */
+    public void commit(TraceRecord record) {
+        records.publish(record.sequence());
+    }
+
+    /**
+     * @return the number of records written so far
+     */
+    public long written() {
+        return records.consumed();
+    }
+
+    /**
+     * Waits until all committed records are written, then closes the destination. Records must not be begun
+     * concurrently with closing.
+     *
+     * @throws IOException if writing any record failed, or the destination cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (records.isClosed()) return;
+        try {
+            records.close();
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+
+        if (failure != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+            throw failure;
+        }
+        out.close();
+    }
+
+    /**
+     * Encodes the committed records on the writer thread of the ring buffer.
+     */
+    private final class Writer implements RingBuffer.Sink<TraceRecord> {
+
+        private boolean pending;
+
+        @Override
+        public void write(TraceRecord record, long sequence) {
+            pending = true;
+            // After a failure the records are still consumed, so that the settling threads never wait for a dead writer.
+            if (failure != null) return;
+            try {
+                record.encode(out);
+                out.endRecord();
+            } catch (IOException e) {
+                failure = e;
+            } catch (ArithmeticException e) {
+                failure = new IOException("Cannot encode the record of order " + record.order().id(), e);
+            }
+        }
+
+        @Override
+        public void idle(long consumed, boolean done) {
+            if (!pending || failure != null) return;
+            pending = false;
+            try {
+                out.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package me.wiktorlacki.promotions.trace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes records of a {@link DecisionTrace} into its binary format, see {@link TraceReader}, and writes them
+ * in large chunks. Used by the writer thread only.
+ */
+final class TraceOutput {
+
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private byte[] buffer = new byte[2 * FLUSH_THRESHOLD];
+    private int position;
+
+    TraceOutput(OutputStream out) {
+        this.out = out;
+        writeInt(TraceReader.MAGIC);
+        writeByte(TraceReader.VERSION);
+    }
+
+    /**
+     * Writes a string which is likely to repeat, like the name of a strategy or the identifier of a payment method:
+     * the first occurrence defines it, later ones refer to it by number.
+     */
+    void writeReference(String value) {
+        final var id = dictionary.get(value);
+        if (id != null) {
+            writeVarLong(id + 1L);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        writeVarLong(0);
+        writeString(value);
+    }
+
+    /**
+     * Writes a string inline, or null.
+     */
+    void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Writes an amount given as its unscaled value and scale, e.g. in the {@link me.wiktorlacki.promotions.money.FixedPoint}
+     * representation.
+     */
+    void writeAmount(long unscaled, int scale) {
+        writeByte(scale);
+        // Zig-zag encoding keeps small negative amounts short.
+        writeVarLong((unscaled << 1) ^ (unscaled >> 63));
+    }
+
+    /**
+     * @throws ArithmeticException if the unscaled value of the amount does not fit into a long
+     */
+    void writeAmount(BigDecimal amount) {
+        writeAmount(amount.unscaledValue().longValueExact(), amount.scale());
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            buffer[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    /**
+     * Writes the buffered bytes once there are enough of them to make the write worthwhile.
+     */
+    void endRecord() throws IOException {
+        if (position >= FLUSH_THRESHOLD) flush();
+    }
+
+    void flush() throws IOException {
+        out.write(buffer, 0, position);
+        out.flush();
+        position = 0;
+    }
+
+    void close() throws IOException {
+        try (out) {
+            flush();
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, position + bytes));
+        }
+    }
+}
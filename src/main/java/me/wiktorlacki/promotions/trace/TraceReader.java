@@ -0,0 +1,196 @@
+package me.wiktorlacki.promotions.trace;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a {@link DecisionTrace} file to JSON lines, one object per order:
+ *
+ * <pre>{@code
+ * {"order":"ORDER1","value":"100.00","candidates":[
+ *   {"strategy":"FullPointsPayment","offer":null},
+ *   {"strategy":"PartialPointsPayment","type":"PARTIAL_POINTS","price":"90.00","payments":{"PUNKTY":"10.00","BosBankrut":"80.00"}},
+ *   {"strategy":"FullCardPayment","type":"FULL_CARD","price":"90.00","payments":{"mZysk":"90.00"}},
+ *   {"strategy":"SplitPayment","skipped":true}],
+ *  "winner":"PartialPointsPayment","balances":{"PUNKTY":"47.50","BosBankrut":"120.00"}}
+ * }</pre>
+ *
+ * A candidate without an offer is {@code "offer":null}; a skipped one was not evaluated, because its price bound or
+ * a fallback rule showed that it could not be chosen. {@code winner} is null for an order which could not be paid,
+ * and {@code attempts} is only present for an order evaluated again because another thread spent a balance first.
+ *
+ * The binary format starts with the 4-byte little-endian {@link #MAGIC} and the {@link #VERSION} byte, followed by
+ * the records. Integers are unsigned LEB128 varints. A string is its UTF-8 length plus one followed by the bytes,
+ * or 0 for null; a reference is 0 followed by a string, which defines the next number starting from 1, or the number
+ * of a string defined before. An amount is a scale byte followed by the zig-zag varint unscaled value. A record is:
+ * the order id string, the value amount, the number of attempts, the number of candidates and for every candidate
+ * its strategy reference and state byte (0 skipped, 1 no offer, 2 offer), for an offer followed by its type reference,
+ * price amount and the number of payments with a method reference and amount each; then the position of the winner
+ * plus one (0 if none) and the number of balances with a method reference and amount each.
+ */
+public final class TraceReader {
+
+    /**
+     * The first bytes of every trace file, "PNTR" in little-endian order.
+     */
+    public static final int MAGIC = 0x52544E50;
+
+    /**
+     * The version of the binary format.
+     */
+    public static final int VERSION = 1;
+
+    private final DataInputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+
+    private TraceReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * Converts all records of a trace.
+     *
+     * @param in  the trace; not closed
+     * @param out the destination of the JSON lines; not closed
+     * @return the number of records converted
+     * @throws IOException if the trace cannot be read, is not a trace or is truncated
+     */
+    public static long toJsonLines(InputStream in, Writer out) throws IOException {
+        return new TraceReader(in).convert(out);
+    }
+
+    private long convert(Writer out) throws IOException {
+        final var magic = Integer.reverseBytes(readHeaderInt());
+        if (magic != MAGIC) throw new IOException("Not a decision trace");
+        final var version = in.read();
+        if (version != VERSION) throw new IOException("Unsupported decision trace version: " + version);
+
+        var records = 0L;
+        while (true) {
+            final var first = in.read();
+            if (first < 0) return records;
+            convertRecord(first, out);
+            records++;
+        }
+    }
+
+    private void convertRecord(int first, Writer out) throws IOException {
+        final var writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("order").value(readString(readVarLong(first)));
+        writer.name("value").value(readAmount());
+        final var attempts = readVarLong(in.read());
+        if (attempts > 1) writer.name("attempts").value(attempts);
+
+        final var strategies = new ArrayList<String>();
+        writer.name("candidates").beginArray();
+        final var candidates = readVarLong(in.read());
+        for (long i = 0; i < candidates; i++) {
+            final var strategy = readReference();
+            strategies.add(strategy);
+            writer.beginObject();
+            writer.name("strategy").value(strategy);
+            switch (readByte()) {
+                case TraceRecord.SKIPPED -> writer.name("skipped").value(true);
+                case TraceRecord.NO_OFFER -> writer.name("offer").nullValue();
+                case TraceRecord.OFFER -> {
+                    writer.name("type").value(readReference());
+                    writer.name("price").value(readAmount());
+                    writePayments(writer, "payments");
+                }
+                default -> throw new IOException("Corrupted decision trace");
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+
+        final var winner = readVarLong(in.read()) - 1;
+        if (winner < 0) {
+            writer.name("winner").nullValue();
+            readVarLong(in.read());
+        } else {
+            if (winner >= strategies.size()) throw new IOException("Corrupted decision trace");
+            writer.name("winner").value(strategies.get((int) winner));
+            writePayments(writer, "balances");
+        }
+        writer.endObject();
+        out.write('\n');
+    }
+
+    private void writePayments(JsonWriter writer, String name) throws IOException {
+        writer.name(name).beginObject();
+        final var count = readVarLong(in.read());
+        for (long i = 0; i < count; i++) {
+            writer.name(readReference()).value(readAmount());
+        }
+        writer.endObject();
+    }
+
+    private String readReference() throws IOException {
+        final var id = readVarLong(in.read());
+        if (id == 0) {
+            final var value = readString(readVarLong(in.read()));
+            if (value == null) throw new IOException("Corrupted decision trace");
+            dictionary.add(value);
+            return value;
+        }
+        if (id > dictionary.size()) throw new IOException("Corrupted decision trace");
+        return dictionary.get((int) (id - 1));
+    }
+
+    private String readString(long length) throws IOException {
+        if (length == 0) return null;
+        if (length - 1 > Integer.MAX_VALUE) throw new IOException("Corrupted decision trace");
+        final var bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Formats an amount with at least two decimal places, so both money modes produce the same output.
+     */
+    private String readAmount() throws IOException {
+        final var scale = readByte();
+        final var encoded = readVarLong(in.read());
+        final var value = BigDecimal.valueOf((encoded >>> 1) ^ -(encoded & 1), scale).stripTrailingZeros();
+        return (value.scale() < 2 ? value.setScale(2) : value).toPlainString();
+    }
+
+    private long readVarLong(int first) throws IOException {
+        var value = 0L;
+        var shift = 0;
+        var current = first;
+        while (true) {
+            if (current < 0) throw new EOFException("Truncated decision trace");
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 63) throw new IOException("Corrupted decision trace");
+            current = in.read();
+        }
+    }
+
+    private byte readByte() throws IOException {
+        final var value = in.read();
+        if (value < 0) throw new EOFException("Truncated decision trace");
+        return (byte) value;
+    }
+
+    private int readHeaderInt() throws IOException {
+        try {
+            return in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Not a decision trace", e);
+        }
+    }
+}
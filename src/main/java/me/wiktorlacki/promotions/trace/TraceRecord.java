@@ -0,0 +1,212 @@
+package me.wiktorlacki.promotions.trace;
+
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.EvaluationContext;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The decision made for one order, as recorded in a {@link DecisionTrace}: the result of every strategy, the strategy
+ * whose offer was chosen and the balances of the payment methods it used after its payments were taken.
+ *
+ * Records are owned by the ring buffer of the trace and reused, so the thread settling an order only copies what it
+ * has at hand into preallocated arrays and references immutable values; encoding happens on the writer thread.
+ * A record obtained from {@link DecisionTrace#begin(Order)} may only be filled until it is passed to
+ * {@link DecisionTrace#commit(TraceRecord)}.
+ */
+public final class TraceRecord {
+
+    static final byte SKIPPED = 0;
+    static final byte NO_OFFER = 1;
+    static final byte OFFER = 2;
+
+    private long sequence;
+    private Order order;
+    private List<String> strategies = List.of();
+    private boolean fixedPoint;
+    private int attempts;
+    private int winner;
+
+    private byte[] states = new byte[0];
+    private OfferSlot[] slots = new OfferSlot[0];
+    private Offer[] offers = new Offer[0];
+
+    private int balanceCount;
+    private PaymentMethod[] methods = new PaymentMethod[2];
+    private long[] balanceUnits = new long[2];
+    private BigDecimal[] balances = new BigDecimal[2];
+
+    void reset(long sequence, Order order) {
+        this.sequence = sequence;
+        this.order = order;
+        this.strategies = List.of();
+        this.attempts = 0;
+        this.winner = -1;
+        this.balanceCount = 0;
+        Arrays.fill(offers, null);
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    Order order() {
+        return order;
+    }
+
+    /**
+     * Records the candidates of an evaluation in the {@link FixedPoint} mode. When an order is evaluated again
+     * because another thread spent a balance first, the last evaluation is kept.
+     *
+     * @param strategies the names of the strategies, in the order in which they are evaluated
+     * @param context    the context holding the candidates of the evaluation
+     */
+    public void evaluated(List<String> strategies, EvaluationContext context) {
+        start(strategies, true);
+        attempts++;
+        for (int i = 0; i < context.strategyCount(); i++) {
+            final var candidate = context.candidate(i);
+            states[i] = !context.evaluated(i) ? SKIPPED : candidate.isEmpty() ? NO_OFFER : OFFER;
+            if (states[i] == OFFER) slots[i].copyFrom(candidate);
+        }
+        winner = context.winner();
+    }
+
+    /**
+     * Starts recording the candidates of an evaluation in the {@link java.math.BigDecimal} mode, which are then
+     * passed one by one to {@link #candidate(Offer, int)}.
+     *
+     * @param strategies the names of the strategies, in the order in which they are evaluated
+     */
+    public void evaluating(List<String> strategies) {
+        start(strategies, false);
+        attempts++;
+        Arrays.fill(states, 0, strategies.size(), SKIPPED);
+    }
+
+    /**
+     * Records the result of a strategy in the {@link java.math.BigDecimal} mode.
+     *
+     * @param offer    the offer of the strategy, or null if it produced none
+     * @param strategy the position of the strategy
+     */
+    public void candidate(Offer offer, int strategy) {
+        states[strategy] = offer == null ? NO_OFFER : OFFER;
+        offers[strategy] = offer;
+    }
+
+    /**
+     * Records which of the candidates passed to {@link #candidate(Offer, int)} was chosen.
+     *
+     * @param offer the chosen offer
+     */
+    public void chosen(Offer offer) {
+        for (int i = 0; i < strategies.size(); i++) {
+            if (offers[i] == offer) winner = i;
+        }
+    }
+
+    /**
+     * Records the balances of the payment methods used by the chosen offer, after its payments were taken.
+     *
+     * @param paymentService the payment service the payments were taken from
+     */
+    public void settled(PaymentService paymentService) {
+        if (winner < 0) return;
+        balanceCount = 0;
+        if (fixedPoint) {
+            final var offer = slots[winner];
+            for (int i = 0; i < offer.size(); i++) {
+                addBalance(offer.method(i));
+                balanceUnits[balanceCount - 1] = paymentService.balanceUnits(offer.method(i));
+            }
+        } else {
+            for (final var method : offers[winner].payments().keySet()) {
+                addBalance(method);
+                balances[balanceCount - 1] = paymentService.balance(method);
+            }
+        }
+    }
+
+    /**
+     * Encodes this record in the binary format described by {@link TraceReader}.
+     */
+    void encode(TraceOutput out) {
+        out.writeString(order.id());
+        if (fixedPoint) {
+            out.writeAmount(order.valueUnits(), FixedPoint.SCALE);
+        } else {
+            out.writeAmount(order.value());
+        }
+        out.writeVarLong(attempts);
+
+        out.writeVarLong(strategies.size());
+        for (int i = 0; i < strategies.size(); i++) {
+            out.writeReference(strategies.get(i));
+            out.writeByte(states[i]);
+            if (states[i] != OFFER) continue;
+
+            if (fixedPoint) {
+                final var offer = slots[i];
+                out.writeReference(offer.type());
+                out.writeAmount(offer.price(), FixedPoint.SCALE);
+                out.writeVarLong(offer.size());
+                for (int j = 0; j < offer.size(); j++) {
+                    out.writeReference(offer.method(j).id());
+                    out.writeAmount(offer.amount(j), FixedPoint.SCALE);
+                }
+            } else {
+                final var offer = offers[i];
+                out.writeReference(offer.type());
+                out.writeAmount(offer.price());
+                out.writeVarLong(offer.payments().size());
+                for (final var payment : offer.payments().entrySet()) {
+                    out.writeReference(payment.getKey().id());
+                    out.writeAmount(payment.getValue());
+                }
+            }
+        }
+
+        out.writeVarLong(winner + 1L);
+        out.writeVarLong(balanceCount);
+        for (int i = 0; i < balanceCount; i++) {
+            out.writeReference(methods[i].id());
+            if (fixedPoint) {
+                out.writeAmount(balanceUnits[i], FixedPoint.SCALE);
+            } else {
+                out.writeAmount(balances[i]);
+            }
+        }
+    }
+
+    private void start(List<String> strategies, boolean fixedPoint) {
+        this.strategies = strategies;
+        this.fixedPoint = fixedPoint;
+        if (states.length < strategies.size()) {
+            final var capacity = strategies.size();
+            final var grown = Arrays.copyOf(slots, capacity);
+            for (int i = slots.length; i < capacity; i++) {
+                grown[i] = new OfferSlot();
+            }
+            slots = grown;
+            states = new byte[capacity];
+            offers = new Offer[capacity];
+        }
+    }
+
+    private void addBalance(PaymentMethod method) {
+        if (balanceCount == methods.length) {
+            methods = Arrays.copyOf(methods, 2 * balanceCount);
+            balanceUnits = Arrays.copyOf(balanceUnits, 2 * balanceCount);
+            balances = Arrays.copyOf(balances, 2 * balanceCount);
+        }
+        methods[balanceCount++] = method;
+    }
+}
@@ -0,0 +1,115 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.batch.BatchReader;
+import me.wiktorlacki.promotions.batch.BatchRunner;
+import me.wiktorlacki.promotions.batch.CustomerInput;
+import me.wiktorlacki.promotions.batch.CustomerResult;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchRunnerTests {
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Test
+    @DisplayName("Test whether batch entries with paths and with inline data are read")
+    public void testReadsPathsAndInlineData() throws IOException {
+        Files.createDirectory(tempDirectory.resolve("c1"));
+        final var batch = tempDirectory.resolve("batch.json");
+        Files.writeString(batch, """
+                [
+                  {"customer": "C1", "orders": "c1/orders.json", "paymentMethods": "c1/paymentmethods.json"},
+                  {"customer": "C2", "orders": [{"id": "ORDER1", "value": "100.00", "promotions": ["mZysk"]}],
+                   "paymentMethods": [{"id": "PUNKTY", "discount": "15", "limit": "20.00"},
+                                      {"id": "mZysk", "discount": "10", "limit": "200.00"}]}
+                ]
+                """);
+
+        final var customers = new ArrayList<CustomerInput>();
+        try (var reader = new BatchReader(batch)) {
+            reader.forEachRemaining(customers::add);
+        }
+
+        assertThat(customers).hasSize(2);
+        assertThat(customers.get(0).inlineOrders()).isFalse();
+        assertThat(Path.of(customers.get(0).ordersPath())).isEqualTo(tempDirectory.resolve("c1/orders.json").toAbsolutePath());
+        assertThat(customers.get(1).orders()).hasSize(1);
+        assertThat(customers.get(1).paymentMethods())
+                .extracting(PaymentMethod::index)
+                .containsExactly(0, 1);
+        assertThat(customers.get(1).paymentMethods().get(1).discount()).isEqualByComparingTo("0.10");
+    }
+
+    @Test
+    @DisplayName("Test whether customers are processed with isolated balances and emitted in input order")
+    public void testIsolatedAndOrdered() throws InterruptedException {
+        final var customers = IntStream.range(0, 50)
+                .mapToObj(i -> new CustomerInput("C" + i, null, null,
+                        new ArrayList<>(List.of(new Order("ORDER1", new BigDecimal("100.00"), null))),
+                        List.of(new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("100.00")))))
+                .toList();
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+        final var runner = new BatchRunner(customer -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                return calculate(customer);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }, 4);
+
+        final var results = new ArrayList<CustomerResult>();
+        final var processed = runner.run(customers.iterator(), results::add);
+
+        assertThat(processed).isEqualTo(50);
+        assertThat(results).extracting(CustomerResult::customer)
+                .containsExactlyElementsOf(customers.stream().map(CustomerInput::customer).toList());
+        // Every customer pays 85.00 with its own points, which only works if balances are not shared.
+        assertThat(results).allSatisfy(result -> assertThat(result.report().total()).isEqualByComparingTo("85.00"));
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Test whether a failing customer does not stop the batch")
+    public void testFailureIsolated() throws InterruptedException {
+        final var customers = List.of(
+                CustomerInput.ofPaths("OK1", null, null),
+                CustomerInput.ofPaths("BROKEN", null, null),
+                CustomerInput.ofPaths("OK2", null, null)
+        );
+        final var runner = new BatchRunner(customer -> {
+            if (customer.customer().equals("BROKEN")) throw new IOException("missing file");
+            return new SpendingReport(Map.of());
+        }, 2);
+
+        final var results = new ArrayList<CustomerResult>();
+        runner.run(customers.iterator(), results::add);
+
+        assertThat(results).extracting(CustomerResult::succeeded).containsExactly(true, false, true);
+        assertThat(results.get(1).failure()).hasMessage("missing file");
+    }
+
+    private static SpendingReport calculate(CustomerInput customer) {
+        final var paymentService = new PaymentService(new PaymentMethodsContainer(customer.paymentMethods()));
+        return DiscountService.create(paymentService).calculate(customer.orders());
+    }
+}
@@ -0,0 +1,103 @@
+import com.google.gson.JsonParser;
+import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.batch.CustomerInput;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import me.wiktorlacki.promotions.server.CalculationServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CalculationServerTests {
+
+    private static final String REQUEST = """
+            {
+              "orders": [{"id": "ORDER1", "value": "100.00", "promotions": ["mZysk"]}],
+              "paymentMethods": [{"id": "PUNKTY", "discount": "15", "limit": "10.00"},
+                                 {"id": "mZysk", "discount": "10", "limit": "200.00"}]
+            }
+            """;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private CalculationServer server;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new CalculationServer(0, CalculationServerTests::calculate);
+        server.start(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Test whether every request is calculated against fresh balances")
+    public void testCalculate() throws Exception {
+        final var first = post(REQUEST);
+        final var second = post(REQUEST);
+
+        assertThat(first.statusCode()).isEqualTo(200);
+        assertThat(first.body()).contains("PUNKTY: 10.00").contains("mZysk: 80.00");
+        assertThat(second.body()).isEqualTo(first.body());
+    }
+
+    @Test
+    @DisplayName("Test whether invalid requests are rejected and all requests are counted in the metrics")
+    public void testErrorsAndMetrics() throws Exception {
+        assertThat(post("{\"orders\": [").statusCode()).isEqualTo(400);
+        assertThat(post("""
+                {"orders": [{"id": "1", "value": "1000.00"}], "paymentMethods": [{"id": "PUNKTY", "discount": "15", "limit": "1.00"}]}
+                """).statusCode()).isEqualTo(422);
+        post(REQUEST);
+
+        final var metrics = client.send(HttpRequest.newBuilder(uri("/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(metrics.statusCode()).isEqualTo(200);
+        assertThat(metrics.body()).contains("\"calculate\"").contains("\"count\": 3").contains("\"p99_ms\"");
+    }
+
+    @Test
+    @DisplayName("Test whether malformed payment methods are rejected and counted as errors")
+    public void testMalformedPaymentMethod() throws Exception {
+        assertThat(post("""
+                {"orders": [], "paymentMethods": [{"id": "PUNKTY", "discount": "abc", "limit": "1.00"}]}
+                """).statusCode()).isEqualTo(400);
+        assertThat(post("""
+                {"orders": [], "paymentMethods": [{"discount": "15", "limit": "1.00"}]}
+                """).statusCode()).isEqualTo(400);
+
+        final var metrics = JsonParser.parseString(client.send(HttpRequest.newBuilder(uri("/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString()).body()).getAsJsonObject();
+
+        assertThat(metrics.getAsJsonObject("calculate_error").get("count").getAsLong()).isEqualTo(2);
+        assertThat(metrics.getAsJsonObject("calculate_ok").get("count").getAsLong()).isZero();
+    }
+
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        final var request = HttpRequest.newBuilder(uri("/calculate"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+
+    private static SpendingReport calculate(CustomerInput customer) {
+        final var paymentService = new PaymentService(new PaymentMethodsContainer(customer.paymentMethods()));
+        return DiscountService.create(paymentService).calculate(customer.orders());
+    }
+}
@@ -0,0 +1,127 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.checkpoint.Checkpointer;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.wiktorlacki.promotions.TestFixtures.ORDERS;
+import static me.wiktorlacki.promotions.TestFixtures.UNPAYABLE;
+import static me.wiktorlacki.promotions.TestFixtures.paymentService;
+import static me.wiktorlacki.promotions.TestFixtures.withUnpayable;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CheckpointTests {
+
+    private static Checkpointer everyOrder(Path file) {
+        return new Checkpointer(file, Duration.ZERO, 1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether a calculation which failed is resumed after the last settled order with the same report")
+    public void testResumesAfterFailure(MoneyMode mode, @TempDir Path directory) throws IOException {
+        final var file = directory.resolve("checkpoint.bin");
+        final var failing = DiscountService.create(paymentService(mode)).checkpoint(everyOrder(file));
+        // The unpayable order is the most valuable one, so it fails after all other orders are settled.
+        assertThatThrownBy(() -> failing.calculate(withUnpayable())).isInstanceOf(IllegalStateException.class);
+
+        final var paymentService = paymentService(mode);
+        final var checkpointer = everyOrder(file);
+        assertThat(checkpointer.resume(paymentService)).isTrue();
+        assertThat(checkpointer.position()).isEqualTo(4);
+
+        final var rejected = new ArrayList<Order>();
+        final var report = DiscountService.create(paymentService).checkpoint(checkpointer)
+                .rejectTo(rejection -> rejected.add(rejection.order()))
+                .calculate(withUnpayable());
+
+        assertThat(report).isEqualTo(DiscountService.create(paymentService(mode)).calculate(ORDERS));
+        assertThat(rejected).containsExactly(UNPAYABLE);
+        assertThat(checkpointer.position()).isEqualTo(5);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the parallel calculation checkpoints and resumes like the sequential one")
+    public void testParallelResumes(MoneyMode mode, @TempDir Path directory) throws IOException {
+        final var file = directory.resolve("checkpoint.bin");
+        final var failing = ParallelDiscountService.create(paymentService(mode)).checkpoint(everyOrder(file));
+        assertThatThrownBy(() -> failing.calculate(withUnpayable())).isInstanceOf(IllegalStateException.class);
+
+        final var paymentService = paymentService(mode);
+        final var checkpointer = everyOrder(file);
+        assertThat(checkpointer.resume(paymentService)).isTrue();
+        assertThat(checkpointer.position()).isEqualTo(4);
+
+        final var report = ParallelDiscountService.create(paymentService).checkpoint(checkpointer)
+                .rejectTo(rejection -> { })
+                .calculate(withUnpayable());
+
+        assertThat(report).isEqualTo(DiscountService.create(paymentService(mode)).calculate(ORDERS));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether resuming a finished calculation reproduces its report without settling anything")
+    public void testResumesFinishedCalculation(MoneyMode mode, @TempDir Path directory) throws IOException {
+        final var file = directory.resolve("checkpoint.bin");
+        final var expected = DiscountService.create(paymentService(mode)).checkpoint(Checkpointer.create(file))
+                .calculate(ORDERS);
+
+        final var paymentService = paymentService(mode);
+        final var checkpointer = Checkpointer.create(file);
+        assertThat(checkpointer.resume(paymentService)).isTrue();
+
+        assertThat(DiscountService.create(paymentService).checkpoint(checkpointer).calculate(ORDERS)).isEqualTo(expected);
+        assertThat(directory.resolve("checkpoint.bin.tmp")).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Test whether there is nothing to resume without a checkpoint file")
+    public void testMissingCheckpoint(@TempDir Path directory) throws IOException {
+        final var checkpointer = Checkpointer.create(directory.resolve("checkpoint.bin"));
+
+        assertThat(checkpointer.resume(paymentService(MoneyMode.DECIMAL))).isFalse();
+        assertThat(checkpointer.position()).isZero();
+    }
+
+    @Test
+    @DisplayName("Test whether a checkpoint of different payment methods, another money mode or with corrupt bytes is refused")
+    public void testRefusesMismatchedCheckpoint(@TempDir Path directory) throws IOException {
+        final var file = directory.resolve("checkpoint.bin");
+        DiscountService.create(paymentService(MoneyMode.DECIMAL)).checkpoint(Checkpointer.create(file)).calculate(ORDERS);
+
+        final var other = new PaymentService(new PaymentMethodsContainer(List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("100.00"))
+        ), MoneyMode.DECIMAL));
+        assertThatThrownBy(() -> Checkpointer.create(file).resume(other)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> Checkpointer.create(file).resume(paymentService(MoneyMode.FIXED_POINT)))
+                .isInstanceOf(IOException.class);
+
+        final var bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        final var paymentService = paymentService(MoneyMode.DECIMAL);
+        assertThatThrownBy(() -> Checkpointer.create(file).resume(paymentService)).isInstanceOf(IOException.class);
+        // Nothing is restored from a refused checkpoint.
+        assertThat(paymentService.generateReport())
+                .isEqualTo(DiscountService.create(paymentService(MoneyMode.DECIMAL)).calculate(List.of()));
+    }
+}
@@ -0,0 +1,155 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.payment.ConcurrentLedger;
+import me.wiktorlacki.promotions.payment.ConcurrentPaymentService;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ConcurrentPaymentServiceTests {
+
+    private static final int THREADS = 8;
+
+    @Test
+    @DisplayName("Test whether concurrent takes never overdraw a balance")
+    public void testNoOverdraw() throws Exception {
+        final var ledger = new ConcurrentLedger(new long[]{1_000_000});
+        final var taken = new AtomicLong();
+
+        runConcurrently(() -> {
+            while (ledger.tryTake(0, 7)) {
+                taken.addAndGet(7);
+            }
+            return null;
+        });
+
+        assertThat(ledger.available(0)).isBetween(0L, 6L);
+        assertThat(ledger.available(0) + taken.get()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    @DisplayName("Test whether reservations take all amounts or none and can be committed or rolled back once")
+    public void testReservations() {
+        final var ledger = new ConcurrentLedger(new long[]{100, 50});
+
+        assertThat(ledger.reserve(new int[]{0, 1}, new long[]{60, 60}, 2)).isNull();
+        assertThat(ledger.available(0)).isEqualTo(100);
+        assertThat(ledger.available(1)).isEqualTo(50);
+
+        final var committed = ledger.reserve(new int[]{0, 1}, new long[]{60, 20}, 2);
+        final var rolledBack = ledger.reserve(new int[]{0}, new long[]{40}, 1);
+        assertThat(ledger.openReservations()).isEqualTo(2);
+        assertThat(ledger.available(0)).isZero();
+        assertThat(ledger.reserved(0)).isEqualTo(100);
+
+        ledger.commit(committed);
+        ledger.rollback(rolledBack);
+
+        assertThat(ledger.openReservations()).isZero();
+        assertThat(ledger.available(0)).isEqualTo(40);
+        assertThat(ledger.available(1)).isEqualTo(30);
+        assertThat(ledger.reserved(0)).isZero();
+        assertThatThrownBy(() -> ledger.rollback(committed)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Test whether an offer is taken through a committed reservation, in full or not at all")
+    public void testTryTakeOffer() {
+        final var paymentService = new ConcurrentPaymentService(
+                new PaymentMethodsContainer(new WorkloadGenerator(1, 1, 3).paymentMethods(), MoneyMode.FIXED_POINT));
+        final var ledger = paymentService.ledger();
+        final var first = paymentService.paymentMethod(1);
+        final var second = paymentService.paymentMethod(2);
+        final var firstBalance = ledger.available(1);
+        final var secondBalance = ledger.available(2);
+        final var offer = new OfferSlot();
+
+        offer.pair("SPLIT", 0, first, 1, second, secondBalance + 1);
+        assertThat(paymentService.tryTake(offer)).isFalse();
+        assertThat(ledger.available(1)).isEqualTo(firstBalance);
+        assertThat(ledger.available(2)).isEqualTo(secondBalance);
+
+        offer.pair("SPLIT", 0, first, 1, second, secondBalance);
+        assertThat(paymentService.tryTake(offer)).isTrue();
+        assertThat(ledger.available(1)).isEqualTo(firstBalance - 1);
+        assertThat(ledger.available(2)).isZero();
+        assertThat(ledger.reserved(2)).isZero();
+        assertThat(ledger.openReservations()).isZero();
+    }
+
+    @Test
+    @DisplayName("Test whether a single thread gets the same report as with the plain payment service")
+    public void testSequentialMatchesPlainService() {
+        final var generator = new WorkloadGenerator(11, 2_000, 6);
+        final var orders = generator.orders().toList();
+
+        final var plain = new PaymentService(new PaymentMethodsContainer(generator.paymentMethods(), MoneyMode.FIXED_POINT));
+        final var concurrent = new ConcurrentPaymentService(new PaymentMethodsContainer(generator.paymentMethods(), MoneyMode.FIXED_POINT));
+
+        assertThat(DiscountService.create(concurrent).calculate(new ArrayList<>(orders)))
+                .isEqualTo(DiscountService.create(plain).calculate(new ArrayList<>(orders)));
+    }
+
+    @Test
+    @DisplayName("Test whether orders settled from many threads spend exactly what was taken from the balances")
+    public void testConcurrentSettle() throws Exception {
+        final var generator = new WorkloadGenerator(3, 4_000, 6);
+        final var orders = generator.orders().sorted(Comparator.comparing(Order::value)).toList();
+        final var paymentService = new ConcurrentPaymentService(new PaymentMethodsContainer(generator.paymentMethods(), MoneyMode.FIXED_POINT));
+        final var discountService = DiscountService.create(paymentService);
+        final var next = new AtomicLong();
+
+        runConcurrently(() -> {
+            for (var i = next.getAndIncrement(); i < orders.size(); i = next.getAndIncrement()) {
+                discountService.settle(orders.get((int) i));
+            }
+            return null;
+        });
+
+        final var report = paymentService.generateReport();
+        for (final var paymentMethod : paymentService.all()) {
+            assertThat(paymentService.balanceUnits(paymentMethod)).isNotNegative();
+            assertThat(report.values().get(paymentMethod).add(paymentService.balance(paymentMethod)))
+                    .isEqualByComparingTo(paymentMethod.limit());
+        }
+        assertThat(paymentService.ledger().openReservations()).isZero();
+    }
+
+    @Test
+    @DisplayName("Test whether the concurrent payment service rejects the decimal mode")
+    public void testRejectsDecimalMode() {
+        final var container = new PaymentMethodsContainer(new WorkloadGenerator(1, 1, 2).paymentMethods(), MoneyMode.DECIMAL);
+
+        assertThatThrownBy(() -> new ConcurrentPaymentService(container)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void runConcurrently(Callable<Void> task) throws Exception {
+        final var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.trace.DecisionTrace;
+import me.wiktorlacki.promotions.trace.TraceReader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static me.wiktorlacki.promotions.TestFixtures.ORDERS;
+import static me.wiktorlacki.promotions.TestFixtures.paymentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DecisionTraceTests {
+
+    private static List<JsonObject> read(byte[] trace) throws IOException {
+        final var out = new StringWriter();
+        TraceReader.toJsonLines(new ByteArrayInputStream(trace), out);
+        return out.toString().lines().map(line -> JsonParser.parseString(line).getAsJsonObject()).toList();
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the candidates, the winner and the balances of every order are recorded without changing the report")
+    public void testRecordsDecisions(MoneyMode mode) throws IOException {
+        final var expected = DiscountService.create(paymentService(mode)).calculate(ORDERS);
+        final var bytes = new ByteArrayOutputStream();
+
+        try (var trace = new DecisionTrace(bytes, 2)) {
+            assertThat(DiscountService.create(paymentService(mode)).trace(trace).calculate(ORDERS)).isEqualTo(expected);
+        }
+
+        final var records = read(bytes.toByteArray());
+        assertThat(records).extracting(record -> record.get("order").getAsString())
+                .containsExactly("ORDER4", "ORDER1", "ORDER3", "ORDER2");
+
+        final var order1 = records.get(1);
+        assertThat(order1.get("value").getAsString()).isEqualTo("100.00");
+        assertThat(order1.get("winner").getAsString()).isEqualTo("PartialPointsPayment");
+        final var candidates = order1.getAsJsonArray("candidates");
+        assertThat(candidates).hasSize(4);
+        assertThat(candidates.get(0).getAsJsonObject().get("offer").isJsonNull()).isTrue();
+        final var fullCard = candidates.get(2).getAsJsonObject();
+        assertThat(fullCard.get("type").getAsString()).isEqualTo("FULL_CARD");
+        assertThat(fullCard.get("price").getAsString()).isEqualTo("90.00");
+        assertThat(fullCard.getAsJsonObject("payments").get("mZysk").getAsString()).isEqualTo("90.00");
+        // The split payment is a fallback, evaluated only when no other strategy has an offer.
+        assertThat(candidates.get(3).getAsJsonObject().get("skipped").getAsBoolean()).isTrue();
+
+        final var balances = order1.getAsJsonObject("balances");
+        assertThat(balances.keySet()).containsExactlyInAnyOrder("PUNKTY", "BosBankrut");
+        assertThat(balances.get("PUNKTY").getAsString()).isEqualTo("47.50");
+        assertThat(balances.get("BosBankrut").getAsString()).isEqualTo("120.00");
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether a traced parallel calculation records every order and produces the same report")
+    public void testTracesParallelCalculation(MoneyMode mode) throws IOException {
+        final var expected = DiscountService.create(paymentService(mode)).calculate(ORDERS);
+        final var bytes = new ByteArrayOutputStream();
+
+        try (var trace = new DecisionTrace(bytes, 2)) {
+            assertThat(ParallelDiscountService.create(paymentService(mode)).trace(trace).calculate(ORDERS))
+                    .isEqualTo(expected);
+        }
+
+        assertThat(read(bytes.toByteArray())).extracting(record -> record.get("order").getAsString())
+                .containsExactly("ORDER4", "ORDER1", "ORDER3", "ORDER2");
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether an order which cannot be paid is recorded without a winner")
+    public void testRecordsFailure(MoneyMode mode) throws IOException {
+        final var bytes = new ByteArrayOutputStream();
+
+        try (var trace = new DecisionTrace(bytes, 2)) {
+            final var discountService = DiscountService.create(paymentService(mode)).trace(trace);
+            assertThatThrownBy(() -> discountService.calculate(List.of(new Order("ORDER1", new BigDecimal("1000.00"), null))))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+
+        final var records = read(bytes.toByteArray());
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).get("winner").isJsonNull()).isTrue();
+        assertThat(records.get(0).has("balances")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Test whether records of concurrent threads are all written when the ring buffer wraps around")
+    public void testConcurrentProducers() throws Exception {
+        final var threads = 4;
+        final var ordersPerThread = 1000;
+        final var bytes = new ByteArrayOutputStream();
+
+        try (var trace = new DecisionTrace(bytes, 8)) {
+            try (var executor = Executors.newFixedThreadPool(threads)) {
+                for (int thread = 0; thread < threads; thread++) {
+                    final var prefix = "T" + thread + "-";
+                    executor.submit(() -> {
+                        for (int i = 0; i < ordersPerThread; i++) {
+                            final var record = trace.begin(new Order(prefix + i, new BigDecimal("1.00"), null));
+                            record.evaluating(List.of("FullPointsPayment"));
+                            trace.commit(record);
+                        }
+                    });
+                }
+                executor.shutdown();
+                assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+
+        final var records = read(bytes.toByteArray());
+        assertThat(records).hasSize(threads * ordersPerThread);
+        assertThat(records).extracting(record -> record.get("order").getAsString()).doesNotHaveDuplicates();
+        assertThat(records.get(0).getAsJsonArray("candidates").get(0).getAsJsonObject().get("skipped").getAsBoolean()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Test whether a file which is not a trace is rejected")
+    public void testRejectsOtherFiles() {
+        assertThatThrownBy(() -> read("{\"order\":\"ORDER1\"}".getBytes()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a decision trace");
+    }
+}
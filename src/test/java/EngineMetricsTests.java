@@ -0,0 +1,130 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+
+import static me.wiktorlacki.promotions.TestFixtures.ORDERS;
+import static me.wiktorlacki.promotions.TestFixtures.paymentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EngineMetricsTests {
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether settled orders, chosen strategies and exhausted balances are counted without changing the report")
+    public void testCountsCalculation(MoneyMode mode) {
+        final var metrics = new EngineMetrics();
+
+        final var report = DiscountService.create(paymentService(mode), metrics).calculate(ORDERS);
+
+        assertThat(report).isEqualTo(DiscountService.create(paymentService(mode)).calculate(ORDERS));
+        assertThat(metrics.settledOrders()).isEqualTo(4);
+        assertThat(metrics.failedOrders()).isZero();
+        assertThat(metrics.strategy("FullPointsPayment").chosenOffers()).isEqualTo(1);
+        assertThat(metrics.strategy("PartialPointsPayment").chosenOffers()).isEqualTo(3);
+        assertThat(metrics.strategy("FullCardPayment").chosenOffers()).isZero();
+        // Points are always evaluated first; the split payment is a fallback no order needs.
+        assertThat(metrics.strategy("FullPointsPayment").evaluations()).isEqualTo(4);
+        assertThat(metrics.strategy("FullPointsPayment").offers()).isEqualTo(1);
+        assertThat(metrics.strategy("SplitPayment").evaluations()).isZero();
+        // ORDER3 spends the last 120.00 of BosBankrut.
+        assertThat(metrics.exhaustions("BosBankrut")).isEqualTo(1);
+        assertThat(metrics.exhaustions("mZysk")).isZero();
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether an order which cannot be paid is counted as failed")
+    public void testCountsFailure(MoneyMode mode) {
+        final var metrics = new EngineMetrics();
+        final var discountService = DiscountService.create(paymentService(mode), metrics);
+
+        assertThatThrownBy(() -> discountService.settle(new Order("ORDER1", new BigDecimal("1000.00"), null)))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(metrics.failedOrders()).isEqualTo(1);
+        assertThat(metrics.settledOrders()).isZero();
+        // The split payment was tried as a last resort.
+        assertThat(metrics.strategy("SplitPayment").evaluations()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the parallel calculation counts every settled order once")
+    public void testCountsParallelCalculation(MoneyMode mode) {
+        final var metrics = new EngineMetrics();
+
+        final var report = ParallelDiscountService.create(paymentService(mode), metrics).calculate(ORDERS);
+
+        assertThat(report).isEqualTo(DiscountService.create(paymentService(mode)).calculate(ORDERS));
+        assertThat(metrics.settledOrders()).isEqualTo(4);
+        assertThat(metrics.strategy("FullPointsPayment").chosenOffers()).isEqualTo(1);
+        assertThat(metrics.strategy("PartialPointsPayment").chosenOffers()).isEqualTo(3);
+        assertThat(metrics.exhaustions("BosBankrut")).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the parallel calculation counts one chosen offer per settled order, also for orders evaluated again")
+    public void testCountsParallelChosenOffers(MoneyMode mode) {
+        final var generator = new WorkloadGenerator(11, 5_000, 4);
+        final var orders = generator.orders().toList();
+        final var paymentService = new PaymentService(new PaymentMethodsContainer(generator.paymentMethods(), mode));
+        final var sequential = new EngineMetrics();
+        final var parallel = new EngineMetrics();
+
+        DiscountService.create(new PaymentService(new PaymentMethodsContainer(generator.paymentMethods(), mode)), sequential)
+                .calculate(orders);
+        final var discountService = new ParallelDiscountService(paymentService, DiscountService::strategies,
+                ForkJoinPool.commonPool(), 64, parallel);
+        discountService.calculate(orders);
+
+        assertThat(discountService.reevaluations()).isPositive();
+        assertThat(parallel.conflicts()).isEqualTo(discountService.reevaluations());
+        var chosen = 0L;
+        for (final var strategy : DiscountService.strategies(paymentService)) {
+            final var name = strategy.getClass().getSimpleName();
+            assertThat(parallel.strategy(name).chosenOffers()).as(name)
+                    .isEqualTo(sequential.strategy(name).chosenOffers());
+            chosen += parallel.strategy(name).chosenOffers();
+        }
+        assertThat(chosen).isEqualTo(parallel.settledOrders()).isEqualTo(orders.size());
+    }
+
+    @Test
+    @DisplayName("Test whether the metrics are written as JSON and in the Prometheus text format")
+    public void testFormats() throws IOException {
+        final var metrics = new EngineMetrics();
+        DiscountService.create(paymentService(MoneyMode.FIXED_POINT), metrics).calculate(ORDERS);
+
+        final var json = new StringWriter();
+        metrics.write(EngineMetrics.Format.JSON, json);
+        assertThat(json.toString())
+                .contains("\"orders_settled\": 4")
+                .contains("\"PartialPointsPayment\": {")
+                .contains("\"BosBankrut\": 1");
+
+        final var prometheus = new StringWriter();
+        metrics.write(EngineMetrics.Format.PROMETHEUS, prometheus);
+        assertThat(prometheus.toString().lines())
+                .contains("# TYPE promotions_orders_settled_total counter")
+                .contains("promotions_orders_settled_total 4")
+                .contains("promotions_strategy_chosen_total{strategy=\"PartialPointsPayment\"} 3")
+                .contains("promotions_balance_exhaustions_total{method=\"BosBankrut\"} 1")
+                .contains("promotions_settlement_seconds_count 4");
+    }
+}
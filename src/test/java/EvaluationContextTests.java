@@ -0,0 +1,152 @@
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountProcessor;
+import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.discount.EvaluationContext;
+import me.wiktorlacki.promotions.discount.impl.FullCardPayment;
+import me.wiktorlacki.promotions.discount.impl.FullPointsPayment;
+import me.wiktorlacki.promotions.discount.impl.PartialPointsPayment;
+import me.wiktorlacki.promotions.money.FixedPoint;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.offer.OfferSlot;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EvaluationContextTests {
+
+    private PaymentService paymentService;
+    private PaymentMethod card;
+
+    @BeforeEach
+    public void setUp() {
+        paymentService = new PaymentService(new PaymentMethodsContainer(List.of(
+                new PaymentMethod(Constants.POINTS_METHOD, new BigDecimal("0.15"), new BigDecimal("10.00")),
+                new PaymentMethod("CARD", new BigDecimal("0.10"), new BigDecimal("100.00"))
+        ), MoneyMode.FIXED_POINT));
+        card = paymentService.byName("CARD").orElseThrow();
+    }
+
+    @Test
+    @DisplayName("Test whether the reused result slot is overwritten by each evaluation, including empty results")
+    public void testSlotReusedBetweenOrders() {
+        final var discountProcessor = new DiscountProcessor(paymentService, List.of(
+                new FullPointsPayment(paymentService),
+                new PartialPointsPayment(paymentService),
+                new FullCardPayment(paymentService)
+        ));
+        final var small = new Order("SMALL", new BigDecimal("10.00"), List.of("CARD"));
+        final var huge = new Order("HUGE", new BigDecimal("1000.00"), List.of("CARD"));
+
+        final var first = discountProcessor.evaluate(small, small.valueUnits());
+        assertThat(first.type()).isEqualTo("FULL_POINTS");
+        assertThat(first.price()).isEqualTo(FixedPoint.of(new BigDecimal("8.50")));
+
+        final var second = discountProcessor.evaluate(huge, huge.valueUnits());
+        assertThat(second).isSameAs(first);
+        assertThat(second.isEmpty()).isTrue();
+
+        assertThat(discountProcessor.processFixed(small)).get()
+                .extracting(offer -> offer.type())
+                .isEqualTo("FULL_POINTS");
+    }
+
+    @Test
+    @DisplayName("Test whether strategies implementing only the Optional based API are adapted")
+    public void testLegacyStrategyAdapted() {
+        final DiscountStrategy legacy = order -> Optional.of(Offer.make("LEGACY", new BigDecimal("1.50"),
+                Map.of(card, new BigDecimal("1.50"))));
+        final var discountProcessor = new DiscountProcessor(paymentService, List.of(legacy, new FullCardPayment(paymentService)));
+        final var order = new Order("1", new BigDecimal("10.00"), null);
+
+        final var offer = discountProcessor.evaluate(order, order.valueUnits());
+
+        assertThat(offer.type()).isEqualTo("LEGACY");
+        assertThat(offer.size()).isEqualTo(1);
+        assertThat(offer.amount(card)).isEqualTo(FixedPoint.of(new BigDecimal("1.50")));
+    }
+
+    @Test
+    @DisplayName("Test whether strategies whose bound exceeds the price of a found offer are not evaluated")
+    public void testPrunesByBound() {
+        final var cardEvaluations = new AtomicInteger();
+        final var fullCard = new FullCardPayment(paymentService);
+        final var countingCard = new DiscountStrategy() {
+            @Override
+            public Optional<Offer> apply(Order order) {
+                return fullCard.apply(order);
+            }
+
+            @Override
+            public boolean evaluate(EvaluationContext context, OfferSlot slot) {
+                cardEvaluations.incrementAndGet();
+                return fullCard.evaluate(context, slot);
+            }
+
+            @Override
+            public long priceLowerBound(EvaluationContext context) {
+                return fullCard.priceLowerBound(context);
+            }
+        };
+        final var discountProcessor = new DiscountProcessor(paymentService, List.of(countingCard, new FullPointsPayment(paymentService)));
+        final var small = new Order("SMALL", new BigDecimal("10.00"), List.of("CARD"));
+        final var large = new Order("LARGE", new BigDecimal("50.00"), List.of("CARD"));
+
+        // Points give 15% and cover the small order, so the card, at most 10%, cannot win.
+        assertThat(discountProcessor.evaluate(small, small.valueUnits()).type()).isEqualTo("FULL_POINTS");
+        assertThat(cardEvaluations).hasValue(0);
+
+        assertThat(discountProcessor.evaluate(large, large.valueUnits()).type()).isEqualTo("FULL_CARD");
+        assertThat(cardEvaluations).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Test whether ties are resolved in the order of the strategies regardless of their bounds")
+    public void testTiesKeepStrategyOrder() {
+        final DiscountStrategy first = new FixedPriceStrategy("FIRST", Long.MAX_VALUE);
+        final DiscountStrategy second = new FixedPriceStrategy("SECOND", 0);
+        final var order = new Order("1", new BigDecimal("10.00"), null);
+
+        // Neither offer uses points, in which case the later of two offers with equal prices is chosen.
+        assertThat(new DiscountProcessor(paymentService, List.of(first, second)).evaluate(order, order.valueUnits()).type())
+                .isEqualTo("SECOND");
+        assertThat(new DiscountProcessor(paymentService, List.of(second, first)).evaluate(order, order.valueUnits()).type())
+                .isEqualTo("FIRST");
+    }
+
+    /**
+     * Pays 5.00 by card, with a bound which is only valid when it does not exceed the price.
+     */
+    private class FixedPriceStrategy implements DiscountStrategy {
+
+        private final String type;
+        private final long bound;
+
+        private FixedPriceStrategy(String type, long bound) {
+            this.type = type;
+            this.bound = Math.min(bound, FixedPoint.of(new BigDecimal("5.00")));
+        }
+
+        @Override
+        public Optional<Offer> apply(Order order) {
+            return Optional.of(Offer.make(type, new BigDecimal("5.00"), Map.of(card, new BigDecimal("5.00"))));
+        }
+
+        @Override
+        public long priceLowerBound(EvaluationContext context) {
+            return bound;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.loader.ExternalOrderSorter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ExternalOrderSorterTests {
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Test
+    @DisplayName("Test whether spilled runs are merged into the same order as an in-memory stable sort")
+    public void testSpilledSortMatchesInMemorySort() throws IOException {
+        final var random = new Random(42);
+        final var orders = new ArrayList<Order>();
+        for (int i = 0; i < 1000; i++) {
+            final var value = BigDecimal.valueOf(random.nextInt(50), 2);
+            final var promotions = i % 3 == 0 ? null : List.of("mZysk", "BosBankrut");
+            orders.add(new Order("ORDER" + i, value, promotions));
+        }
+
+        final var expected = new ArrayList<>(orders);
+        expected.sort(Comparator.comparing(Order::value));
+
+        try (var sorted = new ExternalOrderSorter(64, tempDirectory).sort(orders.stream())) {
+            assertThat(sorted.toList()).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Test whether temporary runs are removed once the sorted stream is closed")
+    public void testTemporaryRunsRemovedOnClose() throws IOException {
+        final var orders = List.of(
+                new Order("1", new BigDecimal("3.00"), null),
+                new Order("2", new BigDecimal("1.00"), List.of()),
+                new Order("3", new BigDecimal("2.00"), List.of("VISA")));
+
+        try (var sorted = new ExternalOrderSorter(1, tempDirectory).sort(orders.stream())) {
+            assertThat(sorted.map(Order::id).toList()).containsExactly("2", "3", "1");
+        }
+
+        try (var files = Files.list(tempDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Test whether a run cut off in the middle of an order is reported instead of ending the run early")
+    public void testTruncatedRunIsCorrupt() throws IOException {
+        final var orders = new ArrayList<Order>();
+        for (int i = 0; i < 2000; i++) {
+            orders.add(new Order("ORDER" + i, BigDecimal.valueOf(i, 2), List.of("mZysk")));
+        }
+
+        try (var sorted = new ExternalOrderSorter(1000, tempDirectory).sort(orders.stream())) {
+            // The runs are larger than the read buffers, so the cut off ends have not been read yet.
+            try (var files = Files.list(tempDirectory)) {
+                for (final var run : files.toList()) {
+                    final var bytes = Files.readAllBytes(run);
+                    Files.write(run, Arrays.copyOf(bytes, bytes.length - 3));
+                }
+            }
+
+            assertThatThrownBy(sorted::toList)
+                    .isInstanceOf(UncheckedIOException.class)
+                    .hasMessageContaining("Corrupt run");
+        }
+    }
+}
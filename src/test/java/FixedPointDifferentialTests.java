@@ -0,0 +1,116 @@
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.SpendingReport;
+import me.wiktorlacki.promotions.discount.DiscountProcessor;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.impl.FullCardPayment;
+import me.wiktorlacki.promotions.discount.impl.FullPointsPayment;
+import me.wiktorlacki.promotions.discount.impl.PartialPointsPayment;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FixedPointDifferentialTests {
+
+    private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10})
+    @DisplayName("Test whether the fixed-point calculation produces the same report as the BigDecimal one")
+    public void testReportsIdentical(long seed) {
+        final var random = new Random(seed);
+        final var paymentMethods = randomPaymentMethods(random);
+        final var orders = randomOrders(random, paymentMethods);
+
+        final var decimal = calculate(paymentMethods, orders, MoneyMode.DECIMAL);
+        final var fixed = calculate(paymentMethods, orders, MoneyMode.FIXED_POINT);
+
+        assertThat(amountsById(fixed)).isEqualTo(amountsById(decimal));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"100", "100.00"})
+    @DisplayName("Test whether the points ratio is rounded to the scale of the points limit in both calculations")
+    public void testPointsRatioScale(String pointsLimit) {
+        final var paymentMethods = List.of(
+                new PaymentMethod(Constants.POINTS_METHOD, new BigDecimal("0.1500"), new BigDecimal(pointsLimit)),
+                new PaymentMethod("CARD", new BigDecimal("0.1000"), new BigDecimal("1000"))
+        );
+        final var orders = List.of(new Order("ORDER1", new BigDecimal("150.00"), null));
+
+        final var decimal = calculate(paymentMethods, orders, MoneyMode.DECIMAL);
+        final var fixed = calculate(paymentMethods, orders, MoneyMode.FIXED_POINT);
+
+        assertThat(amountsById(fixed)).isEqualTo(amountsById(decimal));
+        // 100 / 150 rounded to no decimal places is 0, below the threshold of partial point payments.
+        assertThat(amountsById(decimal).get("CARD"))
+                .isEqualByComparingTo(pointsLimit.equals("100") ? "150.00" : "120.00");
+    }
+
+    private static SpendingReport calculate(List<PaymentMethod> paymentMethods, List<Order> orders, MoneyMode mode) {
+        final var paymentService = new PaymentService(new PaymentMethodsContainer(paymentMethods, mode));
+        final var discountProcessor = new DiscountProcessor(paymentService, List.of(
+                new FullPointsPayment(paymentService),
+                new PartialPointsPayment(paymentService),
+                new FullCardPayment(paymentService)
+        ));
+        return new DiscountService(discountProcessor, paymentService).calculate(new ArrayList<>(orders));
+    }
+
+    private static Map<String, BigDecimal> amountsById(SpendingReport report) {
+        return report.values()
+                .entrySet()
+                .stream()
+                .collect(Collectors.toMap(e -> e.getKey().id(), e -> e.getValue().stripTrailingZeros()));
+    }
+
+    private static List<PaymentMethod> randomPaymentMethods(Random random) {
+        final var paymentMethods = new ArrayList<PaymentMethod>();
+        paymentMethods.add(new PaymentMethod(Constants.POINTS_METHOD, percent(random), limit(random, 5_000)));
+        for (int i = 0; i < 4; i++) {
+            paymentMethods.add(new PaymentMethod("CARD" + i, percent(random), limit(random, 10_000_000).add(new BigDecimal("100000"))));
+        }
+        return paymentMethods;
+    }
+
+    private static List<Order> randomOrders(Random random, List<PaymentMethod> paymentMethods) {
+        final var orders = new ArrayList<Order>();
+        for (int i = 0; i < 500; i++) {
+            final var promotions = new ArrayList<String>();
+            for (final var paymentMethod : paymentMethods) {
+                if (random.nextInt(3) == 0) promotions.add(paymentMethod.id());
+            }
+            orders.add(new Order("ORDER" + i, cents(random, 50_000).add(BigDecimal.ONE), random.nextInt(5) == 0 ? null : promotions));
+        }
+        return orders;
+    }
+
+    private static BigDecimal percent(Random random) {
+        return new BigDecimal(random.nextInt(30)).divide(HUNDRED, 4, RoundingMode.FLOOR);
+    }
+
+    private static BigDecimal cents(Random random, int bound) {
+        return BigDecimal.valueOf(random.nextInt(bound), 2);
+    }
+
+    /**
+     * A limit in cents or, like {@code "limit": "100"} in an input file, in whole units without decimal places.
+     */
+    private static BigDecimal limit(Random random, int bound) {
+        return random.nextBoolean() ? cents(random, bound) : BigDecimal.valueOf(random.nextInt(bound / 100));
+    }
+}
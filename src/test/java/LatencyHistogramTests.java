@@ -0,0 +1,45 @@
+import me.wiktorlacki.promotions.metrics.LatencyHistogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTests {
+
+    @Test
+    @DisplayName("Test whether quantiles are read back within the relative error of the buckets")
+    public void testQuantiles() {
+        final var histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        final var snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(100_000);
+        assertThat(snapshot.max()).isEqualTo(100_000_000);
+        assertThat(snapshot.mean()).isCloseTo(50_000_500, within(1.0));
+        assertThat(snapshot.quantile(0.5)).isBetween(50_000_000L, 56_250_000L);
+        assertThat(snapshot.quantile(0.99)).isBetween(99_000_000L, 100_000_000L);
+        assertThat(snapshot.quantile(1)).isEqualTo(100_000_000);
+    }
+
+    @Test
+    @DisplayName("Test whether small, zero, negative and huge values are recorded")
+    public void testEdgeValues() {
+        final var histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+
+        final var snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(4);
+        assertThat(snapshot.quantile(0.5)).isZero();
+        assertThat(snapshot.quantile(0.75)).isEqualTo(7);
+        assertThat(snapshot.quantile(1)).isEqualTo(Long.MAX_VALUE);
+        assertThat(new LatencyHistogram().snapshot().quantile(0.99)).isZero();
+    }
+}
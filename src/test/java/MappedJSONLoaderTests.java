@@ -0,0 +1,67 @@
+import me.wiktorlacki.promotions.loader.JSONLoader;
+import me.wiktorlacki.promotions.loader.MappedJSONLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedJSONLoaderTests {
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Test
+    @DisplayName("Test whether orders are parsed exactly like with the Gson based loader")
+    public void testOrdersMatchGsonLoader() throws IOException {
+        final var file = tempDirectory.resolve("orders.json");
+        Files.writeString(file, """
+                [
+                  {"id": "ORDER1", "value": "150.00", "promotions": ["mZysk"]},
+                  {"id": "ORDER2", "value": 200.5, "promotions": ["BosBankrut", "mZysk"], "note": {"a": [1, true]}},
+                  {"id": "ORDER\\u00d3\\n", "value": "50.00", "promotions": null},
+                  {"value": 1e2, "id": "ORDER4"}
+                ]
+                """);
+
+        final var expected = new JSONLoader().loadOrders(file.toString());
+
+        assertThat(new MappedJSONLoader().loadOrders(file.toString())).containsExactlyElementsOf(expected);
+        try (var stream = new MappedJSONLoader().streamOrders(file.toString())) {
+            assertThat(stream.toList()).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Test whether payment method discounts are converted from percent the same way as by the deserializer")
+    public void testPaymentMethodsMatchGsonLoader() throws IOException {
+        final var file = tempDirectory.resolve("paymentmethods.json");
+        Files.writeString(file, """
+                [
+                  {"id": "PUNKTY", "discount": "15", "limit": "100.00"},
+                  {"id": "mZysk", "discount": 10, "limit": "180.00"},
+                  {"id": "BosBankrut", "discount": "33.333", "limit": 200}
+                ]
+                """);
+
+        final var expected = new JSONLoader().loadPaymentMethods(file.toString());
+
+        assertThat(new MappedJSONLoader().loadPaymentMethods(file.toString())).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("Test whether an empty orders file yields no orders")
+    public void testEmptyOrders() throws IOException {
+        final var file = tempDirectory.resolve("orders.json");
+        Files.writeString(file, " [ ] ");
+
+        assertThat(new MappedJSONLoader().loadOrders(file.toString())).isEmpty();
+        try (var stream = new MappedJSONLoader().streamOrders(file.toString())) {
+            assertThat(stream.count()).isZero();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.OfferCache;
+import me.wiktorlacki.promotions.metrics.EngineMetrics;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static me.wiktorlacki.promotions.TestFixtures.paymentService;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OfferCacheTests {
+
+    private static final Order ORDER = new Order("ORDER", new BigDecimal("100.00"), List.of("CARD"));
+
+    private static PaymentService cardPaymentService(MoneyMode mode) {
+        return new PaymentService(new PaymentMethodsContainer(List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("0.00")),
+                new PaymentMethod("CARD", new BigDecimal("0.10"), new BigDecimal("200.00")),
+                new PaymentMethod("OTHER", new BigDecimal("0.00"), new BigDecimal("1000.00"))
+        ), mode));
+    }
+
+    private static List<Order> repetitiveOrders() {
+        final var random = new Random(7);
+        final var orders = new ArrayList<Order>();
+        for (int i = 0; i < 500; i++) {
+            final var promotions = switch (random.nextInt(3)) {
+                case 0 -> null;
+                case 1 -> List.of("mZysk");
+                default -> List.of("BosBankrut", "mZysk");
+            };
+            orders.add(new Order("ORDER" + i, BigDecimal.valueOf(100 * (1 + random.nextInt(5)), 2), promotions));
+        }
+        return orders;
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether cached offers lead to the same report as evaluating every order, down to exhausted balances")
+    public void testSameReport(MoneyMode mode) {
+        final var metrics = new EngineMetrics();
+        final var rejected = new ArrayList<Order>();
+        final var expectedRejected = new ArrayList<Order>();
+
+        final var report = DiscountService.create(paymentService(mode), metrics, OfferCache.DEFAULT_SIZE)
+                .rejectTo(rejection -> rejected.add(rejection.order()))
+                .calculate(repetitiveOrders());
+
+        assertThat(report).isEqualTo(DiscountService.create(paymentService(mode))
+                .rejectTo(rejection -> expectedRejected.add(rejection.order()))
+                .calculate(repetitiveOrders()));
+        assertThat(rejected).isEqualTo(expectedRejected).isNotEmpty();
+        assertThat(metrics.offerCacheHits()).isPositive();
+        assertThat(metrics.offerCacheInvalidations()).isPositive();
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether a cached offer is reused while its payment method covers the order and evaluated again once it does not")
+    public void testInvalidatedBySpentBalance(MoneyMode mode) {
+        final var metrics = new EngineMetrics();
+        final var discountService = DiscountService.create(cardPaymentService(mode), metrics, OfferCache.DEFAULT_SIZE);
+
+        final var first = discountService.settleOffer(ORDER);
+        final var second = discountService.settleOffer(ORDER);
+        final var third = discountService.settleOffer(ORDER);
+
+        assertThat(List.of(first, second)).extracting(OfferCacheTests::paidWith).containsOnly("CARD");
+        assertThat(second.price()).isEqualByComparingTo("90.00");
+        // CARD is left with 20.00, so the order is paid in full with the other card.
+        assertThat(paidWith(third)).isEqualTo("OTHER");
+        assertThat(third.price()).isEqualByComparingTo("100.00");
+
+        assertThat(metrics.offerCacheHits()).isEqualTo(1);
+        assertThat(metrics.offerCacheMisses()).isEqualTo(2);
+        assertThat(metrics.offerCacheInvalidations()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether payments taken from other payment methods keep a cached offer and a different shape misses")
+    public void testOtherPaymentsKeepOffer(MoneyMode mode) {
+        final var metrics = new EngineMetrics();
+        final var discountService = DiscountService.create(cardPaymentService(mode), metrics, OfferCache.DEFAULT_SIZE);
+        final var other = new Order("OTHER", new BigDecimal("100.00"), List.of("OTHER"));
+
+        discountService.settleOffer(new Order("SMALL", new BigDecimal("10.00"), List.of("CARD")));
+        discountService.settleOffer(other);
+        discountService.settleOffer(other);
+        discountService.settleOffer(new Order("SMALL2", new BigDecimal("10.00"), List.of("CARD")));
+
+        assertThat(metrics.offerCacheHits()).isEqualTo(2);
+        assertThat(metrics.offerCacheMisses()).isEqualTo(2);
+        assertThat(metrics.offerCacheInvalidations()).isZero();
+    }
+
+    private static String paidWith(Offer offer) {
+        assertThat(offer.payments()).hasSize(1);
+        return offer.payments().keySet().iterator().next().id();
+    }
+}
@@ -0,0 +1,107 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.OnlineSettlement;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OnlineSettlementTests {
+
+    private static List<PaymentMethod> paymentMethods() {
+        return List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("100.00")),
+                new PaymentMethod("mZysk", new BigDecimal("0.10"), new BigDecimal("180.00"))
+        );
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether every settled order is reflected in the report immediately")
+    public void testRunningReport(MoneyMode mode) {
+        final var settlement = OnlineSettlement.create(new PaymentService(new PaymentMethodsContainer(paymentMethods(), mode)));
+
+        final var first = settlement.settle(new Order("ORDER1", new BigDecimal("100.00"), List.of("mZysk")));
+
+        assertThat(first.payments()).hasSize(1);
+        assertThat(settlement.report().total()).isEqualByComparingTo("85.00");
+
+        settlement.settle(new Order("ORDER2", new BigDecimal("100.00"), List.of("mZysk")));
+
+        assertThat(settlement.report().total()).isEqualByComparingTo("175.00");
+        assertThat(settlement.settledOrders()).isEqualTo(2);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether a micro-batch is settled by value and offers are returned in input order")
+    public void testMicroBatch(MoneyMode mode) {
+        final var settlement = OnlineSettlement.create(new PaymentService(new PaymentMethodsContainer(paymentMethods(), mode)));
+        final var orders = List.of(
+                new Order("LARGE", new BigDecimal("150.00"), List.of("mZysk")),
+                new Order("SMALL", new BigDecimal("20.00"), null)
+        );
+
+        final var offers = settlement.settle(orders);
+
+        assertThat(offers).hasSize(2);
+        // The small order is settled first and takes its points discount before the large one can use them.
+        assertThat(offers.get(1).payments()).hasSize(1);
+        assertThat(offers.get(1).payments().keySet()).extracting(PaymentMethod::id).containsExactly("PUNKTY");
+        assertThat(offers.get(1).price()).isEqualByComparingTo("17.00");
+        assertThat(offers.get(0).price()).isEqualByComparingTo("135.00");
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether an order which cannot be paid leaves the balances unchanged")
+    public void testFailureLeavesBalances(MoneyMode mode) {
+        final var settlement = OnlineSettlement.create(new PaymentService(new PaymentMethodsContainer(paymentMethods(), mode)));
+        settlement.settle(new Order("ORDER1", new BigDecimal("50.00"), List.of("mZysk")));
+        final var before = settlement.report();
+
+        assertThatThrownBy(() -> settlement.settle(new Order("ORDER2", new BigDecimal("1000.00"), null)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(settlement.report()).isEqualTo(before);
+        assertThat(settlement.settledOrders()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Test whether concurrent checkouts never spend more than the limits")
+    public void testConcurrentCheckouts() throws InterruptedException {
+        final var settlement = OnlineSettlement.concurrent(List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("1000.00")),
+                new PaymentMethod("mZysk", new BigDecimal("0.10"), new BigDecimal("5000.00"))
+        ));
+
+        final var executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1_000; i++) {
+            final var order = new Order("ORDER" + i, new BigDecimal("10.00"), List.of("mZysk"));
+            executor.execute(() -> {
+                try {
+                    settlement.settle(order);
+                } catch (IllegalStateException ignored) {
+                    // The limits run out before all orders are settled.
+                }
+            });
+        }
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        // Every order costs at least 8.50, so the limits run out after at most 705 orders.
+        assertThat(settlement.report().values()).allSatisfy((method, spent) -> assertThat(spent).isLessThanOrEqualTo(method.limit()));
+        assertThat(settlement.settledOrders()).isLessThan(1_000).isGreaterThan(0);
+    }
+}
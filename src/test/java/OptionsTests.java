@@ -0,0 +1,35 @@
+import me.wiktorlacki.promotions.Options;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OptionsTests {
+
+    @Test
+    @DisplayName("Test whether the mode and settlement are taken from their flags")
+    public void testModeAndSettlement() {
+        final var options = Options.parse(new String[]{"--batch=customers.json", "--online", "--offer-cache"}).orElseThrow();
+
+        assertThat(options.mode()).isEqualTo(Options.Mode.BATCH);
+        assertThat(options.settlement()).isEqualTo(Options.Settlement.ONLINE);
+        assertThat(Options.parse(new String[]{"orders.json", "paymentmethods.json"}))
+                .hasValueSatisfying(plain -> {
+                    assertThat(plain.mode()).isEqualTo(Options.Mode.CALCULATE);
+                    assertThat(plain.settlement()).isEqualTo(Options.Settlement.GREEDY);
+                });
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--online --parallel", "--online --streaming", "--online --optimize", "--online --checkpoint=c",
+            "--parallel --trace=t", "--optimize --metrics", "--trace=t --offer-cache", "--concurrency=2",
+            "--batch=b --reject=r", "--scenarios=s --online", "--serve --batch=b", "--dump-trace=t --mmap"})
+    @DisplayName("Test whether flags which would be ignored are rejected")
+    public void testIgnoredFlagsRejected(String flags) {
+        final var args = (flags + " orders.json paymentmethods.json").split(" ");
+
+        assertThat(Options.parse(args)).isEmpty();
+    }
+}
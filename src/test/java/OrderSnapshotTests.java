@@ -0,0 +1,83 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.loader.JSONLoader;
+import me.wiktorlacki.promotions.loader.OrderSnapshot;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OrderSnapshotTests {
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Test
+    @DisplayName("Test whether orders read back from a snapshot are equal to the written ones, sorted stably by value")
+    public void testRoundTrip() throws IOException {
+        final var orders = List.of(
+                new Order("ORDER1", new BigDecimal("150.00"), List.of("mZysk")),
+                new Order("ORDER\u00d3", new BigDecimal("1E+2"), List.of("BosBankrut", "mZysk")),
+                new Order("ORDER3", new BigDecimal("50.5"), null),
+                new Order(null, new BigDecimal("150.000000"), List.of()),
+                new Order("ORDER5", new BigDecimal("0.000001"), List.of("mZysk"))
+        );
+        final var file = tempDirectory.resolve("orders.snapshot");
+
+        OrderSnapshot.write(orders, file);
+        final var snapshot = OrderSnapshot.open(file);
+
+        final var expected = new ArrayList<>(orders);
+        expected.sort(Comparator.comparing(Order::value));
+        assertThat(OrderSnapshot.isSnapshot(file)).isTrue();
+        assertThat(snapshot.size()).isEqualTo(5);
+        assertThat(snapshot.orders()).containsExactlyElementsOf(expected);
+        assertThat(snapshot.stream().toList()).containsExactlyElementsOf(expected);
+        assertThat(snapshot.valueUnits(4)).isEqualTo(150_000_000);
+    }
+
+    @Test
+    @DisplayName("Test whether a snapshot written from a JSON file holds the same orders")
+    public void testWrittenByLoader() throws IOException {
+        final var json = tempDirectory.resolve("orders.json");
+        Files.writeString(json, """
+                [
+                  {"id": "ORDER1", "value": "100.00", "promotions": ["mZysk"]},
+                  {"id": "ORDER2", "value": "200.00", "promotions": ["BosBankrut"]},
+                  {"id": "ORDER3", "value": "150.00", "promotions": ["mZysk", "BosBankrut"]},
+                  {"id": "ORDER4", "value": "50.00"}
+                ]
+                """);
+        final var file = tempDirectory.resolve("orders.snapshot");
+
+        assertThat(new JSONLoader().writeSnapshot(json.toString(), file)).isEqualTo(4);
+
+        assertThat(OrderSnapshot.isSnapshot(json)).isFalse();
+        assertThat(OrderSnapshot.open(file).orders())
+                .extracting(Order::id)
+                .containsExactly("ORDER4", "ORDER1", "ORDER3", "ORDER2");
+    }
+
+    @Test
+    @DisplayName("Test whether values without a fixed-point representation and other files are rejected")
+    public void testRejects() throws IOException {
+        final var file = tempDirectory.resolve("orders.snapshot");
+
+        assertThatThrownBy(() -> OrderSnapshot.write(List.of(new Order("ORDER1", new BigDecimal("0.0000001"), null)), file))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(file).doesNotExist();
+
+        Files.writeString(file, "[]");
+        assertThat(OrderSnapshot.isSnapshot(file)).isFalse();
+        assertThatThrownBy(() -> OrderSnapshot.open(file)).isInstanceOf(IOException.class);
+    }
+}
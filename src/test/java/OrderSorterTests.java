@@ -0,0 +1,57 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.OrderSorter;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderSorterTests {
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether orders are sorted stably, like a comparison sort of the whole list")
+    public void testStableSort(MoneyMode mode) {
+        final var random = new Random(7);
+        for (final var scale : new int[]{0, 2, 6}) {
+            for (final var size : new int[]{0, 1, 100, 10_000}) {
+                // Few distinct values, so many orders share a value and stability matters.
+                final var orders = IntStream.range(0, size)
+                        .mapToObj(i -> new Order("ORDER" + i, BigDecimal.valueOf(random.nextInt(500) - 50, scale), null))
+                        .toList();
+
+                assertThat(OrderSorter.byValue(orders, mode)).containsExactlyElementsOf(sorted(orders));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether values beyond the fixed-point precision are still sorted")
+    public void testUnrepresentableValues(MoneyMode mode) {
+        final var orders = new ArrayList<Order>();
+        for (int i = 0; i < 1_000; i++) {
+            orders.add(new Order("ORDER" + i, BigDecimal.valueOf(1_000 - i, 2), null));
+        }
+        orders.add(new Order("PRECISE", new BigDecimal("0.0000001"), null));
+
+        final var result = OrderSorter.byValue(orders, mode);
+
+        assertThat(result).containsExactlyElementsOf(sorted(orders));
+        assertThat(result.getFirst().id()).isEqualTo("PRECISE");
+    }
+
+    private static List<Order> sorted(List<Order> orders) {
+        final var copy = new ArrayList<>(orders);
+        copy.sort(Comparator.comparing(Order::value));
+        return copy;
+    }
+}
@@ -0,0 +1,101 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.generator.ValueDistribution;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.generator.WorkloadSettings;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ParallelDiscountServiceTests {
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the parallel service produces the same report as the sequential one")
+    public void testSameReport(MoneyMode mode) {
+        for (final var paymentMethods : new int[]{3, 40}) {
+            final var generator = new WorkloadGenerator(new WorkloadSettings(9, 5_000, paymentMethods,
+                    ValueDistribution.SKEWED, new BigDecimal("500.00"), 3, 0.05, 1));
+            final var orders = generator.orders().toList();
+
+            final var expected = DiscountService.create(paymentService(generator, mode)).calculate(new ArrayList<>(orders));
+            for (final var batchSize : new int[]{1, 64, ParallelDiscountService.DEFAULT_BATCH_SIZE}) {
+                final var parallel = new ParallelDiscountService(paymentService(generator, mode),
+                        DiscountService::strategies, ForkJoinPool.commonPool(), batchSize);
+
+                assertThat(parallel.calculate(new ArrayList<>(orders))).isEqualTo(expected);
+                assertThat(parallel.reevaluations()).isLessThan(orders.size());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the parallel service fails at the same order as the sequential one")
+    public void testSameFailure(MoneyMode mode) {
+        final var generator = new WorkloadGenerator(new WorkloadSettings(9, 5_000, 5,
+                ValueDistribution.UNIFORM, new BigDecimal("500.00"), 3, 0.05, 0.3));
+        final var orders = generator.orders().sorted(Comparator.comparing(Order::value)).toList();
+
+        final var sequential = paymentService(generator, mode);
+        final var parallel = paymentService(generator, mode);
+        final var sequentialFailure = catchThrowable(() -> DiscountService.create(sequential).calculateSorted(orders.stream()));
+        final var parallelFailure = catchThrowable(() -> ParallelDiscountService.create(parallel).calculateSorted(orders.stream()));
+
+        assertThat(sequentialFailure).isInstanceOf(IllegalStateException.class);
+        assertThat(parallelFailure).hasMessage(sequentialFailure.getMessage());
+        assertThat(parallel.generateReport()).isEqualTo(sequential.generateReport());
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether a split payment is evaluated against the balances left by the earlier orders of its batch")
+    public void testSplitPaymentAfterEarlierOrders(MoneyMode mode) {
+        final var paymentMethods = List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("0.00")),
+                new PaymentMethod("A", new BigDecimal("0.00"), new BigDecimal("100.00")),
+                new PaymentMethod("B", new BigDecimal("0.05"), new BigDecimal("90.00")),
+                new PaymentMethod("C", new BigDecimal("0.00"), new BigDecimal("55.00"))
+        );
+        // The first order lowers B enough to make it the best fit for the rest of the second one.
+        final var orders = List.of(
+                new Order("ORDER1", new BigDecimal("40.00"), List.of("B")),
+                new Order("ORDER2", new BigDecimal("150.00"), null)
+        );
+
+        final var expected = DiscountService.create(new PaymentService(new PaymentMethodsContainer(paymentMethods, mode)))
+                .calculateSorted(orders.stream());
+        final var parallel = ParallelDiscountService.create(new PaymentService(new PaymentMethodsContainer(paymentMethods, mode)));
+
+        assertThat(parallel.calculateSorted(orders.stream())).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether a batch size below one is rejected")
+    public void testRejectsEmptyBatches(MoneyMode mode) {
+        final var paymentService = paymentService(new WorkloadGenerator(1, 1, 2), mode);
+
+        assertThatThrownBy(() -> new ParallelDiscountService(paymentService, DiscountService::strategies,
+                ForkJoinPool.commonPool(), 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static PaymentService paymentService(WorkloadGenerator generator, MoneyMode mode) {
+        return new PaymentService(new PaymentMethodsContainer(generator.paymentMethods(), mode));
+    }
+}
@@ -0,0 +1,104 @@
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PaymentMethodsContainerTests {
+
+    private static final PaymentMethod POINTS = new PaymentMethod(Constants.POINTS_METHOD, new BigDecimal("0.15"), new BigDecimal("100.00"));
+    private static final PaymentMethod VISA = new PaymentMethod("VISA", new BigDecimal("0.05"), new BigDecimal("50.00"));
+    private static final PaymentMethod MASTERCARD = new PaymentMethod("MASTERCARD", new BigDecimal("0.10"), new BigDecimal("80.00"));
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether payment methods are assigned dense indices in input order")
+    public void testDenseIndices(MoneyMode mode) {
+        final var container = new PaymentMethodsContainer(List.of(POINTS, VISA, MASTERCARD), mode);
+
+        assertThat(container.size()).isEqualTo(3);
+        assertThat(container.byIndex(0).id()).isEqualTo(POINTS.id());
+        assertThat(container.byIndex(2).id()).isEqualTo(MASTERCARD.id());
+        assertThat(container.byName(VISA.id())).hasValueSatisfying(method -> assertThat(method.index()).isEqualTo(1));
+        assertThat(container.indicesOf(List.of("MASTERCARD", "UNKNOWN", "VISA"))).containsExactly(2, 1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether a missing points method and an unknown payment method are named in the failure")
+    public void testMissingPaymentMethods(MoneyMode mode) {
+        final var container = new PaymentMethodsContainer(List.of(VISA), mode);
+
+        assertThatThrownBy(container::points)
+                .isInstanceOf(NullPointerException.class)
+                .hasMessageContaining(Constants.POINTS_METHOD);
+        assertThatThrownBy(() -> container.balance(MASTERCARD))
+                .isInstanceOf(NullPointerException.class)
+                .hasMessageContaining(MASTERCARD.id());
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether balances of unindexed payment methods are resolved by identifier")
+    public void testUnindexedMethodBalance(MoneyMode mode) {
+        final var container = new PaymentMethodsContainer(List.of(POINTS, VISA, MASTERCARD), mode);
+
+        container.balance(VISA, new BigDecimal("12.50"));
+
+        assertThat(container.balance(VISA)).isEqualByComparingTo("12.50");
+        assertThat(container.balance(1)).isEqualByComparingTo("12.50");
+        assertThat(container.balanceUnits(container.byIndex(1))).isEqualTo(12_500_000L);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether searches skip points and methods with insufficient balance")
+    public void testFindWithBalanceAtLeast(MoneyMode mode) {
+        final var container = new PaymentMethodsContainer(List.of(POINTS, VISA, MASTERCARD), mode);
+
+        assertThat(container.findWithBalanceAtLeast(new BigDecimal("60.00"))).isEqualTo(2);
+        assertThat(container.findWithBalanceAtLeast(90_000_000L)).isEqualTo(PaymentMethod.UNINDEXED);
+        assertThat(container.findBestDiscountWithBalanceAtLeast(new int[]{0, 1, 2}, 10_000_000L)).isEqualTo(2);
+        assertThat(container.findBestDiscountWithBalanceAtLeast(new int[]{0, 1}, 10_000_000L)).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether indexed searches agree with a linear scan while balances change")
+    public void testIndexedSearchMatchesLinearScan(MoneyMode mode) {
+        final var random = new Random(7);
+        final var paymentMethods = new ArrayList<PaymentMethod>();
+        paymentMethods.add(POINTS);
+        for (int i = 0; i < 200; i++) {
+            paymentMethods.add(new PaymentMethod("CARD" + i, BigDecimal.valueOf(random.nextInt(20), 2), BigDecimal.valueOf(random.nextInt(100_000), 2)));
+        }
+        final var container = new PaymentMethodsContainer(paymentMethods, mode);
+
+        for (int round = 0; round < 1000; round++) {
+            final var value = random.nextInt(100_000) * 10_000L;
+            final var method = container.byIndex(1 + random.nextInt(200));
+            container.balanceUnits(method, random.nextInt(100_000) * 10_000L);
+
+            PaymentMethod first = null;
+            PaymentMethod best = null;
+            for (final var candidate : container.all()) {
+                if (candidate == container.points() || container.balanceUnits(candidate) < value) continue;
+                if (first == null) first = candidate;
+                if (best == null || candidate.discount().compareTo(best.discount()) > 0) best = candidate;
+            }
+
+            assertThat(container.findWithBalanceAtLeast(value)).isEqualTo(first == null ? PaymentMethod.UNINDEXED : first.index());
+            assertThat(container.findBestDiscountWithBalanceAtLeast(value)).isEqualTo(best == null ? PaymentMethod.UNINDEXED : best.index());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.OnlineSettlement;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.discount.RejectedOrder;
+import me.wiktorlacki.promotions.loader.JSONLoader;
+import me.wiktorlacki.promotions.loader.RejectedOrderWriter;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static me.wiktorlacki.promotions.TestFixtures.ORDERS;
+import static me.wiktorlacki.promotions.TestFixtures.UNPAYABLE;
+import static me.wiktorlacki.promotions.TestFixtures.paymentService;
+import static me.wiktorlacki.promotions.TestFixtures.withUnpayable;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RejectedOrderTests {
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether an unpayable order is rejected and the other orders are settled as if it did not exist")
+    public void testRejectsAndContinues(MoneyMode mode) {
+        final var rejected = new ArrayList<RejectedOrder>();
+
+        final var report = DiscountService.create(paymentService(mode)).rejectTo(rejected::add).calculate(withUnpayable());
+
+        assertThat(report).isEqualTo(DiscountService.create(paymentService(mode)).calculate(ORDERS));
+        assertThat(rejected).extracting(RejectedOrder::order).containsExactly(UNPAYABLE);
+        assertThat(rejected.get(0).reason()).contains("Could not find proper discount strategy");
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the parallel calculation rejects unpayable orders like the sequential one")
+    public void testParallelRejects(MoneyMode mode) {
+        final var rejected = new ArrayList<RejectedOrder>();
+
+        final var report = ParallelDiscountService.create(paymentService(mode)).rejectTo(rejected::add).calculate(withUnpayable());
+
+        assertThat(report).isEqualTo(DiscountService.create(paymentService(mode)).calculate(ORDERS));
+        assertThat(rejected).extracting(RejectedOrder::order).containsExactly(UNPAYABLE);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether an online settlement keeps settling orders arriving after an unpayable one")
+    public void testOnlineRejects(MoneyMode mode) {
+        final var settlement = OnlineSettlement.create(paymentService(mode));
+        final var rejected = new ArrayList<RejectedOrder>();
+
+        assertThat(settlement.settleOrReject(UNPAYABLE, rejected::add)).isNull();
+        assertThat(settlement.settleOrReject(ORDERS.get(0), rejected::add)).isNotNull();
+
+        assertThat(rejected).extracting(RejectedOrder::order).containsExactly(UNPAYABLE);
+        assertThat(settlement.settledOrders()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Test whether rejected orders are written in the format of the orders file")
+    public void testWriterOutputCanBeLoaded(@TempDir Path directory) throws IOException {
+        final var file = directory.resolve("rejected.json");
+        try (var writer = new RejectedOrderWriter(file)) {
+            writer.accept(new RejectedOrder(UNPAYABLE, "no strategy"));
+            writer.accept(new RejectedOrder(ORDERS.get(3), "no strategy"));
+            assertThat(writer.rejected()).isEqualTo(2);
+        }
+
+        assertThat(new JSONLoader().loadOrders(file.toString())).containsExactly(UNPAYABLE, ORDERS.get(3));
+    }
+}
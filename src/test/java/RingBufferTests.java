@@ -0,0 +1,75 @@
+import me.wiktorlacki.promotions.concurrent.RingBuffer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RingBufferTests {
+
+    @Test
+    @Timeout(10)
+    @DisplayName("Test whether entries of several producers are written once each, in the order they were claimed")
+    public void testWritesInClaimOrder() throws IOException {
+        final var written = new ArrayList<Long>();
+        final var ring = new RingBuffer<>("test ring", 8, AtomicLong::new, new RingBuffer.Sink<AtomicLong>() {
+            @Override
+            public void write(AtomicLong entry, long sequence) {
+                assertThat(entry.get()).isEqualTo(sequence);
+                written.add(sequence);
+            }
+
+            @Override
+            public void idle(long consumed, boolean done) {
+            }
+        });
+
+        IntStream.range(0, 10_000).parallel().forEach(i -> {
+            final var sequence = ring.claim();
+            ring.entry(sequence).set(sequence);
+            ring.publish(sequence);
+        });
+        ring.close();
+
+        assertThat(written).hasSize(10_000).isSorted();
+        assertThat(ring.consumed()).isEqualTo(10_000);
+        assertThatThrownBy(ring::claim).isInstanceOf(IllegalStateException.class).hasMessageContaining("is closed");
+    }
+
+    @Test
+    @Timeout(10)
+    @DisplayName("Test whether producers stop waiting for a full buffer once the writer has died")
+    public void testDeadWriter() {
+        final var ring = new RingBuffer<>("test ring", 4, Object::new, new RingBuffer.Sink<>() {
+            @Override
+            public void write(Object entry, long sequence) {
+                throw new IllegalArgumentException("broken sink");
+            }
+
+            @Override
+            public void idle(long consumed, boolean done) {
+            }
+        });
+        final var claimed = new ArrayList<Long>();
+
+        assertThatThrownBy(() -> {
+            while (true) {
+                final var sequence = ring.claim();
+                claimed.add(sequence);
+                ring.publish(sequence);
+            }
+        }).isInstanceOf(IllegalStateException.class).hasMessageContaining("writer has stopped")
+                .hasRootCauseMessage("broken sink");
+
+        // The fifth entry waits for the first one, which the writer died on.
+        assertThat(claimed).containsExactly(0L, 1L, 2L, 3L);
+        assertThat(ring.writing()).isFalse();
+        assertThatThrownBy(ring::close).isInstanceOf(IOException.class).hasRootCauseMessage("broken sink");
+    }
+}
@@ -0,0 +1,83 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.scenario.Scenario;
+import me.wiktorlacki.promotions.scenario.ScenarioReader;
+import me.wiktorlacki.promotions.scenario.ScenarioResult;
+import me.wiktorlacki.promotions.scenario.ScenarioRunner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScenarioRunnerTests {
+
+    private static final List<PaymentMethod> BASE = List.of(
+            new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("100.00")),
+            new PaymentMethod("mZysk", new BigDecimal("0.10"), new BigDecimal("500.00"))
+    );
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Test
+    @DisplayName("Test whether scenarios apply their changes on top of the base or their own payment methods")
+    public void testReadsScenarios() throws IOException {
+        Files.writeString(tempDirectory.resolve("other.json"), """
+                [{"id": "PUNKTY", "discount": "20", "limit": "10.00"}]
+                """);
+        final var file = tempDirectory.resolve("scenarios.json");
+        Files.writeString(file, """
+                [
+                  {"name": "mZysk 12%", "changes": [{"id": "mZysk", "discount": "12"}, {"id": "Nowa", "discount": "5", "limit": "50.00"}]},
+                  {"name": "other", "paymentMethods": "other.json", "changes": [{"id": "PUNKTY", "limit": "20.00"}]}
+                ]
+                """);
+
+        final var scenarios = new ScenarioReader(BASE).read(file);
+
+        assertThat(scenarios).extracting(Scenario::name).containsExactly("mZysk 12%", "other");
+        assertThat(scenarios.get(0).paymentMethods()).extracting(PaymentMethod::id).containsExactly("PUNKTY", "mZysk", "Nowa");
+        assertThat(scenarios.get(0).paymentMethods().get(1).discount()).isEqualByComparingTo("0.12");
+        assertThat(scenarios.get(0).paymentMethods().get(1).limit()).isEqualByComparingTo("500.00");
+        assertThat(scenarios.get(1).paymentMethods()).singleElement().satisfies(method -> {
+            assertThat(method.discount()).isEqualByComparingTo("0.20");
+            assertThat(method.limit()).isEqualByComparingTo("20.00");
+        });
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether every scenario is calculated against its own balances over the same orders")
+    public void testComparesScenarios(MoneyMode mode) throws InterruptedException {
+        final var orders = List.of(
+                new Order("ORDER1", new BigDecimal("200.00"), List.of("mZysk")),
+                new Order("ORDER2", new BigDecimal("100.00"), List.of("mZysk"))
+        );
+        final var scenarios = List.of(
+                new Scenario(Scenario.BASE, BASE),
+                new Scenario("mZysk 20%", List.of(BASE.get(0), new PaymentMethod("mZysk", new BigDecimal("0.20"), new BigDecimal("500.00")))),
+                new Scenario("empty", List.of(new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("1.00"))))
+        );
+
+        final var comparison = new ScenarioRunner(mode, 2).run(orders, scenarios);
+
+        assertThat(comparison.orderTotal()).isEqualByComparingTo("300.00");
+        assertThat(comparison.results()).extracting(ScenarioResult::succeeded).containsExactly(true, true, false);
+        // In the base scenario ORDER2 is paid with points at 15%, with mZysk at 20% both orders are paid by card.
+        assertThat(comparison.savings(comparison.results().get(0))).isEqualByComparingTo("35.00");
+        assertThat(comparison.savings(comparison.results().get(1))).isEqualByComparingTo("60.00");
+        assertThat(comparison.toString())
+                .contains("mZysk 20%    0.00  240.00  240.00    60.00")
+                .contains("failed: Could not find proper discount strategy");
+    }
+}
@@ -0,0 +1,111 @@
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.OnlineSettlement;
+import me.wiktorlacki.promotions.discount.ParallelDiscountService;
+import me.wiktorlacki.promotions.journal.JournalReplay;
+import me.wiktorlacki.promotions.journal.SettlementJournal;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static me.wiktorlacki.promotions.TestFixtures.ORDERS;
+import static me.wiktorlacki.promotions.TestFixtures.paymentService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SettlementJournalTests {
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether replaying the journal of a calculation rebuilds its report")
+    public void testReplayRebuildsReport(MoneyMode mode, @TempDir Path directory) throws IOException {
+        final var file = directory.resolve("journal.bin");
+        final var paymentService = paymentService(mode);
+        try (var journal = SettlementJournal.open(file, paymentService)) {
+            DiscountService.create(paymentService).journal(journal).calculate(ORDERS);
+        }
+
+        final var replay = JournalReplay.read(file);
+
+        assertThat(replay.report()).isEqualTo(DiscountService.create(paymentService(mode)).calculate(ORDERS));
+        assertThat(replay.settlements()).isEqualTo(ORDERS.size());
+        assertThat(replay.complete()).isTrue();
+        assertThat(replay.paymentService().mode()).isEqualTo(mode);
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the parallel calculation and the online settlement journal every settled order")
+    public void testParallelAndOnlineJournal(MoneyMode mode, @TempDir Path directory) throws IOException {
+        final var parallelFile = directory.resolve("parallel.bin");
+        final var parallelPaymentService = paymentService(mode);
+        try (var journal = SettlementJournal.open(parallelFile, parallelPaymentService)) {
+            ParallelDiscountService.create(parallelPaymentService).journal(journal).calculate(ORDERS);
+        }
+        assertThat(JournalReplay.read(parallelFile).report()).isEqualTo(parallelPaymentService.generateReport());
+
+        final var onlineFile = directory.resolve("online.bin");
+        final var onlinePaymentService = paymentService(mode);
+        try (var journal = SettlementJournal.open(onlineFile, onlinePaymentService)) {
+            final var settlement = new OnlineSettlement(onlinePaymentService,
+                    DiscountService.create(onlinePaymentService).journal(journal));
+            ORDERS.forEach(settlement::settle);
+        }
+        assertThat(JournalReplay.read(onlineFile).report()).isEqualTo(onlinePaymentService.generateReport());
+    }
+
+    @Test
+    @DisplayName("Test whether committed settlements can be replayed while the journal is still open")
+    public void testCommit(@TempDir Path directory) throws IOException {
+        final var file = directory.resolve("journal.bin");
+        final var paymentService = paymentService(MoneyMode.FIXED_POINT);
+        try (var journal = SettlementJournal.open(file, paymentService)) {
+            final var report = DiscountService.create(paymentService).journal(journal).calculate(ORDERS);
+            journal.commit();
+
+            assertThat(journal.written()).isEqualTo(ORDERS.size());
+            final var replay = JournalReplay.read(file);
+            assertThat(replay.report()).isEqualTo(report);
+            // The rest of the mapped region is still zeroed, which ends the journal cleanly.
+            assertThat(replay.complete()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Test whether the replay stops at a torn or cut off record and keeps the settlements before it")
+    public void testTornRecord(@TempDir Path directory) throws IOException {
+        final var file = directory.resolve("journal.bin");
+        final var paymentService = paymentService(MoneyMode.DECIMAL);
+        try (var journal = SettlementJournal.open(file, paymentService)) {
+            DiscountService.create(paymentService).journal(journal).calculate(ORDERS);
+        }
+        final var bytes = Files.readAllBytes(file);
+
+        bytes[bytes.length - 3] ^= 1;
+        Files.write(file, bytes);
+        final var torn = JournalReplay.read(file);
+        assertThat(torn.settlements()).isEqualTo(ORDERS.size() - 1);
+        assertThat(torn.complete()).isFalse();
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+        final var cut = JournalReplay.read(file);
+        assertThat(cut.settlements()).isEqualTo(ORDERS.size() - 1);
+        assertThat(cut.complete()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Test whether a file which is not a journal is refused")
+    public void testRefusesOtherFiles(@TempDir Path directory) throws IOException {
+        final var file = directory.resolve("orders.json");
+        Files.writeString(file, "[{\"id\": \"ORDER1\", \"value\": \"100.00\"}]");
+
+        assertThatThrownBy(() -> JournalReplay.read(file)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,84 @@
+import me.wiktorlacki.promotions.Constants;
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.optimizer.SpendOptimizer;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpendOptimizerTests {
+
+    private static final Duration BUDGET = Duration.ofSeconds(5);
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether points are saved for a later order when that lowers the total spend")
+    public void testSavesPointsForLaterOrder(MoneyMode mode) {
+        final var points = new PaymentMethod(Constants.POINTS_METHOD, new BigDecimal("0.15"), new BigDecimal("10.00"));
+        final var card = new PaymentMethod("CARD", BigDecimal.ZERO, new BigDecimal("1000.00"));
+        final var orders = List.of(
+                new Order("SMALL", new BigDecimal("10.00"), null),
+                new Order("LARGE", new BigDecimal("100.00"), null)
+        );
+
+        final var result = new SpendOptimizer(List.of(points, card), mode, BUDGET).optimize(orders);
+
+        // Greedy pays the small order with points and has too few left for the partial points discount.
+        assertThat(result.greedyReport().total()).isEqualByComparingTo("108.50");
+        assertThat(result.report().total()).isEqualByComparingTo("100.00");
+        assertThat(result.savings()).isEqualByComparingTo("8.50");
+        assertThat(result.optimal()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4, 5})
+    @DisplayName("Test whether the optimized report is never worse than greedy and respects the limits")
+    public void testNeverWorseThanGreedy(long seed) {
+        final var random = new Random(seed);
+        final var paymentMethods = new ArrayList<PaymentMethod>();
+        paymentMethods.add(new PaymentMethod(Constants.POINTS_METHOD, percent(random), cents(random, 20_000)));
+        for (int i = 0; i < 3; i++) {
+            paymentMethods.add(new PaymentMethod("CARD" + i, percent(random), cents(random, 50_000).add(new BigDecimal("2000"))));
+        }
+
+        final var orders = new ArrayList<Order>();
+        for (int i = 0; i < 8; i++) {
+            final var promotions = new ArrayList<String>();
+            for (final var paymentMethod : paymentMethods) {
+                if (random.nextBoolean()) promotions.add(paymentMethod.id());
+            }
+            orders.add(new Order("ORDER" + i, cents(random, 20_000).add(BigDecimal.ONE), promotions));
+        }
+
+        final var result = new SpendOptimizer(paymentMethods, MoneyMode.FIXED_POINT, BUDGET).optimize(orders);
+
+        assertThat(result.report().total()).isLessThanOrEqualTo(result.greedyReport().total());
+        for (final var paymentMethod : paymentMethods) {
+            final var spent = result.report().values().entrySet().stream()
+                    .filter(e -> e.getKey().id().equals(paymentMethod.id()))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(BigDecimal.ZERO);
+            assertThat(spent).isLessThanOrEqualTo(paymentMethod.limit());
+        }
+    }
+
+    private static BigDecimal percent(Random random) {
+        return BigDecimal.valueOf(random.nextInt(30), 2);
+    }
+
+    private static BigDecimal cents(Random random, int bound) {
+        return BigDecimal.valueOf(random.nextInt(bound), 2);
+    }
+}
@@ -0,0 +1,94 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountProcessor;
+import me.wiktorlacki.promotions.discount.DiscountService;
+import me.wiktorlacki.promotions.discount.impl.SplitPayment;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SplitPaymentTests {
+
+    private static PaymentService paymentService(MoneyMode mode, String points) {
+        return new PaymentService(new PaymentMethodsContainer(List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal(points)),
+                new PaymentMethod("mZysk", new BigDecimal("0.10"), new BigDecimal("30.00")),
+                new PaymentMethod("BosBankrut", new BigDecimal("0.05"), new BigDecimal("50.00")),
+                new PaymentMethod("Visa", new BigDecimal("0.00"), new BigDecimal("45.00"))
+        ), mode));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether an order no single payment method covers is paid with all points and as few cards as possible")
+    public void testSplitsAcrossCards(MoneyMode mode) {
+        final var paymentService = paymentService(mode, "20.00");
+        final var processor = new DiscountProcessor(paymentService, DiscountService.strategies(paymentService));
+
+        final var offer = processor.process(new Order("ORDER1", new BigDecimal("100.00"), List.of("mZysk")));
+
+        assertThat(offer).get().extracting(Offer::type).isEqualTo("SPLIT");
+        assertThat(offer.get().price()).isEqualByComparingTo("90.00");
+        // The largest balance is drained first, the rest is paid with the smallest balance covering it.
+        assertThat(amounts(offer.get())).containsOnly(
+                Map.entry("PUNKTY", "20"),
+                Map.entry("BosBankrut", "50"),
+                Map.entry("mZysk", "20"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the full value is split if the points do not reach the partial points threshold")
+    public void testNoDiscountBelowThreshold(MoneyMode mode) {
+        final var paymentService = paymentService(mode, "5.00");
+
+        final var offer = new SplitPayment(paymentService).apply(new Order("ORDER1", new BigDecimal("100.00"), null));
+
+        assertThat(offer).isPresent();
+        assertThat(offer.get().price()).isEqualByComparingTo("100.00");
+        assertThat(amounts(offer.get())).containsOnly(
+                Map.entry("PUNKTY", "5"),
+                Map.entry("BosBankrut", "50"),
+                Map.entry("Visa", "45"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether the split payment is only used when no other strategy applies")
+    public void testOnlyAsFallback(MoneyMode mode) {
+        final var paymentService = paymentService(mode, "20.00");
+        final var processor = new DiscountProcessor(paymentService, DiscountService.strategies(paymentService));
+        final var order = new Order("ORDER1", new BigDecimal("40.00"), null);
+
+        assertThat(processor.process(order)).get().extracting(Offer::type).isEqualTo("PARTIAL_POINTS");
+        assertThat(processor.evaluate(order, order.valueUnits()).type()).isEqualTo("PARTIAL_POINTS");
+    }
+
+    @ParameterizedTest
+    @EnumSource(MoneyMode.class)
+    @DisplayName("Test whether no split is offered if all balances together do not cover the order")
+    public void testInsufficientBalances(MoneyMode mode) {
+        final var paymentService = paymentService(mode, "20.00");
+        final var order = new Order("ORDER1", new BigDecimal("200.00"), null);
+        final var strategy = new SplitPayment(paymentService);
+
+        assertThat(strategy.apply(order)).isEmpty();
+        assertThat(strategy.applyFixed(order, order.valueUnits())).isEmpty();
+    }
+
+    private static Map<String, String> amounts(Offer offer) {
+        return offer.payments().entrySet().stream()
+                .collect(Collectors.toMap(entry -> entry.getKey().id(), entry -> entry.getValue().stripTrailingZeros().toPlainString()));
+    }
+}
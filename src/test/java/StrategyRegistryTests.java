@@ -0,0 +1,95 @@
+import me.wiktorlacki.promotions.Order;
+import me.wiktorlacki.promotions.discount.DiscountProcessor;
+import me.wiktorlacki.promotions.discount.DiscountStrategy;
+import me.wiktorlacki.promotions.discount.DiscountStrategyProvider;
+import me.wiktorlacki.promotions.discount.StrategyRegistry;
+import me.wiktorlacki.promotions.discount.impl.FullCardPayment;
+import me.wiktorlacki.promotions.discount.impl.FullPointsPayment;
+import me.wiktorlacki.promotions.discount.impl.PartialPointsPayment;
+import me.wiktorlacki.promotions.discount.impl.SplitPayment;
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.offer.Offer;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StrategyRegistryTests {
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Test
+    @DisplayName("Test whether the default registry holds the built-in strategies in their evaluation order")
+    public void testBuiltInStrategies() {
+        final var strategies = StrategyRegistry.defaults().strategies(paymentService());
+
+        assertThat(strategies).extracting(Object::getClass)
+                .containsExactly(FullPointsPayment.class, PartialPointsPayment.class, FullCardPayment.class, SplitPayment.class);
+    }
+
+    @Test
+    @DisplayName("Test whether strategies of providers found on the class path are evaluated after the built-in ones")
+    public void testLoadsProviders() throws IOException {
+        final var services = tempDirectory.resolve("META-INF/services");
+        Files.createDirectories(services);
+        Files.writeString(services.resolve(DiscountStrategyProvider.class.getName()), StaffDiscountProvider.class.getName() + "\n");
+
+        try (var classLoader = new URLClassLoader(new URL[]{tempDirectory.toUri().toURL()}, getClass().getClassLoader())) {
+            final var registry = StrategyRegistry.load(classLoader);
+            final var paymentService = paymentService();
+            final var strategies = registry.strategies(paymentService);
+
+            assertThat(registry.size()).isEqualTo(5);
+            assertThat(strategies.get(4)).isInstanceOf(StaffDiscount.class);
+
+            final var order = new Order("1", new BigDecimal("100.00"), null);
+            assertThat(new DiscountProcessor(paymentService, strategies).process(order))
+                    .get()
+                    .extracting(Offer::type)
+                    .isEqualTo("STAFF");
+        }
+    }
+
+    private static PaymentService paymentService() {
+        return new PaymentService(new PaymentMethodsContainer(List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("10.00")),
+                new PaymentMethod("CARD", new BigDecimal("0.10"), new BigDecimal("500.00"))
+        ), MoneyMode.FIXED_POINT));
+    }
+
+    public static class StaffDiscountProvider implements DiscountStrategyProvider {
+
+        @Override
+        public DiscountStrategy create(PaymentService paymentService) {
+            return new StaffDiscount(paymentService);
+        }
+    }
+
+    /**
+     * Pays half of every order by card.
+     */
+    private record StaffDiscount(PaymentService paymentService) implements DiscountStrategy {
+
+        @Override
+        public Optional<Offer> apply(Order order) {
+            final var card = paymentService.byName("CARD").orElseThrow();
+            final var price = order.value().divide(new BigDecimal(2));
+            return Optional.of(Offer.make("STAFF", price, Map.of(card, price)));
+        }
+    }
+}
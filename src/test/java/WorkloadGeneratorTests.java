@@ -0,0 +1,88 @@
+import me.wiktorlacki.promotions.generator.ValueDistribution;
+import me.wiktorlacki.promotions.generator.WorkloadGenerator;
+import me.wiktorlacki.promotions.generator.WorkloadSettings;
+import me.wiktorlacki.promotions.generator.WorkloadWriter;
+import me.wiktorlacki.promotions.loader.JSONLoader;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WorkloadGeneratorTests {
+
+    @TempDir
+    private Path tempDirectory;
+
+    @Test
+    @DisplayName("Test whether equal settings generate equal workloads")
+    public void testDeterministic() {
+        final var settings = new WorkloadSettings(7, 1_000, 10, ValueDistribution.SKEWED, new BigDecimal("500.00"), 2, 0.05, 0.5);
+
+        final var first = new WorkloadGenerator(settings);
+        final var second = new WorkloadGenerator(settings);
+
+        assertThat(second.paymentMethods()).isEqualTo(first.paymentMethods());
+        assertThat(second.orders().toList()).isEqualTo(first.orders().toList());
+        assertThat(first.orders().toList()).isEqualTo(first.orders().toList());
+    }
+
+    @Test
+    @DisplayName("Test whether generated values and promotions respect the settings")
+    public void testRespectsSettings() {
+        final var settings = new WorkloadSettings(7, 10_000, 5, ValueDistribution.UNIFORM, new BigDecimal("20.00"), 1, 0.01, 1);
+        final var generator = new WorkloadGenerator(settings);
+        final var ids = generator.paymentMethods().stream().map(PaymentMethod::id).toList();
+
+        assertThat(ids).hasSize(5);
+        assertThat(generator.orders()).allSatisfy(order -> {
+            assertThat(order.value()).isBetween(new BigDecimal("0.01"), new BigDecimal("20.00"));
+            if (order.promotions() != null) {
+                assertThat(order.promotions()).hasSizeLessThanOrEqualTo(1);
+                assertThat(ids).containsAll(order.promotions());
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Test whether an order never lists the same promotion twice, even when it may list every card")
+    public void testDistinctPromotions() {
+        final var settings = new WorkloadSettings(7, 10_000, 4, ValueDistribution.UNIFORM, new BigDecimal("20.00"), 5, 0.01, 1);
+
+        assertThat(new WorkloadGenerator(settings).orders()).allSatisfy(order -> {
+            if (order.promotions() != null) {
+                assertThat(order.promotions()).doesNotHaveDuplicates().hasSizeLessThanOrEqualTo(3);
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Test whether written files are read back by the JSON loader unchanged")
+    public void testWrittenFilesLoad() throws IOException {
+        final var generator = new WorkloadGenerator(3, 500, 6);
+        final var ordersFile = tempDirectory.resolve("orders.json");
+        final var paymentMethodsFile = tempDirectory.resolve("paymentmethods.json");
+        final var writer = new WorkloadWriter();
+
+        writer.writePaymentMethods(paymentMethodsFile, generator.paymentMethods());
+        final var written = writer.writeOrders(ordersFile, generator.orders());
+
+        final var loader = new JSONLoader();
+        assertThat(written).isEqualTo(500);
+        assertThat(loader.loadOrders(ordersFile.toString())).containsExactlyElementsOf(generator.orders().toList());
+        assertThat(describe(loader.loadPaymentMethods(paymentMethodsFile.toString())))
+                .containsExactlyElementsOf(describe(generator.paymentMethods()));
+    }
+
+    private static List<String> describe(List<PaymentMethod> paymentMethods) {
+        return paymentMethods.stream()
+                .map(it -> it.id() + " " + it.discount().stripTrailingZeros().toPlainString() + " " + it.limit().toPlainString())
+                .toList();
+    }
+}
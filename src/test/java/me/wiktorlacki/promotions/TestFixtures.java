@@ -0,0 +1,51 @@
+package me.wiktorlacki.promotions;
+
+import me.wiktorlacki.promotions.money.MoneyMode;
+import me.wiktorlacki.promotions.payment.PaymentMethod;
+import me.wiktorlacki.promotions.payment.PaymentMethodsContainer;
+import me.wiktorlacki.promotions.payment.PaymentService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The orders and payment methods of the example input, shared by the tests of the settlement engine.
+ */
+public final class TestFixtures {
+
+    /**
+     * An order no payment method can pay, and the most valuable one, so it is settled last.
+     */
+    public static final Order UNPAYABLE = new Order("UNPAYABLE", new BigDecimal("5000.00"), List.of("mZysk"));
+
+    public static final List<Order> ORDERS = List.of(
+            new Order("ORDER1", new BigDecimal("100.00"), List.of("mZysk")),
+            new Order("ORDER2", new BigDecimal("200.00"), List.of("BosBankrut")),
+            new Order("ORDER3", new BigDecimal("150.00"), List.of("mZysk", "BosBankrut")),
+            new Order("ORDER4", new BigDecimal("50.00"), null)
+    );
+
+    private TestFixtures() {
+    }
+
+    /**
+     * @return a new payment service with the payment methods of the example input at their limits
+     */
+    public static PaymentService paymentService(MoneyMode mode) {
+        return new PaymentService(new PaymentMethodsContainer(List.of(
+                new PaymentMethod("PUNKTY", new BigDecimal("0.15"), new BigDecimal("100.00")),
+                new PaymentMethod("mZysk", new BigDecimal("0.10"), new BigDecimal("180.00")),
+                new PaymentMethod("BosBankrut", new BigDecimal("0.05"), new BigDecimal("200.00"))
+        ), mode));
+    }
+
+    /**
+     * @return {@link #ORDERS} with {@link #UNPAYABLE} arriving between them
+     */
+    public static List<Order> withUnpayable() {
+        final var orders = new ArrayList<>(ORDERS);
+        orders.add(2, UNPAYABLE);
+        return orders;
+    }
+}